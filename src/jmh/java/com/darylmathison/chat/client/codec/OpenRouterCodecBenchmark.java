@@ -0,0 +1,147 @@
+package com.darylmathison.chat.client.codec;
+
+import com.darylmathison.chat.client.dto.OpenRouterChatRequest;
+import com.darylmathison.chat.client.dto.OpenRouterChatResponse;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.netty.buffer.PooledByteBufAllocator;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+
+/**
+ * Compares the old JsonNode/String request and response path in AIService with the streaming
+ * codec for large multi-turn conversations.
+ * <p>
+ * Run with {@code ./gradlew jmh}; the gc profiler is enabled in build.gradle and reports bytes
+ * allocated per call as {@code gc.alloc.rate.norm}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OpenRouterCodecBenchmark {
+
+  private static final ResolvableType REQUEST_TYPE =
+      ResolvableType.forClass(OpenRouterChatRequest.class);
+  private static final ResolvableType RESPONSE_TYPE =
+      ResolvableType.forClass(OpenRouterChatResponse.class);
+
+  @Param({"10", "100", "500"})
+  int turns;
+
+  @Param({"2000"})
+  int messageChars;
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private final NettyDataBufferFactory bufferFactory =
+      new NettyDataBufferFactory(PooledByteBufAllocator.DEFAULT);
+  private final OpenRouterChatRequestEncoder encoder = new OpenRouterChatRequestEncoder();
+  private final OpenRouterChatResponseDecoder decoder =
+      new OpenRouterChatResponseDecoder(16 * 1024 * 1024);
+
+  private OpenRouterChatRequest request;
+  private byte[] responseBytes;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    List<OpenRouterChatRequest.ChatMessage> messages = new ArrayList<>();
+    messages.add(new OpenRouterChatRequest.ChatMessage("system", "You are a helpful assistant."));
+    for (int i = 0; i < turns; i++) {
+      messages.add(new OpenRouterChatRequest.ChatMessage(i % 2 == 0 ? "user" : "assistant",
+          text(i)));
+    }
+    request = new OpenRouterChatRequest("openai/gpt-4", messages, 4000, 0.7, false);
+
+    // A realistic completion: long answer plus reasoning and provider metadata we never read
+    ObjectNode response = objectMapper.createObjectNode();
+    response.put("id", "gen-123");
+    response.put("provider", "OpenAI");
+    response.put("model", "openai/gpt-4");
+    ObjectNode choice = response.putArray("choices").addObject();
+    choice.put("finish_reason", "stop");
+    ObjectNode message = choice.putObject("message");
+    message.put("role", "assistant");
+    message.put("content", text(turns).repeat(4));
+    message.put("reasoning", text(turns + 1).repeat(8));
+    ObjectNode usage = response.putObject("usage");
+    usage.put("prompt_tokens", turns * messageChars / 4);
+    usage.put("completion_tokens", messageChars);
+    usage.put("total_tokens", turns * messageChars / 4 + messageChars);
+    responseBytes = response.toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  /**
+   * The previous AIService path: ObjectNode tree, toString(), String body encoded to bytes, and
+   * the response read back as a full JsonNode tree.
+   */
+  @Benchmark
+  public int treeAndString() throws Exception {
+    ObjectNode requestBody = objectMapper.createObjectNode();
+    requestBody.put("model", request.model());
+    ArrayNode messagesNode = requestBody.putArray("messages");
+    for (OpenRouterChatRequest.ChatMessage message : request.messages()) {
+      ObjectNode jsonMessage = objectMapper.createObjectNode();
+      jsonMessage.put("role", message.role());
+      jsonMessage.put("content", message.content());
+      messagesNode.add(jsonMessage);
+    }
+    requestBody.put("max_tokens", request.maxTokens());
+    requestBody.put("temperature", request.temperature());
+
+    DataBuffer body = bufferFactory.wrap(requestBody.toString().getBytes(StandardCharsets.UTF_8));
+    int written = body.readableByteCount();
+    DataBufferUtils.release(body);
+
+    JsonNode response = objectMapper.readTree(responseBytes);
+    String content = response.path("choices").path(0).path("message").path("content").asText();
+    int totalTokens = response.path("usage").path("total_tokens").asInt();
+    return written + content.length() + totalTokens;
+  }
+
+  /**
+   * The codec path: the request is generated straight into a pooled Netty buffer and the response
+   * is pulled field by field with a JsonParser.
+   */
+  @Benchmark
+  public int streamingCodec() {
+    DataBuffer body = encoder.encodeValue(request, bufferFactory, REQUEST_TYPE, null, null);
+    int written = body.readableByteCount();
+    DataBufferUtils.release(body);
+
+    OpenRouterChatResponse response = decoder.decode(bufferFactory.wrap(responseBytes),
+        RESPONSE_TYPE, null, null);
+    return written + response.content().length() + response.usage().totalTokens();
+  }
+
+  private String text(int seed) {
+    StringBuilder builder = new StringBuilder(messageChars);
+    while (builder.length() < messageChars) {
+      builder.append("Turn ").append(seed).append(": the quick brown fox \"jumps\" over ")
+          .append("the lazy dog.\n");
+    }
+    builder.setLength(messageChars);
+    return builder.toString();
+  }
+}
@@ -0,0 +1,149 @@
+package com.darylmathison.chat.client.repository;
+
+import com.darylmathison.chat.client.model.Chat;
+import com.darylmathison.chat.client.model.Message;
+import com.darylmathison.chat.client.model.Message.MessageRole;
+import com.darylmathison.chat.client.search.InMemoryMessageSearchIndex;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactory;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.data.relational.core.query.Criteria;
+import org.springframework.data.relational.core.query.Query;
+import org.springframework.r2dbc.connection.R2dbcTransactionManager;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Mono;
+
+/**
+ * Per-turn database latency of the old ChatService write path against {@link ChatTurnWriter}.
+ * <p>
+ * The legacy methods replay what the repositories used to do for one turn: save the user message,
+ * save the assistant message, then read the chat and save it back with the new totals (plus an
+ * up-front save for a new chat). Both sides run against the same pooled in-memory H2 database the
+ * application uses, so the difference is mostly round trips and statement count. Run with
+ * {@code ./gradlew jmh}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChatTurnWriterBenchmark {
+
+  private static final String USER_CONTENT = "What is the capital of France?";
+  private static final String ASSISTANT_CONTENT = "The capital of France is Paris. ".repeat(20);
+
+  private ConnectionFactory connectionFactory;
+  private R2dbcEntityTemplate template;
+  private ChatTurnWriter writer;
+  private Long chatId;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    connectionFactory = ConnectionFactories.get(
+        "r2dbc:pool:h2:mem:///chat_turn_benchmark?options=DB_CLOSE_DELAY=-1");
+    DatabaseClient databaseClient = DatabaseClient.create(connectionFactory);
+    template = new R2dbcEntityTemplate(connectionFactory);
+    // The buffer is disabled, so it never calls back into the writer; the index is updated as in
+    // production, and only reads its repositories when searching
+    writer = new ChatTurnWriter(databaseClient,
+        TransactionalOperator.create(new R2dbcTransactionManager(connectionFactory)),
+        new MessageWriteBehindBuffer(null, new SimpleMeterRegistry()),
+        new InMemoryMessageSearchIndex(null, null));
+
+    databaseClient.sql("CREATE TABLE IF NOT EXISTS chats (id BIGINT AUTO_INCREMENT PRIMARY KEY, "
+            + "title VARCHAR(255) NOT NULL, created_at TIMESTAMP NOT NULL, "
+            + "updated_at TIMESTAMP NOT NULL, total_tokens BIGINT, estimated_cost DOUBLE, "
+            + "model_used VARCHAR(100), message_count INTEGER, "
+            + "last_message_preview VARCHAR(100))")
+        .then()
+        .then(databaseClient.sql("CREATE TABLE IF NOT EXISTS messages (id BIGINT AUTO_INCREMENT "
+                + "PRIMARY KEY, chat_id BIGINT NOT NULL, content TEXT NOT NULL, "
+                + "role VARCHAR(20) NOT NULL, created_at TIMESTAMP NOT NULL, tokens INTEGER, "
+                + "FOREIGN KEY (chat_id) REFERENCES chats (id) ON DELETE CASCADE)")
+            .then())
+        .block();
+    chatId = template.insert(newChat()).block().getId();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    DatabaseClient.create(connectionFactory).sql("DROP ALL OBJECTS").then().block();
+  }
+
+  @Benchmark
+  public Chat legacyExistingChatTurn() {
+    return legacyTurn(chatId).block();
+  }
+
+  @Benchmark
+  public List<Message> consolidatedExistingChatTurn() {
+    return writer.writeTurn(chatId, turn(), 42L, 0.0001, "openai/gpt-4o").block();
+  }
+
+  @Benchmark
+  public Chat legacyNewChatTurn() {
+    return template.insert(newChat())
+        .flatMap(chat -> legacyTurn(chat.getId()))
+        .block();
+  }
+
+  @Benchmark
+  public List<Message> consolidatedNewChatTurn() {
+    Chat chat = newChat();
+    chat.setTotalTokens(42L);
+    chat.setEstimatedCost(0.0001);
+    chat.setModelUsed("openai/gpt-4o");
+    return writer.writeNewChatTurn(chat, turn()).block();
+  }
+
+  private Mono<Chat> legacyTurn(Long id) {
+    List<Message> messages = turn();
+    messages.forEach(message -> message.setChatId(id));
+    return template.insert(messages.get(0))
+        .then(template.insert(messages.get(1)))
+        .then(template.selectOne(Query.query(Criteria.where("id").is(id)), Chat.class))
+        .flatMap(chat -> {
+          chat.setTotalTokens(chat.getTotalTokens() + 42L);
+          chat.setEstimatedCost(chat.getEstimatedCost() + 0.0001);
+          chat.setModelUsed("openai/gpt-4o");
+          chat.setUpdatedAt(LocalDateTime.now());
+          return template.update(chat);
+        });
+  }
+
+  private static Chat newChat() {
+    return Chat.builder()
+        .title(USER_CONTENT)
+        .createdAt(LocalDateTime.now())
+        .updatedAt(LocalDateTime.now())
+        .totalTokens(0L)
+        .estimatedCost(0.0)
+        .build();
+  }
+
+  private static List<Message> turn() {
+    LocalDateTime now = LocalDateTime.now();
+    return List.of(
+        Message.builder().content(USER_CONTENT).role(MessageRole.USER).createdAt(now).build(),
+        Message.builder().content(ASSISTANT_CONTENT).role(MessageRole.ASSISTANT)
+            .createdAt(now).tokens(42).build());
+  }
+}
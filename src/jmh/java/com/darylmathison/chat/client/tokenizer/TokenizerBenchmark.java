@@ -0,0 +1,106 @@
+package com.darylmathison.chat.client.tokenizer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Tokenizer throughput on English prose, Java source and mixed non-Latin text.
+ * <p>
+ * Needs the vocabularies ({@code ./gradlew downloadTokenizerData}). Run with
+ * {@code ./gradlew jmh}. The {@code bytes} secondary result is UTF-8 input consumed per second;
+ * divide by 10^6 for MB/s. {@code gc.alloc.rate.norm} of {@link #count} should stay near zero.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TokenizerBenchmark {
+
+  private static final String PROSE = "The quick brown fox jumps over the lazy dog. "
+      + "Tokenizers split text into pieces and merge the bytes of each piece into tokens, "
+      + "so that common words become a single token while rare ones fall apart into several. ";
+
+  private static final String CODE = """
+      public Mono<List<Message>> writeTurn(Long chatId, List<Message> messages, long tokens) {
+        if (messages.isEmpty()) {
+          return Mono.error(new IllegalArgumentException("No messages for chat " + chatId));
+        }
+        return insertMessages(chatId, messages)
+            .flatMap(saved -> incrementStats(chatId, saved, tokens).thenReturn(saved));
+      }
+      """;
+
+  private static final String MIXED = "東京は日本の首都です。Москва — столица России. "
+      + "Ελληνικά κείμενα και 한국어 문장도 섞여 있습니다. مرحبا بالعالم 🌍🚀 ";
+
+  @Param({"cl100k_base", "o200k_base"})
+  String encodingName;
+
+  @Param({"prose", "code", "mixed"})
+  String corpus;
+
+  private BpeEncoding encoding;
+  private String text;
+  private int textBytes;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    EncodingName name = EncodingName.fromId(encodingName);
+    String resource = "/tokenizer/" + name.id() + ".tiktoken";
+    try (InputStream in = TokenizerBenchmark.class.getResourceAsStream(resource)) {
+      if (in == null) {
+        throw new IllegalStateException(resource + " not found; run ./gradlew downloadTokenizerData");
+      }
+      encoding = new BpeEncoding(name, BpeRanks.load(in));
+    }
+    String sample = switch (corpus) {
+      case "code" -> CODE;
+      case "mixed" -> MIXED;
+      default -> PROSE;
+    };
+    // About 64 KB, the size of a long chat history
+    text = sample.repeat(Math.max(1, 65_536 / sample.getBytes(StandardCharsets.UTF_8).length));
+    textBytes = text.getBytes(StandardCharsets.UTF_8).length;
+  }
+
+  @Benchmark
+  public int count(Throughput throughput) {
+    throughput.bytes += textBytes;
+    return encoding.countTokens(text);
+  }
+
+  @Benchmark
+  public int[] encode(Throughput throughput) {
+    throughput.bytes += textBytes;
+    return encoding.encode(text);
+  }
+
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  public static class Throughput {
+
+    public long bytes;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      bytes = 0;
+    }
+  }
+}
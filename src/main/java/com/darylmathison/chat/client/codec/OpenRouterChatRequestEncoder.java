@@ -0,0 +1,65 @@
+package com.darylmathison.chat.client.codec;
+
+import com.darylmathison.chat.client.dto.OpenRouterChatRequest;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import java.io.IOException;
+import java.util.Map;
+import org.reactivestreams.Publisher;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.AbstractEncoder;
+import org.springframework.core.codec.EncodingException;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.MediaType;
+import org.springframework.lang.Nullable;
+import org.springframework.util.MimeType;
+import reactor.core.publisher.Flux;
+
+/**
+ * Writes {@link OpenRouterChatRequest} bodies directly into the outgoing (Netty) data buffers
+ * with a streaming {@link JsonGenerator}, instead of building an ObjectNode tree and serializing
+ * it to an intermediate String.
+ */
+public class OpenRouterChatRequestEncoder extends AbstractEncoder<OpenRouterChatRequest> {
+
+  public OpenRouterChatRequestEncoder() {
+    super(MediaType.APPLICATION_JSON);
+  }
+
+  @Override
+  public boolean canEncode(ResolvableType elementType, @Nullable MimeType mimeType) {
+    return OpenRouterChatRequest.class.isAssignableFrom(elementType.toClass())
+        && super.canEncode(elementType, mimeType);
+  }
+
+  @Override
+  public Flux<DataBuffer> encode(Publisher<? extends OpenRouterChatRequest> inputStream,
+      DataBufferFactory bufferFactory, ResolvableType elementType, @Nullable MimeType mimeType,
+      @Nullable Map<String, Object> hints) {
+    return Flux.from(inputStream)
+        .map(request -> encodeValue(request, bufferFactory, elementType, mimeType, hints));
+  }
+
+  @Override
+  public DataBuffer encodeValue(OpenRouterChatRequest request, DataBufferFactory bufferFactory,
+      ResolvableType valueType, @Nullable MimeType mimeType, @Nullable Map<String, Object> hints) {
+    DataBuffer buffer = bufferFactory.allocateBuffer(OpenRouterJson.estimateSize(request));
+    boolean release = true;
+    try {
+      JsonGenerator generator = OpenRouterJson.JSON_FACTORY
+          .createGenerator(buffer.asOutputStream(), JsonEncoding.UTF8);
+      OpenRouterJson.writeRequest(generator, request);
+      generator.close();
+      release = false;
+      return buffer;
+    } catch (IOException e) {
+      throw new EncodingException("Failed to encode OpenRouter request", e);
+    } finally {
+      if (release) {
+        DataBufferUtils.release(buffer);
+      }
+    }
+  }
+}
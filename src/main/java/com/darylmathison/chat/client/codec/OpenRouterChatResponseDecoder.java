@@ -0,0 +1,44 @@
+package com.darylmathison.chat.client.codec;
+
+import com.darylmathison.chat.client.dto.OpenRouterChatResponse;
+import com.fasterxml.jackson.core.JsonParser;
+import java.io.IOException;
+import java.util.Map;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.AbstractDataBufferDecoder;
+import org.springframework.core.codec.DecodingException;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.MediaType;
+import org.springframework.lang.Nullable;
+import org.springframework.util.MimeType;
+
+/**
+ * Reads an OpenRouter chat completion into an {@link OpenRouterChatResponse} with a streaming
+ * {@link JsonParser}, pulling only the fields the client uses straight off the response buffer
+ * instead of materializing the whole payload as a JsonNode tree.
+ */
+public class OpenRouterChatResponseDecoder extends
+    AbstractDataBufferDecoder<OpenRouterChatResponse> {
+
+  public OpenRouterChatResponseDecoder(int maxInMemorySize) {
+    super(MediaType.APPLICATION_JSON);
+    setMaxInMemorySize(maxInMemorySize);
+  }
+
+  @Override
+  public boolean canDecode(ResolvableType elementType, @Nullable MimeType mimeType) {
+    return OpenRouterChatResponse.class.isAssignableFrom(elementType.toClass())
+        && super.canDecode(elementType, mimeType);
+  }
+
+  @Override
+  public OpenRouterChatResponse decode(DataBuffer buffer, ResolvableType targetType,
+      @Nullable MimeType mimeType, @Nullable Map<String, Object> hints) {
+    try (JsonParser parser = OpenRouterJson.JSON_FACTORY.createParser(
+        buffer.asInputStream(true))) {
+      return OpenRouterJson.readResponse(parser);
+    } catch (IOException e) {
+      throw new DecodingException("Failed to decode OpenRouter response", e);
+    }
+  }
+}
@@ -0,0 +1,291 @@
+package com.darylmathison.chat.client.codec;
+
+import com.darylmathison.chat.client.dto.OpenRouterChatRequest;
+import com.darylmathison.chat.client.dto.OpenRouterChatResponse;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Streaming Jackson reader and writer for the OpenRouter chat completion wire format.
+ * <p>
+ * Requests are written token by token with a {@link JsonGenerator}, and responses are read with a
+ * {@link JsonParser} that only keeps the handful of fields the client needs and skips everything
+ * else, so no intermediate tree or String body is ever built.
+ */
+public final class OpenRouterJson {
+
+  /**
+   * Shared factory; JsonFactory is thread safe and recycles its internal buffers.
+   */
+  public static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+  private OpenRouterJson() {
+  }
+
+  /**
+   * Rough upper bound of the encoded size, used to size the initial buffer so that it rarely has
+   * to grow while the request is written.
+   */
+  public static int estimateSize(OpenRouterChatRequest request) {
+    int size = 128 + length(request.model());
+    if (request.messages() != null) {
+      for (OpenRouterChatRequest.ChatMessage message : request.messages()) {
+        // Allow for escaping and the role/content envelope
+        size += 32 + length(message.role()) + length(message.content()) * 11 / 10;
+        if (message.cacheBreakpoint()) {
+          size += 64;
+        }
+      }
+    }
+    return size;
+  }
+
+  public static void writeRequest(JsonGenerator generator, OpenRouterChatRequest request)
+      throws IOException {
+    generator.writeStartObject();
+    generator.writeStringField("model", request.model());
+    if (request.models() != null && !request.models().isEmpty()) {
+      generator.writeArrayFieldStart("models");
+      for (String model : request.models()) {
+        generator.writeString(model);
+      }
+      generator.writeEndArray();
+    }
+
+    generator.writeArrayFieldStart("messages");
+    if (request.messages() != null) {
+      for (OpenRouterChatRequest.ChatMessage message : request.messages()) {
+        generator.writeStartObject();
+        generator.writeStringField("role", message.role());
+        if (message.cacheBreakpoint()) {
+          writeCachedContent(generator, message.content());
+        } else {
+          generator.writeStringField("content", message.content());
+        }
+        generator.writeEndObject();
+      }
+    }
+    generator.writeEndArray();
+
+    if (request.maxTokens() != null) {
+      generator.writeNumberField("max_tokens", request.maxTokens());
+    }
+    if (request.temperature() != null) {
+      generator.writeNumberField("temperature", request.temperature());
+    }
+    if (request.stream()) {
+      generator.writeBooleanField("stream", true);
+      // Ask OpenRouter to report usage in the last chunk of the stream
+      generator.writeObjectFieldStart("usage");
+      generator.writeBooleanField("include", true);
+      generator.writeEndObject();
+    }
+    generator.writeEndObject();
+  }
+
+  /**
+   * Content as a single text part carrying a {@code cache_control} breakpoint, the form
+   * Anthropic (and Gemini) models on OpenRouter need to cache the prompt up to this message.
+   */
+  private static void writeCachedContent(JsonGenerator generator, String content)
+      throws IOException {
+    generator.writeArrayFieldStart("content");
+    generator.writeStartObject();
+    generator.writeStringField("type", "text");
+    generator.writeStringField("text", content);
+    generator.writeObjectFieldStart("cache_control");
+    generator.writeStringField("type", "ephemeral");
+    generator.writeEndObject();
+    generator.writeEndObject();
+    generator.writeEndArray();
+  }
+
+  /**
+   * Hex SHA-256 of the request's canonical encoding. The writer always emits fields in the same
+   * order, so byte-identical requests (ignoring the stream flag) hash to the same key.
+   */
+  public static String canonicalHash(OpenRouterChatRequest request) {
+    OpenRouterChatRequest canonical = request.stream() ? request.withStream(false) : request;
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      try (JsonGenerator generator = JSON_FACTORY.createGenerator(
+          new DigestOutputStream(OutputStream.nullOutputStream(), digest), JsonEncoding.UTF8)) {
+        writeRequest(generator, canonical);
+      }
+      return HexFormat.of().formatHex(digest.digest());
+    } catch (IOException | NoSuchAlgorithmException e) {
+      throw new IllegalStateException("Failed to hash OpenRouter request", e);
+    }
+  }
+
+  /**
+   * Reads a completion or a streamed chunk. Only {@code id}, {@code model}, the first choice's
+   * {@code message.content} / {@code delta.content} and {@code finish_reason}, {@code usage} and
+   * {@code error.message} are extracted.
+   */
+  public static OpenRouterChatResponse readResponse(JsonParser parser) throws IOException {
+    if (parser.nextToken() != JsonToken.START_OBJECT) {
+      throw new IOException("Expected a JSON object from OpenRouter");
+    }
+
+    String id = null;
+    String model = null;
+    String content = null;
+    String finishReason = null;
+    OpenRouterChatResponse.Usage usage = null;
+    String error = null;
+
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.currentName();
+      JsonToken value = parser.nextToken();
+      switch (field) {
+        case "id" -> id = textOrNull(parser, value);
+        case "model" -> model = textOrNull(parser, value);
+        case "choices" -> {
+          if (value == JsonToken.START_ARRAY) {
+            String[] choice = readFirstChoice(parser);
+            content = choice[0];
+            finishReason = choice[1];
+          } else {
+            parser.skipChildren();
+          }
+        }
+        case "usage" -> usage = value == JsonToken.START_OBJECT ? readUsage(parser) : null;
+        case "error" -> error = readError(parser, value);
+        default -> parser.skipChildren();
+      }
+    }
+
+    return new OpenRouterChatResponse(id, model, content, finishReason, usage, error);
+  }
+
+  private static String[] readFirstChoice(JsonParser parser) throws IOException {
+    String content = null;
+    String finishReason = null;
+    boolean first = true;
+
+    JsonToken element;
+    while ((element = parser.nextToken()) != null && element != JsonToken.END_ARRAY) {
+      if (!first || element != JsonToken.START_OBJECT) {
+        parser.skipChildren();
+        continue;
+      }
+      first = false;
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String field = parser.currentName();
+        JsonToken value = parser.nextToken();
+        if (("message".equals(field) || "delta".equals(field))
+            && value == JsonToken.START_OBJECT) {
+          content = readMessageContent(parser);
+        } else if ("finish_reason".equals(field)) {
+          finishReason = textOrNull(parser, value);
+        } else {
+          parser.skipChildren();
+        }
+      }
+    }
+
+    return new String[]{content, finishReason};
+  }
+
+  private static String readMessageContent(JsonParser parser) throws IOException {
+    String content = null;
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.currentName();
+      JsonToken value = parser.nextToken();
+      if ("content".equals(field)) {
+        content = textOrNull(parser, value);
+      } else {
+        parser.skipChildren();
+      }
+    }
+    return content;
+  }
+
+  /**
+   * Reads {@code usage}, including cache reads and writes from
+   * {@code prompt_tokens_details.cached_tokens} / {@code cache_write_tokens} or, when a provider's
+   * own fields are passed through, {@code cache_read_input_tokens} /
+   * {@code cache_creation_input_tokens}.
+   */
+  private static OpenRouterChatResponse.Usage readUsage(JsonParser parser) throws IOException {
+    int promptTokens = 0;
+    int completionTokens = 0;
+    int totalTokens = 0;
+    int cachedTokens = 0;
+    int cacheWriteTokens = 0;
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.currentName();
+      JsonToken value = parser.nextToken();
+      switch (field) {
+        case "prompt_tokens" -> promptTokens = intOrZero(parser, value);
+        case "completion_tokens" -> completionTokens = intOrZero(parser, value);
+        case "total_tokens" -> totalTokens = intOrZero(parser, value);
+        case "cache_read_input_tokens" -> cachedTokens = Math.max(cachedTokens,
+            intOrZero(parser, value));
+        case "cache_creation_input_tokens" -> cacheWriteTokens = Math.max(cacheWriteTokens,
+            intOrZero(parser, value));
+        case "prompt_tokens_details" -> {
+          if (value == JsonToken.START_OBJECT) {
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+              String detail = parser.currentName();
+              JsonToken detailValue = parser.nextToken();
+              switch (detail) {
+                case "cached_tokens" -> cachedTokens = Math.max(cachedTokens,
+                    intOrZero(parser, detailValue));
+                case "cache_write_tokens" -> cacheWriteTokens = Math.max(cacheWriteTokens,
+                    intOrZero(parser, detailValue));
+                default -> parser.skipChildren();
+              }
+            }
+          } else {
+            parser.skipChildren();
+          }
+        }
+        default -> parser.skipChildren();
+      }
+    }
+    return new OpenRouterChatResponse.Usage(promptTokens, completionTokens, totalTokens,
+        cachedTokens, cacheWriteTokens);
+  }
+
+  private static String readError(JsonParser parser, JsonToken value) throws IOException {
+    if (value != JsonToken.START_OBJECT) {
+      String text = textOrNull(parser, value);
+      parser.skipChildren();
+      return text;
+    }
+    String message = "Unknown error";
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.currentName();
+      JsonToken fieldValue = parser.nextToken();
+      if ("message".equals(field) && fieldValue == JsonToken.VALUE_STRING) {
+        message = parser.getText();
+      } else {
+        parser.skipChildren();
+      }
+    }
+    return message;
+  }
+
+  private static String textOrNull(JsonParser parser, JsonToken value) throws IOException {
+    return value == JsonToken.VALUE_STRING ? parser.getText() : null;
+  }
+
+  private static int intOrZero(JsonParser parser, JsonToken value) throws IOException {
+    return value == JsonToken.VALUE_NUMBER_INT ? parser.getIntValue() : 0;
+  }
+
+  private static int length(String value) {
+    return value != null ? value.length() : 0;
+  }
+}
@@ -1,25 +1,89 @@
 package com.darylmathison.chat.client.config;
 
+import com.darylmathison.chat.client.codec.OpenRouterChatRequestEncoder;
+import com.darylmathison.chat.client.codec.OpenRouterChatResponseDecoder;
+import com.darylmathison.chat.client.service.OpenRouterRateLimiter;
+import io.netty.channel.ChannelOption;
+import java.time.Duration;
 import java.util.logging.Logger;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.web.reactive.function.client.ExchangeStrategies;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
 
 @Configuration
 public class WebConfig {
 
+    private static final int MAX_IN_MEMORY_SIZE = 16 * 1024 * 1024;
+
     Logger logger = Logger.getLogger(WebConfig.class.getName());
 
+    /**
+     * Dedicated connection pool for OpenRouter. With metrics enabled Reactor Netty publishes the
+     * reactor.netty.connection.provider.* gauges (active, idle, pending and total connections,
+     * tagged with name=openrouter) to Micrometer, visible under /actuator/metrics.
+     */
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider openRouterConnectionProvider(
+        @Value("${openrouter.http.max-connections:100}") int maxConnections,
+        @Value("${openrouter.http.pending-acquire-max-count:500}") int pendingAcquireMaxCount,
+        @Value("${openrouter.http.pending-acquire-timeout:10s}") Duration pendingAcquireTimeout,
+        @Value("${openrouter.http.max-idle-time:30s}") Duration maxIdleTime,
+        @Value("${openrouter.http.max-life-time:5m}") Duration maxLifeTime,
+        @Value("${openrouter.http.evict-in-background:30s}") Duration evictInBackground) {
+        return ConnectionProvider.builder("openrouter")
+            .maxConnections(maxConnections)
+            .pendingAcquireMaxCount(pendingAcquireMaxCount)
+            .pendingAcquireTimeout(pendingAcquireTimeout)
+            // Close keep-alive connections before the server or a proxy silently drops them
+            .maxIdleTime(maxIdleTime)
+            .maxLifeTime(maxLifeTime)
+            .evictInBackground(evictInBackground)
+            .metrics(true)
+            .build();
+    }
+
     @Bean
-    public WebClient openRouterWebClient(@Value("${openrouter.api.key}") String apiKey) {
+    public WebClient openRouterWebClient(@Value("${openrouter.api.key}") String apiKey,
+        ConnectionProvider openRouterConnectionProvider,
+        OpenRouterRateLimiter openRouterRateLimiter,
+        @Value("${openrouter.http.connect-timeout:5s}") Duration connectTimeout,
+        @Value("${openrouter.http.response-timeout:120s}") Duration responseTimeout,
+        @Value("${openrouter.http.compression:true}") boolean compression,
+        @Value("${openrouter.http.http2:false}") boolean http2) {
+        HttpClient httpClient = HttpClient.create(openRouterConnectionProvider)
+            .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) connectTimeout.toMillis())
+            // Maximum gap between reads; streamed completions send keep-alive comments
+            .responseTimeout(responseTimeout)
+            // Sends Accept-Encoding: gzip and transparently inflates the response
+            .compress(compression);
+
+        if (http2) {
+            // Multiplex concurrent completions over fewer TLS connections, falling back to HTTP/1.1
+            httpClient = httpClient.protocol(HttpProtocol.H2, HttpProtocol.HTTP11).secure();
+        }
+        logger.info("OpenRouter WebClient configured (http2=" + http2 + ", compression="
+            + compression + ", responseTimeout=" + responseTimeout + ")");
+
         return WebClient.builder()
             .baseUrl("https://openrouter.ai/api/v1")
+            .clientConnector(new ReactorClientHttpConnector(httpClient))
             .defaultHeader("Authorization", "Bearer " + apiKey)
             .defaultHeader("HTTP-Referer", "https://localhost") // Required by OpenRouter
             .defaultHeader("X-Title", "Custom ChatGPT Client") // Optional but recommended
-            .exchangeStrategies(ExchangeStrategies.builder().codecs(configurer -> configurer.defaultCodecs().maxInMemorySize(16 * 1024 * 1024)).build())
+            // Waits for a permit on completion requests and learns from X-RateLimit-* headers
+            .filter(openRouterRateLimiter.filter())
+            .exchangeStrategies(ExchangeStrategies.builder().codecs(configurer -> {
+                configurer.defaultCodecs().maxInMemorySize(MAX_IN_MEMORY_SIZE);
+                // Streaming codecs for chat completions: no JsonNode trees or String bodies
+                configurer.customCodecs().register(new OpenRouterChatRequestEncoder());
+                configurer.customCodecs().register(new OpenRouterChatResponseDecoder(MAX_IN_MEMORY_SIZE));
+            }).build())
             .build();
     }
 }
@@ -1,8 +1,11 @@
 package com.darylmathison.chat.client.controller;
 
+import com.darylmathison.chat.client.dto.BatchItemResult;
 import com.darylmathison.chat.client.dto.ChatRequest;
 import com.darylmathison.chat.client.dto.ChatResponse;
 import com.darylmathison.chat.client.dto.ChatSummaryDto;
+import com.darylmathison.chat.client.dto.MessageDto;
+import com.darylmathison.chat.client.dto.MessageSearchHit;
 import com.darylmathison.chat.client.dto.SimpleMessageRequest;
 import com.darylmathison.chat.client.model.Chat;
 import com.darylmathison.chat.client.service.ChatService;
@@ -12,6 +15,7 @@ import java.util.List;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -21,6 +25,7 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 @RestController
@@ -65,11 +70,44 @@ public class ChatController {
         .map(ResponseEntity::ok);
   }
 
-  @GetMapping
-  public Mono<ResponseEntity<List<ChatSummaryDto>>> getChats(
-      @RequestParam(required = false) String search) {
-    return chatService.searchChats(search)
-        .map(ResponseEntity::ok);
+  // Stream the reply for a new chat as server-sent events
+  @PostMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+  public Flux<ServerSentEvent<ChatResponse>> streamMessage(
+      @Valid @RequestBody ChatRequest request) {
+    return toEventStream(chatService.streamMessage(null, request));
+  }
+
+  // Stream the reply for a message added to an existing chat
+  @PostMapping(value = "/{chatId}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+  public Flux<ServerSentEvent<ChatResponse>> streamMessageToChat(
+      @PathVariable Long chatId,
+      @Valid @RequestBody ChatRequest request) {
+    return toEventStream(chatService.streamMessage(chatId, request));
+  }
+
+  // Send many simple messages at once; each result is written as an NDJSON line when it finishes
+  @PostMapping(value = "/batch", produces = MediaType.APPLICATION_NDJSON_VALUE)
+  public Flux<BatchItemResult> sendBatch(@RequestBody List<SimpleMessageRequest> requests) {
+    return chatService.sendBatch(requests);
+  }
+
+  // One page of chats, as a JSON array or, for Accept: application/x-ndjson, one chat per line.
+  // Both are written as rows are read; pass the last chat's cursor as "after" for the next page.
+  @GetMapping(produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+  public Flux<ChatSummaryDto> getChats(
+      @RequestParam(required = false) String search,
+      @RequestParam(required = false) String after,
+      @RequestParam(required = false) Integer limit) {
+    return chatService.searchChats(search, after, limit);
+  }
+
+  // Full-text search over chat titles and message content; snippets mark matched words with <mark>
+  @GetMapping(value = "/search",
+      produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+  public Flux<MessageSearchHit> searchMessages(
+      @RequestParam String q,
+      @RequestParam(required = false) Integer limit) {
+    return chatService.searchMessages(q, limit);
   }
 
   @GetMapping("/{chatId}")
@@ -78,6 +116,26 @@ public class ChatController {
         .map(ResponseEntity::ok);
   }
 
+  // A range of a chat's messages, oldest first; newest page by default. before/after are message
+  // ids. With truncate, long content is cut to that many characters; fetch it whole by id.
+  @GetMapping(value = "/{chatId}/messages",
+      produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+  public Flux<MessageDto> getMessages(
+      @PathVariable Long chatId,
+      @RequestParam(required = false) Long before,
+      @RequestParam(required = false) Long after,
+      @RequestParam(required = false) Integer limit,
+      @RequestParam(required = false) Integer truncate) {
+    return chatService.getMessages(chatId, before, after, limit, truncate);
+  }
+
+  @GetMapping("/{chatId}/messages/{messageId}")
+  public Mono<ResponseEntity<MessageDto>> getMessage(@PathVariable Long chatId,
+      @PathVariable Long messageId) {
+    return chatService.getMessage(chatId, messageId)
+        .map(ResponseEntity::ok);
+  }
+
   @DeleteMapping("/{chatId}")
   public Mono<ResponseEntity<Void>> deleteChat(@PathVariable Long chatId) {
     return chatService.deleteChat(chatId)
@@ -104,4 +162,22 @@ public class ChatController {
     return chatService.getTotalCostThisMonth()
         .map(ResponseEntity::ok);
   }
-}
\ No newline at end of file
+
+  /**
+   * Maps streamed chat responses to SSE events. Content deltas are sent as "delta" events and the
+   * persisted response (the one marked done) as a final "done" event; its message id is null when
+   * write-behind has not inserted the message yet. Errors are sent in-band as an "error" event
+   * because the response status has already been committed.
+   */
+  private Flux<ServerSentEvent<ChatResponse>> toEventStream(Flux<ChatResponse> responses) {
+    return responses
+        .map(response -> ServerSentEvent.<ChatResponse>builder()
+            .event(Boolean.TRUE.equals(response.getDone()) ? "done" : "delta")
+            .data(response)
+            .build())
+        .onErrorResume(error -> Flux.just(ServerSentEvent.<ChatResponse>builder()
+            .event("error")
+            .data(ChatResponse.builder().content(error.getMessage()).build())
+            .build()));
+  }
+}
@@ -1,7 +1,9 @@
 package com.darylmathison.chat.client.controller;
 
+import com.darylmathison.chat.client.dto.ModelInfo;
 import com.darylmathison.chat.client.service.AIService;
-import com.darylmathison.chat.client.service.ChatService;
+import com.darylmathison.chat.client.service.CreditsCache;
+import com.darylmathison.chat.client.service.ModelCatalog;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -15,6 +17,7 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import reactor.core.publisher.Mono;
 
@@ -25,7 +28,8 @@ import reactor.core.publisher.Mono;
 public class ModelController {
 
     private final AIService aiService;
-    private final ChatService chatService;
+    private final CreditsCache creditsCache;
+    private final ModelCatalog modelCatalog;
 
     @Value("${openrouter.credits.initial:10.0}")
     private Double initialCredits;
@@ -47,10 +51,32 @@ public class ModelController {
 
     @GetMapping("/available")
     public Mono<ResponseEntity<List<String>>> getAvailableModels() {
+        // Served from the catalog snapshot; only hit OpenRouter before the first refresh lands
+        if (!modelCatalog.isEmpty()) {
+            return Mono.just(ResponseEntity.ok(modelCatalog.getModelIds()));
+        }
         return aiService.getAvailableModels()
             .map(ResponseEntity::ok);
     }
 
+    /**
+     * Model metadata filtered on the server, so the frontend never downloads the whole catalog.
+     *
+     * @param maxPromptPrice Maximum prompt price in USD per million tokens
+     * @param minContextLength Minimum context window in tokens
+     * @param freeOnly Only models with no prompt or completion charge
+     * @param q Case-insensitive substring of the model id or name
+     */
+    @GetMapping("/catalog")
+    public Mono<ResponseEntity<List<ModelInfo>>> getModelCatalog(
+        @RequestParam(required = false) Double maxPromptPrice,
+        @RequestParam(required = false) Integer minContextLength,
+        @RequestParam(defaultValue = "false") boolean freeOnly,
+        @RequestParam(required = false) String q) {
+        return Mono.just(ResponseEntity.ok(
+            modelCatalog.search(maxPromptPrice, minContextLength, freeOnly, q)));
+    }
+
     @GetMapping("/selected")
     public Mono<ResponseEntity<Set<String>>> getSelectedModels() {
         return Mono.just(ResponseEntity.ok(selectedModels));
@@ -72,13 +98,10 @@ public class ModelController {
 
     @GetMapping("/credits")
     public Mono<ResponseEntity<Map<String, Object>>> getRemainingCredits() {
-        // Get both the actual credit balance from OpenRouter and the total cost this month
-        return Mono.zip(
-            aiService.getCreditBalance(),
-            chatService.getTotalCostThisMonth()
-        ).map(tuple -> {
-            Double actualCredits = tuple.getT1();
-            Double totalCost = tuple.getT2();
+        // Served from the credits cache, which refreshes in the background when stale
+        return creditsCache.get().map(credits -> {
+            Double actualCredits = credits.actualCredits();
+            Double totalCost = credits.totalCostThisMonth();
 
             // For backward compatibility, also calculate the remaining credits based on initial credits
             double calculatedRemaining = initialCredits - totalCost;
@@ -88,7 +111,8 @@ public class ModelController {
                 "initialCredits", initialCredits,
                 "totalCost", totalCost,
                 "calculatedRemainingCredits", calculatedRemaining,
-                "actualCredits", actualCredits
+                "actualCredits", actualCredits,
+                "asOf", credits.fetchedAt().toString()
             );
 
             return ResponseEntity.ok(response);
@@ -0,0 +1,17 @@
+package com.darylmathison.chat.client.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * One line of a batch response: the outcome of the request at {@code index} in the submitted
+ * list. Exactly one of {@code response} and {@code error} is set.
+ */
+@Data
+@Builder
+public class BatchItemResult {
+
+  private int index;
+  private ChatResponse response;
+  private String error;
+}
@@ -0,0 +1,36 @@
+package com.darylmathison.chat.client.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Position in the chat list, which is ordered by {@code (updated_at, id)} descending. Sent to
+ * clients as an opaque string; the next page starts after the chat it names.
+ */
+public record ChatCursor(LocalDateTime updatedAt, Long id) {
+
+  private static final char SEPARATOR = '|';
+
+  public static ChatCursor of(ChatSummaryDto chat) {
+    return new ChatCursor(chat.getUpdatedAt(), chat.getId());
+  }
+
+  public String encode() {
+    String raw = updatedAt.toString() + SEPARATOR + id;
+    return Base64.getUrlEncoder().withoutPadding()
+        .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+  }
+
+  public static ChatCursor decode(String cursor) {
+    try {
+      String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+      int separator = raw.lastIndexOf(SEPARATOR);
+      return new ChatCursor(LocalDateTime.parse(raw.substring(0, separator)),
+          Long.parseLong(raw.substring(separator + 1)));
+    } catch (IllegalArgumentException | DateTimeParseException | IndexOutOfBoundsException e) {
+      throw new IllegalArgumentException("Invalid chat cursor: " + cursor);
+    }
+  }
+}
@@ -8,7 +8,7 @@ import lombok.Builder;
 import lombok.Data;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 public class ChatRequest {
 
   private String message;
@@ -23,4 +23,10 @@ public class ChatRequest {
   private String systemMessage;
   private List<Long> attachmentIds;
   private List<Long> externalToolIds;
+
+  // Models to fall over to, in order, when the primary model keeps failing
+  private List<String> fallbackModels;
+
+  // Opt in to (true) or out of (false) the completion cache; null applies the configured rules
+  private Boolean cache;
 }
\ No newline at end of file
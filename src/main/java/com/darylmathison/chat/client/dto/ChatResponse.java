@@ -14,5 +14,12 @@ public class ChatResponse {
   private TokenUsage tokenUsage;
   private Double estimatedCost;
   private String generatedPrompt;
+  // Null while write-behind has not inserted the message yet
   private Long messageId;
+
+  // True on the saved response that ends a turn, as opposed to a streamed content delta
+  private Boolean done;
+
+  // True when the content was served from the completion cache (estimatedCost is then 0)
+  private Boolean cached;
 }
@@ -16,4 +16,6 @@ public class ChatSummaryDto {
   private Double estimatedCost;
   private String lastMessagePreview;
   private String modelUsed;
+  // Pass as "after" to list the chats that follow this one
+  private String cursor;
 }
\ No newline at end of file
@@ -0,0 +1,44 @@
+package com.darylmathison.chat.client.dto;
+
+import com.darylmathison.chat.client.model.Message;
+import com.darylmathison.chat.client.model.Message.MessageRole;
+import java.time.LocalDateTime;
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * A message as returned by the ranged message endpoint. When {@code truncated} is set,
+ * {@code content} holds only the first characters of the message; {@code contentLength} is the
+ * length of the full content, which can be fetched by id.
+ */
+@Data
+@Builder
+public class MessageDto {
+
+  private Long id;
+  private Long chatId;
+  private MessageRole role;
+  private String content;
+  private int contentLength;
+  private boolean truncated;
+  private LocalDateTime createdAt;
+  private Integer tokens;
+
+  /**
+   * @param truncateAt Maximum characters of content to include, or null for all of it
+   */
+  public static MessageDto from(Message message, Integer truncateAt) {
+    String content = message.getContent() != null ? message.getContent() : "";
+    boolean truncated = truncateAt != null && content.length() > truncateAt;
+    return MessageDto.builder()
+        .id(message.getId())
+        .chatId(message.getChatId())
+        .role(message.getRole())
+        .content(truncated ? content.substring(0, truncateAt) : content)
+        .contentLength(content.length())
+        .truncated(truncated)
+        .createdAt(message.getCreatedAt())
+        .tokens(message.getTokens())
+        .build();
+  }
+}
@@ -0,0 +1,24 @@
+package com.darylmathison.chat.client.dto;
+
+import com.darylmathison.chat.client.model.Message.MessageRole;
+import java.time.LocalDateTime;
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * A message or chat title matching a full-text search. {@code snippet} is an excerpt of the
+ * content with the matched words wrapped in {@code <mark>} tags; for a title match it is the title,
+ * {@code messageId} and {@code role} are null and {@code createdAt} is the chat's.
+ */
+@Data
+@Builder
+public class MessageSearchHit {
+
+  private Long chatId;
+  private String chatTitle;
+  private Long messageId;
+  private MessageRole role;
+  private String snippet;
+  private double score;
+  private LocalDateTime createdAt;
+}
@@ -0,0 +1,33 @@
+package com.darylmathison.chat.client.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/**
+ * Metadata for one OpenRouter model, as kept in the
+ * {@link com.darylmathison.chat.client.service.ModelCatalog}. Prices are USD per token, the unit
+ * OpenRouter reports them in, and are null when OpenRouter does not publish a price (e.g. for
+ * router models such as openrouter/auto).
+ *
+ * @param contextLength   Maximum context window in tokens
+ * @param cacheReadPrice  Price of prompt tokens served from the provider's prompt cache
+ * @param cacheWritePrice Price of prompt tokens written to the provider's prompt cache
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record ModelInfo(
+    String id,
+    String name,
+    Integer contextLength,
+    Double promptPrice,
+    Double completionPrice,
+    Double cacheReadPrice,
+    Double cacheWritePrice) {
+
+  public boolean isFree() {
+    return promptPrice != null && completionPrice != null
+        && promptPrice == 0.0 && completionPrice == 0.0;
+  }
+
+  public boolean hasPricing() {
+    return promptPrice != null && completionPrice != null;
+  }
+}
@@ -0,0 +1,51 @@
+package com.darylmathison.chat.client.dto;
+
+import java.util.List;
+
+/**
+ * Typed body of an OpenRouter chat completion request. Written straight into the outgoing
+ * buffers by {@link com.darylmathison.chat.client.codec.OpenRouterChatRequestEncoder}.
+ *
+ * @param models Optional fallback chain for OpenRouter's own model routing, tried in order after
+ *               {@code model}; null when the client handles fallback itself
+ */
+public record OpenRouterChatRequest(
+    String model,
+    List<ChatMessage> messages,
+    Integer maxTokens,
+    Double temperature,
+    boolean stream,
+    List<String> models) {
+
+  public OpenRouterChatRequest(String model, List<ChatMessage> messages, Integer maxTokens,
+      Double temperature, boolean stream) {
+    this(model, messages, maxTokens, temperature, stream, null);
+  }
+
+  public OpenRouterChatRequest withModel(String model) {
+    return new OpenRouterChatRequest(model, messages, maxTokens, temperature, stream, models);
+  }
+
+  public OpenRouterChatRequest withModels(List<String> models) {
+    return new OpenRouterChatRequest(model, messages, maxTokens, temperature, stream, models);
+  }
+
+  public OpenRouterChatRequest withStream(boolean stream) {
+    return new OpenRouterChatRequest(model, messages, maxTokens, temperature, stream, models);
+  }
+
+  /**
+   * @param cacheBreakpoint Mark the end of a prompt prefix the provider should cache; sent as an
+   *                        Anthropic-style {@code cache_control} block on the content
+   */
+  public record ChatMessage(String role, String content, boolean cacheBreakpoint) {
+
+    public ChatMessage(String role, String content) {
+      this(role, content, false);
+    }
+
+    public ChatMessage withCacheBreakpoint() {
+      return new ChatMessage(role, content, true);
+    }
+  }
+}
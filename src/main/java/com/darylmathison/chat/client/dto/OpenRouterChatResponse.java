@@ -0,0 +1,32 @@
+package com.darylmathison.chat.client.dto;
+
+/**
+ * The fields of an OpenRouter chat completion (or streamed chunk) that the client actually uses.
+ * Everything else in the payload is skipped by
+ * {@link com.darylmathison.chat.client.codec.OpenRouterChatResponseDecoder} without being
+ * materialized.
+ *
+ * @param content The first choice's message content, or its delta for streamed chunks
+ * @param usage   Token usage, or null when the payload does not report it
+ * @param error   The error message OpenRouter embedded in the payload, if any
+ */
+public record OpenRouterChatResponse(
+    String id,
+    String model,
+    String content,
+    String finishReason,
+    Usage usage,
+    String error) {
+
+  /**
+   * @param cachedTokens     Prompt tokens read from the provider's prompt cache
+   * @param cacheWriteTokens Prompt tokens written to the provider's prompt cache
+   */
+  public record Usage(int promptTokens, int completionTokens, int totalTokens, int cachedTokens,
+                      int cacheWriteTokens) {
+
+    public Usage(int promptTokens, int completionTokens, int totalTokens) {
+      this(promptTokens, completionTokens, totalTokens, 0, 0);
+    }
+  }
+}
@@ -14,6 +14,7 @@ public class SavedPromptDto {
   private String prompt;
   private String systemMessage;
   private String modelName;
+  private String fallbackModels; // Comma-separated
   private Integer maxTokens;
   private Double temperature;
   private String category;  // Added this field
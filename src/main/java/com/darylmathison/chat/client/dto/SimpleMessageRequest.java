@@ -18,4 +18,10 @@ public class SimpleMessageRequest {
   private String systemMessage;
   private List<Long> attachmentIds;
   private List<Long> externalToolIds;
+
+  // Models to fall over to, in order, when the primary model keeps failing
+  private List<String> fallbackModels;
+
+  // Opt in to (true) or out of (false) the completion cache; null applies the configured rules
+  private Boolean cache;
 }
@@ -10,4 +10,8 @@ public class TokenUsage {
   private Integer promptTokens;
   private Integer completionTokens;
   private Integer totalTokens;
+
+  // Part of promptTokens served from, or written to, the provider's prompt cache
+  private Integer cachedTokens;
+  private Integer cacheWriteTokens;
 }
@@ -0,0 +1,177 @@
+package com.darylmathison.chat.client.mapping;
+
+import com.darylmathison.chat.client.mapping.ResponseMapping.Node;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+
+/**
+ * The state of one extraction, fed the response's tokens one at a time so that it works the same
+ * for a complete response and for one parsed as it arrives.
+ * <p>
+ * Containers that a pointer leads through are tracked on a stack, containers that none does are
+ * skipped by counting their depth, and a value that a pointer ends at is copied into a token
+ * buffer and turned into a tree once it is complete. Pointers below an extracted value are
+ * resolved from its tree; pointers into a container that has ended without them are missing.
+ */
+final class ResponseExtraction {
+
+  private final ResponseMapping mapping;
+  private final ObjectMapper objectMapper;
+  private final JsonNode[] values;
+  private final boolean[] resolved;
+  private int remaining;
+
+  private final Deque<Frame> stack = new ArrayDeque<>();
+  private int skipDepth;
+
+  private TokenBuffer capture;
+  private Node captureNode;
+  private int captureDepth;
+
+  ResponseExtraction(ResponseMapping mapping, ObjectMapper objectMapper) {
+    this.mapping = mapping;
+    this.objectMapper = objectMapper;
+    this.values = new JsonNode[mapping.size()];
+    this.resolved = new boolean[mapping.size()];
+    this.remaining = mapping.size();
+  }
+
+  boolean isDone() {
+    return remaining == 0;
+  }
+
+  /**
+   * The extracted values by path index; {@code null} for missing ones.
+   */
+  JsonNode[] values() {
+    return values;
+  }
+
+  /**
+   * Handle the parser's current token.
+   *
+   * @return Whether every path has now been read or ruled out
+   */
+  boolean accept(JsonParser parser, JsonToken token) throws IOException {
+    if (capture != null) {
+      capture.copyCurrentEvent(parser);
+      if (token.isStructStart()) {
+        captureDepth++;
+      } else if (token.isStructEnd() && --captureDepth == 0) {
+        finishCapture();
+      }
+      return isDone();
+    }
+    if (skipDepth > 0) {
+      if (token.isStructStart()) {
+        skipDepth++;
+      } else if (token.isStructEnd()) {
+        skipDepth--;
+      }
+      return false;
+    }
+    if (token == JsonToken.FIELD_NAME) {
+      stack.getFirst().name = parser.currentName();
+      return false;
+    }
+    if (token.isStructEnd()) {
+      // Whatever was not found in this container is not in the response
+      resolve(stack.pop().node, null);
+      return isDone();
+    }
+
+    // A value starts
+    Frame parent = stack.peekFirst();
+    Node node;
+    if (parent == null) {
+      node = mapping.root();
+    } else {
+      node = parent.node.children.get(parent.array ? Integer.toString(parent.index++)
+          : parent.name);
+    }
+    if (node == null) {
+      if (token.isStructStart()) {
+        skipDepth = 1;
+      }
+      return false;
+    }
+    if (!node.targets.isEmpty()) {
+      capture = new TokenBuffer(objectMapper, false);
+      capture.copyCurrentEvent(parser);
+      captureNode = node;
+      captureDepth = token.isStructStart() ? 1 : 0;
+      if (captureDepth == 0) {
+        finishCapture();
+      }
+    } else if (token.isStructStart()) {
+      stack.push(new Frame(node, token == JsonToken.START_ARRAY));
+    } else {
+      // A scalar where the paths expected a container
+      resolve(node, null);
+    }
+    return isDone();
+  }
+
+  private void finishCapture() throws IOException {
+    JsonNode value;
+    try (JsonParser tree = capture.asParser(objectMapper)) {
+      value = objectMapper.readTree(tree);
+    }
+    capture = null;
+    resolve(captureNode, value);
+    captureNode = null;
+  }
+
+  /**
+   * Settle the paths at and below {@code node}, given its value or {@code null} if it is missing.
+   */
+  private void resolve(Node node, JsonNode value) {
+    for (int target : node.targets) {
+      if (!resolved[target]) {
+        resolved[target] = true;
+        values[target] = value;
+        remaining--;
+      }
+    }
+    for (Map.Entry<String, Node> child : node.children.entrySet()) {
+      resolve(child.getValue(), child(value, child.getKey()));
+    }
+  }
+
+  private static JsonNode child(JsonNode value, String key) {
+    if (value == null) {
+      return null;
+    }
+    if (value.isArray()) {
+      int index;
+      try {
+        index = Integer.parseInt(key);
+      } catch (NumberFormatException e) {
+        return null;
+      }
+      // Match indexes exactly as the streaming walk does, so "01" is not element 1
+      return Integer.toString(index).equals(key) ? value.get(index) : null;
+    }
+    return value.get(key);
+  }
+
+  private static final class Frame {
+
+    private final Node node;
+    private final boolean array;
+    private int index;
+    private String name;
+
+    private Frame(Node node, boolean array) {
+      this.node = node;
+      this.array = array;
+    }
+  }
+}
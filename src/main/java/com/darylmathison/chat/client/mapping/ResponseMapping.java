@@ -0,0 +1,198 @@
+package com.darylmathison.chat.client.mapping;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonPointer;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.NullNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compiled external tool response mapping.
+ * <p>
+ * {@code {"extract": "/result"}} picks one value out of the response by JSON Pointer: text is
+ * returned as is, anything else as JSON, and a missing value as an empty string.
+ * {@code {"extract": {"temp": "/main/temp", "city": "/name"}}} projects several values into a
+ * small JSON object, with {@code null} for missing ones. A mapping without {@code extract} passes
+ * the response through unchanged.
+ * <p>
+ * The pointers are merged into a tree once, when the mapping is compiled. Extraction then walks
+ * the response's tokens, skipping every subtree that no pointer leads into, only building the
+ * values it extracts, and stops as soon as all of them have been read or can no longer occur.
+ */
+public final class ResponseMapping {
+
+  /**
+   * The mapping of tools that have none: the response is returned unchanged.
+   */
+  public static final ResponseMapping NONE = new ResponseMapping("", new Node(), List.of(),
+      List.of(), false);
+
+  private final String source;
+  private final Node root;
+  private final List<String> names;
+  private final List<JsonPointer> paths;
+  private final boolean projection;
+
+  private ResponseMapping(String source, Node root, List<String> names, List<JsonPointer> paths,
+      boolean projection) {
+    this.source = source;
+    this.root = root;
+    this.names = names;
+    this.paths = paths;
+    this.projection = projection;
+  }
+
+  /**
+   * Parse a mapping.
+   *
+   * @throws IllegalArgumentException If the mapping is not valid JSON, or {@code extract} is
+   *                                  neither a pointer nor an object of pointers
+   */
+  public static ResponseMapping compile(String source, ObjectMapper objectMapper) {
+    if (source == null || source.isBlank()) {
+      return NONE;
+    }
+    JsonNode mapping;
+    try {
+      mapping = objectMapper.readTree(source);
+    } catch (JsonProcessingException e) {
+      throw new IllegalArgumentException("Response mapping is not valid JSON: "
+          + e.getOriginalMessage(), e);
+    }
+    JsonNode extract = mapping != null ? mapping.get("extract") : null;
+    if (extract == null || extract.isNull()) {
+      return new ResponseMapping(source, new Node(), List.of(), List.of(), false);
+    }
+
+    List<String> names = new ArrayList<>();
+    List<JsonPointer> paths = new ArrayList<>();
+    boolean projection = extract.isObject();
+    if (extract.isTextual()) {
+      names.add(null);
+      paths.add(pointer(extract.asText()));
+    } else if (projection) {
+      Iterator<Map.Entry<String, JsonNode>> fields = extract.fields();
+      while (fields.hasNext()) {
+        Map.Entry<String, JsonNode> field = fields.next();
+        if (!field.getValue().isTextual()) {
+          throw new IllegalArgumentException("Response mapping path for " + field.getKey()
+              + " is not a string");
+        }
+        names.add(field.getKey());
+        paths.add(pointer(field.getValue().asText()));
+      }
+    } else {
+      throw new IllegalArgumentException("Response mapping extract must be a JSON Pointer or an "
+          + "object of them");
+    }
+
+    Node root = new Node();
+    for (int i = 0; i < paths.size(); i++) {
+      Node node = root;
+      for (JsonPointer p = paths.get(i); !p.matches(); p = p.tail()) {
+        node = node.children.computeIfAbsent(p.getMatchingProperty(), key -> new Node());
+      }
+      node.targets.add(i);
+    }
+    return new ResponseMapping(source, root, List.copyOf(names), List.copyOf(paths), projection);
+  }
+
+  public String source() {
+    return source;
+  }
+
+  /**
+   * Whether responses are returned unchanged.
+   */
+  public boolean isPassthrough() {
+    return paths.isEmpty();
+  }
+
+  public List<JsonPointer> paths() {
+    return paths;
+  }
+
+  /**
+   * Apply the mapping to a complete response. A response that is not valid JSON is returned
+   * unchanged.
+   */
+  public String apply(String response, ObjectMapper objectMapper) {
+    if (isPassthrough()) {
+      return response;
+    }
+    ResponseExtraction extraction = new ResponseExtraction(this, objectMapper);
+    try (JsonParser parser = objectMapper.getFactory().createParser(response)) {
+      JsonToken token;
+      while ((token = parser.nextToken()) != null) {
+        if (extraction.accept(parser, token)) {
+          break;
+        }
+      }
+    } catch (JsonProcessingException e) {
+      // Not JSON, or not valid JSON: nothing to extract from
+      return response;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return format(extraction.values(), objectMapper);
+  }
+
+  /**
+   * Start extracting from a response that arrives in chunks.
+   *
+   * @param maxRawBytes Largest response that is returned unchanged if it cannot be mapped
+   */
+  public StreamingExtraction stream(ObjectMapper objectMapper, int maxRawBytes) {
+    return new StreamingExtraction(this, objectMapper, maxRawBytes);
+  }
+
+  Node root() {
+    return root;
+  }
+
+  int size() {
+    return paths.size();
+  }
+
+  String format(JsonNode[] values, ObjectMapper objectMapper) {
+    if (!projection) {
+      JsonNode value = values[0];
+      if (value == null) {
+        return "";
+      }
+      return value.isTextual() ? value.asText() : value.toString();
+    }
+    ObjectNode result = objectMapper.createObjectNode();
+    for (int i = 0; i < names.size(); i++) {
+      result.set(names.get(i), values[i] != null ? values[i] : NullNode.getInstance());
+    }
+    return result.toString();
+  }
+
+  private static JsonPointer pointer(String path) {
+    try {
+      return JsonPointer.compile(path);
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException("Invalid JSON Pointer in response mapping: " + path, e);
+    }
+  }
+
+  /**
+   * One step of the merged pointers: the values extracted here and the steps below.
+   */
+  static final class Node {
+
+    final Map<String, Node> children = new HashMap<>();
+    final List<Integer> targets = new ArrayList<>();
+  }
+}
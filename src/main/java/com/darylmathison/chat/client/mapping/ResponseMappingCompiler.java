@@ -0,0 +1,125 @@
+package com.darylmathison.chat.client.mapping;
+
+import com.darylmathison.chat.client.model.ExternalTool;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferLimitException;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Applies external tool response mappings.
+ * <p>
+ * Mappings are compiled on first use and kept per tool id in the same way as request templates: a
+ * tool with the same {@code updatedAt}, or with unchanged mapping text, reuses its compiled
+ * mapping. A mapping that does not compile is logged once per version and responses are passed
+ * through unchanged. Response bodies are parsed chunk by chunk as they arrive. Once every mapped
+ * value has been read, the rest of the body is still read, but released unparsed: cancelling it
+ * would make Reactor Netty close the connection instead of returning it to the tool's pool.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ResponseMappingCompiler {
+
+  private final ObjectMapper objectMapper;
+
+  private final Map<Long, Compiled> compiled = new ConcurrentHashMap<>();
+
+  // Largest response held whole, when it is passed through or cannot be mapped
+  @Value("${tools.http.max-in-memory-size:2MB}")
+  private DataSize maxInMemorySize = DataSize.ofMegabytes(2);
+
+  /**
+   * The tool's compiled response mapping, from the cache while the tool is unchanged.
+   */
+  public ResponseMapping compile(ExternalTool tool) {
+    String source = tool.getResponseMapping();
+    if (tool.getId() == null) {
+      return compile(tool.getName(), source);
+    }
+    Compiled cached = compiled.get(tool.getId());
+    if (cached != null && cached.updatedAt() != null
+        && cached.updatedAt().equals(tool.getUpdatedAt())) {
+      return cached.mapping();
+    }
+    ResponseMapping mapping = cached != null && cached.source().equals(source)
+        ? cached.mapping() : compile(tool.getName(), source);
+    compiled.put(tool.getId(), new Compiled(tool.getUpdatedAt(), source != null ? source : "",
+        mapping));
+    return mapping;
+  }
+
+  /**
+   * Map a response body as it arrives. A body that is not valid JSON is returned unchanged, and
+   * one that has to be held whole fails with a {@link DataBufferLimitException} past
+   * {@code tools.http.max-in-memory-size}.
+   */
+  public Mono<String> extract(ResponseMapping mapping, Flux<DataBuffer> body) {
+    if (mapping.isPassthrough()) {
+      return DataBufferUtils.join(body, (int) maxInMemorySize.toBytes())
+          .map(buffer -> {
+            try {
+              return buffer.toString(StandardCharsets.UTF_8);
+            } finally {
+              DataBufferUtils.release(buffer);
+            }
+          });
+    }
+    return Mono.using(
+        () -> mapping.stream(objectMapper, (int) maxInMemorySize.toBytes()),
+        extraction -> body
+            .doOnNext(buffer -> {
+              try {
+                if (!extraction.isDone()) {
+                  byte[] chunk = new byte[buffer.readableByteCount()];
+                  buffer.read(chunk);
+                  extraction.feed(chunk);
+                }
+              } finally {
+                DataBufferUtils.release(buffer);
+              }
+            })
+            .then(Mono.fromCallable(extraction::finish)),
+        StreamingExtraction::close);
+  }
+
+  /**
+   * Map a complete response.
+   */
+  public String apply(ResponseMapping mapping, String response) {
+    return mapping.apply(response, objectMapper);
+  }
+
+  /**
+   * Forget a tool's compiled mapping after the tool changed or was deleted.
+   */
+  public void evict(Long toolId) {
+    if (toolId != null) {
+      compiled.remove(toolId);
+    }
+  }
+
+  private ResponseMapping compile(String toolName, String source) {
+    try {
+      return ResponseMapping.compile(source, objectMapper);
+    } catch (IllegalArgumentException e) {
+      log.warn("Ignoring response mapping of tool {}: {}", toolName, e.getMessage());
+      return ResponseMapping.NONE;
+    }
+  }
+
+  private record Compiled(LocalDateTime updatedAt, String source, ResponseMapping mapping) {
+
+  }
+}
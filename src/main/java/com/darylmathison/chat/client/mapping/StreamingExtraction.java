@@ -0,0 +1,147 @@
+package com.darylmathison.chat.client.mapping;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import org.springframework.core.io.buffer.DataBufferLimitException;
+
+/**
+ * Extraction from a response that arrives in chunks, parsed with Jackson's non-blocking parser as
+ * each chunk is fed.
+ * <p>
+ * Like {@link ResponseMapping#apply}, a response that is not JSON, or turns out to be malformed or
+ * truncated before every value was read, is returned unchanged, as the mapping has nothing to apply
+ * to. For that the bytes are also kept, up to {@code maxRawBytes}: a larger response is still
+ * extracted from, but can no longer be returned unchanged and fails instead.
+ * Not thread safe: feed the chunks of one response in order.
+ */
+public final class StreamingExtraction implements AutoCloseable {
+
+  private final ResponseMapping mapping;
+  private final ObjectMapper objectMapper;
+  private final ResponseExtraction extraction;
+  private final JsonParser parser;
+  private final ByteArrayFeeder feeder;
+  private final int maxRawBytes;
+
+  // The response so far; null once it grew past maxRawBytes
+  private ByteArrayOutputStream raw = new ByteArrayOutputStream();
+  private boolean passthrough;
+  private boolean ended;
+
+  StreamingExtraction(ResponseMapping mapping, ObjectMapper objectMapper, int maxRawBytes) {
+    this.mapping = mapping;
+    this.objectMapper = objectMapper;
+    this.maxRawBytes = maxRawBytes;
+    this.extraction = new ResponseExtraction(mapping, objectMapper);
+    try {
+      this.parser = objectMapper.getFactory().createNonBlockingByteArrayParser();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    this.feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+  }
+
+  /**
+   * Parse the next chunk of the response.
+   *
+   * @return Whether every value has been read, so the rest of the response is not needed
+   * @throws DataBufferLimitException If the response is returned unchanged and is larger than
+   *                                  {@code maxRawBytes}
+   */
+  public boolean feed(byte[] chunk) {
+    if (isDone()) {
+      return true;
+    }
+    keep(chunk);
+    if (passthrough) {
+      return false;
+    }
+    try {
+      feeder.feedInput(chunk, 0, chunk.length);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return drain();
+  }
+
+  /**
+   * Whether every value has been read, so further chunks need not be fed.
+   */
+  public boolean isDone() {
+    return !passthrough && extraction.isDone();
+  }
+
+  /**
+   * Finish after the last chunk, or once {@link #feed} returned true.
+   *
+   * @return The mapped response, or the response itself if it could not be mapped
+   */
+  public String finish() {
+    if (!passthrough && !extraction.isDone() && !ended) {
+      ended = true;
+      feeder.endOfInput();
+      drain();
+    }
+    if (passthrough) {
+      return raw.toString(StandardCharsets.UTF_8);
+    }
+    return mapping.format(extraction.values(), objectMapper);
+  }
+
+  @Override
+  public void close() {
+    try {
+      parser.close();
+    } catch (IOException e) {
+      // Nothing is left to release
+    }
+  }
+
+  private void keep(byte[] chunk) {
+    if (raw == null) {
+      return;
+    }
+    if (raw.size() + (long) chunk.length > maxRawBytes) {
+      if (passthrough) {
+        throw tooLarge();
+      }
+      // Only needed if the response cannot be mapped
+      raw = null;
+      return;
+    }
+    raw.write(chunk, 0, chunk.length);
+  }
+
+  private boolean drain() {
+    try {
+      JsonToken token;
+      while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+        if (extraction.accept(parser, token)) {
+          return true;
+        }
+      }
+      return false;
+    } catch (JsonProcessingException e) {
+      if (raw == null) {
+        throw tooLarge();
+      }
+      // Not JSON, or not valid JSON: collect the rest and return it unchanged
+      passthrough = true;
+      return false;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private DataBufferLimitException tooLarge() {
+    return new DataBufferLimitException("Tool response cannot be mapped and exceeds the limit of "
+        + maxRawBytes + " bytes");
+  }
+}
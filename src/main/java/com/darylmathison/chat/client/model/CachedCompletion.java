@@ -0,0 +1,43 @@
+package com.darylmathison.chat.client.model;
+
+import java.time.LocalDateTime;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+
+@Table("completion_cache")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CachedCompletion {
+
+  @Id
+  @Column("cache_key")
+  private String cacheKey; // SHA-256 of the canonical OpenRouter request
+
+  @Column("model")
+  private String model;
+
+  @Column("content")
+  private String content;
+
+  @Column("prompt_tokens")
+  private Integer promptTokens;
+
+  @Column("completion_tokens")
+  private Integer completionTokens;
+
+  @Column("total_tokens")
+  private Integer totalTokens;
+
+  @Column("created_at")
+  private LocalDateTime createdAt;
+
+  @Column("expires_at")
+  private LocalDateTime expiresAt;
+}
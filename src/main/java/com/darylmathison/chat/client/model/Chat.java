@@ -39,6 +39,13 @@ public class Chat {
   @Column("model_used")
   private String modelUsed;
 
+  // Maintained by ChatTurnWriter so the chat list needs no per-chat message queries
+  @Column("message_count")
+  private Integer messageCount;
+
+  @Column("last_message_preview")
+  private String lastMessagePreview;
+
   // R2DBC doesn't support @OneToMany relationships directly
   // We'll load messages separately using the repository
   @Transient
@@ -0,0 +1,38 @@
+package com.darylmathison.chat.client.model;
+
+import java.time.LocalDateTime;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+
+@Table("conversation_summaries")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ConversationSummary {
+
+  @Id
+  @Column("chat_id")
+  private Long chatId;
+
+  @Column("content")
+  private String content;
+
+  // High-water mark: every message of the chat up to this id is covered by the summary
+  @Column("through_message_id")
+  private Long throughMessageId;
+
+  @Column("summarized_messages")
+  private Integer summarizedMessages;
+
+  @Column("model")
+  private String model;
+
+  @Column("updated_at")
+  private LocalDateTime updatedAt;
+}
@@ -34,6 +34,9 @@ public class SavedPrompt {
   @Column("model_name")
   private String modelName;
 
+  @Column("fallback_models")
+  private String fallbackModels; // Comma-separated, tried in order when model_name fails
+
   @Column("max_tokens")
   private Integer maxTokens;
 
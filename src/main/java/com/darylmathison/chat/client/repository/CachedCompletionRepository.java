@@ -0,0 +1,34 @@
+package com.darylmathison.chat.client.repository;
+
+import com.darylmathison.chat.client.model.CachedCompletion;
+import java.time.LocalDateTime;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
+
+@Repository
+public interface CachedCompletionRepository extends R2dbcRepository<CachedCompletion, String> {
+
+  Mono<CachedCompletion> findByCacheKeyAndExpiresAtAfter(String cacheKey, LocalDateTime now);
+
+  /**
+   * Insert a new entry. save() cannot be used because the key is assigned by the client, which
+   * Spring Data treats as an update of an existing row.
+   */
+  @Modifying
+  @Query("INSERT INTO completion_cache (cache_key, model, content, prompt_tokens, " +
+      "completion_tokens, total_tokens, created_at, expires_at) VALUES (:cacheKey, :model, " +
+      ":content, :promptTokens, :completionTokens, :totalTokens, :createdAt, :expiresAt)")
+  Mono<Integer> insert(@Param("cacheKey") String cacheKey, @Param("model") String model,
+      @Param("content") String content, @Param("promptTokens") Integer promptTokens,
+      @Param("completionTokens") Integer completionTokens,
+      @Param("totalTokens") Integer totalTokens, @Param("createdAt") LocalDateTime createdAt,
+      @Param("expiresAt") LocalDateTime expiresAt);
+
+  @Modifying
+  @Query("DELETE FROM completion_cache WHERE expires_at < :now")
+  Mono<Integer> deleteExpired(@Param("now") LocalDateTime now);
+}
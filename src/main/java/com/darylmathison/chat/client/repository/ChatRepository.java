@@ -20,6 +20,27 @@ public interface ChatRepository extends R2dbcRepository<Chat, Long> {
   // Add this method that ChatService is calling
   Flux<Chat> findAllByOrderByUpdatedAtDesc();
 
+  // Keyset pages of the chat list, newest first; served by idx_chats_updated_id
+  @Query("SELECT * FROM chats ORDER BY updated_at DESC, id DESC LIMIT :limit")
+  Flux<Chat> findFirstPage(@Param("limit") int limit);
+
+  @Query("SELECT * FROM chats WHERE updated_at < :updatedAt "
+      + "OR (updated_at = :updatedAt AND id < :id) "
+      + "ORDER BY updated_at DESC, id DESC LIMIT :limit")
+  Flux<Chat> findPageAfter(@Param("updatedAt") LocalDateTime updatedAt, @Param("id") Long id,
+      @Param("limit") int limit);
+
+  @Query("SELECT * FROM chats WHERE LOWER(title) LIKE :pattern "
+      + "ORDER BY updated_at DESC, id DESC LIMIT :limit")
+  Flux<Chat> findFirstPageByTitle(@Param("pattern") String pattern, @Param("limit") int limit);
+
+  @Query("SELECT * FROM chats WHERE LOWER(title) LIKE :pattern "
+      + "AND (updated_at < :updatedAt OR (updated_at = :updatedAt AND id < :id)) "
+      + "ORDER BY updated_at DESC, id DESC LIMIT :limit")
+  Flux<Chat> findPageByTitleAfter(@Param("pattern") String pattern,
+      @Param("updatedAt") LocalDateTime updatedAt, @Param("id") Long id,
+      @Param("limit") int limit);
+
   @Query("SELECT SUM(estimated_cost) FROM chats WHERE created_at >= :startDate")
   Mono<Double> getTotalCostSince(@Param("startDate") LocalDateTime startDate);
 
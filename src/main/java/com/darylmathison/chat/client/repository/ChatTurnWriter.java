@@ -0,0 +1,242 @@
+package com.darylmathison.chat.client.repository;
+
+import com.darylmathison.chat.client.model.Chat;
+import com.darylmathison.chat.client.model.Message;
+import com.darylmathison.chat.client.search.MessageSearchIndex;
+import java.time.LocalDateTime;
+import java.util.List;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.r2dbc.core.DatabaseClient.GenericExecuteSpec;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Mono;
+
+/**
+ * Persists a complete chat turn in one transaction.
+ * <p>
+ * The turn's messages are written with a single multi-row INSERT and the chat's running totals are
+ * incremented in place, so a turn costs two statements instead of a save per message followed by a
+ * read-modify-write of the chat, and concurrent turns on the same chat cannot lose each other's
+ * token or cost updates. A new chat is inserted with its totals already set, which makes the stats
+ * UPDATE unnecessary. The chat's message count and last message preview are kept up to date by the
+ * same statements, so the chat list can be served from the chats table alone.
+ * <p>
+ * When {@link MessageWriteBehindBuffer write-behind} is enabled, only the chat row is written
+ * inline; the messages are handed to the buffer and come back without ids.
+ * <p>
+ * Every message insert, including the buffer's, goes through {@link #insertMessages(List)}, which
+ * adds the saved messages to the {@link MessageSearchIndex}; a new chat's title is added once its
+ * row is written.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ChatTurnWriter {
+
+  public static final int PREVIEW_LENGTH = 100;
+
+  private final DatabaseClient databaseClient;
+  private final TransactionalOperator transactionalOperator;
+  // The buffer flushes through this writer
+  @Lazy
+  private final MessageWriteBehindBuffer writeBehind;
+  private final MessageSearchIndex searchIndex;
+
+  /**
+   * Write a turn to a chat that already exists.
+   *
+   * @param chatId   The chat
+   * @param messages The messages of the turn, in order; their chat id is set, and their ids once
+   *                 inserted
+   * @param tokens   Tokens to add to the chat's total
+   * @param cost     Cost to add to the chat's estimated cost
+   * @param model    The model that answered, or null to leave model_used unchanged
+   * @return The saved messages
+   */
+  public Mono<List<Message>> writeTurn(Long chatId, List<Message> messages, long tokens,
+      double cost, String model) {
+    if (isWriteBehind()) {
+      messages.forEach(message -> message.setChatId(chatId));
+      return incrementStats(chatId, messages, tokens, cost, model)
+          .then(writeBehind.enqueue(messages))
+          .thenReturn(messages);
+    }
+    return insertMessages(chatId, messages)
+        .flatMap(saved -> incrementStats(chatId, saved, tokens, cost, model).thenReturn(saved))
+        .as(transactionalOperator::transactional)
+        .doOnNext(this::index);
+  }
+
+  /**
+   * Insert a new chat together with its first turn. The chat's totals should already include the
+   * turn; its id is set on success.
+   *
+   * @return The saved messages
+   */
+  public Mono<List<Message>> writeNewChatTurn(Chat chat, List<Message> messages) {
+    chat.setMessageCount(messages.size());
+    chat.setLastMessagePreview(messages.isEmpty() ? "" : preview(messages.getLast().getContent()));
+    if (isWriteBehind()) {
+      return insertChat(chat)
+          .flatMap(chatId -> {
+            chat.setId(chatId);
+            indexChat(chat);
+            messages.forEach(message -> message.setChatId(chatId));
+            return writeBehind.enqueue(messages).thenReturn(messages);
+          });
+    }
+    return insertChat(chat)
+        .flatMap(chatId -> {
+          chat.setId(chatId);
+          return insertMessages(chatId, messages);
+        })
+        .as(transactionalOperator::transactional)
+        .doOnNext(saved -> {
+          indexChat(chat);
+          index(saved);
+        });
+  }
+
+  /**
+   * Add usage that belongs to no turn, such as a conversation summary's, to the chat's running
+   * totals. {@code updated_at} is left alone, so the chat keeps its place in the chat list.
+   */
+  public Mono<Void> addUsage(Long chatId, long tokens, double cost) {
+    return databaseClient.sql("UPDATE chats SET "
+            + "total_tokens = COALESCE(total_tokens, 0) + :tokens, "
+            + "estimated_cost = COALESCE(estimated_cost, 0) + :cost "
+            + "WHERE id = :chatId")
+        .bind("tokens", tokens)
+        .bind("cost", cost)
+        .bind("chatId", chatId)
+        .fetch()
+        .rowsUpdated()
+        .then();
+  }
+
+  private boolean isWriteBehind() {
+    return writeBehind.isEnabled();
+  }
+
+  private Mono<Long> insertChat(Chat chat) {
+    GenericExecuteSpec spec = databaseClient.sql("INSERT INTO chats (title, created_at, "
+            + "updated_at, total_tokens, estimated_cost, model_used, message_count, "
+            + "last_message_preview) VALUES (:title, :createdAt, :updatedAt, :totalTokens, "
+            + ":estimatedCost, :modelUsed, :messageCount, :lastMessagePreview)")
+        .filter(statement -> statement.returnGeneratedValues("id"))
+        .bind("title", chat.getTitle())
+        .bind("createdAt", chat.getCreatedAt())
+        .bind("updatedAt", chat.getUpdatedAt());
+    spec = bindNullable(spec, "totalTokens", chat.getTotalTokens(), Long.class);
+    spec = bindNullable(spec, "estimatedCost", chat.getEstimatedCost(), Double.class);
+    spec = bindNullable(spec, "modelUsed", chat.getModelUsed(), String.class);
+    spec = bindNullable(spec, "messageCount", chat.getMessageCount(), Integer.class);
+    spec = bindNullable(spec, "lastMessagePreview", chat.getLastMessagePreview(), String.class);
+    return spec.map(row -> row.get("id", Long.class)).one();
+  }
+
+  private Mono<List<Message>> insertMessages(Long chatId, List<Message> messages) {
+    messages.forEach(message -> message.setChatId(chatId));
+    return insertRows(messages);
+  }
+
+  /**
+   * Insert messages, possibly of different chats, with one multi-row INSERT. Their ids are set on
+   * success.
+   */
+  public Mono<List<Message>> insertMessages(List<Message> messages) {
+    return insertRows(messages).doOnNext(this::index);
+  }
+
+  // Only once committed, so a rolled-back turn never shows up in search
+  private void index(List<Message> saved) {
+    searchIndex.index(saved);
+  }
+
+  private void indexChat(Chat chat) {
+    searchIndex.indexChats(List.of(chat));
+  }
+
+  private Mono<List<Message>> insertRows(List<Message> messages) {
+    StringBuilder sql = new StringBuilder(
+        "INSERT INTO messages (chat_id, content, role, created_at, tokens) VALUES ");
+    for (int i = 0; i < messages.size(); i++) {
+      if (i > 0) {
+        sql.append(", ");
+      }
+      sql.append("(:chatId").append(i).append(", :content").append(i).append(", :role")
+          .append(i).append(", :createdAt").append(i).append(", :tokens").append(i).append(')');
+    }
+
+    GenericExecuteSpec spec = databaseClient.sql(sql.toString())
+        .filter(statement -> statement.returnGeneratedValues("id"));
+    for (int i = 0; i < messages.size(); i++) {
+      Message message = messages.get(i);
+      spec = spec.bind("chatId" + i, message.getChatId())
+          .bind("content" + i, message.getContent())
+          .bind("role" + i, message.getRole().name())
+          .bind("createdAt" + i, message.getCreatedAt() != null
+              ? message.getCreatedAt() : LocalDateTime.now());
+      spec = bindNullable(spec, "tokens" + i, message.getTokens(), Integer.class);
+    }
+
+    return spec.map(row -> row.get("id", Long.class))
+        .all()
+        .collectList()
+        .map(ids -> {
+          if (ids.size() != messages.size()) {
+            throw new IllegalStateException("Expected " + messages.size()
+                + " generated message ids but got " + ids.size());
+          }
+          for (int i = 0; i < messages.size(); i++) {
+            messages.get(i).setId(ids.get(i));
+          }
+          return messages;
+        });
+  }
+
+  private Mono<Void> incrementStats(Long chatId, List<Message> messages, long tokens,
+      double cost, String model) {
+    GenericExecuteSpec spec = databaseClient.sql("UPDATE chats SET "
+            + "total_tokens = COALESCE(total_tokens, 0) + :tokens, "
+            + "estimated_cost = COALESCE(estimated_cost, 0) + :cost, "
+            + "message_count = COALESCE(message_count, 0) + :messageCount, "
+            + "last_message_preview = :preview, "
+            + "model_used = COALESCE(:model, model_used), updated_at = :updatedAt "
+            + "WHERE id = :chatId")
+        .bind("tokens", tokens)
+        .bind("cost", cost)
+        .bind("messageCount", messages.size())
+        .bind("preview", messages.isEmpty() ? "" : preview(messages.getLast().getContent()))
+        .bind("updatedAt", LocalDateTime.now())
+        .bind("chatId", chatId);
+    spec = bindNullable(spec, "model", model, String.class);
+    return spec.fetch()
+        .rowsUpdated()
+        .flatMap(updated -> updated == 0
+            ? Mono.error(new RuntimeException("Chat not found with id: " + chatId))
+            : Mono.<Void>empty());
+  }
+
+  /**
+   * The trimmed content, cut to {@link #PREVIEW_LENGTH} characters with an ellipsis.
+   */
+  public static String preview(String content) {
+    if (content == null || content.trim().isEmpty()) {
+      return "";
+    }
+
+    String preview = content.trim();
+    if (preview.length() > PREVIEW_LENGTH) {
+      preview = preview.substring(0, PREVIEW_LENGTH - 3) + "...";
+    }
+
+    return preview;
+  }
+
+  private static GenericExecuteSpec bindNullable(GenericExecuteSpec spec, String name,
+      Object value, Class<?> type) {
+    return value != null ? spec.bind(name, value) : spec.bindNull(name, type);
+  }
+}
@@ -0,0 +1,43 @@
+package com.darylmathison.chat.client.repository;
+
+import com.darylmathison.chat.client.model.ConversationSummary;
+import java.time.LocalDateTime;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
+
+@Repository
+public interface ConversationSummaryRepository
+    extends R2dbcRepository<ConversationSummary, Long> {
+
+  /**
+   * Insert a chat's first summary. save() cannot be used because the key is the chat id, which
+   * Spring Data treats as an update of an existing row.
+   */
+  @Modifying
+  @Query("INSERT INTO conversation_summaries (chat_id, content, through_message_id, "
+      + "summarized_messages, model, updated_at) VALUES (:chatId, :content, :throughMessageId, "
+      + ":summarizedMessages, :model, :updatedAt)")
+  Mono<Integer> insert(@Param("chatId") Long chatId, @Param("content") String content,
+      @Param("throughMessageId") Long throughMessageId,
+      @Param("summarizedMessages") Integer summarizedMessages, @Param("model") String model,
+      @Param("updatedAt") LocalDateTime updatedAt);
+
+  /**
+   * Replace a summary, provided it still ends at {@code previousThrough}; returns 0 if another
+   * summarization advanced it first.
+   */
+  @Modifying
+  @Query("UPDATE conversation_summaries SET content = :content, "
+      + "through_message_id = :throughMessageId, summarized_messages = :summarizedMessages, "
+      + "model = :model, updated_at = :updatedAt "
+      + "WHERE chat_id = :chatId AND through_message_id = :previousThrough")
+  Mono<Integer> advance(@Param("chatId") Long chatId, @Param("content") String content,
+      @Param("throughMessageId") Long throughMessageId,
+      @Param("summarizedMessages") Integer summarizedMessages, @Param("model") String model,
+      @Param("updatedAt") LocalDateTime updatedAt,
+      @Param("previousThrough") Long previousThrough);
+}
@@ -41,10 +41,6 @@ public interface ExternalToolRepository extends R2dbcRepository<ExternalTool, Lo
   @Query("SELECT * FROM external_tools WHERE is_active = true ORDER BY usage_count DESC")
   Flux<ExternalTool> findActiveToolsOrderByUsage();
 
-  @Query("UPDATE external_tools SET usage_count = usage_count + 1, " +
-      "last_used_at = NOW(), updated_at = NOW() WHERE id = :id")
-  Mono<Integer> recordUsage(@Param("id") Long id);
-
   @Query("SELECT DISTINCT tool_type FROM external_tools ORDER BY tool_type")
   Flux<String> findDistinctToolTypes();
 
@@ -0,0 +1,80 @@
+package com.darylmathison.chat.client.repository;
+
+import com.darylmathison.chat.client.dto.MessageDto;
+import com.darylmathison.chat.client.model.Message.MessageRole;
+import io.r2dbc.spi.Readable;
+import java.time.LocalDateTime;
+import lombok.RequiredArgsConstructor;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.r2dbc.core.DatabaseClient.GenericExecuteSpec;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+
+/**
+ * Reads a range of a chat's messages by id, oldest first, streaming rows as they are read.
+ * <p>
+ * Content can be cut in the query itself, so a page of multi-megabyte messages only brings the
+ * requested prefix of each into memory. Pages are keyed on message id, which follows insertion
+ * order, and are served by {@code idx_messages_chat_id_id}.
+ */
+@Repository
+@RequiredArgsConstructor
+public class MessagePageReader {
+
+  private final DatabaseClient databaseClient;
+
+  /**
+   * @param chatId     The chat
+   * @param before     Only messages with a smaller id, or null
+   * @param after      Only messages with a larger id, or null
+   * @param limit      Maximum messages to return. Without {@code after} these are the newest
+   *                   messages of the range, otherwise the oldest
+   * @param truncateAt Maximum characters of content to read per message, or null for all
+   */
+  public Flux<MessageDto> findPage(Long chatId, Long before, Long after, int limit,
+      Integer truncateAt) {
+    String columns = "id, chat_id, role, created_at, tokens, "
+        + "CHAR_LENGTH(content) AS content_length, "
+        + (truncateAt != null
+        ? "CAST(SUBSTRING(content, 1, :truncateAt) AS VARCHAR) AS content" : "content");
+    String range = "chat_id = :chatId"
+        + (before != null ? " AND id < :before" : "")
+        + (after != null ? " AND id > :after" : "");
+
+    String sql = after != null
+        ? "SELECT " + columns + " FROM messages WHERE " + range + " ORDER BY id LIMIT :limit"
+        // Newest messages of the range, put back in chronological order by the database
+        : "SELECT * FROM (SELECT " + columns + " FROM messages WHERE " + range
+            + " ORDER BY id DESC LIMIT :limit) recent ORDER BY id";
+
+    GenericExecuteSpec spec = databaseClient.sql(sql)
+        .bind("chatId", chatId)
+        .bind("limit", limit);
+    if (truncateAt != null) {
+      spec = spec.bind("truncateAt", truncateAt);
+    }
+    if (before != null) {
+      spec = spec.bind("before", before);
+    }
+    if (after != null) {
+      spec = spec.bind("after", after);
+    }
+    return spec.map(this::toDto).all();
+  }
+
+  private MessageDto toDto(Readable row) {
+    String content = row.get("content", String.class);
+    Number length = row.get("content_length", Number.class);
+    int contentLength = length != null ? length.intValue() : 0;
+    return MessageDto.builder()
+        .id(row.get("id", Long.class))
+        .chatId(row.get("chat_id", Long.class))
+        .role(MessageRole.valueOf(row.get("role", String.class)))
+        .content(content)
+        .contentLength(contentLength)
+        .truncated(content != null && content.length() < contentLength)
+        .createdAt(row.get("created_at", LocalDateTime.class))
+        .tokens(row.get("tokens", Integer.class))
+        .build();
+  }
+}
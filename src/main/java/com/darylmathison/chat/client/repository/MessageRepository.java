@@ -1,7 +1,9 @@
 package com.darylmathison.chat.client.repository;
 
 import com.darylmathison.chat.client.model.Message;
+import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import org.springframework.data.repository.query.Param;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
@@ -9,6 +11,17 @@ public interface MessageRepository extends R2dbcRepository<Message, Long> {
 
   Flux<Message> findByChatIdOrderByCreatedAtAsc(Long chatId);
 
+  // Newest first; used to seed a chat's context window
+  @Query("SELECT * FROM messages WHERE chat_id = :chatId ORDER BY created_at DESC, id DESC "
+      + "LIMIT :limit")
+  Flux<Message> findRecentByChatId(@Param("chatId") Long chatId, @Param("limit") int limit);
+
+  // Oldest first; the messages a chat's conversation summary does not cover yet
+  @Query("SELECT * FROM messages WHERE chat_id = :chatId AND id > :afterId ORDER BY id "
+      + "LIMIT :limit")
+  Flux<Message> findByChatIdAfter(@Param("chatId") Long chatId, @Param("afterId") long afterId,
+      @Param("limit") int limit);
+
   Mono<Long> countByChatId(Long chatId);
 
   Mono<Message> findTopByChatIdOrderByCreatedAtDesc(Long chatId);
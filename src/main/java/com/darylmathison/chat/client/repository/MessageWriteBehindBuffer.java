@@ -0,0 +1,328 @@
+package com.darylmathison.chat.client.repository;
+
+import com.darylmathison.chat.client.model.Message;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+/**
+ * Optional write-behind buffer for chat messages.
+ * <p>
+ * When {@code chat.persistence.write-behind.enabled} is set, messages of all chats are queued in
+ * memory and written with multi-row INSERTs of up to {@code batch-size} rows, either as soon as a
+ * full batch is waiting or every {@code flush-interval}. This trades a few hundred milliseconds of
+ * durability for far fewer statements and pool connections under load:
+ * <ul>
+ *   <li>A message is acknowledged once it is buffered, before it is in the database, and has no
+ *   id until flushed. Messages still buffered when the process dies are lost; a normal shutdown
+ *   flushes them first (up to {@code shutdown-timeout}).</li>
+ *   <li>The buffer holds at most {@code capacity} messages. Writers wait for a flush to make room
+ *   and fail after {@code max-wait}, so a stalled database slows callers down instead of growing
+ *   the heap.</li>
+ *   <li>Reads of a chat's messages go through {@link #withPending}, which adds the chat's
+ *   unflushed messages to what the database returned.</li>
+ * </ul>
+ */
+@Component
+@Slf4j
+public class MessageWriteBehindBuffer {
+
+  private static final Duration OFFER_RETRY_INTERVAL = Duration.ofMillis(25);
+
+  private final ChatTurnWriter chatTurnWriter;
+  private final Counter dropped;
+
+  @Value("${chat.persistence.write-behind.enabled:false}")
+  private boolean enabled;
+
+  @Value("${chat.persistence.write-behind.capacity:10000}")
+  private int capacity = 10000;
+
+  // Rows per INSERT statement
+  @Value("${chat.persistence.write-behind.batch-size:500}")
+  private int batchSize = 500;
+
+  @Value("${chat.persistence.write-behind.max-wait:5s}")
+  private Duration maxWait = Duration.ofSeconds(5);
+
+  @Value("${chat.persistence.write-behind.shutdown-timeout:30s}")
+  private Duration shutdownTimeout = Duration.ofSeconds(30);
+
+  // Waiting to be written, oldest first; guarded by itself
+  private final Deque<Entry> queue = new ArrayDeque<>();
+  // Buffered or being written, per chat, until the INSERT that contains them has completed
+  private final Map<Long, Set<Entry>> pendingByChat = new ConcurrentHashMap<>();
+  // Buffered messages not yet written, whether queued or part of a running INSERT
+  private final AtomicInteger buffered = new AtomicInteger();
+  private final AtomicBoolean flushing = new AtomicBoolean();
+
+  public MessageWriteBehindBuffer(ChatTurnWriter chatTurnWriter, MeterRegistry meterRegistry) {
+    this.chatTurnWriter = chatTurnWriter;
+    meterRegistry.gauge("chat.writebehind.buffered", buffered);
+    this.dropped = Counter.builder("chat.writebehind.dropped")
+        .description("Buffered messages that could not be written and were discarded")
+        .register(meterRegistry);
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Buffer messages for writing. Completes once they are accepted, waiting for room while the
+   * buffer is full.
+   */
+  public Mono<Void> enqueue(List<Message> messages) {
+    if (messages.size() > capacity) {
+      return Mono.error(new IllegalArgumentException(
+          "Cannot buffer " + messages.size() + " messages with a capacity of " + capacity));
+    }
+    long attempts = Math.max(1, maxWait.toMillis() / OFFER_RETRY_INTERVAL.toMillis());
+    return Mono.defer(() -> offer(messages)
+            ? Mono.<Void>empty()
+            : Mono.<Void>error(new WriteBehindFullException("Write-behind buffer is full")))
+        .retryWhen(Retry.fixedDelay(attempts, OFFER_RETRY_INTERVAL)
+            .filter(WriteBehindFullException.class::isInstance)
+            .doBeforeRetry(signal -> requestFlush())
+            .onRetryExhaustedThrow((spec, signal) -> new WriteBehindFullException(
+                "Write-behind buffer still full after " + maxWait.toMillis() + " ms")));
+  }
+
+  /**
+   * Add the chat's unflushed messages to messages read from the database.
+   *
+   * @param chatId    The chat
+   * @param persisted A query for the chat's messages; subscribed after the pending messages are
+   *                  captured, so a message flushed in between is found by one or the other
+   * @return The messages of both, oldest first
+   */
+  public Mono<List<Message>> withPending(Long chatId, Flux<Message> persisted) {
+    if (!enabled) {
+      return persisted.collectList();
+    }
+    return Mono.defer(() -> {
+      List<Entry> pending = pending(chatId);
+      return persisted.collectList()
+          .map(messages -> {
+            if (pending.isEmpty()) {
+              return messages;
+            }
+            Set<Long> ids = new HashSet<>();
+            messages.forEach(message -> ids.add(message.getId()));
+            List<Message> merged = new ArrayList<>(messages);
+            for (Entry entry : pending) {
+              // Written (and so possibly returned by the query) once it has an id
+              Long id = entry.id;
+              if (id == null || !ids.contains(id)) {
+                merged.add(entry.message);
+              }
+            }
+            merged.sort(Comparator.comparing(Message::getCreatedAt,
+                Comparator.nullsLast(Comparator.naturalOrder())));
+            return merged;
+          });
+    });
+  }
+
+  /**
+   * The chat's buffered messages, oldest first. Messages that are written meanwhile get their id
+   * set, so a caller that also queries the database should skip those it found there.
+   */
+  public List<Message> pendingMessages(Long chatId) {
+    if (!enabled) {
+      return List.of();
+    }
+    return pending(chatId).stream()
+        .map(entry -> entry.message)
+        .sorted(Comparator.comparing(Message::getCreatedAt,
+            Comparator.nullsLast(Comparator.naturalOrder())))
+        .toList();
+  }
+
+  /**
+   * Forget the buffered messages of a chat that is being deleted.
+   */
+  public void discard(Long chatId) {
+    Set<Entry> pending = pendingByChat.remove(chatId);
+    if (pending == null) {
+      return;
+    }
+    synchronized (queue) {
+      int before = queue.size();
+      if (queue.removeIf(pending::contains)) {
+        buffered.addAndGet(queue.size() - before);
+      }
+    }
+  }
+
+  @Scheduled(fixedDelayString = "${chat.persistence.write-behind.flush-interval:PT0.2S}")
+  public void scheduledFlush() {
+    if (enabled) {
+      requestFlush();
+    }
+  }
+
+  /**
+   * Write everything that is buffered. Returns immediately if another flush is running; that one
+   * keeps going until the buffer is empty.
+   */
+  public Mono<Void> flush() {
+    return Mono.defer(() -> {
+      if (!flushing.compareAndSet(false, true)) {
+        return Mono.empty();
+      }
+      return drain().doFinally(signal -> flushing.set(false));
+    });
+  }
+
+  @PreDestroy
+  void flushOnShutdown() {
+    if (!enabled) {
+      return;
+    }
+    long deadline = System.nanoTime() + shutdownTimeout.toNanos();
+    while ((buffered.get() > 0 || flushing.get()) && System.nanoTime() < deadline) {
+      try {
+        flush().block(shutdownTimeout);
+        if (buffered.get() > 0) {
+          // Another flush still has rows in flight
+          Thread.sleep(OFFER_RETRY_INTERVAL.toMillis());
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        break;
+      } catch (RuntimeException e) {
+        log.error("Flushing buffered messages on shutdown failed: {}", e.getMessage());
+        break;
+      }
+    }
+    if (buffered.get() > 0) {
+      log.error("Shutting down with {} buffered messages that were not written", buffered.get());
+    }
+  }
+
+  int buffered() {
+    return buffered.get();
+  }
+
+  private boolean offer(List<Message> messages) {
+    boolean fullBatch;
+    synchronized (queue) {
+      // Messages being written still count, so a stalled database pushes back on writers
+      if (buffered.get() + messages.size() > capacity) {
+        return false;
+      }
+      for (Message message : messages) {
+        Entry entry = new Entry(message);
+        queue.addLast(entry);
+        pendingByChat.computeIfAbsent(message.getChatId(), key -> ConcurrentHashMap.newKeySet())
+            .add(entry);
+      }
+      buffered.addAndGet(messages.size());
+      fullBatch = queue.size() >= batchSize;
+    }
+    if (fullBatch) {
+      requestFlush();
+    }
+    return true;
+  }
+
+  private void requestFlush() {
+    flush().subscribe(null,
+        error -> log.warn("Write-behind flush failed: {}", error.getMessage()));
+  }
+
+  private Mono<Void> drain() {
+    List<Entry> batch = new ArrayList<>(batchSize);
+    synchronized (queue) {
+      while (batch.size() < batchSize && !queue.isEmpty()) {
+        batch.add(queue.pollFirst());
+      }
+    }
+    if (batch.isEmpty()) {
+      return Mono.empty();
+    }
+    return write(batch).then(Mono.defer(this::drain));
+  }
+
+  private Mono<Void> write(List<Entry> batch) {
+    List<Message> messages = batch.stream().map(entry -> entry.message).toList();
+    return chatTurnWriter.insertMessages(messages)
+        .doOnNext(saved -> batch.forEach(this::written))
+        .then()
+        .onErrorResume(error -> {
+          // One bad row (e.g. its chat was deleted) fails the whole statement; retry row by row
+          log.warn("Batch insert of {} buffered messages failed, writing them one at a time: {}",
+              batch.size(), error.getMessage());
+          return Flux.fromIterable(batch)
+              .concatMap(entry -> chatTurnWriter.insertMessages(List.of(entry.message))
+                  .doOnNext(saved -> written(entry))
+                  .onErrorResume(rowError -> {
+                    log.error("Dropping buffered message for chat {}: {}",
+                        entry.message.getChatId(), rowError.getMessage());
+                    dropped.increment();
+                    forget(entry);
+                    return Mono.empty();
+                  }))
+              .then();
+        });
+  }
+
+  private void written(Entry entry) {
+    entry.id = entry.message.getId();
+    forget(entry);
+  }
+
+  private void forget(Entry entry) {
+    buffered.decrementAndGet();
+    pendingByChat.computeIfPresent(entry.message.getChatId(), (chatId, entries) -> {
+      entries.remove(entry);
+      return entries.isEmpty() ? null : entries;
+    });
+  }
+
+  private List<Entry> pending(Long chatId) {
+    Set<Entry> entries = pendingByChat.get(chatId);
+    return entries == null ? List.of() : List.copyOf(entries);
+  }
+
+  private static final class Entry {
+
+    private final Message message;
+    // Set, and visible to readers, once the row has been inserted
+    private volatile Long id;
+
+    private Entry(Message message) {
+      this.message = message;
+    }
+  }
+
+  /**
+   * Raised when messages cannot be buffered within the configured wait.
+   */
+  public static class WriteBehindFullException extends RuntimeException {
+
+    public WriteBehindFullException(String message) {
+      super(message);
+    }
+  }
+}
@@ -0,0 +1,261 @@
+package com.darylmathison.chat.client.repository;
+
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.r2dbc.core.DatabaseClient.GenericExecuteSpec;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Usage counts of external tools and saved prompts, accumulated in memory and written in batches.
+ * <p>
+ * Recording a use only bumps a striped counter, so popular tools and prompts no longer queue up
+ * on the lock of their row. Every {@code flush-interval} the counts of all tools, then of all
+ * prompts, are added to {@code usage_count} with one UPDATE per {@code batch-size} rows, and a
+ * tool's {@code last_used_at} is moved forward to the latest use; a normal shutdown flushes once
+ * more. Counts not yet written are lost if the process dies, and {@code updated_at} is left alone
+ * since using a tool or prompt does not change it.
+ * <p>
+ * Until then, {@link #toolUsageCount}, {@link #toolLastUsedAt} and {@link #promptUsageCount} add
+ * what is pending to the values read from the database.
+ */
+@Component
+@Slf4j
+public class UsageCounters {
+
+  private final DatabaseClient databaseClient;
+
+  private final Table tools = new Table("external_tools", true);
+  private final Table prompts = new Table("saved_prompts", false);
+  private final AtomicBoolean flushing = new AtomicBoolean();
+
+  // Rows per UPDATE statement
+  @Value("${chat.persistence.usage.batch-size:500}")
+  private int batchSize = 500;
+
+  @Value("${chat.persistence.usage.shutdown-timeout:10s}")
+  private Duration shutdownTimeout = Duration.ofSeconds(10);
+
+  public UsageCounters(DatabaseClient databaseClient) {
+    this.databaseClient = databaseClient;
+  }
+
+  public void recordToolUse(Long toolId) {
+    tools.record(toolId);
+  }
+
+  public void recordPromptUse(Long promptId) {
+    prompts.record(promptId);
+  }
+
+  /**
+   * @param persisted The tool's usage count as read from the database
+   * @return The count including uses not yet written
+   */
+  public long toolUsageCount(Long toolId, Long persisted) {
+    return (persisted != null ? persisted : 0L) + tools.pending(toolId);
+  }
+
+  /**
+   * @param persisted The tool's last use as read from the database
+   * @return The later of that and the last use not yet written
+   */
+  public LocalDateTime toolLastUsedAt(Long toolId, LocalDateTime persisted) {
+    LocalDateTime pending = tools.lastUsed(toolId);
+    if (pending == null || (persisted != null && !pending.isAfter(persisted))) {
+      return persisted;
+    }
+    return pending;
+  }
+
+  /**
+   * @param persisted The prompt's usage count as read from the database
+   * @return The count including uses not yet written
+   */
+  public long promptUsageCount(Long promptId, Long persisted) {
+    return (persisted != null ? persisted : 0L) + prompts.pending(promptId);
+  }
+
+  @Scheduled(fixedDelayString = "${chat.persistence.usage.flush-interval:PT5S}")
+  public void scheduledFlush() {
+    flush().subscribe(null, error -> log.warn("Usage count flush failed: {}", error.getMessage()));
+  }
+
+  /**
+   * Write the pending counts. Returns immediately if another flush is running. Counts whose
+   * UPDATE fails are put back and retried with the next flush.
+   */
+  public Mono<Void> flush() {
+    return Mono.defer(() -> {
+      if (!flushing.compareAndSet(false, true)) {
+        return Mono.empty();
+      }
+      return write(tools)
+          .then(Mono.defer(() -> write(prompts)))
+          .doFinally(signal -> flushing.set(false));
+    });
+  }
+
+  @PreDestroy
+  void flushOnShutdown() {
+    try {
+      flush().block(shutdownTimeout);
+    } catch (RuntimeException e) {
+      log.error("Flushing usage counts on shutdown failed: {}", e.getMessage());
+    }
+  }
+
+  private Mono<Void> write(Table table) {
+    List<Delta> deltas = table.take();
+    if (deltas.isEmpty()) {
+      return Mono.empty();
+    }
+    List<List<Delta>> batches = new ArrayList<>();
+    for (int i = 0; i < deltas.size(); i += batchSize) {
+      batches.add(deltas.subList(i, Math.min(deltas.size(), i + batchSize)));
+    }
+    return Flux.fromIterable(batches)
+        .concatMap(batch -> update(table, batch)
+            .doOnSuccess(rows -> batch.forEach(Delta::written))
+            .onErrorResume(error -> {
+              log.warn("Could not add usage of {} rows to {}, will retry: {}", batch.size(),
+                  table.name, error.getMessage());
+              batch.forEach(Delta::restore);
+              return Mono.empty();
+            }))
+        .then();
+  }
+
+  private Mono<Long> update(Table table, List<Delta> batch) {
+    StringBuilder counts = new StringBuilder("CASE id");
+    StringBuilder lastUsed = new StringBuilder("CASE id");
+    for (int i = 0; i < batch.size(); i++) {
+      // Typed so the database does not have to infer the type of a bare parameter
+      counts.append(" WHEN :id").append(i).append(" THEN CAST(:count").append(i)
+          .append(" AS BIGINT)");
+      lastUsed.append(" WHEN :id").append(i)
+          .append(" THEN CASE WHEN last_used_at IS NULL OR last_used_at < CAST(:usedAt")
+          .append(i).append(" AS TIMESTAMP) THEN CAST(:usedAt").append(i)
+          .append(" AS TIMESTAMP) ELSE last_used_at END");
+    }
+    counts.append(" ELSE 0 END");
+    lastUsed.append(" ELSE last_used_at END");
+
+    StringBuilder sql = new StringBuilder("UPDATE ").append(table.name)
+        .append(" SET usage_count = COALESCE(usage_count, 0) + ").append(counts);
+    if (table.hasLastUsed) {
+      sql.append(", last_used_at = ").append(lastUsed);
+    }
+    sql.append(" WHERE id IN (:ids)");
+
+    GenericExecuteSpec spec = databaseClient.sql(sql.toString())
+        .bind("ids", batch.stream().map(Delta::id).toList());
+    for (int i = 0; i < batch.size(); i++) {
+      Delta delta = batch.get(i);
+      spec = spec.bind("id" + i, delta.id()).bind("count" + i, delta.count());
+      if (table.hasLastUsed) {
+        spec = spec.bind("usedAt" + i, delta.usedAt());
+      }
+    }
+    return spec.fetch().rowsUpdated();
+  }
+
+  /**
+   * The counters of one table.
+   */
+  private static final class Table {
+
+    private final String name;
+    private final boolean hasLastUsed;
+    private final Map<Long, Counter> counters = new ConcurrentHashMap<>();
+
+    private Table(String name, boolean hasLastUsed) {
+      this.name = name;
+      this.hasLastUsed = hasLastUsed;
+    }
+
+    void record(Long id) {
+      if (id == null) {
+        return;
+      }
+      Counter counter = counters.computeIfAbsent(id, key -> new Counter());
+      counter.unwritten.increment();
+      counter.lastUsed.accumulate(toMillis(LocalDateTime.now()));
+    }
+
+    long pending(Long id) {
+      Counter counter = id != null ? counters.get(id) : null;
+      return counter != null ? counter.unwritten.sum() + counter.writing.get() : 0L;
+    }
+
+    LocalDateTime lastUsed(Long id) {
+      Counter counter = id != null ? counters.get(id) : null;
+      if (counter == null || counter.lastUsed.get() == Long.MIN_VALUE) {
+        return null;
+      }
+      return fromMillis(counter.lastUsed.get());
+    }
+
+    /**
+     * Move every unwritten count to being written. Counters are kept, as there is one per tool
+     * or prompt that was ever used.
+     */
+    List<Delta> take() {
+      List<Delta> deltas = new ArrayList<>();
+      counters.forEach((id, counter) -> {
+        // Subtracting what was read, rather than resetting, keeps uses recorded meanwhile
+        long count = counter.unwritten.sum();
+        if (count > 0) {
+          counter.unwritten.add(-count);
+          counter.writing.addAndGet(count);
+          deltas.add(new Delta(id, counter, count, fromMillis(counter.lastUsed.get())));
+        }
+      });
+      return deltas;
+    }
+  }
+
+  private static final class Counter {
+
+    private final LongAdder unwritten = new LongAdder();
+    // Taken by a flush whose UPDATE has not completed yet
+    private final AtomicLong writing = new AtomicLong();
+    private final LongAccumulator lastUsed = new LongAccumulator(Math::max, Long.MIN_VALUE);
+  }
+
+  private record Delta(Long id, Counter counter, long count, LocalDateTime usedAt) {
+
+    void written() {
+      counter.writing.addAndGet(-count);
+    }
+
+    void restore() {
+      counter.unwritten.add(count);
+      counter.writing.addAndGet(-count);
+    }
+  }
+
+  private static long toMillis(LocalDateTime time) {
+    return time.toInstant(ZoneOffset.UTC).toEpochMilli();
+  }
+
+  private static LocalDateTime fromMillis(long millis) {
+    return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneOffset.UTC);
+  }
+}
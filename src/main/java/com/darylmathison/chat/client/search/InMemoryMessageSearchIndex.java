@@ -0,0 +1,383 @@
+package com.darylmathison.chat.client.search;
+
+import com.darylmathison.chat.client.dto.MessageSearchHit;
+import com.darylmathison.chat.client.model.Chat;
+import com.darylmathison.chat.client.model.Message;
+import com.darylmathison.chat.client.repository.ChatRepository;
+import com.darylmathison.chat.client.repository.MessageRepository;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Embedded inverted index for the H2 database, which has no usable full-text ranking.
+ * <p>
+ * Each term maps to the ids of the messages containing it, kept sorted, with the term's frequency
+ * in each. Chat titles are indexed alongside under their negated chat id. A query walks the postings of its rarest term and looks the others up by binary
+ * search, scoring candidates with BM25 times a recency boost, so the cost depends on how many
+ * messages contain the rarest term rather than on the size of the chat history. Only the top
+ * matches are read back from the database, to build their snippets.
+ * <p>
+ * The index is filled from the database on startup and then updated as chats and messages are
+ * inserted. Each entry keeps the postings it was added to, so deleting a chat removes its ids from
+ * exactly those lists, in one pass per list, and drops lists left empty.
+ */
+@Component
+@Profile("!postgres")
+@RequiredArgsConstructor
+@Slf4j
+public class InMemoryMessageSearchIndex implements MessageSearchIndex {
+
+  private static final double K1 = 1.2;
+  private static final double B = 0.75;
+
+  private final MessageRepository messageRepository;
+  private final ChatRepository chatRepository;
+
+  // Age at which a message's recency boost has halved
+  @Value("${chat.search.recency-half-life:30d}")
+  private Duration recencyHalfLife = Duration.ofDays(30);
+
+  // Boost of a brand-new message over a very old one of equal relevance
+  @Value("${chat.search.recency-weight:1.0}")
+  private double recencyWeight = 1.0;
+
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  // Guarded by lock
+  private final Map<String, Postings> postings = new HashMap<>();
+  private final Map<Long, Doc> docs = new HashMap<>();
+  private final Map<Long, List<Long>> messagesByChat = new HashMap<>();
+  private long totalTerms;
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void rebuild() {
+    chatRepository.findAll()
+        .buffer(1000)
+        .doOnNext(this::indexChats)
+        .thenMany(messageRepository.findAll().buffer(1000))
+        .doOnNext(this::index)
+        .count()
+        .subscribe(
+            batches -> log.info("Search index holds {} titles and messages", size()),
+            error -> log.error("Building the search index failed: {}", error.getMessage()));
+  }
+
+  @Override
+  public void index(List<Message> messages) {
+    lock.writeLock().lock();
+    try {
+      for (Message message : messages) {
+        if (message.getId() != null && !docs.containsKey(message.getId())) {
+          add(message.getId(), message.getChatId(), message.getContent(), message.getCreatedAt());
+        }
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public void indexChats(List<Chat> chats) {
+    lock.writeLock().lock();
+    try {
+      for (Chat chat : chats) {
+        if (chat.getId() != null && !docs.containsKey(titleId(chat.getId()))) {
+          add(titleId(chat.getId()), chat.getId(), chat.getTitle(), chat.getCreatedAt());
+        }
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public void removeChat(Long chatId) {
+    lock.writeLock().lock();
+    try {
+      List<Long> ids = messagesByChat.remove(chatId);
+      if (ids == null) {
+        return;
+      }
+      Map<Postings, Set<Long>> removed = new IdentityHashMap<>();
+      for (Long id : ids) {
+        Doc doc = docs.remove(id);
+        if (doc == null) {
+          continue;
+        }
+        totalTerms -= doc.length();
+        for (Postings list : doc.postings()) {
+          removed.computeIfAbsent(list, key -> new HashSet<>()).add(id);
+        }
+      }
+      removed.forEach((list, listIds) -> {
+        if (list.removeAll(listIds) == 0) {
+          postings.remove(list.term());
+        }
+      });
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public Flux<MessageSearchHit> search(String query, int limit) {
+    Set<String> terms = new LinkedHashSet<>(SearchText.terms(query));
+    if (terms.isEmpty() || limit < 1) {
+      return Flux.empty();
+    }
+    List<Scored> top = topMatches(terms, limit);
+    if (top.isEmpty()) {
+      return Flux.empty();
+    }
+
+    List<Long> messageIds = top.stream().map(Scored::id).filter(id -> id > 0).toList();
+    Mono<Map<Long, Message>> messages = messageIds.isEmpty()
+        ? Mono.just(Map.of())
+        : messageRepository.findAllById(messageIds).collectMap(Message::getId);
+    Mono<Map<Long, Chat>> chats = chatRepository.findAllById(
+            top.stream().map(Scored::chatId).distinct().toList())
+        .collectMap(Chat::getId);
+    return Mono.zip(messages, chats)
+        .flatMapMany(found -> Flux.fromIterable(top)
+            .filter(scored -> scored.id() < 0
+                ? found.getT2().containsKey(scored.chatId())
+                : found.getT1().containsKey(scored.id()))
+            .map(scored -> {
+              Chat chat = found.getT2().get(scored.chatId());
+              if (scored.id() < 0) {
+                return MessageSearchHit.builder()
+                    .chatId(scored.chatId())
+                    .chatTitle(chat.getTitle())
+                    .snippet(SearchText.snippet(chat.getTitle(), terms))
+                    .score(scored.score())
+                    .createdAt(chat.getCreatedAt())
+                    .build();
+              }
+              Message message = found.getT1().get(scored.id());
+              return MessageSearchHit.builder()
+                  .chatId(scored.chatId())
+                  .chatTitle(chat != null ? chat.getTitle() : null)
+                  .messageId(message.getId())
+                  .role(message.getRole())
+                  .snippet(SearchText.snippet(message.getContent(), terms))
+                  .score(scored.score())
+                  .createdAt(message.getCreatedAt())
+                  .build();
+            }));
+  }
+
+  int size() {
+    lock.readLock().lock();
+    try {
+      return docs.size();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  int termCount() {
+    lock.readLock().lock();
+    try {
+      return postings.size();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  // Titles share the id space of messages, whose ids are positive
+  private static long titleId(long chatId) {
+    return -chatId;
+  }
+
+  private void add(long id, Long chatId, String text, LocalDateTime created) {
+    Map<String, Integer> frequencies = new HashMap<>();
+    List<String> terms = SearchText.terms(text);
+    for (String term : terms) {
+      frequencies.merge(term, 1, Integer::sum);
+    }
+    long createdAt = created != null
+        ? created.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()
+        : System.currentTimeMillis();
+    Postings[] lists = new Postings[frequencies.size()];
+    int i = 0;
+    for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+      Postings list = postings.computeIfAbsent(entry.getKey(), Postings::new);
+      list.add(id, entry.getValue());
+      lists[i++] = list;
+    }
+    docs.put(id, new Doc(chatId, createdAt, terms.size(), lists));
+    messagesByChat.computeIfAbsent(chatId, key -> new ArrayList<>()).add(id);
+    totalTerms += terms.size();
+  }
+
+  private List<Scored> topMatches(Set<String> terms, int limit) {
+    lock.readLock().lock();
+    try {
+      List<Postings> lists = new ArrayList<>(terms.size());
+      for (String term : terms) {
+        Postings list = postings.get(term);
+        if (list == null) {
+          return List.of();
+        }
+        lists.add(list);
+      }
+      lists.sort(Comparator.comparingInt(Postings::size));
+
+      int documents = Math.max(1, docs.size());
+      double averageLength = Math.max(1.0, (double) totalTerms / documents);
+      double[] idf = new double[lists.size()];
+      for (int i = 0; i < lists.size(); i++) {
+        int df = lists.get(i).size();
+        idf[i] = Math.log(1 + (documents - df + 0.5) / (df + 0.5));
+      }
+      long now = System.currentTimeMillis();
+      double halfLife = Math.max(1, recencyHalfLife.toMillis());
+
+      PriorityQueue<Scored> best = new PriorityQueue<>(limit + 1,
+          Comparator.comparingDouble(Scored::score));
+      Postings rarest = lists.getFirst();
+      for (int i = 0; i < rarest.size(); i++) {
+        long id = rarest.id(i);
+        Doc doc = docs.get(id);
+        if (doc == null) {
+          continue;
+        }
+        double norm = K1 * (1 - B + B * doc.length() / averageLength);
+        double relevance = bm25(rarest.frequency(i), norm) * idf[0];
+        for (int t = 1; t < lists.size() && relevance > 0; t++) {
+          int frequency = lists.get(t).frequencyOf(id);
+          relevance = frequency == 0 ? 0 : relevance + bm25(frequency, norm) * idf[t];
+        }
+        if (relevance <= 0) {
+          continue;
+        }
+        double age = Math.max(0, now - doc.createdAt());
+        double score = relevance * (1 + recencyWeight * Math.pow(0.5, age / halfLife));
+        if (best.size() < limit) {
+          best.add(new Scored(id, doc.chatId(), score));
+        } else if (score > best.peek().score()) {
+          best.poll();
+          best.add(new Scored(id, doc.chatId(), score));
+        }
+      }
+
+      List<Scored> ranked = new ArrayList<>(best);
+      ranked.sort(Comparator.comparingDouble(Scored::score).reversed());
+      return ranked;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  private static double bm25(int frequency, double norm) {
+    return frequency * (K1 + 1) / (frequency + norm);
+  }
+
+  // postings are the lists the entry was added to, to remove it again
+  private record Doc(Long chatId, long createdAt, int length, Postings[] postings) {
+
+  }
+
+  // id is a message id, or a negated chat id for a title
+  private record Scored(long id, Long chatId, double score) {
+
+  }
+
+  /**
+   * Message ids containing a term, ascending, with the term's frequency in each.
+   */
+  private static final class Postings {
+
+    private final String term;
+    private long[] ids = new long[4];
+    private int[] frequencies = new int[4];
+    private int size;
+
+    Postings(String term) {
+      this.term = term;
+    }
+
+    String term() {
+      return term;
+    }
+
+    void add(long id, int frequency) {
+      if (size == ids.length) {
+        ids = Arrays.copyOf(ids, size * 2);
+        frequencies = Arrays.copyOf(frequencies, size * 2);
+      }
+      if (size == 0 || id > ids[size - 1]) {
+        ids[size] = id;
+        frequencies[size++] = frequency;
+        return;
+      }
+      // Concurrent inserts can be indexed slightly out of id order
+      int at = Arrays.binarySearch(ids, 0, size, id);
+      if (at >= 0) {
+        return;
+      }
+      at = -at - 1;
+      System.arraycopy(ids, at, ids, at + 1, size - at);
+      System.arraycopy(frequencies, at, frequencies, at + 1, size - at);
+      ids[at] = id;
+      frequencies[at] = frequency;
+      size++;
+    }
+
+    /**
+     * Remove the given ids, keeping the rest in order.
+     *
+     * @return The number of ids left
+     */
+    int removeAll(Set<Long> removed) {
+      int kept = 0;
+      for (int i = 0; i < size; i++) {
+        if (!removed.contains(ids[i])) {
+          ids[kept] = ids[i];
+          frequencies[kept++] = frequencies[i];
+        }
+      }
+      size = kept;
+      return size;
+    }
+
+    int size() {
+      return size;
+    }
+
+    long id(int index) {
+      return ids[index];
+    }
+
+    int frequency(int index) {
+      return frequencies[index];
+    }
+
+    int frequencyOf(long id) {
+      int at = Arrays.binarySearch(ids, 0, size, id);
+      return at >= 0 ? frequencies[at] : 0;
+    }
+  }
+}
@@ -0,0 +1,38 @@
+package com.darylmathison.chat.client.search;
+
+import com.darylmathison.chat.client.dto.MessageSearchHit;
+import com.darylmathison.chat.client.model.Chat;
+import com.darylmathison.chat.client.model.Message;
+import java.util.List;
+import reactor.core.publisher.Flux;
+
+/**
+ * Full-text index over chat titles and message content.
+ * <p>
+ * All words of a query must appear in a title or a message for it to match. Matches are ranked by
+ * relevance boosted by recency, so of two equally relevant messages the newer one comes first.
+ */
+public interface MessageSearchIndex {
+
+  /**
+   * Add messages that have just been inserted. Messages without an id, or already indexed, are
+   * ignored.
+   */
+  void index(List<Message> messages);
+
+  /**
+   * Add the titles of chats that have just been inserted. Chats without an id, or already indexed,
+   * are ignored.
+   */
+  void indexChats(List<Chat> chats);
+
+  /**
+   * Drop the title and messages of a deleted chat.
+   */
+  void removeChat(Long chatId);
+
+  /**
+   * @return The best matches, best first
+   */
+  Flux<MessageSearchHit> search(String query, int limit);
+}
@@ -0,0 +1,101 @@
+package com.darylmathison.chat.client.search;
+
+import com.darylmathison.chat.client.dto.MessageSearchHit;
+import com.darylmathison.chat.client.model.Chat;
+import com.darylmathison.chat.client.model.Message;
+import com.darylmathison.chat.client.model.Message.MessageRole;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+/**
+ * Full-text search on Postgres.
+ * <p>
+ * {@code messages.content_tsv} and {@code chats.title_tsv} are stored generated tsvectors with GIN
+ * indexes (see {@code db/postgres/message-search.sql}), so Postgres keeps them current on every
+ * insert and {@link #index}, {@link #indexChats} and {@link #removeChat} have nothing to do. The
+ * best messages and the best titles are found separately and merged. Matches are ranked with
+ * {@code ts_rank_cd} times the same recency boost the embedded index uses, and
+ * {@code ts_headline} is only run for the rows that make the cut. The content is HTML-escaped
+ * before it is highlighted, so the marks are the only markup in a snippet.
+ */
+@Component
+@Profile("postgres")
+@RequiredArgsConstructor
+public class PostgresMessageSearchIndex implements MessageSearchIndex {
+
+  private static final String SEARCH_SQL = "SELECT hit.message_id, hit.chat_id, hit.score, "
+      + "m.role, COALESCE(m.created_at, c.created_at) AS created_at, c.title, "
+      + "ts_headline('english', replace(replace(replace(replace(replace("
+      + "COALESCE(m.content, c.title), '&', '&amp;'), "
+      + "'<', '&lt;'), '>', '&gt;'), '\"', '&quot;'), '''', '&#39;'), "
+      + "plainto_tsquery('english', :query), "
+      + "'StartSel=<mark>, StopSel=</mark>, MaxFragments=1, MaxWords=30, MinWords=10') AS snippet "
+      + "FROM ((SELECT m.id AS message_id, m.chat_id, "
+      + "ts_rank_cd(m.content_tsv, q) * (1 + :recencyWeight * power(0.5, "
+      + "EXTRACT(EPOCH FROM (now() - m.created_at)) / :halfLifeSeconds)) AS score "
+      + "FROM messages m, plainto_tsquery('english', :query) q "
+      + "WHERE m.content_tsv @@ q ORDER BY score DESC LIMIT :limit) "
+      + "UNION ALL "
+      + "(SELECT CAST(NULL AS BIGINT) AS message_id, c.id AS chat_id, "
+      + "ts_rank_cd(c.title_tsv, q) * (1 + :recencyWeight * power(0.5, "
+      + "EXTRACT(EPOCH FROM (now() - c.created_at)) / :halfLifeSeconds)) AS score "
+      + "FROM chats c, plainto_tsquery('english', :query) q "
+      + "WHERE c.title_tsv @@ q ORDER BY score DESC LIMIT :limit) "
+      + "ORDER BY score DESC LIMIT :limit) hit "
+      + "LEFT JOIN messages m ON m.id = hit.message_id "
+      + "JOIN chats c ON c.id = hit.chat_id "
+      + "ORDER BY hit.score DESC";
+
+  private final DatabaseClient databaseClient;
+
+  @Value("${chat.search.recency-half-life:30d}")
+  private Duration recencyHalfLife = Duration.ofDays(30);
+
+  @Value("${chat.search.recency-weight:1.0}")
+  private double recencyWeight = 1.0;
+
+  @Override
+  public void index(List<Message> messages) {
+    // content_tsv is a generated column
+  }
+
+  @Override
+  public void indexChats(List<Chat> chats) {
+    // title_tsv is a generated column
+  }
+
+  @Override
+  public void removeChat(Long chatId) {
+    // Index entries go with the rows
+  }
+
+  @Override
+  public Flux<MessageSearchHit> search(String query, int limit) {
+    if (query == null || query.isBlank() || limit < 1) {
+      return Flux.empty();
+    }
+    return databaseClient.sql(SEARCH_SQL)
+        .bind("query", query)
+        .bind("recencyWeight", recencyWeight)
+        .bind("halfLifeSeconds", (double) Math.max(1, recencyHalfLife.toSeconds()))
+        .bind("limit", limit)
+        .map(row -> MessageSearchHit.builder()
+            .messageId(row.get("message_id", Long.class))
+            .chatId(row.get("chat_id", Long.class))
+            .chatTitle(row.get("title", String.class))
+            .role(row.get("role", String.class) != null
+                ? MessageRole.valueOf(row.get("role", String.class)) : null)
+            .snippet(row.get("snippet", String.class))
+            .score(row.get("score", Double.class))
+            .createdAt(row.get("created_at", LocalDateTime.class))
+            .build())
+        .all();
+  }
+}
@@ -0,0 +1,108 @@
+package com.darylmathison.chat.client.search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Tokenizing and snippet highlighting shared by the embedded index.
+ */
+final class SearchText {
+
+  static final String MARK_START = "<mark>";
+  static final String MARK_END = "</mark>";
+
+  private static final Pattern WORD = Pattern.compile("[\\p{L}\\p{N}]+");
+  // The most common English words, which Postgres' english configuration also skips
+  private static final Set<String> STOP_WORDS = Set.of("a", "an", "and", "are", "as", "at", "be",
+      "by", "for", "from", "in", "is", "it", "of", "on", "or", "that", "the", "to", "was", "with");
+  private static final int SNIPPET_LENGTH = 160;
+  private static final int SNIPPET_LEAD = 40;
+
+  private SearchText() {
+  }
+
+  /**
+   * Lower-cased words of the text, in order, without stop words.
+   */
+  static List<String> terms(String text) {
+    List<String> terms = new ArrayList<>();
+    if (text == null) {
+      return terms;
+    }
+    Matcher matcher = WORD.matcher(text);
+    while (matcher.find()) {
+      String term = matcher.group().toLowerCase(Locale.ROOT);
+      if (!STOP_WORDS.contains(term)) {
+        terms.add(term);
+      }
+    }
+    return terms;
+  }
+
+  /**
+   * An excerpt around the first matched word with every matched word marked. The content is
+   * HTML-escaped, so the marks are the only markup in it.
+   */
+  static String snippet(String content, Set<String> terms) {
+    if (content == null) {
+      return "";
+    }
+    int first = 0;
+    Matcher matcher = WORD.matcher(content);
+    while (matcher.find()) {
+      if (terms.contains(matcher.group().toLowerCase(Locale.ROOT))) {
+        first = matcher.start();
+        break;
+      }
+    }
+
+    int start = Math.max(0, first - SNIPPET_LEAD);
+    // Do not cut a word in half at either end
+    while (start > 0 && Character.isLetterOrDigit(content.charAt(start - 1))) {
+      start--;
+    }
+    int end = Math.min(content.length(), start + SNIPPET_LENGTH);
+    while (end < content.length() && Character.isLetterOrDigit(content.charAt(end))) {
+      end++;
+    }
+
+    StringBuilder snippet = new StringBuilder(end - start + 32);
+    if (start > 0) {
+      snippet.append("…");
+    }
+    int copied = start;
+    matcher = WORD.matcher(content).region(start, end);
+    while (matcher.find()) {
+      if (terms.contains(matcher.group().toLowerCase(Locale.ROOT))) {
+        escape(snippet, content, copied, matcher.start());
+        snippet.append(MARK_START);
+        escape(snippet, content, matcher.start(), matcher.end());
+        snippet.append(MARK_END);
+        copied = matcher.end();
+      }
+    }
+    escape(snippet, content, copied, end);
+    if (end < content.length()) {
+      snippet.append("…");
+    }
+    return snippet.toString().replaceAll("\\s+", " ").trim();
+  }
+
+  private static void escape(StringBuilder out, String text, int start, int end) {
+    for (int i = start; i < end; i++) {
+      char c = text.charAt(i);
+      switch (c) {
+        case '&' -> out.append("&amp;");
+        case '<' -> out.append("&lt;");
+        case '>' -> out.append("&gt;");
+        case '"' -> out.append("&quot;");
+        case '\'' -> out.append("&#39;");
+        default -> out.append(c);
+      }
+    }
+  }
+}
@@ -1,20 +1,32 @@
 package com.darylmathison.chat.client.service;
 
+import com.darylmathison.chat.client.codec.OpenRouterJson;
 import com.darylmathison.chat.client.dto.ChatRequest;
 import com.darylmathison.chat.client.dto.ChatResponse;
+import com.darylmathison.chat.client.dto.OpenRouterChatRequest;
+import com.darylmathison.chat.client.dto.OpenRouterChatResponse;
 import com.darylmathison.chat.client.dto.TokenUsage;
 import com.darylmathison.chat.client.model.Message;
+import com.darylmathison.chat.client.tokenizer.TokenizerRegistry;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.IOException;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 @Service
@@ -24,6 +36,16 @@ public class AIService {
   private final WebClient webClient;
   private final CostCalculationService costCalculationService;
   private final ObjectMapper objectMapper;
+  private final CompletionCache completionCache;
+  private final RequestCoalescer requestCoalescer;
+  private final CompletionResiliencePolicy resiliencePolicy;
+  private final TokenizerRegistry tokenizer;
+  private final PromptCachePolicy promptCachePolicy;
+
+  private static final ParameterizedTypeReference<ServerSentEvent<String>> SSE_EVENT_TYPE =
+      new ParameterizedTypeReference<>() {
+      };
+  private static final String STREAM_DONE = "[DONE]";
 
   @Value("${openrouter.default.model:deepseek/deepseek-r1-0528:free}")
   private String defaultModel;
@@ -35,78 +57,47 @@ public class AIService {
   private Double defaultTemperature;
 
   public AIService(WebClient openRouterWebClient,
-      CostCalculationService costCalculationService) {
+      CostCalculationService costCalculationService,
+      CompletionCache completionCache,
+      RequestCoalescer requestCoalescer,
+      CompletionResiliencePolicy resiliencePolicy,
+      TokenizerRegistry tokenizer,
+      PromptCachePolicy promptCachePolicy) {
     this.webClient = openRouterWebClient;
     this.costCalculationService = costCalculationService;
     this.objectMapper = new ObjectMapper();
+    this.completionCache = completionCache;
+    this.requestCoalescer = requestCoalescer;
+    this.resiliencePolicy = resiliencePolicy;
+    this.tokenizer = tokenizer;
+    this.promptCachePolicy = promptCachePolicy;
   }
 
   public Mono<ChatResponse> sendChatRequest(ChatRequest request) {
     return Mono.fromCallable(() -> {
       try {
-        List<JsonNode> messages = convertToJsonMessages(request.getMessages());
-
-        // Add system message if present
-        if (request.getSystemMessage() != null && !request.getSystemMessage().trim().isEmpty()) {
-          ObjectNode systemMessage = objectMapper.createObjectNode();
-          systemMessage.put("role", "system");
-          systemMessage.put("content", request.getSystemMessage());
-          messages.addFirst(systemMessage);
-        }
+        String model = resolveModel(request);
+        Double temperature = resolveTemperature(request);
+        OpenRouterChatRequest requestBody = buildRequestBody(request, model, temperature, false);
+        List<String> modelChain = resiliencePolicy.fallbackChain(model,
+            request.getFallbackModels());
 
-        String model = request.getModel() != null ? request.getModel() : defaultModel;
-        Integer maxTokens =
-            request.getMaxTokens() != null ? request.getMaxTokens() : defaultMaxTokens;
-        Double temperature =
-            request.getTemperature() != null ? request.getTemperature() : defaultTemperature;
-
-        // Create request body
-        ObjectNode requestBody = objectMapper.createObjectNode();
-        requestBody.put("model", model);
-        ArrayNode messagesNode = requestBody.putArray("messages");
-        messages.forEach(messagesNode::add);
-        requestBody.put("max_tokens", maxTokens);
-        requestBody.put("temperature", temperature);
+        boolean cacheable = completionCache.shouldCache(request, temperature);
+        if (!cacheable && !requestCoalescer.isEnabled()) {
+          return completeWithPolicy(requestBody, modelChain, temperature);
+        }
 
-        return webClient.post()
-            .uri("/chat/completions")
-            .contentType(MediaType.APPLICATION_JSON)
-            .bodyValue(requestBody.toString())
-            .retrieve()
-            .bodyToMono(JsonNode.class)
-            .map(response -> {
-              String responseContent = response.path("choices").path(0).path("message")
-                  .path("content").asText();
-
-              TokenUsage tokenUsage = TokenUsage.builder()
-                  .promptTokens(response.path("usage").path("prompt_tokens").asInt())
-                  .completionTokens(response.path("usage").path("completion_tokens").asInt())
-                  .totalTokens(response.path("usage").path("total_tokens").asInt())
-                  .build();
-
-              Double estimatedCost = costCalculationService.calculateCost(
-                  model,
-                  tokenUsage.getPromptTokens(),
-                  tokenUsage.getCompletionTokens()
-              );
-
-              return ChatResponse.builder()
-                  .content(responseContent)
-                  .model(model)
-                  .temperature(temperature)
-                  .tokenUsage(tokenUsage)
-                  .estimatedCost(estimatedCost)
-                  .build();
-            })
-            .onErrorResume(e -> {
-              if (e.getMessage() != null && e.getMessage().contains("401 UNAUTHORIZED")) {
-                log.error("Authentication error with OpenRouter API. Please check your API key.", e);
-                return Mono.error(new RuntimeException("Authentication failed with OpenRouter. Please ensure you have set a valid OPENROUTER_API_KEY environment variable.", e));
-              } else {
-                log.error("Error calling OpenRouter API", e);
-                return Mono.error(new RuntimeException("Failed to get response from OpenRouter", e));
-              }
-            });
+        String requestKey = requestKey(requestBody, modelChain);
+        Mono<ChatResponse> upstream = requestCoalescer.coalesce(requestKey,
+            () -> completeWithPolicy(requestBody, modelChain, temperature));
+        if (!cacheable) {
+          return upstream;
+        }
+        return completionCache.get(requestKey)
+            .switchIfEmpty(Mono.defer(() -> upstream
+                .flatMap(response -> answeredByFallback(response, modelChain)
+                    ? Mono.just(response)
+                    : completionCache.put(requestKey, response).thenReturn(response))));
       } catch (Exception e) {
         log.error("Error preparing OpenRouter API request", e);
         throw new RuntimeException("Failed to prepare request for OpenRouter", e);
@@ -114,6 +105,193 @@ public class AIService {
     }).flatMap(mono -> mono);
   }
 
+  /**
+   * Cache and coalescing key of a request. The fallback chain decides which models may answer, so
+   * the same messages with another chain get another key.
+   */
+  private static String requestKey(OpenRouterChatRequest requestBody, List<String> modelChain) {
+    return OpenRouterJson.canonicalHash(requestBody.withModels(modelChain));
+  }
+
+  /**
+   * Whether a fallback or hedge model answered instead of the primary one. Such an answer is
+   * returned but not cached, so the primary model is asked again next time.
+   */
+  private static boolean answeredByFallback(ChatResponse response, List<String> modelChain) {
+    return modelChain.indexOf(response.getModel()) > 0;
+  }
+
+
+  /**
+   * Runs a completion through the resilience policy: retries per model, then the fallback chain
+   * (client-side or via OpenRouter's "models" array), optionally hedging the primary model.
+   */
+  private Mono<ChatResponse> completeWithPolicy(OpenRouterChatRequest requestBody,
+      List<String> modelChain, Double temperature) {
+    Mono<ChatResponse> completion;
+    if (resiliencePolicy.isNativeFallback() && modelChain.size() > 1) {
+      completion = attemptCompletion(requestBody.withModels(modelChain), modelChain.getFirst(),
+          temperature);
+    } else if (resiliencePolicy.isHedgeEnabled() && modelChain.size() > 1) {
+      String primaryModel = modelChain.getFirst();
+      Duration hedgeDelay = resiliencePolicy.hedgeDelay(primaryModel);
+      Mono<ChatResponse> hedge = Mono.delay(hedgeDelay)
+          .doOnNext(tick -> log.info("{} slower than {} ms, hedging with {}", primaryModel,
+              hedgeDelay.toMillis(), modelChain.get(1)))
+          .then(completeFrom(requestBody, modelChain, 1, temperature));
+      // Whichever answers first wins; the other attempt is cancelled
+      completion = Mono.firstWithValue(attemptCompletion(requestBody, primaryModel, temperature),
+              hedge)
+          .onErrorMap(NoSuchElementException.class, this::lastHedgeFailure);
+    } else {
+      completion = completeFrom(requestBody, modelChain, 0, temperature);
+    }
+    return completion.onErrorResume(e -> Mono.error(mapCompletionError(e)));
+  }
+
+  private Mono<ChatResponse> completeFrom(OpenRouterChatRequest requestBody,
+      List<String> modelChain, int index, Double temperature) {
+    String model = modelChain.get(index);
+    Mono<ChatResponse> attempt = attemptCompletion(requestBody, model, temperature);
+    if (index + 1 >= modelChain.size()) {
+      return attempt;
+    }
+    return attempt.onErrorResume(resiliencePolicy::shouldFallback, e -> {
+      log.warn("Model {} failed ({}), falling back to {}", model, e.getMessage(),
+          modelChain.get(index + 1));
+      return completeFrom(requestBody, modelChain, index + 1, temperature);
+    });
+  }
+
+  private Mono<ChatResponse> attemptCompletion(OpenRouterChatRequest requestBody, String model,
+      Double temperature) {
+    return Mono.defer(() -> {
+          long started = System.nanoTime();
+          return executeCompletion(requestBody.withModel(model), model, temperature)
+              .doOnNext(response -> resiliencePolicy.recordLatency(model,
+                  Duration.ofNanos(System.nanoTime() - started)));
+        })
+        .retryWhen(resiliencePolicy.retrySpec(model, () -> true));
+  }
+
+  private Throwable lastHedgeFailure(NoSuchElementException e) {
+    // firstWithValue reports "all sources failed"; surface the underlying error instead
+    List<Throwable> failures = e.getCause() != null ? Exceptions.unwrapMultiple(e.getCause())
+        : List.of(e.getSuppressed());
+    return failures.isEmpty() ? e : failures.getLast();
+  }
+
+  private Mono<ChatResponse> executeCompletion(OpenRouterChatRequest requestBody, String model,
+      Double temperature) {
+    return webClient.post()
+        .uri("/chat/completions")
+        .contentType(MediaType.APPLICATION_JSON)
+        .attribute(OpenRouterRateLimiter.MODEL_ATTRIBUTE, model)
+        .bodyValue(requestBody)
+        .retrieve()
+        .bodyToMono(OpenRouterChatResponse.class)
+        .flatMap(response -> {
+          if (response.error() != null) {
+            return Mono.error(new RuntimeException("OpenRouter returned an error: "
+                + response.error()));
+          }
+
+          TokenUsage tokenUsage = toTokenUsage(response.usage());
+          // With OpenRouter-side fallback the answering model can differ from the requested one
+          String answeredBy = response.model() != null ? response.model() : model;
+
+          Double estimatedCost = calculateCost(answeredBy, tokenUsage);
+
+          return Mono.just(ChatResponse.builder()
+              .content(response.content() != null ? response.content() : "")
+              .model(answeredBy)
+              .temperature(temperature)
+              .tokenUsage(tokenUsage)
+              .estimatedCost(estimatedCost)
+              .build());
+        });
+  }
+
+  /**
+   * Streams a chat completion from OpenRouter as server-sent events.
+   * <p>
+   * Each emitted ChatResponse carries the next content delta. The final element carries the token
+   * usage and estimated cost once OpenRouter reports them, and may have empty content.
+   *
+   * @param request The chat request to send
+   * @return A Flux of content deltas followed by a usage element
+   */
+  public Flux<ChatResponse> streamChatRequest(ChatRequest request) {
+    return Flux.defer(() -> {
+      String model = resolveModel(request);
+      Double temperature = resolveTemperature(request);
+      OpenRouterChatRequest requestBody = buildRequestBody(request, model, temperature, true);
+      List<String> modelChain = resiliencePolicy.fallbackChain(model,
+          request.getFallbackModels());
+
+      if (!requestCoalescer.isEnabled()) {
+        return streamWithPolicy(requestBody, modelChain, temperature);
+      }
+      return requestCoalescer.coalesceStream(requestKey(requestBody, modelChain),
+          () -> streamWithPolicy(requestBody, modelChain, temperature));
+    });
+  }
+
+  /**
+   * Streaming counterpart of {@link #completeWithPolicy}. Retries and fallbacks only happen while
+   * nothing has been emitted, so the caller never sees a partial answer followed by a restart.
+   * Streams are not hedged.
+   */
+  private Flux<ChatResponse> streamWithPolicy(OpenRouterChatRequest requestBody,
+      List<String> modelChain, Double temperature) {
+    Flux<ChatResponse> stream;
+    if (resiliencePolicy.isNativeFallback() && modelChain.size() > 1) {
+      AtomicBoolean emitted = new AtomicBoolean();
+      stream = attemptStream(requestBody.withModels(modelChain), modelChain.getFirst(),
+          temperature, emitted);
+    } else {
+      stream = streamFrom(requestBody, modelChain, 0, temperature, new AtomicBoolean());
+    }
+    return stream.onErrorMap(e -> !(e instanceof OpenRouterStreamException),
+        this::mapCompletionError);
+  }
+
+  private Flux<ChatResponse> streamFrom(OpenRouterChatRequest requestBody,
+      List<String> modelChain, int index, Double temperature, AtomicBoolean emitted) {
+    String model = modelChain.get(index);
+    Flux<ChatResponse> attempt = attemptStream(requestBody, model, temperature, emitted);
+    if (index + 1 >= modelChain.size()) {
+      return attempt;
+    }
+    return attempt.onErrorResume(e -> !emitted.get() && resiliencePolicy.shouldFallback(e), e -> {
+      log.warn("Model {} failed before streaming ({}), falling back to {}", model,
+          e.getMessage(), modelChain.get(index + 1));
+      return streamFrom(requestBody, modelChain, index + 1, temperature, emitted);
+    });
+  }
+
+  private Flux<ChatResponse> attemptStream(OpenRouterChatRequest requestBody, String model,
+      Double temperature, AtomicBoolean emitted) {
+    return Flux.defer(() -> executeStream(requestBody.withModel(model), model, temperature))
+        .doOnNext(chunk -> emitted.set(true))
+        .retryWhen(resiliencePolicy.retrySpec(model, () -> !emitted.get()));
+  }
+
+  private Flux<ChatResponse> executeStream(OpenRouterChatRequest requestBody, String model,
+      Double temperature) {
+    return webClient.post()
+        .uri("/chat/completions")
+        .contentType(MediaType.APPLICATION_JSON)
+        .attribute(OpenRouterRateLimiter.MODEL_ATTRIBUTE, model)
+        .accept(MediaType.TEXT_EVENT_STREAM)
+        .bodyValue(requestBody)
+        .retrieve()
+        .bodyToFlux(SSE_EVENT_TYPE)
+        // OpenRouter sends ": OPENROUTER PROCESSING" comments as keep-alives
+        .filter(event -> event.data() != null && !STREAM_DONE.equals(event.data()))
+        .concatMap(event -> parseStreamChunk(event.data(), model, temperature));
+  }
+
   public Mono<String> generateImage(String prompt, String size, Integer n) {
     return Mono.fromCallable(() -> {
       try {
@@ -145,30 +323,112 @@ public class AIService {
     }).flatMap(mono -> mono);
   }
 
+  private Mono<ChatResponse> parseStreamChunk(String data, String model, Double temperature) {
+    OpenRouterChatResponse chunk;
+    try (JsonParser parser = OpenRouterJson.JSON_FACTORY.createParser(data)) {
+      chunk = OpenRouterJson.readResponse(parser);
+    } catch (IOException e) {
+      log.warn("Skipping malformed OpenRouter stream chunk: {}", e.getMessage());
+      return Mono.empty();
+    }
+
+    if (chunk.error() != null) {
+      log.error("OpenRouter reported an error mid-stream: {}", chunk.error());
+      return Mono.error(new OpenRouterStreamException("OpenRouter stream failed: " + chunk.error()));
+    }
+
+    String delta = chunk.content() != null ? chunk.content() : "";
+    if (delta.isEmpty() && chunk.usage() == null) {
+      return Mono.empty();
+    }
+
+    ChatResponse.ChatResponseBuilder builder = ChatResponse.builder()
+        .content(delta)
+        .model(chunk.model() != null ? chunk.model() : model)
+        .temperature(temperature);
+
+    if (chunk.usage() != null) {
+      TokenUsage tokenUsage = toTokenUsage(chunk.usage());
+      builder.tokenUsage(tokenUsage)
+          .estimatedCost(calculateCost(chunk.model() != null ? chunk.model() : model,
+              tokenUsage));
+    }
+
+    return Mono.just(builder.build());
+  }
+
+  private TokenUsage toTokenUsage(OpenRouterChatResponse.Usage usage) {
+    if (usage == null) {
+      return TokenUsage.builder().promptTokens(0).completionTokens(0).totalTokens(0)
+          .cachedTokens(0).cacheWriteTokens(0).build();
+    }
+    return TokenUsage.builder()
+        .promptTokens(usage.promptTokens())
+        .completionTokens(usage.completionTokens())
+        .totalTokens(usage.totalTokens())
+        .cachedTokens(usage.cachedTokens())
+        .cacheWriteTokens(usage.cacheWriteTokens())
+        .build();
+  }
+
+  private Double calculateCost(String model, TokenUsage usage) {
+    return costCalculationService.calculateCost(model, usage.getPromptTokens(),
+        usage.getCompletionTokens(), usage.getCachedTokens(), usage.getCacheWriteTokens());
+  }
+
+  private RuntimeException mapCompletionError(Throwable e) {
+    if (e.getMessage() != null && e.getMessage().contains("401 UNAUTHORIZED")) {
+      log.error("Authentication error with OpenRouter API. Please check your API key.", e);
+      return new RuntimeException("Authentication failed with OpenRouter. Please ensure you have set a valid OPENROUTER_API_KEY environment variable.", e);
+    }
+    log.error("Error calling OpenRouter API", e);
+    return new RuntimeException("Failed to get response from OpenRouter", e);
+  }
+
+  private String resolveModel(ChatRequest request) {
+    return request.getModel() != null ? request.getModel() : defaultModel;
+  }
+
+  private Double resolveTemperature(ChatRequest request) {
+    return request.getTemperature() != null ? request.getTemperature() : defaultTemperature;
+  }
+
+  private OpenRouterChatRequest buildRequestBody(ChatRequest request, String model,
+      Double temperature, boolean stream) {
+    List<OpenRouterChatRequest.ChatMessage> messages = convertToChatMessages(request.getMessages());
+
+    // Add system message if present
+    if (request.getSystemMessage() != null && !request.getSystemMessage().trim().isEmpty()) {
+      messages.addFirst(new OpenRouterChatRequest.ChatMessage("system", request.getSystemMessage()));
+    }
+    messages = promptCachePolicy.withBreakpoints(model, messages);
+
+    Integer maxTokens = request.getMaxTokens() != null ? request.getMaxTokens() : defaultMaxTokens;
+
+    return new OpenRouterChatRequest(model, messages, maxTokens, temperature, stream);
+  }
+
   public Double estimateCost(String model, List<Message> messages) {
     int promptTokens = messages.stream()
-        .mapToInt(msg -> estimateTokenCount(msg.getContent()))
+        .mapToInt(msg -> estimateTokenCount(model, msg.getContent()))
         .sum();
 
     return costCalculationService.calculateCost(model, promptTokens, defaultMaxTokens);
   }
 
-  private List<JsonNode> convertToJsonMessages(List<Message> messages) {
-    List<JsonNode> jsonMessages = new ArrayList<>();
+  private List<OpenRouterChatRequest.ChatMessage> convertToChatMessages(List<Message> messages) {
+    List<OpenRouterChatRequest.ChatMessage> chatMessages = new ArrayList<>(messages.size() + 1);
 
     for (Message msg : messages) {
-      ObjectNode jsonMessage = objectMapper.createObjectNode();
-      jsonMessage.put("role", msg.getRole().toString().toLowerCase());
-      jsonMessage.put("content", msg.getContent());
-      jsonMessages.add(jsonMessage);
+      chatMessages.add(new OpenRouterChatRequest.ChatMessage(
+          msg.getRole().toString().toLowerCase(), msg.getContent()));
     }
 
-    return jsonMessages;
+    return chatMessages;
   }
 
-  private int estimateTokenCount(String text) {
-    // Simple estimation: ~4 characters per token
-    return (int) Math.ceil(text.length() / 4.0);
+  private int estimateTokenCount(String model, String text) {
+    return tokenizer.countTokens(model, text);
   }
 
   public Mono<List<String>> getAvailableModels() {
@@ -235,4 +495,14 @@ public class AIService {
           return Mono.just(0.0);
         });
   }
+
+  /**
+   * Raised when OpenRouter reports an error inside an otherwise successful event stream.
+   */
+  static class OpenRouterStreamException extends RuntimeException {
+
+    OpenRouterStreamException(String message) {
+      super(message);
+    }
+  }
 }
@@ -1,18 +1,33 @@
 package com.darylmathison.chat.client.service;
 
+import com.darylmathison.chat.client.dto.BatchItemResult;
+import com.darylmathison.chat.client.dto.ChatCursor;
 import com.darylmathison.chat.client.dto.ChatRequest;
 import com.darylmathison.chat.client.dto.ChatResponse;
 import com.darylmathison.chat.client.dto.ChatSummaryDto;
+import com.darylmathison.chat.client.dto.MessageDto;
+import com.darylmathison.chat.client.dto.MessageSearchHit;
 import com.darylmathison.chat.client.dto.SimpleMessageRequest;
 import com.darylmathison.chat.client.model.Chat;
 import com.darylmathison.chat.client.model.Message;
 import com.darylmathison.chat.client.model.Message.MessageRole;
 import com.darylmathison.chat.client.repository.ChatRepository;
+import com.darylmathison.chat.client.repository.ChatTurnWriter;
+import com.darylmathison.chat.client.repository.MessagePageReader;
 import com.darylmathison.chat.client.repository.MessageRepository;
+import com.darylmathison.chat.client.repository.MessageWriteBehindBuffer;
+import com.darylmathison.chat.client.search.MessageSearchIndex;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
@@ -27,6 +42,43 @@ public class ChatService {
   private final AIService openAIService;
   private final MarkdownService markdownService;
   private final MessageParserService messageParserService;
+  private final ChatTurnWriter chatTurnWriter;
+  private final MessagePageReader messagePageReader;
+
+  // CreditsCache reads chat totals through this service
+  @Lazy
+  private final CreditsCache creditsCache;
+  private final ContextAssembler contextAssembler;
+  private final MessageWriteBehindBuffer writeBehind;
+  private final MessageSearchIndex searchIndex;
+  private final ConversationSummarizer summarizer;
+
+  @Value("${chat.batch.concurrency:4}")
+  private int batchConcurrency = 4;
+
+  @Value("${chat.batch.item-timeout:120s}")
+  private Duration batchItemTimeout = Duration.ofSeconds(120);
+
+  @Value("${chat.batch.max-items:1000}")
+  private int batchMaxItems = 1000;
+
+  @Value("${chat.list.default-limit:50}")
+  private int listDefaultLimit = 50;
+
+  @Value("${chat.list.max-limit:200}")
+  private int listMaxLimit = 200;
+
+  @Value("${chat.messages.default-limit:50}")
+  private int messagesDefaultLimit = 50;
+
+  @Value("${chat.messages.max-limit:500}")
+  private int messagesMaxLimit = 500;
+
+  @Value("${chat.search.default-limit:20}")
+  private int searchDefaultLimit = 20;
+
+  @Value("${chat.search.max-limit:100}")
+  private int searchMaxLimit = 100;
 
   public Mono<ChatResponse> sendMessage(Long chatId, ChatRequest request) {
     if (request.getMessages() == null || request.getMessages().isEmpty()) {
@@ -42,133 +94,391 @@ public class ChatService {
     }
   }
 
+  /**
+   * Streams the assistant reply for a message as it is generated.
+   * <p>
+   * Content deltas are emitted as they arrive from OpenRouter. Once the stream completes, the
+   * assembled assistant message is saved, the chat stats are updated and a final ChatResponse
+   * carrying the full content, usage and message id is emitted.
+   *
+   * @param chatId  The chat to add the message to, or null to start a new chat
+   * @param request The chat request
+   * @return A Flux of content deltas followed by the persisted response
+   */
+  public Flux<ChatResponse> streamMessage(Long chatId, ChatRequest request) {
+    if (request.getMessages() == null || request.getMessages().isEmpty()) {
+      return Flux.error(new IllegalArgumentException("Messages list cannot be null or empty"));
+    }
+
+    Mono<Long> resolvedChatId = chatId == null
+        ? chatRepository.save(buildNewChat(request))
+            .doOnNext(chat -> searchIndex.indexChats(List.of(chat)))
+            .map(this::startContext)
+        : chatRepository.findById(chatId)
+            .switchIfEmpty(Mono.error(new RuntimeException("Chat not found with id: " + chatId)))
+            .map(Chat::getId);
+
+    return resolvedChatId.flatMapMany(id -> streamMessageAndPersistResponse(id, request));
+  }
+
   private Mono<ChatResponse> createNewChatWithMessage(ChatRequest request) {
-    // Create new chat
-    Chat newChat = Chat.builder()
+    // The chat row is written together with the first turn, once the reply is in (or with the
+    // user message alone if there is no reply)
+    return processMessageAndGetResponse(null, buildNewChat(request), request);
+  }
+
+  private Chat buildNewChat(ChatRequest request) {
+    return Chat.builder()
         .title(generateChatTitle(request.getMessages().getFirst().getContent()))
         .createdAt(LocalDateTime.now())
         .updatedAt(LocalDateTime.now())
         .totalTokens(0L)
         .estimatedCost(0.0)
+        .messageCount(0)
+        .lastMessagePreview("")
         .build();
+  }
 
-    return chatRepository.save(newChat)
-        .flatMap(savedChat -> processMessageAndGetResponse(savedChat.getId(), request));
+  private Long startContext(Chat chat) {
+    // Nothing to load for a brand-new chat
+    contextAssembler.startChat(chat.getId());
+    return chat.getId();
   }
 
   private Mono<ChatResponse> addMessageToExistingChat(Long chatId, ChatRequest request) {
     return chatRepository.findById(chatId)
         .switchIfEmpty(Mono.error(new RuntimeException("Chat not found with id: " + chatId)))
-        .flatMap(chat -> processMessageAndGetResponse(chatId, request));
+        .flatMap(chat -> processMessageAndGetResponse(chatId, null, request));
+  }
+
+  private Mono<ChatResponse> processMessageAndGetResponse(Long chatId, Chat newChat,
+      ChatRequest request) {
+    return buildTurn(chatId, request)
+        .flatMap(turn -> openAIService.sendChatRequest(turn.aiRequest())
+            .onErrorResume(error -> persistUnanswered(chatId, newChat, turn.userMessage())
+                .then(Mono.error(error)))
+            .doOnCancel(() -> persistUnanswered(chatId, newChat, turn.userMessage()).subscribe())
+            .flatMap(aiResponse -> persistTurn(chatId, newChat, request, turn.userMessage(),
+                aiResponse)))
+        .doOnSuccess(response -> log.info("Processed message for chat {}",
+            response != null ? response.getChatId() : chatId))
+        .doOnError(error -> log.error("Error processing message for chat {}: {}", chatId,
+            error.getMessage()));
   }
 
-  private Mono<ChatResponse> processMessageAndGetResponse(Long chatId, ChatRequest request) {
+  private Flux<ChatResponse> streamMessageAndPersistResponse(Long chatId, ChatRequest request) {
+    return buildTurn(chatId, request)
+        .flatMapMany(turn -> {
+          ChatRequest aiRequest = turn.aiRequest();
+          // Per-subscription accumulators for the assembled assistant message
+          StringBuilder content = new StringBuilder();
+          AtomicReference<ChatResponse> lastChunk = new AtomicReference<>();
+          AtomicReference<ChatResponse> usageChunk = new AtomicReference<>();
+
+          Flux<ChatResponse> deltas = openAIService.streamChatRequest(aiRequest)
+              .doOnNext(chunk -> {
+                lastChunk.set(chunk);
+                if (chunk.getContent() != null) {
+                  content.append(chunk.getContent());
+                }
+                if (chunk.getTokenUsage() != null) {
+                  usageChunk.set(chunk);
+                }
+              })
+              .filter(chunk -> chunk.getContent() != null && !chunk.getContent().isEmpty())
+              .map(chunk -> chunk.toBuilder().chatId(chatId).build())
+              .onErrorResume(error -> persistUnanswered(chatId, null, turn.userMessage())
+                  .then(Mono.error(error)))
+              .doOnCancel(() -> persistUnanswered(chatId, null, turn.userMessage()).subscribe());
+
+          Mono<ChatResponse> completion = Mono.defer(() -> {
+            ChatResponse usage = usageChunk.get();
+            ChatResponse last = lastChunk.get();
+            ChatResponse aiResponse = ChatResponse.builder()
+                .content(content.toString())
+                .model(last != null ? last.getModel() : aiRequest.getModel())
+                .tokenUsage(usage != null ? usage.getTokenUsage() : null)
+                .estimatedCost(usage != null ? usage.getEstimatedCost() : null)
+                .build();
+            return persistTurn(chatId, null, request, turn.userMessage(), aiResponse);
+          });
+
+          return deltas.concatWith(completion);
+        })
+        .doOnComplete(() -> log.info("Streamed message for chat {}", chatId))
+        .doOnError(error -> log.error("Error streaming message for chat {}: {}", chatId,
+            error.getMessage()));
+  }
+
+  /**
+   * Runs tool processing for the first message and returns the (not yet saved) user message with
+   * the request that should be sent to the model, including the chat's history when context
+   * assembly is on.
+   */
+  private Mono<Turn> buildTurn(Long chatId, ChatRequest request) {
     String userContent = request.getMessages().getFirst().getContent();
 
     // Parse and process the message to detect and execute external tool calls
     return messageParserService.parseAndProcessMessage(userContent)
         .flatMap(processedContent -> {
-            // Save user message with original content
-            Message userMessage = Message.builder()
-                .chatId(chatId)
-                .content(userContent)
-                .role(MessageRole.USER)
-                .createdAt(LocalDateTime.now())
-                .build();
+          // The user message keeps the original content
+          Message userMessage = Message.builder()
+              .chatId(chatId)
+              .content(userContent)
+              .role(MessageRole.USER)
+              .createdAt(LocalDateTime.now())
+              .build();
+
+          return withHistory(chatId, buildTurnRequest(request, userContent, processedContent))
+              .map(aiRequest -> new Turn(userMessage, aiRequest));
+        });
+  }
+
+  private ChatRequest buildTurnRequest(ChatRequest request, String userContent,
+      String processedContent) {
+    // If the content was processed by a tool, create a modified request
+    if (processedContent.equals(userContent)) {
+      return request;
+    }
 
-            return messageRepository.save(userMessage)
-                .flatMap(savedUserMessage -> {
-                    // If the content was processed by a tool, create a modified request
-                    ChatRequest modifiedRequest = request;
-                    if (!processedContent.equals(userContent)) {
-                        // Create a copy of the first message with the processed content
-                        Message processedMessage = Message.builder()
-                            .content(processedContent)
-                            .role(request.getMessages().getFirst().getRole())
-                            .build();
-
-                        // Create a new request with the processed message
-                        modifiedRequest = ChatRequest.builder()
-                            .messages(List.of(processedMessage))
-                            .model(request.getModel())
-                            .maxTokens(request.getMaxTokens())
-                            .temperature(request.getTemperature())
-                            .systemMessage(request.getSystemMessage())
-                            .attachmentIds(request.getAttachmentIds())
-                            .externalToolIds(request.getExternalToolIds())
-                            .build();
-
-                        // Log that the message was processed by a tool
-                        log.info("Message processed by external tool: original='{}', processed='{}'", 
-                            userContent, processedContent);
-                    }
-
-                    // Get AI response
-                    return openAIService.sendChatRequest(modifiedRequest)
-                        .flatMap(aiResponse -> {
-                            // Save AI response message
-                            Message aiMessage = Message.builder()
-                                .chatId(chatId)
-                                .content(aiResponse.getContent())
-                                .role(MessageRole.ASSISTANT)
-                                .createdAt(LocalDateTime.now())
-                                .tokens(aiResponse.getTokenUsage() != null ? aiResponse.getTokenUsage()
-                                    .getTotalTokens() : 0)
-                                .build();
-
-                            return messageRepository.save(aiMessage)
-                                .flatMap(savedAiMessage -> {
-                                    // Update chat with token usage and cost
-                                    return updateChatStats(chatId, aiResponse)
-                                        .then(Mono.just(ChatResponse.builder()
-                                            .content(aiResponse.getContent())
-                                            .model(aiResponse.getModel())
-                                            .temperature(request.getTemperature())
-                                            .tokenUsage(aiResponse.getTokenUsage())
-                                            .estimatedCost(aiResponse.getEstimatedCost())
-                                            .chatId(chatId)
-                                            .messageId(savedAiMessage.getId())
-                                            .build()));
-                                });
-                        });
-                });
+    // Create a copy of the first message with the processed content
+    Message processedMessage = Message.builder()
+        .content(processedContent)
+        .role(request.getMessages().getFirst().getRole())
+        .build();
+
+    // Log that the message was processed by a tool
+    log.info("Message processed by external tool: original='{}', processed='{}'",
+        userContent, processedContent);
+
+    // Create a new request with the processed message
+    return request.toBuilder()
+        .messages(List.of(processedMessage))
+        .build();
+  }
+
+  private Mono<ChatRequest> withHistory(Long chatId, ChatRequest turnRequest) {
+    if (chatId == null || !contextAssembler.isEnabled()) {
+      return Mono.just(turnRequest);
+    }
+    return contextAssembler.assemble(chatId, turnRequest.getMessages(), turnRequest.getModel(),
+            turnRequest.getMaxTokens(), turnRequest.getSystemMessage())
+        .map(messages -> turnRequest.toBuilder().messages(messages).build());
+  }
+
+  /**
+   * Saves the user and assistant messages and adds the reply's usage to the chat in a single
+   * transaction. For a new chat the chat row is inserted in the same transaction. A turn that
+   * gets no reply saves its user message alone through {@link #persistUnanswered}.
+   */
+  private Mono<ChatResponse> persistTurn(Long chatId, Chat newChat, ChatRequest request,
+      Message userMessage, ChatResponse aiResponse) {
+    long tokens = aiResponse.getTokenUsage() != null
+        ? aiResponse.getTokenUsage().getTotalTokens() : 0L;
+    double cost = aiResponse.getEstimatedCost() != null ? aiResponse.getEstimatedCost() : 0.0;
+
+    Message aiMessage = Message.builder()
+        .chatId(chatId)
+        .content(aiResponse.getContent())
+        .role(MessageRole.ASSISTANT)
+        .createdAt(LocalDateTime.now())
+        .tokens((int) tokens)
+        .build();
+    List<Message> messages = List.of(userMessage, aiMessage);
+
+    Mono<List<Message>> write;
+    if (newChat != null) {
+      newChat.setTotalTokens(tokens);
+      newChat.setEstimatedCost(cost);
+      newChat.setModelUsed(aiResponse.getModel());
+      write = chatTurnWriter.writeNewChatTurn(newChat, messages)
+          .doOnNext(saved -> startContext(newChat));
+    } else {
+      write = chatTurnWriter.writeTurn(chatId, messages, tokens, cost, aiResponse.getModel());
+    }
+
+    return write.map(saved -> {
+      Message savedAiMessage = saved.getLast();
+      saved.forEach(message -> contextAssembler.append(message.getChatId(), message));
+      // Runs in the background; this turn is answered without waiting for it
+      summarizer.maybeSummarize(savedAiMessage.getChatId());
+      creditsCache.recordSpend(aiResponse.getEstimatedCost());
+      return ChatResponse.builder()
+          .content(aiResponse.getContent())
+          .model(aiResponse.getModel())
+          .temperature(request.getTemperature())
+          .tokenUsage(aiResponse.getTokenUsage())
+          .estimatedCost(aiResponse.getEstimatedCost())
+          .chatId(savedAiMessage.getChatId())
+          .messageId(savedAiMessage.getId())
+          .done(true)
+          .cached(aiResponse.getCached())
+          .build();
+    });
+  }
+
+  /**
+   * Saves the user message of a turn that got no reply, because the completion failed or the
+   * client went away, so the message is not lost. A new chat is inserted with it. Failures are
+   * logged rather than raised, so the caller still sees the original error.
+   */
+  private Mono<Void> persistUnanswered(Long chatId, Chat newChat, Message userMessage) {
+    Mono<List<Message>> write;
+    if (newChat != null) {
+      write = chatTurnWriter.writeNewChatTurn(newChat, List.of(userMessage))
+          .doOnNext(saved -> startContext(newChat));
+    } else {
+      write = chatTurnWriter.writeTurn(chatId, List.of(userMessage), 0L, 0.0, null);
+    }
+    return write
+        .doOnNext(saved ->
+            saved.forEach(message -> contextAssembler.append(message.getChatId(), message)))
+        .onErrorResume(error -> {
+          log.error("Could not save the unanswered message for chat {}: {}", chatId,
+              error.getMessage());
+          return Mono.empty();
         })
-        .doOnSuccess(response -> log.info("Processed message for chat {}", chatId))
-        .doOnError(error -> log.error("Error processing message for chat {}: {}", chatId,
-            error.getMessage()));
+        .then();
   }
 
-  private Mono<Chat> updateChatStats(Long chatId, ChatResponse aiResponse) {
-    return chatRepository.findById(chatId)
-        .flatMap(chat -> {
-          if (aiResponse.getTokenUsage() != null) {
-            chat.setTotalTokens((chat.getTotalTokens() != null ? chat.getTotalTokens() : 0L) +
-                aiResponse.getTokenUsage().getTotalTokens());
+  /**
+   * One page of the chat list, most recently updated first, streamed as rows are read.
+   * <p>
+   * Pages are keyed on {@code (updated_at, id)} rather than offsets, so each page is a single
+   * index range scan however deep it is. Each summary carries the cursor to pass as {@code after}
+   * for the page that follows it. A chat updated while a client is paging moves to the top of the
+   * list and is not seen again on later pages.
+   *
+   * @param search Optional case-insensitive title filter
+   * @param after  Cursor of the last chat of the previous page, or null for the first page
+   * @param limit  Page size, or null for {@code chat.list.default-limit}; capped at
+   *               {@code chat.list.max-limit}
+   */
+  public Flux<ChatSummaryDto> searchChats(String search, String after, Integer limit) {
+    int pageSize;
+    ChatCursor cursor;
+    try {
+      pageSize = pageSize(limit);
+      cursor = after == null || after.isBlank() ? null : ChatCursor.decode(after);
+    } catch (IllegalArgumentException e) {
+      return Flux.error(e);
+    }
+
+    Flux<Chat> chatFlux;
+    if (search == null || search.trim().isEmpty()) {
+      chatFlux = cursor == null
+          ? chatRepository.findFirstPage(pageSize)
+          : chatRepository.findPageAfter(cursor.updatedAt(), cursor.id(), pageSize);
+    } else {
+      String pattern = "%" + search.trim().toLowerCase() + "%";
+      chatFlux = cursor == null
+          ? chatRepository.findFirstPageByTitle(pattern, pageSize)
+          : chatRepository.findPageByTitleAfter(pattern, cursor.updatedAt(), cursor.id(),
+              pageSize);
+    }
+
+    return chatFlux
+        .map(this::convertToChatSummary)
+        .doOnComplete(() -> log.debug("Listed chats for search: {}", search));
+  }
+
+  private int pageSize(Integer limit) {
+    return pageSize(limit, listDefaultLimit, listMaxLimit);
+  }
+
+  private static int pageSize(Integer limit, int defaultLimit, int maxLimit) {
+    if (limit == null) {
+      return defaultLimit;
+    }
+    if (limit < 1) {
+      throw new IllegalArgumentException("limit must be at least 1");
+    }
+    return Math.min(limit, maxLimit);
+  }
+
+  /**
+   * A range of a chat's messages, oldest first, streamed as rows are read.
+   * <p>
+   * Without cursors this is the newest {@code limit} messages. {@code before} pages back through
+   * older messages and {@code after} forward through newer ones; both are message ids. Messages
+   * still waiting in the write-behind buffer have no id yet and are added to any page that reaches
+   * the newest end of the chat.
+   *
+   * @param truncateAt If set, content longer than this many characters is cut (and flagged);
+   *                   fetch the full message with {@link #getMessage}
+   */
+  public Flux<MessageDto> getMessages(Long chatId, Long before, Long after, Integer limit,
+      Integer truncateAt) {
+    int pageSize;
+    try {
+      pageSize = pageSize(limit, messagesDefaultLimit, messagesMaxLimit);
+      if (truncateAt != null && truncateAt < 1) {
+        throw new IllegalArgumentException("truncate must be at least 1");
+      }
+    } catch (IllegalArgumentException e) {
+      return Flux.error(e);
+    }
+
+    return chatRepository.existsById(chatId)
+        .flatMapMany(exists -> {
+          if (!exists) {
+            return Flux.error(new RuntimeException("Chat not found with id: " + chatId));
           }
-          if (aiResponse.getEstimatedCost() != null) {
-            chat.setEstimatedCost(
-                (chat.getEstimatedCost() != null ? chat.getEstimatedCost() : 0.0) +
-                    aiResponse.getEstimatedCost());
+          Flux<MessageDto> page = messagePageReader.findPage(chatId, before, after, pageSize,
+              truncateAt);
+          if (before != null) {
+            return page;
           }
-          chat.setModelUsed(aiResponse.getModel());
-          chat.setUpdatedAt(LocalDateTime.now());
-          return chatRepository.save(chat);
+          return withPendingMessages(chatId, page, after == null, pageSize, truncateAt);
         });
   }
 
-  public Mono<List<ChatSummaryDto>> searchChats(String search) {
-    Flux<Chat> chatFlux;
+  private Flux<MessageDto> withPendingMessages(Long chatId, Flux<MessageDto> page,
+      boolean newest, int pageSize, Integer truncateAt) {
+    return Flux.defer(() -> {
+      // Captured before the query so a message flushed in between is found by one or the other
+      List<Message> pending = writeBehind.pendingMessages(chatId);
+      if (pending.isEmpty()) {
+        return page;
+      }
+      Set<Long> ids = new HashSet<>();
+      return page
+          .doOnNext(message -> ids.add(message.getId()))
+          .concatWith(Flux.defer(() -> newest || ids.size() < pageSize
+              ? Flux.fromIterable(pending)
+                  .filter(message -> message.getId() == null || !ids.contains(message.getId()))
+                  .map(message -> MessageDto.from(message, truncateAt))
+              : Flux.empty()));
+    });
+  }
 
-    if (search == null || search.trim().isEmpty()) {
-      chatFlux = chatRepository.findAllOrderByUpdatedAtDesc(); // Fixed method name
-    } else {
-      chatFlux = chatRepository.findByTitleContainingIgnoreCaseOrderByUpdatedAtDesc(search.trim());
+  /**
+   * Full-text search over chat titles and message content, best matches first.
+   *
+   * @param limit Maximum hits, or null for {@code chat.search.default-limit}
+   */
+  public Flux<MessageSearchHit> searchMessages(String query, Integer limit) {
+    if (query == null || query.isBlank()) {
+      return Flux.error(new IllegalArgumentException("Search query cannot be empty"));
+    }
+    int hits;
+    try {
+      hits = pageSize(limit, searchDefaultLimit, searchMaxLimit);
+    } catch (IllegalArgumentException e) {
+      return Flux.error(e);
     }
+    return searchIndex.search(query.trim(), hits);
+  }
 
-    return chatFlux
-        .flatMap(this::convertToChatSummary)
-        .collectList()
-        .doOnSuccess(chats -> log.info("Found {} chats for search: {}", chats.size(), search));
+  /**
+   * One message with its full content.
+   */
+  public Mono<MessageDto> getMessage(Long chatId, Long messageId) {
+    return messageRepository.findById(messageId)
+        .filter(message -> chatId.equals(message.getChatId()))
+        .switchIfEmpty(Mono.error(new RuntimeException(
+            "Message " + messageId + " not found in chat " + chatId)))
+        .map(message -> MessageDto.from(message, null));
   }
 
 
@@ -184,11 +494,17 @@ public class ChatService {
     return chatRepository.findById(chatId)
         .switchIfEmpty(Mono.error(new RuntimeException("Chat not found with id: " + chatId)))
         .flatMap(chat -> {
+          // Buffered messages would otherwise be written after their chat is gone
+          writeBehind.discard(chatId);
           // Delete all messages first (cascade should handle this, but being explicit)
           return messageRepository.deleteByChatId(chatId)
               .then(chatRepository.deleteById(chatId));
         })
-        .doOnSuccess(v -> log.info("Deleted chat {}", chatId))
+        .doOnSuccess(v -> {
+          contextAssembler.evict(chatId);
+          searchIndex.removeChat(chatId);
+          log.info("Deleted chat {}", chatId);
+        })
         .doOnError(error -> log.error("Error deleting chat {}: {}", chatId, error.getMessage()));
   }
 
@@ -248,6 +564,8 @@ public class ChatService {
                     .systemMessage(request.getSystemMessage())
                     .attachmentIds(request.getAttachmentIds())
                     .externalToolIds(request.getExternalToolIds())
+                    .cache(request.getCache())
+                    .fallbackModels(request.getFallbackModels())
                     .build();
 
                 // Delegate to existing method
@@ -262,6 +580,8 @@ public class ChatService {
                     .systemMessage(request.getSystemMessage())
                     .attachmentIds(request.getAttachmentIds())
                     .externalToolIds(request.getExternalToolIds())
+                    .cache(request.getCache())
+                    .fallbackModels(request.getFallbackModels())
                     .build();
 
                 // Delegate to existing method
@@ -270,32 +590,69 @@ public class ChatService {
         });
   }
 
+  /**
+   * Runs each request as a new chat, at most {@code chat.batch.concurrency} at a time.
+   * <p>
+   * Results are emitted in completion order and tagged with the request's index in the input. An
+   * item that fails or exceeds {@code chat.batch.item-timeout} yields an error result instead of
+   * aborting the batch.
+   *
+   * @param requests The messages to send
+   * @return A Flux with one result per request
+   */
+  public Flux<BatchItemResult> sendBatch(List<SimpleMessageRequest> requests) {
+    if (requests == null || requests.isEmpty()) {
+      return Flux.error(new IllegalArgumentException("Batch cannot be null or empty"));
+    }
+    if (requests.size() > batchMaxItems) {
+      return Flux.error(new IllegalArgumentException(
+          "Batch of " + requests.size() + " exceeds the limit of " + batchMaxItems + " items"));
+    }
+
+    log.info("Running batch of {} messages with concurrency {}", requests.size(),
+        batchConcurrency);
+    return Flux.range(0, requests.size())
+        .flatMap(index -> Mono.defer(() -> sendSimpleMessage(null, requests.get(index)))
+            .timeout(batchItemTimeout)
+            .map(response -> BatchItemResult.builder()
+                .index(index)
+                .response(response)
+                .build())
+            .onErrorResume(error -> {
+              log.warn("Batch item {} failed: {}", index, error.getMessage());
+              return Mono.just(BatchItemResult.builder()
+                  .index(index)
+                  .error(error instanceof TimeoutException
+                      ? "Timed out after " + batchItemTimeout.toSeconds() + "s"
+                      : error.getMessage())
+                  .build());
+            }), batchConcurrency);
+  }
+
   private Mono<Chat> loadMessagesForChat(Chat chat) {
-    return messageRepository.findByChatIdOrderByCreatedAtAsc(chat.getId())
-        .collectList()
+    Flux<Message> persisted = messageRepository.findByChatIdOrderByCreatedAtAsc(chat.getId());
+    return writeBehind.withPending(chat.getId(), persisted)
         .map(messages -> {
           chat.setMessages(messages);
           return chat;
         });
   }
 
-  private Mono<ChatSummaryDto> convertToChatSummary(Chat chat) {
-    return messageRepository.countByChatId(chat.getId())
-        .flatMap(messageCount ->
-            messageRepository.findTopByChatIdOrderByCreatedAtDesc(chat.getId())
-                .map(Message::getContent)
-                .defaultIfEmpty("")
-                .map(lastMessageContent -> ChatSummaryDto.builder()
-                    .id(chat.getId())
-                    .title(chat.getTitle())
-                    .createdAt(chat.getCreatedAt())
-                    .updatedAt(chat.getUpdatedAt())
-                    .messageCount(messageCount.intValue())
-                    .lastMessagePreview(truncateMessage(lastMessageContent))
-                    .estimatedCost(chat.getEstimatedCost())
-                    .modelUsed(chat.getModelUsed())
-                    .build())
-        );
+  private ChatSummaryDto convertToChatSummary(Chat chat) {
+    // Count and preview are kept on the chat row by ChatTurnWriter, so no per-chat queries
+    ChatSummaryDto summary = ChatSummaryDto.builder()
+        .id(chat.getId())
+        .title(chat.getTitle())
+        .createdAt(chat.getCreatedAt())
+        .updatedAt(chat.getUpdatedAt())
+        .messageCount(chat.getMessageCount() != null ? chat.getMessageCount() : 0)
+        .lastMessagePreview(chat.getLastMessagePreview() != null
+            ? chat.getLastMessagePreview() : "")
+        .estimatedCost(chat.getEstimatedCost())
+        .modelUsed(chat.getModelUsed())
+        .build();
+    summary.setCursor(ChatCursor.of(summary).encode());
+    return summary;
   }
 
   private String generateChatTitle(String firstMessage) {
@@ -312,16 +669,10 @@ public class ChatService {
     return title;
   }
 
-  private String truncateMessage(String message) {
-    if (message == null || message.trim().isEmpty()) {
-      return "";
-    }
-
-    String truncated = message.trim();
-    if (truncated.length() > 100) {
-      truncated = truncated.substring(0, 97) + "...";
-    }
+  /**
+   * A user message waiting to be saved with its reply, and the request sent to the model for it.
+   */
+  private record Turn(Message userMessage, ChatRequest aiRequest) {
 
-    return truncated;
   }
 }
@@ -0,0 +1,180 @@
+package com.darylmathison.chat.client.service;
+
+import com.darylmathison.chat.client.dto.ChatRequest;
+import com.darylmathison.chat.client.dto.ChatResponse;
+import com.darylmathison.chat.client.dto.TokenUsage;
+import com.darylmathison.chat.client.model.CachedCompletion;
+import com.darylmathison.chat.client.repository.CachedCompletionRepository;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+/**
+ * Cache of deterministic chat completions keyed on the canonical request hash, which covers the
+ * fallback chain. Answers from a fallback model are not cached.
+ * <p>
+ * L1 is a bounded in-memory LRU with a TTL. L2 is the optional completion_cache table, which
+ * survives restarts and is shared between nodes. Hits are returned with {@code cached = true}
+ * and a zero estimated cost, since OpenRouter does not bill for them.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class CompletionCache {
+
+  private final CachedCompletionRepository cachedCompletionRepository;
+
+  @Value("${openrouter.cache.enabled:true}")
+  private boolean enabled;
+
+  @Value("${openrouter.cache.max-entries:1000}")
+  private int maxEntries;
+
+  @Value("${openrouter.cache.ttl:1h}")
+  private Duration ttl;
+
+  // Cache requests with temperature 0 even when the caller did not ask for it
+  @Value("${openrouter.cache.deterministic:true}")
+  private boolean cacheDeterministic;
+
+  @Value("${openrouter.cache.persistent:false}")
+  private boolean persistent;
+
+  // Access-ordered, so the eldest entry is the least recently used one
+  private final Map<String, CacheEntry> entries = new LinkedHashMap<>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+      return size() > maxEntries;
+    }
+  };
+
+  /**
+   * Whether a request should go through the cache. An explicit flag on the request wins;
+   * otherwise requests with temperature 0 are cached when the deterministic rule is on.
+   */
+  public boolean shouldCache(ChatRequest request, Double resolvedTemperature) {
+    if (!enabled) {
+      return false;
+    }
+    if (request.getCache() != null) {
+      return request.getCache();
+    }
+    return cacheDeterministic && resolvedTemperature != null && resolvedTemperature == 0.0;
+  }
+
+  /**
+   * Look up a completion, first in memory and then, when enabled, in the completion_cache table.
+   * L2 hits are promoted into L1.
+   */
+  public Mono<ChatResponse> get(String key) {
+    ChatResponse hit = getFromMemory(key);
+    if (hit != null) {
+      log.debug("Completion cache L1 hit for {}", key);
+      return Mono.just(asHit(hit));
+    }
+    if (!persistent) {
+      return Mono.empty();
+    }
+
+    return cachedCompletionRepository.findByCacheKeyAndExpiresAtAfter(key, LocalDateTime.now())
+        .map(entry -> {
+          ChatResponse response = fromEntity(entry);
+          putInMemory(key, response);
+          log.debug("Completion cache L2 hit for {}", key);
+          return asHit(response);
+        })
+        .onErrorResume(error -> {
+          log.warn("Completion cache lookup failed for {}: {}", key, error.getMessage());
+          return Mono.empty();
+        });
+  }
+
+  public Mono<Void> put(String key, ChatResponse response) {
+    putInMemory(key, response);
+    if (!persistent) {
+      return Mono.empty();
+    }
+
+    LocalDateTime now = LocalDateTime.now();
+    TokenUsage usage = response.getTokenUsage();
+    // Replace any expired row with the same key
+    return cachedCompletionRepository.deleteById(key)
+        .then(cachedCompletionRepository.insert(key, response.getModel(), response.getContent(),
+            usage != null ? usage.getPromptTokens() : null,
+            usage != null ? usage.getCompletionTokens() : null,
+            usage != null ? usage.getTotalTokens() : null,
+            now, now.plus(ttl)))
+        .then()
+        .onErrorResume(error -> {
+          log.warn("Failed to persist completion cache entry {}: {}", key, error.getMessage());
+          return Mono.empty();
+        });
+  }
+
+  @Scheduled(fixedDelayString = "${openrouter.cache.purge-interval:PT10M}")
+  public void purgeExpiredEntries() {
+    purgeExpired().subscribe(
+        purged -> log.debug("Purged {} expired completion cache rows", purged),
+        error -> log.warn("Failed to purge completion cache: {}", error.getMessage()));
+  }
+
+  public Mono<Integer> purgeExpired() {
+    synchronized (entries) {
+      Instant now = Instant.now();
+      entries.values().removeIf(entry -> entry.expiresAt().isBefore(now));
+    }
+    return persistent ? cachedCompletionRepository.deleteExpired(LocalDateTime.now())
+        : Mono.just(0);
+  }
+
+  private ChatResponse getFromMemory(String key) {
+    synchronized (entries) {
+      CacheEntry entry = entries.get(key);
+      if (entry == null) {
+        return null;
+      }
+      if (entry.expiresAt().isBefore(Instant.now())) {
+        entries.remove(key);
+        return null;
+      }
+      return entry.response();
+    }
+  }
+
+  private void putInMemory(String key, ChatResponse response) {
+    synchronized (entries) {
+      entries.put(key, new CacheEntry(response, Instant.now().plus(ttl)));
+    }
+  }
+
+  private ChatResponse asHit(ChatResponse response) {
+    return response.toBuilder()
+        .cached(true)
+        .estimatedCost(0.0)
+        .build();
+  }
+
+  private ChatResponse fromEntity(CachedCompletion entry) {
+    return ChatResponse.builder()
+        .content(entry.getContent())
+        .model(entry.getModel())
+        .tokenUsage(TokenUsage.builder()
+            .promptTokens(entry.getPromptTokens())
+            .completionTokens(entry.getCompletionTokens())
+            .totalTokens(entry.getTotalTokens())
+            .build())
+        .build();
+  }
+
+  private record CacheEntry(ChatResponse response, Instant expiresAt) {
+
+  }
+}
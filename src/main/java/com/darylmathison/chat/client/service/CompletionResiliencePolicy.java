@@ -0,0 +1,237 @@
+package com.darylmathison.chat.client.service;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BooleanSupplier;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+/**
+ * Retry, fallback and hedging rules for OpenRouter completions.
+ * <p>
+ * Rate limits (429), gateway/server errors (408, 500, 502, 503, 504) and connection failures are
+ * retried with exponential backoff and full jitter, waiting at least as long as a Retry-After
+ * header asks. Once a model's retries are exhausted (or it is reported missing) the caller moves on
+ * to the next model of its fallback chain. Completion latencies are recorded per model so a hedged
+ * attempt can be fired once the primary is slower than the configured percentile.
+ */
+@Component
+@Slf4j
+public class CompletionResiliencePolicy {
+
+  private static final int LATENCY_WINDOW = 128;
+
+  @Value("${openrouter.resilience.max-retries:3}")
+  private int maxRetries = 3;
+
+  @Value("${openrouter.resilience.initial-backoff:500ms}")
+  private Duration initialBackoff = Duration.ofMillis(500);
+
+  @Value("${openrouter.resilience.max-backoff:10s}")
+  private Duration maxBackoff = Duration.ofSeconds(10);
+
+  // Retry-After values beyond this fail over instead of stalling the request
+  @Value("${openrouter.resilience.max-retry-after:30s}")
+  private Duration maxRetryAfter = Duration.ofSeconds(30);
+
+  // Used when neither the request nor its saved prompt names fallback models
+  @Value("${openrouter.resilience.fallback-models:}")
+  private List<String> defaultFallbackModels = List.of();
+
+  // Let OpenRouter walk the chain via its "models" array instead of falling over client-side
+  @Value("${openrouter.resilience.native-fallback:false}")
+  private boolean nativeFallback;
+
+  @Value("${openrouter.resilience.hedge.enabled:false}")
+  private boolean hedgeEnabled;
+
+  @Value("${openrouter.resilience.hedge.percentile:0.95}")
+  private double hedgePercentile = 0.95;
+
+  // Used until enough latencies have been recorded for the model, and as a floor afterwards
+  @Value("${openrouter.resilience.hedge.min-delay:2s}")
+  private Duration hedgeMinDelay = Duration.ofSeconds(2);
+
+  @Value("${openrouter.resilience.hedge.initial-delay:10s}")
+  private Duration hedgeInitialDelay = Duration.ofSeconds(10);
+
+  @Value("${openrouter.resilience.hedge.min-samples:20}")
+  private int hedgeMinSamples = 20;
+
+  private final Map<String, LatencyWindow> latencies = new ConcurrentHashMap<>();
+
+  public boolean isNativeFallback() {
+    return nativeFallback;
+  }
+
+  public boolean isHedgeEnabled() {
+    return hedgeEnabled;
+  }
+
+  /**
+   * The ordered, de-duplicated list of models to try: the primary first, then the request's own
+   * fallbacks or, when it has none, the configured defaults.
+   */
+  public List<String> fallbackChain(String primaryModel, List<String> requestedFallbacks) {
+    List<String> fallbacks = requestedFallbacks != null && !requestedFallbacks.isEmpty()
+        ? requestedFallbacks : defaultFallbackModels;
+    Set<String> chain = new LinkedHashSet<>();
+    chain.add(primaryModel);
+    for (String fallback : fallbacks) {
+      if (fallback != null && !fallback.isBlank()) {
+        chain.add(fallback.trim());
+      }
+    }
+    return List.copyOf(chain);
+  }
+
+  /**
+   * Retry spec for one model's attempts.
+   *
+   * @param model        The model being called, for logging
+   * @param retryAllowed Additional guard, e.g. "nothing has been streamed to the caller yet"
+   */
+  public Retry retrySpec(String model, BooleanSupplier retryAllowed) {
+    return Retry.from(signals -> signals.concatMap(signal -> {
+      Throwable failure = signal.failure();
+      long attempt = signal.totalRetries() + 1;
+      if (attempt > maxRetries || !isRetryable(failure) || !retryAllowed.getAsBoolean()) {
+        return Mono.error(failure);
+      }
+      Duration retryAfter = retryAfter(failure);
+      if (retryAfter != null && retryAfter.compareTo(maxRetryAfter) > 0) {
+        return Mono.error(failure);
+      }
+      Duration delay = backoff(attempt, retryAfter);
+      log.warn("OpenRouter call to {} failed ({}), retry {}/{} in {} ms", model,
+          describe(failure), attempt, maxRetries, delay.toMillis());
+      return Mono.delay(delay);
+    }));
+  }
+
+  /**
+   * Whether a failure should move the request on to the next model of its fallback chain.
+   */
+  public boolean shouldFallback(Throwable failure) {
+    if (isRetryable(failure)
+        || Exceptions.unwrap(failure) instanceof OpenRouterRateLimiter.RateLimitedException) {
+      // Another model has its own rate-limit bucket
+      return true;
+    }
+    return Exceptions.unwrap(failure) instanceof WebClientResponseException responseException
+        && responseException.getStatusCode().value() == 404;
+  }
+
+  public boolean isRetryable(Throwable failure) {
+    Throwable error = Exceptions.unwrap(failure);
+    if (error instanceof WebClientResponseException responseException) {
+      int status = responseException.getStatusCode().value();
+      return status == 408 || status == 429 || status == 500 || status == 502 || status == 503
+          || status == 504;
+    }
+    return error instanceof WebClientRequestException || error instanceof TimeoutException;
+  }
+
+  /**
+   * How long to wait before hedging the primary model: the configured percentile of its recent
+   * latencies, never below the minimum delay.
+   */
+  public Duration hedgeDelay(String model) {
+    LatencyWindow window = latencies.get(model);
+    if (window == null) {
+      return hedgeInitialDelay;
+    }
+    long percentileMillis = window.percentile(hedgePercentile, hedgeMinSamples);
+    if (percentileMillis < 0) {
+      return hedgeInitialDelay;
+    }
+    Duration delay = Duration.ofMillis(percentileMillis);
+    return delay.compareTo(hedgeMinDelay) < 0 ? hedgeMinDelay : delay;
+  }
+
+  public void recordLatency(String model, Duration latency) {
+    latencies.computeIfAbsent(model, key -> new LatencyWindow()).record(latency.toMillis());
+  }
+
+  Duration backoff(long attempt, Duration retryAfter) {
+    // Full jitter: uniform in [0, min(max, initial * 2^(attempt - 1))]
+    long ceiling = Math.min(maxBackoff.toMillis(),
+        initialBackoff.toMillis() << Math.min(attempt - 1, 20));
+    long jittered = ThreadLocalRandom.current().nextLong(ceiling + 1);
+    Duration delay = Duration.ofMillis(jittered);
+    return retryAfter != null && retryAfter.compareTo(delay) > 0 ? retryAfter : delay;
+  }
+
+  Duration retryAfter(Throwable failure) {
+    if (!(Exceptions.unwrap(failure) instanceof WebClientResponseException responseException)) {
+      return null;
+    }
+    HttpHeaders headers = responseException.getHeaders();
+    String value = headers != null ? headers.getFirst(HttpHeaders.RETRY_AFTER) : null;
+    if (value == null || value.isBlank()) {
+      return null;
+    }
+    try {
+      return Duration.ofSeconds(Long.parseLong(value.trim()));
+    } catch (NumberFormatException e) {
+      try {
+        Duration untilDate = Duration.between(ZonedDateTime.now(),
+            ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME));
+        return untilDate.isNegative() ? Duration.ZERO : untilDate;
+      } catch (DateTimeParseException ignored) {
+        return null;
+      }
+    }
+  }
+
+  private String describe(Throwable failure) {
+    Throwable error = Exceptions.unwrap(failure);
+    if (error instanceof WebClientResponseException responseException) {
+      return "HTTP " + responseException.getStatusCode().value();
+    }
+    return error.getClass().getSimpleName();
+  }
+
+  /**
+   * Fixed-size ring of the most recent latencies for one model.
+   */
+  private static final class LatencyWindow {
+
+    private final long[] samples = new long[LATENCY_WINDOW];
+    private int next;
+    private int size;
+
+    synchronized void record(long millis) {
+      samples[next] = millis;
+      next = (next + 1) % samples.length;
+      size = Math.min(size + 1, samples.length);
+    }
+
+    synchronized long percentile(double percentile, int minSamples) {
+      if (size < minSamples) {
+        return -1;
+      }
+      long[] sorted = Arrays.copyOf(samples, size);
+      Arrays.sort(sorted);
+      int index = (int) Math.ceil(percentile * size) - 1;
+      return sorted[Math.max(0, Math.min(index, size - 1))];
+    }
+  }
+}
@@ -0,0 +1,450 @@
+package com.darylmathison.chat.client.service;
+
+import com.darylmathison.chat.client.dto.ModelInfo;
+import com.darylmathison.chat.client.model.ConversationSummary;
+import com.darylmathison.chat.client.model.Message;
+import com.darylmathison.chat.client.model.Message.MessageRole;
+import com.darylmathison.chat.client.repository.ConversationSummaryRepository;
+import com.darylmathison.chat.client.repository.MessageRepository;
+import com.darylmathison.chat.client.repository.MessageWriteBehindBuffer;
+import com.darylmathison.chat.client.tokenizer.TokenizerRegistry;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Builds the conversation sent to the model for a turn of an existing chat.
+ * <p>
+ * Each active chat has an in-memory window of its most recent messages that is appended to as
+ * messages are saved, so a turn normally costs no database reads for history. A window is loaded
+ * once, with a single bounded query, when a chat is first seen after a restart or eviction. The
+ * prompt takes the newest turns that fit the model's token budget (its context length minus the
+ * completion reserve, capped by {@code chat.context.max-tokens}); system messages are always
+ * kept.
+ * <p>
+ * Once a chat has a {@link ConversationSummarizer rolling summary}, the messages it covers are
+ * dropped from the window and the summary is sent ahead of the remaining turns instead.
+ * <p>
+ * With {@code chat.context.stable-prefix}, the history keeps starting at the same message from one
+ * turn to the next, so consecutive prompts share a byte-identical prefix that providers can serve
+ * from their prompt cache. Only when the history no longer fits does its start move, and then far
+ * enough to leave {@code 1 - refill-ratio} of the budget free for the turns that follow, rather
+ * than sliding by one message (and missing the cache) on every turn.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ContextAssembler {
+
+  // Role marker and separators OpenRouter adds around each message
+  private static final int MESSAGE_OVERHEAD_TOKENS = 4;
+  private static final String SUMMARY_PREFIX = "Summary of the earlier conversation:\n";
+
+  private final MessageRepository messageRepository;
+  private final ModelCatalog modelCatalog;
+  private final MessageWriteBehindBuffer writeBehind;
+  private final TokenizerRegistry tokenizer;
+  private final ConversationSummaryRepository summaryRepository;
+
+  @Value("${chat.context.enabled:true}")
+  private boolean enabled = true;
+
+  // Upper bound on prompt tokens, whatever the model's context length
+  @Value("${chat.context.max-tokens:16000}")
+  private int maxContextTokens = 16000;
+
+  // Budget for models missing from the catalog
+  @Value("${chat.context.default-budget:8000}")
+  private int defaultBudget = 8000;
+
+  // Tokens kept in each window; older messages are dropped from memory (not from the database)
+  @Value("${chat.context.window-tokens:32000}")
+  private int windowTokens = 32000;
+
+  // Messages read when a window has to be loaded from the database
+  @Value("${chat.context.load-limit:200}")
+  private int loadLimit = 200;
+
+  @Value("${chat.context.stable-prefix:true}")
+  private boolean stablePrefix = true;
+
+  // Share of the budget filled when the history has to be trimmed in stable-prefix mode
+  @Value("${chat.context.refill-ratio:0.75}")
+  private double refillRatio = 0.75;
+
+  @Value("${chat.context.max-chats:1000}")
+  private int maxChats = 1000;
+
+  @Value("${openrouter.default.model:}")
+  private String defaultModel;
+
+  @Value("${openrouter.default.max-tokens:4000}")
+  private int defaultMaxTokens = 4000;
+
+  // Access-ordered, so the eldest window belongs to the least recently active chat
+  private final Map<Long, ChatWindow> windows = new LinkedHashMap<>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Long, ChatWindow> eldest) {
+      return size() > maxChats;
+    }
+  };
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Start an empty window for a chat that was just created, so its first turns need no reads.
+   */
+  public void startChat(Long chatId) {
+    synchronized (windows) {
+      windows.putIfAbsent(chatId, new ChatWindow());
+    }
+  }
+
+  /**
+   * Build the messages for a turn: stored history within the budget followed by the turn's own
+   * messages. The turn's messages are added to the window through {@link #append} once saved.
+   *
+   * @param chatId        The chat
+   * @param turnMessages  The messages to send for this turn (after tool processing)
+   * @param model         The model the request is for
+   * @param maxTokens     Completion tokens to reserve, or null for the default
+   * @param systemMessage The request's system message, which is sent in addition to these
+   */
+  public Mono<List<Message>> assemble(Long chatId, List<Message> turnMessages, String model,
+      Integer maxTokens, String systemMessage) {
+    return window(chatId)
+        .map(window -> {
+          int budget = budget(model, maxTokens)
+              - countTokens(model, systemMessage)
+              - turnMessages.stream().mapToInt(msg -> countTokens(model, msg.getContent())).sum();
+          List<Message> messages = stablePrefix ? window.selectStable(budget, refillRatio)
+              : window.select(budget);
+          messages.addAll(turnMessages);
+          log.debug("Assembled {} history messages for chat {} within {} tokens",
+              messages.size() - turnMessages.size(), chatId, budget);
+          return messages;
+        });
+  }
+
+  /**
+   * Record a saved message. Chats without a window are left alone; their next turn loads the
+   * message along with the rest.
+   */
+  public void append(Long chatId, Message message) {
+    ChatWindow window;
+    synchronized (windows) {
+      window = windows.get(chatId);
+    }
+    if (window != null) {
+      window.append(message, countTokens(defaultModel, message.getContent()), windowTokens);
+    }
+  }
+
+  /**
+   * Tokens of the chat's windowed messages that no summary covers, or 0 if the chat has no window.
+   */
+  public int unsummarizedTokens(Long chatId) {
+    ChatWindow window;
+    synchronized (windows) {
+      window = windows.get(chatId);
+    }
+    return window != null ? window.tokens() : 0;
+  }
+
+  /**
+   * Replace the messages a new summary covers with the summary. Chats without a window pick it up
+   * when their window is loaded.
+   *
+   * @param throughMessageId The last message the summary covers
+   * @param throughCreatedAt When that message was created; covers windowed messages that
+   *                         write-behind has not given an id yet
+   */
+  public void applySummary(Long chatId, String summary, long throughMessageId,
+      LocalDateTime throughCreatedAt) {
+    ChatWindow window;
+    synchronized (windows) {
+      window = windows.get(chatId);
+    }
+    if (window != null) {
+      window.summarize(summary, countTokens(defaultModel, SUMMARY_PREFIX + summary),
+          throughMessageId, throughCreatedAt);
+    }
+  }
+
+  public void evict(Long chatId) {
+    synchronized (windows) {
+      windows.remove(chatId);
+    }
+  }
+
+  /**
+   * Prompt token budget for a model: its context length less the completion reserve, capped by
+   * the configured maximum.
+   */
+  int budget(String model, Integer maxTokens) {
+    String resolvedModel = model != null ? model : defaultModel;
+    ModelInfo info = modelCatalog.find(resolvedModel).orElse(null);
+    if (info == null || info.contextLength() == null) {
+      return defaultBudget;
+    }
+    int reserve = maxTokens != null ? maxTokens : defaultMaxTokens;
+    return Math.max(0, Math.min(maxContextTokens, info.contextLength() - reserve));
+  }
+
+  /**
+   * Tokens a message costs in the prompt. Windows are shared by every model a chat is sent to, so
+   * their messages are counted with the default model's tokenizer.
+   */
+  int countTokens(String model, String text) {
+    if (text == null) {
+      return 0;
+    }
+    return tokenizer.countTokens(model != null ? model : defaultModel, text)
+        + MESSAGE_OVERHEAD_TOKENS;
+  }
+
+  private Mono<ChatWindow> window(Long chatId) {
+    synchronized (windows) {
+      ChatWindow window = windows.get(chatId);
+      if (window != null) {
+        return Mono.just(window);
+      }
+    }
+    Flux<Message> recent = messageRepository.findRecentByChatId(chatId, loadLimit)
+        .collectList()
+        .flatMapMany(newestFirst -> {
+          List<Message> chronological = new ArrayList<>(newestFirst);
+          Collections.reverse(chronological);
+          return Flux.fromIterable(chronological);
+        });
+    Mono<List<Message>> messages = writeBehind.withPending(chatId, recent);
+    Mono<Optional<ConversationSummary>> summary = summaryRepository.findById(chatId)
+        .map(Optional::of)
+        .defaultIfEmpty(Optional.empty());
+    return summary.zipWith(messages)
+        .map(loadedData -> {
+          ChatWindow loaded = new ChatWindow();
+          loadedData.getT1().ifPresent(found -> loaded.summarize(found.getContent(),
+              countTokens(defaultModel, SUMMARY_PREFIX + found.getContent()),
+              found.getThroughMessageId(), null));
+          loadedData.getT2().forEach(message -> loaded.append(message,
+              countTokens(defaultModel, message.getContent()), windowTokens));
+          synchronized (windows) {
+            // Another turn may have loaded the window meanwhile; keep the first one
+            ChatWindow existing = windows.putIfAbsent(chatId, loaded);
+            return existing != null ? existing : loaded;
+          }
+        });
+  }
+
+  /**
+   * The most recent messages of one chat, oldest first, with their estimated token counts, and the
+   * summary of the messages before them.
+   */
+  static final class ChatWindow {
+
+    private final Deque<Entry> entries = new ArrayDeque<>();
+    private int tokens;
+    private Message summary;
+    private int summaryTokens;
+    private long summarizedThrough;
+    // Creation time of that message, for messages that have no id yet
+    private LocalDateTime summarizedAt;
+    // Oldest history message of the last selection
+    private Entry anchor;
+
+    synchronized void append(Message message, int messageTokens, int maxTokens) {
+      if (message.getContent() == null || message.getRole() == null || isSummarized(message)) {
+        return;
+      }
+      if (message.getId() != null && !entries.isEmpty()
+          && message.getId().equals(entries.peekLast().message().getId())) {
+        return;
+      }
+      Entry entry = new Entry(message, messageTokens);
+      entries.addLast(entry);
+      tokens += entry.tokens();
+      Iterator<Entry> oldest = entries.iterator();
+      while (tokens > maxTokens && oldest.hasNext()) {
+        Entry candidate = oldest.next();
+        if (candidate != entry && candidate.message().getRole() != MessageRole.SYSTEM) {
+          oldest.remove();
+          tokens -= candidate.tokens();
+          forget(candidate);
+        }
+      }
+    }
+
+    synchronized int tokens() {
+      return tokens;
+    }
+
+    /**
+     * Swap the messages up to {@code throughMessageId} for their summary. Everything before the
+     * last covered message goes too, since the window is in the order messages were saved. System
+     * messages stay, as they are never summarized.
+     */
+    synchronized void summarize(String content, int contentTokens, long throughMessageId,
+        LocalDateTime throughCreatedAt) {
+      if (throughMessageId < summarizedThrough) {
+        return;
+      }
+      summary = Message.builder()
+          .role(MessageRole.SYSTEM)
+          .content(SUMMARY_PREFIX + content)
+          .build();
+      summaryTokens = contentTokens;
+      summarizedThrough = throughMessageId;
+      summarizedAt = throughCreatedAt != null ? throughCreatedAt.truncatedTo(ChronoUnit.MICROS)
+          : null;
+      Entry lastCovered = null;
+      for (Entry entry : entries) {
+        if (isSummarized(entry.message())) {
+          lastCovered = entry;
+        }
+      }
+      Iterator<Entry> oldest = entries.iterator();
+      while (lastCovered != null && oldest.hasNext()) {
+        Entry entry = oldest.next();
+        if (entry.message().getRole() != MessageRole.SYSTEM) {
+          oldest.remove();
+          tokens -= entry.tokens();
+          forget(entry);
+        }
+        if (entry == lastCovered) {
+          break;
+        }
+      }
+    }
+
+    private void forget(Entry removed) {
+      if (removed == anchor) {
+        // The prefix changes anyway; the next selection starts afresh with the full budget
+        anchor = null;
+      }
+    }
+
+    private boolean isSummarized(Message message) {
+      if (message.getRole() == MessageRole.SYSTEM) {
+        return false;
+      }
+      if (message.getId() != null) {
+        return message.getId() <= summarizedThrough;
+      }
+      // Buffered by write-behind; the database keeps created_at to the microsecond
+      return summarizedAt != null && message.getCreatedAt() != null
+          && !message.getCreatedAt().truncatedTo(ChronoUnit.MICROS).isAfter(summarizedAt);
+    }
+
+    /**
+     * System messages, the summary if any, then the newest other messages that fit the budget,
+     * oldest first.
+     */
+    synchronized List<Message> select(int budget) {
+      return fill(historyBudget(budget));
+    }
+
+    /**
+     * Like {@link #select}, but starting from the same message as the previous call for as long as
+     * everything from there on fits. Once it does not, the history is refilled to
+     * {@code refillRatio} of the budget and starts from the new oldest message from then on.
+     */
+    synchronized List<Message> selectStable(int budget, double refillRatio) {
+      int remaining = historyBudget(budget);
+      if (anchor != null) {
+        List<Message> fromAnchor = fromAnchor(remaining);
+        if (fromAnchor != null) {
+          return fromAnchor;
+        }
+        remaining = (int) (remaining * refillRatio);
+      }
+      return fill(remaining);
+    }
+
+    /**
+     * System messages and everything from the anchor on, or null if the anchor is gone or that
+     * does not fit.
+     */
+    private List<Message> fromAnchor(int remaining) {
+      List<Message> selected = new ArrayList<>(entries.size() + 1);
+      if (summary != null) {
+        selected.add(summary);
+      }
+      boolean found = false;
+      int history = 0;
+      for (Entry entry : entries) {
+        found |= entry == anchor;
+        if (entry.message().getRole() == MessageRole.SYSTEM) {
+          selected.add(entry.message());
+        } else if (found) {
+          selected.add(entry.message());
+          history += entry.tokens();
+        }
+      }
+      return found && history <= remaining ? selected : null;
+    }
+
+    /**
+     * The budget less the summary and the system messages, which are always sent.
+     */
+    private int historyBudget(int budget) {
+      int remaining = budget - (summary != null ? summaryTokens : 0);
+      for (Entry entry : entries) {
+        if (entry.message().getRole() == MessageRole.SYSTEM) {
+          remaining -= entry.tokens();
+        }
+      }
+      return remaining;
+    }
+
+    /**
+     * The newest history that fits, with the system messages; remembers where it starts.
+     */
+    private List<Message> fill(int remaining) {
+      Deque<Message> selected = new ArrayDeque<>();
+      Iterator<Entry> newestFirst = entries.descendingIterator();
+      boolean full = false;
+      anchor = null;
+      while (newestFirst.hasNext()) {
+        Entry entry = newestFirst.next();
+        Message message = entry.message();
+        if (message.getRole() == MessageRole.SYSTEM) {
+          selected.addFirst(message);
+        } else if (!full && entry.tokens() <= remaining) {
+          selected.addFirst(message);
+          remaining -= entry.tokens();
+          anchor = entry;
+        } else {
+          // Stop at the first turn that does not fit so the history stays contiguous
+          full = true;
+        }
+      }
+      List<Message> messages = new ArrayList<>(selected.size() + 1);
+      if (summary != null) {
+        messages.add(summary);
+      }
+      messages.addAll(selected);
+      return messages;
+    }
+
+    private record Entry(Message message, int tokens) {
+
+    }
+  }
+}
@@ -0,0 +1,272 @@
+package com.darylmathison.chat.client.service;
+
+import com.darylmathison.chat.client.dto.ChatRequest;
+import com.darylmathison.chat.client.dto.ChatResponse;
+import com.darylmathison.chat.client.model.ConversationSummary;
+import com.darylmathison.chat.client.model.Message;
+import com.darylmathison.chat.client.model.Message.MessageRole;
+import com.darylmathison.chat.client.repository.ChatTurnWriter;
+import com.darylmathison.chat.client.repository.ConversationSummaryRepository;
+import com.darylmathison.chat.client.repository.MessageRepository;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+/**
+ * Condenses the older turns of long chats into a rolling summary.
+ * <p>
+ * After each saved turn, a chat whose unsummarized history exceeds
+ * {@code chat.summary.trigger-tokens} is summarized in the background with
+ * {@code chat.summary.model}; the request that triggered it is not held up. The summary records
+ * the id of the last message it covers, so each run only reads and folds the messages after that
+ * mark into the previous summary, keeping the newest {@code keep-recent-tokens} verbatim. The
+ * {@link ContextAssembler} then sends the summary in place of the turns it covers. The summary's
+ * tokens and cost are added to the chat's totals and the credit balance like a turn's.
+ * <p>
+ * A failed run leaves the previous summary in place and is retried after the chat's next turn.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ConversationSummarizer {
+
+  private static final String INSTRUCTIONS = "You maintain a running summary of a conversation "
+      + "between a user and an assistant. Merge the new messages into the existing summary. Keep "
+      + "facts, decisions, names, numbers, code identifiers and open questions; drop pleasantries "
+      + "and repetition. Write in the third person and reply with the updated summary only.";
+
+  private final MessageRepository messageRepository;
+  private final ConversationSummaryRepository summaryRepository;
+  private final ContextAssembler contextAssembler;
+  private final AIService aiService;
+  private final ChatTurnWriter chatTurnWriter;
+  // Lazy: CreditsCache depends on ChatService, which runs the summarizer
+  @Lazy
+  private final CreditsCache creditsCache;
+
+  @Value("${chat.summary.enabled:true}")
+  private boolean enabled = true;
+
+  // A cheap model is enough, and keeps summarization from costing more than it saves
+  @Value("${chat.summary.model:openai/gpt-4o-mini}")
+  private String model = "openai/gpt-4o-mini";
+
+  // Summarize once the unsummarized history of a chat grows past this
+  @Value("${chat.summary.trigger-tokens:12000}")
+  private int triggerTokens = 12000;
+
+  // Newest history left out of the summary and sent verbatim
+  @Value("${chat.summary.keep-recent-tokens:4000}")
+  private int keepRecentTokens = 4000;
+
+  // Most history folded in one run; a longer backlog is caught up over the following turns
+  @Value("${chat.summary.max-input-tokens:16000}")
+  private int maxInputTokens = 16000;
+
+  @Value("${chat.summary.max-tokens:800}")
+  private int maxSummaryTokens = 800;
+
+  @Value("${chat.summary.load-limit:500}")
+  private int loadLimit = 500;
+
+  // Chats with a summarization in flight
+  private final Set<Long> running = ConcurrentHashMap.newKeySet();
+
+  public boolean isEnabled() {
+    return enabled && contextAssembler.isEnabled();
+  }
+
+  /**
+   * Start summarizing a chat in the background if its history has outgrown the threshold. Returns
+   * immediately.
+   */
+  public void maybeSummarize(Long chatId) {
+    if (chatId == null || !isEnabled()
+        || contextAssembler.unsummarizedTokens(chatId) <= triggerTokens) {
+      return;
+    }
+    if (!running.add(chatId)) {
+      return;
+    }
+    summarize(chatId)
+        .doFinally(signal -> running.remove(chatId))
+        .subscribe(
+            summary -> log.info("Summarized chat {} through message {}", chatId,
+                summary.getThroughMessageId()),
+            error -> log.warn("Summarizing chat {} failed: {}", chatId, error.getMessage()));
+  }
+
+  /**
+   * Fold the chat's oldest unsummarized turns into its summary.
+   *
+   * @return The new summary, or empty if there was nothing to fold or another run got there first
+   */
+  Mono<ConversationSummary> summarize(Long chatId) {
+    return summaryRepository.findById(chatId)
+        .map(Optional::of)
+        .defaultIfEmpty(Optional.empty())
+        .flatMap(previous -> {
+          long through = previous.map(ConversationSummary::getThroughMessageId).orElse(0L);
+          return messageRepository.findByChatIdAfter(chatId, through, loadLimit)
+              .collectList()
+              .flatMap(messages -> {
+                List<Message> fold = selectForSummary(messages);
+                if (fold.isEmpty()) {
+                  return Mono.empty();
+                }
+                return aiService.sendChatRequest(summaryRequest(previous.orElse(null), fold))
+                    .flatMap(response -> recordUsage(chatId, response)
+                        .then(save(chatId, previous.orElse(null), fold, response)))
+                    .doOnNext(summary -> contextAssembler.applySummary(chatId,
+                        summary.getContent(), summary.getThroughMessageId(),
+                        fold.getLast().getCreatedAt()));
+              });
+        });
+  }
+
+  /**
+   * The oldest messages to summarize: everything but the newest {@code keep-recent-tokens}, at
+   * most {@code max-input-tokens}, ending on an assistant reply so no turn is split. A first turn
+   * that is larger than {@code max-input-tokens} on its own is still taken, cut down to fit.
+   */
+  List<Message> selectForSummary(List<Message> chronological) {
+    List<Message> candidates = chronological.stream()
+        .filter(message -> message.getRole() != MessageRole.SYSTEM && message.getContent() != null)
+        .toList();
+    int[] tokens = new int[candidates.size()];
+    int total = 0;
+    for (int i = 0; i < candidates.size(); i++) {
+      tokens[i] = contextAssembler.countTokens(null, candidates.get(i).getContent());
+      total += tokens[i];
+    }
+
+    int end = 0;
+    int folded = 0;
+    while (end < candidates.size() && total - folded > keepRecentTokens
+        && folded + tokens[end] <= maxInputTokens) {
+      folded += tokens[end++];
+    }
+    while (end > 0 && candidates.get(end - 1).getRole() != MessageRole.ASSISTANT) {
+      end--;
+    }
+    if (end == 0 && total > keepRecentTokens) {
+      // Otherwise no run would ever get past it
+      return firstTurnWithinBudget(candidates, tokens);
+    }
+    return new ArrayList<>(candidates.subList(0, end));
+  }
+
+  /**
+   * The first turn, with each message's content cut to its share of {@code max-input-tokens}, or
+   * nothing if there is no reply yet.
+   */
+  private List<Message> firstTurnWithinBudget(List<Message> candidates, int[] tokens) {
+    int end = 0;
+    int turnTokens = 0;
+    while (end < candidates.size()) {
+      turnTokens += tokens[end];
+      if (candidates.get(end++).getRole() == MessageRole.ASSISTANT) {
+        break;
+      }
+    }
+    if (end == 0 || candidates.get(end - 1).getRole() != MessageRole.ASSISTANT) {
+      return new ArrayList<>();
+    }
+    List<Message> turn = new ArrayList<>(end);
+    for (Message message : candidates.subList(0, end)) {
+      String content = message.getContent();
+      if (turnTokens > maxInputTokens) {
+        content = content.substring(0,
+            (int) ((long) content.length() * maxInputTokens / turnTokens));
+      }
+      turn.add(Message.builder()
+          .id(message.getId())
+          .chatId(message.getChatId())
+          .role(message.getRole())
+          .content(content)
+          .createdAt(message.getCreatedAt())
+          .tokens(message.getTokens())
+          .build());
+    }
+    return turn;
+  }
+
+  private ChatRequest summaryRequest(ConversationSummary previous, List<Message> fold) {
+    StringBuilder prompt = new StringBuilder();
+    if (previous != null) {
+      prompt.append("Existing summary:\n").append(previous.getContent()).append("\n\n");
+    }
+    prompt.append("New messages:\n");
+    for (Message message : fold) {
+      prompt.append(message.getRole() == MessageRole.USER ? "User: " : "Assistant: ")
+          .append(message.getContent())
+          .append("\n\n");
+    }
+    return ChatRequest.builder()
+        .model(model)
+        .systemMessage(INSTRUCTIONS)
+        .messages(List.of(Message.builder()
+            .role(MessageRole.USER)
+            .content(prompt.toString())
+            .build()))
+        .maxTokens(maxSummaryTokens)
+        .temperature(0.0)
+        .cache(false)
+        .build();
+  }
+
+  /**
+   * Charge the summary's tokens and cost to the chat and the credit balance, like a turn's.
+   */
+  private Mono<Void> recordUsage(Long chatId, ChatResponse response) {
+    long tokens = response.getTokenUsage() != null
+        && response.getTokenUsage().getTotalTokens() != null
+        ? response.getTokenUsage().getTotalTokens() : 0L;
+    double cost = response.getEstimatedCost() != null ? response.getEstimatedCost() : 0.0;
+    creditsCache.recordSpend(response.getEstimatedCost());
+    if (tokens == 0 && cost == 0) {
+      return Mono.empty();
+    }
+    return chatTurnWriter.addUsage(chatId, tokens, cost)
+        .onErrorResume(error -> {
+          log.warn("Could not add summary usage to chat {}: {}", chatId, error.getMessage());
+          return Mono.empty();
+        });
+  }
+
+  private Mono<ConversationSummary> save(Long chatId, ConversationSummary previous,
+      List<Message> fold, ChatResponse response) {
+    String content = response.getContent() != null ? response.getContent().trim() : "";
+    if (content.isEmpty()) {
+      return Mono.error(new RuntimeException("Model " + response.getModel()
+          + " returned an empty summary"));
+    }
+    ConversationSummary summary = ConversationSummary.builder()
+        .chatId(chatId)
+        .content(content)
+        .throughMessageId(fold.getLast().getId())
+        .summarizedMessages(fold.size()
+            + (previous != null && previous.getSummarizedMessages() != null
+            ? previous.getSummarizedMessages() : 0))
+        .model(response.getModel())
+        .updatedAt(LocalDateTime.now())
+        .build();
+
+    Mono<Integer> write = previous == null
+        ? summaryRepository.insert(chatId, summary.getContent(), summary.getThroughMessageId(),
+            summary.getSummarizedMessages(), summary.getModel(), summary.getUpdatedAt())
+        : summaryRepository.advance(chatId, summary.getContent(), summary.getThroughMessageId(),
+            summary.getSummarizedMessages(), summary.getModel(), summary.getUpdatedAt(),
+            previous.getThroughMessageId());
+    return write.flatMap(rows -> rows > 0 ? Mono.just(summary) : Mono.empty());
+  }
+}
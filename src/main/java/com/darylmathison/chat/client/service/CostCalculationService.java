@@ -1,10 +1,13 @@
 package com.darylmathison.chat.client.service;
 
+import com.darylmathison.chat.client.dto.ModelInfo;
 import java.util.Map;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 @Service
+@RequiredArgsConstructor
 @Slf4j
 public class CostCalculationService {
 
@@ -17,22 +20,51 @@ public class CostCalculationService {
       "gpt-4o-mini", new ModelPricing(0.00015, 0.0006)
   );
 
-  public Double calculateCost(String model, int promptTokens, int completionTokens) {
-    ModelPricing pricing = MODEL_PRICING.getOrDefault(model, MODEL_PRICING.get("gpt-3.5-turbo"));
+  private final ModelCatalog modelCatalog;
 
-    double promptCost = (promptTokens / 1000.0) * pricing.promptPrice;
-    double completionCost = (completionTokens / 1000.0) * pricing.completionPrice;
+  public Double calculateCost(String model, int promptTokens, int completionTokens) {
+    return price(model, promptTokens, completionTokens);
+  }
 
-    return promptCost + completionCost;
+  /**
+   * Cost of a completion whose prompt was partly served from, or written to, the provider's
+   * prompt cache. Both counts are part of {@code promptTokens} and are billed at the model's
+   * cache read and write prices; models without those prices bill them as ordinary prompt tokens.
+   */
+  public Double calculateCost(String model, int promptTokens, int completionTokens,
+      int cachedTokens, int cacheWriteTokens) {
+    if (cachedTokens <= 0 && cacheWriteTokens <= 0) {
+      return price(model, promptTokens, completionTokens);
+    }
+    ModelInfo info = modelCatalog.find(model).orElse(null);
+    if (info == null || !info.hasPricing()) {
+      return price(model, promptTokens, completionTokens);
+    }
+    int uncached = Math.max(0, promptTokens - cachedTokens - cacheWriteTokens);
+    double readPrice = info.cacheReadPrice() != null ? info.cacheReadPrice() : info.promptPrice();
+    double writePrice = info.cacheWritePrice() != null ? info.cacheWritePrice()
+        : info.promptPrice();
+    return uncached * info.promptPrice() + cachedTokens * readPrice
+        + cacheWriteTokens * writePrice + completionTokens * info.completionPrice();
   }
 
   public Double estimateCost(String model, Integer estimatedTokens) {
-    ModelPricing pricing = MODEL_PRICING.getOrDefault(model, MODEL_PRICING.get("gpt-3.5-turbo"));
-
     // Assume 70% prompt, 30% completion for estimation
     double promptTokens = estimatedTokens * 0.7;
     double completionTokens = estimatedTokens * 0.3;
 
+    return price(model, promptTokens, completionTokens);
+  }
+
+  private double price(String model, double promptTokens, double completionTokens) {
+    // Live OpenRouter pricing (USD per token) takes precedence over the static per-1K table
+    ModelInfo info = modelCatalog.find(model).orElse(null);
+    if (info != null && info.hasPricing()) {
+      return promptTokens * info.promptPrice() + completionTokens * info.completionPrice();
+    }
+
+    ModelPricing pricing = MODEL_PRICING.getOrDefault(model, MODEL_PRICING.get("gpt-3.5-turbo"));
+
     double promptCost = (promptTokens / 1000.0) * pricing.promptPrice;
     double completionCost = (completionTokens / 1000.0) * pricing.completionPrice;
 
@@ -0,0 +1,115 @@
+package com.darylmathison.chat.client.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.DoubleAdder;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+/**
+ * Stale-while-revalidate cache of the OpenRouter credit balance and this month's spend.
+ * <p>
+ * Reads return the last known values immediately. Once they are older than
+ * {@code openrouter.credits.refresh-after} a refresh is started in the background; only values
+ * older than {@code openrouter.credits.max-staleness} make the caller wait for a fresh fetch.
+ * Between refreshes the values are adjusted locally from the estimated cost of each completion,
+ * so the balance shown after a message is roughly current without a round trip to OpenRouter.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class CreditsCache {
+
+  private final AIService aiService;
+  private final ChatService chatService;
+
+  @Value("${openrouter.credits.refresh-after:30s}")
+  private Duration refreshAfter;
+
+  @Value("${openrouter.credits.max-staleness:5m}")
+  private Duration maxStaleness;
+
+  private volatile CreditsSnapshot snapshot;
+  // Spend recorded locally since the values in the snapshot were fetched
+  private final DoubleAdder unreconciledSpend = new DoubleAdder();
+  private final AtomicReference<Mono<CreditsSnapshot>> inFlightRefresh = new AtomicReference<>();
+
+  /**
+   * @return The credit balance and monthly spend, including locally recorded spend
+   */
+  public Mono<CreditsSnapshot> get() {
+    CreditsSnapshot current = snapshot;
+    if (current == null || current.age().compareTo(maxStaleness) > 0) {
+      return refresh().map(this::withLocalSpend);
+    }
+    if (current.age().compareTo(refreshAfter) > 0) {
+      refresh().subscribe(
+          refreshed -> log.debug("Refreshed credit balance: {}", refreshed.actualCredits()),
+          error -> log.warn("Background credit refresh failed: {}", error.getMessage()));
+    }
+    return Mono.just(withLocalSpend(current));
+  }
+
+  /**
+   * Account for the cost of a completion until the next refresh picks it up upstream.
+   */
+  public void recordSpend(Double cost) {
+    if (cost != null && cost > 0) {
+      unreconciledSpend.add(cost);
+    }
+  }
+
+  /**
+   * Fetch both values; concurrent callers share the fetch already in flight.
+   */
+  public Mono<CreditsSnapshot> refresh() {
+    return Mono.defer(() -> {
+      Mono<CreditsSnapshot> running = inFlightRefresh.get();
+      if (running != null) {
+        return running;
+      }
+      // Spend recorded after this point may not be reflected upstream yet, so it stays pending
+      double spendBeforeFetch = unreconciledSpend.sum();
+      Mono<CreditsSnapshot> fetch = Mono.zip(aiService.getCreditBalance(),
+              chatService.getTotalCostThisMonth())
+          .map(tuple -> new CreditsSnapshot(tuple.getT1(), tuple.getT2(), Instant.now()))
+          .doOnNext(fetched -> {
+            snapshot = fetched;
+            unreconciledSpend.add(-spendBeforeFetch);
+          })
+          .doFinally(signal -> inFlightRefresh.set(null))
+          .cache();
+      if (inFlightRefresh.compareAndSet(null, fetch)) {
+        return fetch;
+      }
+      running = inFlightRefresh.get();
+      return running != null ? running : fetch;
+    });
+  }
+
+  private CreditsSnapshot withLocalSpend(CreditsSnapshot fetched) {
+    double pending = unreconciledSpend.sum();
+    if (pending <= 0) {
+      return fetched;
+    }
+    return new CreditsSnapshot(Math.max(0.0, fetched.actualCredits() - pending),
+        fetched.totalCostThisMonth() + pending, fetched.fetchedAt());
+  }
+
+  /**
+   * @param actualCredits      Remaining OpenRouter credits
+   * @param totalCostThisMonth Sum of estimated chat costs since the start of the month
+   * @param fetchedAt          When the values were last fetched from their sources
+   */
+  public record CreditsSnapshot(double actualCredits, double totalCostThisMonth,
+                                Instant fetchedAt) {
+
+    Duration age() {
+      return Duration.between(fetchedAt, Instant.now());
+    }
+  }
+}
@@ -1,9 +1,12 @@
 package com.darylmathison.chat.client.service;
 
 import com.darylmathison.chat.client.dto.ExternalToolDto;
+import com.darylmathison.chat.client.mapping.ResponseMapping;
+import com.darylmathison.chat.client.mapping.ResponseMappingCompiler;
 import com.darylmathison.chat.client.model.ExternalTool;
 import com.darylmathison.chat.client.repository.ExternalToolRepository;
-import com.fasterxml.jackson.core.JsonProcessingException;
+import com.darylmathison.chat.client.repository.UsageCounters;
+import com.darylmathison.chat.client.template.RequestTemplateCompiler;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import java.time.Duration;
@@ -14,6 +17,7 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Lazy;
+import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatusCode;
 import org.springframework.http.MediaType;
@@ -29,7 +33,11 @@ import reactor.core.publisher.Mono;
 public class ExternalToolService {
 
   private final ExternalToolRepository externalToolRepository;
-  private final WebClient.Builder webClientBuilder;
+  private final ToolClientRegistry toolClientRegistry;
+  private final RequestTemplateCompiler requestTemplateCompiler;
+  private final ResponseMappingCompiler responseMappingCompiler;
+  private final ToolRegistry toolRegistry;
+  private final UsageCounters usageCounters;
   private final ObjectMapper objectMapper;
 
   private MCPService mcpService;
@@ -37,10 +45,18 @@ public class ExternalToolService {
   @Autowired
   public ExternalToolService(
       ExternalToolRepository externalToolRepository,
-      WebClient.Builder webClientBuilder,
+      ToolClientRegistry toolClientRegistry,
+      RequestTemplateCompiler requestTemplateCompiler,
+      ResponseMappingCompiler responseMappingCompiler,
+      ToolRegistry toolRegistry,
+      UsageCounters usageCounters,
       ObjectMapper objectMapper) {
     this.externalToolRepository = externalToolRepository;
-    this.webClientBuilder = webClientBuilder;
+    this.toolClientRegistry = toolClientRegistry;
+    this.requestTemplateCompiler = requestTemplateCompiler;
+    this.responseMappingCompiler = responseMappingCompiler;
+    this.toolRegistry = toolRegistry;
+    this.usageCounters = usageCounters;
     this.objectMapper = objectMapper;
   }
 
@@ -69,6 +85,7 @@ public class ExternalToolService {
         .build();
 
     return externalToolRepository.save(tool)
+        .doOnNext(toolRegistry::update)
         .map(this::convertToDto)
         .doOnSuccess(savedTool -> log.info("Saved external tool: {}", savedTool.getName()))
         .doOnError(error -> log.error("Error saving external tool: {}", error.getMessage()));
@@ -97,7 +114,9 @@ public class ExternalToolService {
   }
 
   public Mono<String> executeTool(Long toolId, Map<String, Object> parameters) {
-    return externalToolRepository.findById(toolId)
+    // Inactive and unknown tools are not in the registry; the repository tells them apart
+    return toolRegistry.findById(toolId)
+        .switchIfEmpty(Mono.defer(() -> externalToolRepository.findById(toolId)))
         .switchIfEmpty(
             Mono.error(new RuntimeException("External tool not found with id: " + toolId)))
         .flatMap(tool -> {
@@ -114,7 +133,7 @@ public class ExternalToolService {
             if (mcpService == null) {
               log.warn("MCPService not initialized, falling back to standard execution for tool: {}", tool.getName());
               return executeToolRequest(tool, parameters)
-                  .flatMap(response -> externalToolRepository.recordUsage(toolId).then(Mono.just(response)));
+                  .doOnNext(response -> usageCounters.recordToolUse(toolId));
             }
 
             // Extract the input parameter for MCP processing
@@ -122,16 +141,13 @@ public class ExternalToolService {
 
             // Use MCPService to execute the tool
             return mcpService.executeMCPTool(tool, input)
-                .flatMap(response -> externalToolRepository.recordUsage(toolId).then(Mono.just(response)));
+                .doOnNext(response -> usageCounters.recordToolUse(toolId));
           }
 
           // Standard execution for non-MCP tools
           return executeToolRequest(tool, parameters)
-              .flatMap(response -> {
-                // Record usage after successful execution
-                return externalToolRepository.recordUsage(toolId)
-                    .then(Mono.just(response));
-              });
+              // Record usage after successful execution; written with the next usage flush
+              .doOnNext(response -> usageCounters.recordToolUse(toolId));
         })
         .doOnSuccess(response -> log.info("Successfully executed tool {}", toolId))
         .doOnError(error -> log.error("Error executing tool {}: {}", toolId, error.getMessage()));
@@ -142,6 +158,12 @@ public class ExternalToolService {
         .switchIfEmpty(
             Mono.error(new RuntimeException("External tool not found with id: " + toolId)))
         .flatMap(tool -> externalToolRepository.deleteById(toolId))
+        .doOnSuccess(v -> {
+          toolRegistry.remove(toolId);
+          toolClientRegistry.invalidate(toolId);
+          requestTemplateCompiler.evict(toolId);
+          responseMappingCompiler.evict(toolId);
+        })
         .doOnSuccess(v -> log.info("Deleted external tool with id: {}", toolId))
         .doOnError(error -> log.error("Error deleting tool {}: {}", toolId, error.getMessage()));
   }
@@ -169,6 +191,12 @@ public class ExternalToolService {
 
           return externalToolRepository.save(updatedTool);
         })
+        .doOnNext(updatedTool -> {
+          toolRegistry.update(updatedTool);
+          toolClientRegistry.invalidate(toolId);
+          requestTemplateCompiler.evict(toolId);
+          responseMappingCompiler.evict(toolId);
+        })
         .map(this::convertToDto)
         .doOnSuccess(updatedTool -> log.info("Updated external tool: {}", updatedTool.getName()))
         .doOnError(error -> log.error("Error updating tool {}: {}", toolId, error.getMessage()));
@@ -177,10 +205,10 @@ public class ExternalToolService {
   private Mono<String> executeToolRequest(ExternalTool tool, Map<String, Object> parameters) {
     return Mono.fromCallable(() -> {
           try {
-            WebClient webClient = webClientBuilder.build();
+            WebClient webClient = toolClientRegistry.forTool(tool);
 
             // Prepare request body from template
-            String requestBody = processRequestTemplate(tool.getRequestTemplate(), parameters);
+            String requestBody = requestTemplateCompiler.render(tool, parameters);
 
             // Prepare headers
             HttpHeaders headers = new HttpHeaders();
@@ -191,48 +219,39 @@ public class ExternalToolService {
             String uri = buildUriWithParameters(tool.getEndpointUrl(), tool.getHttpMethod(),
                 parameters);
 
-            return switch (tool.getHttpMethod()) {
+            WebClient.ResponseSpec response = switch (tool.getHttpMethod()) {
               case GET -> webClient.get()
                   .uri(uri)
                   .headers(httpHeaders -> httpHeaders.addAll(headers))
-                  .retrieve()
-                  .onStatus(HttpStatusCode::isError, this::handleErrorResponse)
-                  .bodyToMono(String.class);
+                  .retrieve();
               case POST -> webClient.post()
                   .uri(tool.getEndpointUrl())
                   .headers(httpHeaders -> httpHeaders.addAll(headers))
                   .bodyValue(requestBody)
-                  .retrieve()
-                  .onStatus(HttpStatusCode::isError, this::handleErrorResponse)
-                  .bodyToMono(String.class);
+                  .retrieve();
               case PUT -> webClient.put()
                   .uri(tool.getEndpointUrl())
                   .headers(httpHeaders -> httpHeaders.addAll(headers))
                   .bodyValue(requestBody)
-                  .retrieve()
-                  .onStatus(HttpStatusCode::isError, this::handleErrorResponse)
-                  .bodyToMono(String.class);
+                  .retrieve();
               case DELETE -> webClient.delete()
                   .uri(tool.getEndpointUrl())
                   .headers(httpHeaders -> httpHeaders.addAll(headers))
-                  .retrieve()
-                  .onStatus(HttpStatusCode::isError, this::handleErrorResponse)
-                  .bodyToMono(String.class);
+                  .retrieve();
               case PATCH -> webClient.patch()
                   .uri(tool.getEndpointUrl())
                   .headers(httpHeaders -> httpHeaders.addAll(headers))
                   .bodyValue(requestBody)
-                  .retrieve()
-                  .onStatus(HttpStatusCode::isError, this::handleErrorResponse)
-                  .bodyToMono(String.class);
+                  .retrieve();
             };
+            return readResponse(tool,
+                response.onStatus(HttpStatusCode::isError, this::handleErrorResponse));
           } catch (Exception e) {
             log.error("Error preparing request for external tool: {}", tool.getName(), e);
             throw new RuntimeException("Failed to prepare external tool request", e);
           }
         })
         .flatMap(responseMono -> responseMono)
-        .map(response -> processResponse(response, tool.getResponseMapping(), parameters))
         .onErrorMap(WebClientResponseException.class, ex ->
             new RuntimeException("External tool request failed: " + ex.getMessage(), ex))
         .timeout(Duration.ofSeconds(30))
@@ -240,6 +259,15 @@ public class ExternalToolService {
             error.getMessage()));
   }
 
+  private Mono<String> readResponse(ExternalTool tool, WebClient.ResponseSpec response) {
+    ResponseMapping mapping = responseMappingCompiler.compile(tool);
+    if (mapping.isPassthrough()) {
+      return response.bodyToMono(String.class);
+    }
+    // Only the mapped values are built; the body is parsed as it arrives
+    return responseMappingCompiler.extract(mapping, response.bodyToFlux(DataBuffer.class));
+  }
+
   private Mono<Throwable> handleErrorResponse(ClientResponse response) {
     return response.bodyToMono(String.class)
         .defaultIfEmpty("Unknown error")
@@ -261,26 +289,6 @@ public class ExternalToolService {
     return builder.toUriString();
   }
 
-  private String processRequestTemplate(String template, Map<String, Object> parameters) {
-    if (template == null || template.trim().isEmpty()) {
-      try {
-        return objectMapper.writeValueAsString(parameters);
-      } catch (JsonProcessingException e) {
-        log.warn("Failed to serialize parameters to JSON: {}", e.getMessage());
-        return "{}";
-      }
-    }
-
-    String processed = template;
-    for (Map.Entry<String, Object> entry : parameters.entrySet()) {
-      String placeholder = "{{" + entry.getKey() + "}}";
-      String value = entry.getValue() != null ? entry.getValue().toString() : "";
-      processed = processed.replace(placeholder, value);
-    }
-
-    return processed;
-  }
-
   private void addAuthHeaders(HttpHeaders headers, ExternalTool tool) {
     if (tool.getAuthType() == ExternalTool.AuthType.NONE || tool.getAuthConfig() == null) {
       return;
@@ -315,29 +323,6 @@ public class ExternalToolService {
     }
   }
 
-  private String processResponse(String response, String responseMapping,
-      Map<String, Object> parameters) {
-    if (responseMapping == null || responseMapping.trim().isEmpty()) {
-      return response;
-    }
-
-    try {
-      JsonNode responseNode = objectMapper.readTree(response);
-      JsonNode mappingNode = objectMapper.readTree(responseMapping);
-
-      if (mappingNode.has("extract")) {
-        String extractPath = mappingNode.get("extract").asText();
-        JsonNode extractedValue = responseNode.at(extractPath);
-        return extractedValue.isTextual() ? extractedValue.asText() : extractedValue.toString();
-      }
-
-      return response;
-    } catch (Exception e) {
-      log.warn("Failed to process response mapping, returning raw response: {}", e.getMessage());
-      return response;
-    }
-  }
-
   public ExternalToolDto convertToDto(ExternalTool tool) {
     return ExternalToolDto.builder()
         .id(tool.getId())
@@ -351,8 +336,8 @@ public class ExternalToolService {
         .responseMapping(tool.getResponseMapping())
         .isActive(tool.getIsActive())
         .toolType(tool.getToolType())
-        .usageCount(tool.getUsageCount())
-        .lastUsedAt(tool.getLastUsedAt())
+        .usageCount(usageCounters.toolUsageCount(tool.getId(), tool.getUsageCount()))
+        .lastUsedAt(usageCounters.toolLastUsedAt(tool.getId(), tool.getLastUsedAt()))
         .createdAt(tool.getCreatedAt())
         .updatedAt(tool.getUpdatedAt())
         // Backward compatibility
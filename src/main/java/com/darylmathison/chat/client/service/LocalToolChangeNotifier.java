@@ -0,0 +1,17 @@
+package com.darylmathison.chat.client.service;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+/**
+ * The embedded database is never shared, so there is nobody to tell.
+ */
+@Component
+@Profile("!postgres")
+public class LocalToolChangeNotifier implements ToolChangeNotifier {
+
+  @Override
+  public void publish() {
+    // Only this node sees the embedded database
+  }
+}
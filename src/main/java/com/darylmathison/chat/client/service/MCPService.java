@@ -24,6 +24,7 @@ import java.util.regex.Pattern;
 public class MCPService {
 
     private final ExternalToolRepository externalToolRepository;
+    private final ToolRegistry toolRegistry;
     private final MCPToolExecutor mcpToolExecutor;
     private final ObjectMapper objectMapper;
 
@@ -50,7 +51,7 @@ public class MCPService {
 
             log.info("Detected MCP tool call: tool={}, input={}", toolName, toolInput);
 
-            return externalToolRepository.findByNameIgnoreCase(toolName)
+            return toolRegistry.findByName(toolName)
                 .switchIfEmpty(Mono.error(new RuntimeException("External tool not found: " + toolName)))
                 .flatMap(tool -> executeMCPTool(tool, toolInput));
         }
@@ -136,6 +137,7 @@ public class MCPService {
             .toolType("MCP_REST_WRAPPER")
             .build();
 
-        return externalToolRepository.save(mcpWrapper);
+        return externalToolRepository.save(mcpWrapper)
+            .doOnNext(toolRegistry::update);
     }
 }
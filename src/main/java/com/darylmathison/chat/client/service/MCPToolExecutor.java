@@ -1,7 +1,7 @@
 package com.darylmathison.chat.client.service;
 
 import com.darylmathison.chat.client.model.ExternalTool;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.darylmathison.chat.client.template.RequestTemplateCompiler;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpHeaders;
@@ -23,8 +23,8 @@ import java.util.Map;
 @Slf4j
 public class MCPToolExecutor {
 
-    private final ObjectMapper objectMapper;
-    private final WebClient.Builder webClientBuilder;
+    private final ToolClientRegistry toolClientRegistry;
+    private final RequestTemplateCompiler requestTemplateCompiler;
 
     /**
      * Execute a tool request directly without going through ExternalToolService.
@@ -35,10 +35,10 @@ public class MCPToolExecutor {
      */
     public Mono<String> executeToolRequest(ExternalTool tool, Map<String, Object> parameters) {
         try {
-            WebClient webClient = webClientBuilder.build();
+            WebClient webClient = toolClientRegistry.forTool(tool);
             
             // Prepare request body from template
-            String requestBody = processRequestTemplate(tool.getRequestTemplate(), parameters);
+            String requestBody = requestTemplateCompiler.render(tool, parameters);
             
             // Prepare headers
             HttpHeaders headers = new HttpHeaders();
@@ -106,26 +106,4 @@ public class MCPToolExecutor {
             return Mono.error(new RuntimeException("Failed to prepare tool request: " + e.getMessage(), e));
         }
     }
-    
-    /**
-     * Process a request template with parameters.
-     */
-    private String processRequestTemplate(String template, Map<String, Object> parameters) {
-        if (template == null || template.trim().isEmpty()) {
-            try {
-                return objectMapper.writeValueAsString(parameters);
-            } catch (Exception e) {
-                return "{}";
-            }
-        }
-        
-        String processed = template;
-        for (Map.Entry<String, Object> entry : parameters.entrySet()) {
-            String placeholder = "{{" + entry.getKey() + "}}";
-            String value = entry.getValue() != null ? entry.getValue().toString() : "";
-            processed = processed.replace(placeholder, value);
-        }
-        
-        return processed;
-    }
-}
\ No newline at end of file
+}
@@ -1,7 +1,6 @@
 package com.darylmathison.chat.client.service;
 
 import com.darylmathison.chat.client.model.ExternalTool;
-import com.darylmathison.chat.client.repository.ExternalToolRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -21,7 +20,7 @@ import java.util.regex.Pattern;
 @Slf4j
 public class MessageParserService {
 
-    private final ExternalToolRepository externalToolRepository;
+    private final ToolRegistry toolRegistry;
     private final ExternalToolService externalToolService;
     private MCPService mcpService;
 
@@ -30,9 +29,9 @@ public class MessageParserService {
 
     @Autowired
     public MessageParserService(
-        ExternalToolRepository externalToolRepository,
+        ToolRegistry toolRegistry,
         ExternalToolService externalToolService) {
-        this.externalToolRepository = externalToolRepository;
+        this.toolRegistry = toolRegistry;
         this.externalToolService = externalToolService;
     }
 
@@ -67,7 +66,7 @@ public class MessageParserService {
 
             log.info("Detected tool call (legacy mode): tool={}, input={}", toolName, toolInput);
 
-            return externalToolRepository.findByNameIgnoreCase(toolName)
+            return toolRegistry.findByName(toolName)
                 .switchIfEmpty(Mono.error(new RuntimeException("External tool not found: " + toolName)))
                 .flatMap(tool -> {
                     Map<String, Object> parameters = new HashMap<>();
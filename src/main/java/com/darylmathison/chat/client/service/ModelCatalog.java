@@ -0,0 +1,272 @@
+package com.darylmathison.chat.client.service;
+
+import com.darylmathison.chat.client.dto.ModelInfo;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * In-memory catalog of OpenRouter models with their pricing and context length.
+ * <p>
+ * Reads are served from an immutable snapshot that is swapped atomically by a background refresh.
+ * Refreshes send If-None-Match / If-Modified-Since so an unchanged catalog costs a 304, and the
+ * last snapshot is written to disk so the application starts with a usable catalog even when
+ * OpenRouter is unreachable.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ModelCatalog {
+
+  private static final double PER_MILLION = 1_000_000.0;
+
+  private final WebClient openRouterWebClient;
+  private final ObjectMapper objectMapper;
+
+  @Value("${openrouter.models.snapshot-file:data/model-catalog.json}")
+  private String snapshotFile;
+
+  private volatile Snapshot snapshot = Snapshot.EMPTY;
+  private final AtomicBoolean refreshing = new AtomicBoolean();
+
+  @PostConstruct
+  void loadPersistedSnapshot() {
+    Path path = Path.of(snapshotFile);
+    if (!Files.isReadable(path)) {
+      return;
+    }
+    try {
+      PersistedSnapshot persisted = objectMapper.readValue(path.toFile(), PersistedSnapshot.class);
+      if (persisted.models() == null) {
+        return;
+      }
+      install(new Snapshot(persisted.models(), persisted.etag(), persisted.lastModified(),
+          persisted.fetchedAt()));
+      log.info("Loaded {} models from catalog snapshot {}", persisted.models().size(), path);
+    } catch (IOException e) {
+      log.warn("Ignoring unreadable model catalog snapshot {}: {}", path, e.getMessage());
+    }
+  }
+
+  @Scheduled(initialDelayString = "${openrouter.models.initial-delay:PT0S}",
+      fixedDelayString = "${openrouter.models.refresh-interval:PT1H}")
+  public void scheduledRefresh() {
+    refresh().subscribe(
+        changed -> log.debug("Model catalog refresh finished (changed={})", changed),
+        error -> log.warn("Model catalog refresh failed, keeping snapshot from {}: {}",
+            snapshot.fetchedAt(), error.getMessage()));
+  }
+
+  /**
+   * Fetch the model list from OpenRouter unless it is unchanged since the current snapshot.
+   *
+   * @return A Mono emitting true when a new snapshot was installed, false when it was unchanged or
+   * a refresh was already running
+   */
+  public Mono<Boolean> refresh() {
+    return Mono.defer(() -> {
+      if (!refreshing.compareAndSet(false, true)) {
+        return Mono.just(false);
+      }
+      Snapshot current = snapshot;
+      return openRouterWebClient.get()
+          .uri("/models")
+          .headers(headers -> {
+            if (current.etag() != null) {
+              headers.setIfNoneMatch(current.etag());
+            }
+            if (current.lastModified() != null) {
+              headers.set(HttpHeaders.IF_MODIFIED_SINCE, current.lastModified());
+            }
+          })
+          .exchangeToMono(response -> {
+            if (response.statusCode().isSameCodeAs(HttpStatus.NOT_MODIFIED)) {
+              return response.releaseBody().thenReturn(false);
+            }
+            if (response.statusCode().isError()) {
+              return response.<Boolean>createError();
+            }
+            HttpHeaders headers = response.headers().asHttpHeaders();
+            String etag = headers.getETag();
+            String lastModified = headers.getFirst(HttpHeaders.LAST_MODIFIED);
+            return response.bodyToMono(byte[].class)
+                .map(body -> {
+                  install(new Snapshot(parseModels(body), etag, lastModified, Instant.now()));
+                  return true;
+                });
+          })
+          .flatMap(changed -> changed ? persist(snapshot).thenReturn(true) : Mono.just(false))
+          .doFinally(signal -> refreshing.set(false));
+    });
+  }
+
+  public boolean isEmpty() {
+    return snapshot.models().isEmpty();
+  }
+
+  public Instant lastRefreshed() {
+    return snapshot.fetchedAt();
+  }
+
+  /**
+   * @return All model ids, sorted case-insensitively
+   */
+  public List<String> getModelIds() {
+    return snapshot.ids();
+  }
+
+  public Optional<ModelInfo> find(String modelId) {
+    return modelId == null ? Optional.empty() : Optional.ofNullable(snapshot.byId().get(modelId));
+  }
+
+  /**
+   * Filter the catalog on the server side.
+   *
+   * @param maxPromptPrice   Ceiling on the prompt price in USD per million tokens, or null
+   * @param minContextLength Minimum context window in tokens, or null
+   * @param freeOnly         Only return models with zero prompt and completion price
+   * @param query            Case-insensitive substring of the id or name, or null
+   */
+  public List<ModelInfo> search(Double maxPromptPrice, Integer minContextLength, boolean freeOnly,
+      String query) {
+    String needle = query == null || query.isBlank() ? null : query.toLowerCase(Locale.ROOT);
+    List<ModelInfo> matches = new ArrayList<>();
+    for (ModelInfo model : snapshot.models()) {
+      if (freeOnly && !model.isFree()) {
+        continue;
+      }
+      if (maxPromptPrice != null && (model.promptPrice() == null
+          || model.promptPrice() * PER_MILLION > maxPromptPrice)) {
+        continue;
+      }
+      if (minContextLength != null && (model.contextLength() == null
+          || model.contextLength() < minContextLength)) {
+        continue;
+      }
+      if (needle != null && !model.id().toLowerCase(Locale.ROOT).contains(needle)
+          && (model.name() == null || !model.name().toLowerCase(Locale.ROOT).contains(needle))) {
+        continue;
+      }
+      matches.add(model);
+    }
+    return matches;
+  }
+
+  List<ModelInfo> parseModels(byte[] body) {
+    try {
+      JsonNode data = objectMapper.readTree(body).path("data");
+      List<ModelInfo> models = new ArrayList<>(data.size());
+      for (JsonNode model : data) {
+        String id = model.path("id").asText(null);
+        if (id == null) {
+          continue;
+        }
+        JsonNode pricing = model.path("pricing");
+        models.add(new ModelInfo(
+            id,
+            model.path("name").asText(id),
+            model.hasNonNull("context_length") ? model.get("context_length").asInt() : null,
+            parsePrice(pricing.path("prompt")),
+            parsePrice(pricing.path("completion")),
+            parsePrice(pricing.path("input_cache_read")),
+            parsePrice(pricing.path("input_cache_write"))));
+      }
+      return models;
+    } catch (IOException e) {
+      throw new RuntimeException("Failed to parse OpenRouter model list", e);
+    }
+  }
+
+  void install(Snapshot next) {
+    snapshot = next;
+  }
+
+  private Double parsePrice(JsonNode price) {
+    // OpenRouter sends prices as decimal strings; "-1" means the price is variable or unknown
+    if (price.isMissingNode() || price.isNull()) {
+      return null;
+    }
+    try {
+      double value = Double.parseDouble(price.asText());
+      return value < 0 ? null : value;
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  private Mono<Void> persist(Snapshot toPersist) {
+    return Mono.<Void>fromRunnable(() -> {
+          Path path = Path.of(snapshotFile);
+          try {
+            Path parent = path.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            Path temp = Files.createTempFile(parent, "model-catalog", ".tmp");
+            objectMapper.writeValue(temp.toFile(), new PersistedSnapshot(toPersist.models(),
+                toPersist.etag(), toPersist.lastModified(), toPersist.fetchedAt()));
+            try {
+              Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING,
+                  StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+              Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+          } catch (IOException e) {
+            log.warn("Failed to persist model catalog snapshot to {}: {}", path, e.getMessage());
+          }
+        })
+        .subscribeOn(Schedulers.boundedElastic());
+  }
+
+  record Snapshot(List<ModelInfo> models, Map<String, ModelInfo> byId, List<String> ids,
+                  String etag, String lastModified, Instant fetchedAt) {
+
+    static final Snapshot EMPTY = new Snapshot(List.of(), null, null, null);
+
+    Snapshot(List<ModelInfo> models, String etag, String lastModified, Instant fetchedAt) {
+      this(sorted(models), index(models), sorted(models).stream().map(ModelInfo::id).toList(),
+          etag, lastModified, fetchedAt);
+    }
+
+    private static List<ModelInfo> sorted(List<ModelInfo> models) {
+      return models.stream()
+          .sorted(Comparator.comparing(ModelInfo::id, String.CASE_INSENSITIVE_ORDER))
+          .toList();
+    }
+
+    private static Map<String, ModelInfo> index(List<ModelInfo> models) {
+      Map<String, ModelInfo> byId = new HashMap<>(models.size() * 2);
+      for (ModelInfo model : models) {
+        byId.put(model.id(), model);
+      }
+      return Map.copyOf(byId);
+    }
+  }
+
+  record PersistedSnapshot(List<ModelInfo> models, String etag, String lastModified,
+                           Instant fetchedAt) {
+
+  }
+}
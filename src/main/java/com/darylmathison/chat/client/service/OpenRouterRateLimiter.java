@@ -0,0 +1,330 @@
+package com.darylmathison.chat.client.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import reactor.core.publisher.Mono;
+
+/**
+ * Client-side token bucket in front of OpenRouter completions, keyed per API key and model.
+ * <p>
+ * Requests reserve a permit before they are sent. When the bucket is empty the request waits for
+ * its reserved slot instead of failing, as long as the wait fits within {@code max-wait} and no
+ * more than {@code max-queue} requests are already waiting; otherwise it is rejected with a
+ * {@link RateLimitedException} so the caller can fall back to another model. Buckets start from
+ * the configured per-minute rates and are corrected from OpenRouter's X-RateLimit-Limit,
+ * X-RateLimit-Remaining and X-RateLimit-Reset response headers.
+ * <p>
+ * Only requests carrying the {@link #MODEL_ATTRIBUTE} attribute are limited.
+ */
+@Component
+@Slf4j
+public class OpenRouterRateLimiter {
+
+  public static final String MODEL_ATTRIBUTE = OpenRouterRateLimiter.class.getName() + ".model";
+
+  private static final String LIMIT_HEADER = "X-RateLimit-Limit";
+  private static final String REMAINING_HEADER = "X-RateLimit-Remaining";
+  private static final String RESET_HEADER = "X-RateLimit-Reset";
+
+  private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+  private final AtomicInteger queueDepth = new AtomicInteger();
+  private final Counter rejected;
+  private final Timer freeWaitTimer;
+  private final Timer paidWaitTimer;
+
+  @Value("${openrouter.rate-limit.enabled:true}")
+  private boolean enabled = true;
+
+  // OpenRouter documents 20 requests per minute for ":free" model variants
+  @Value("${openrouter.rate-limit.free-requests-per-minute:20}")
+  private int freeRequestsPerMinute = 20;
+
+  // 0 means unlimited until the response headers report a limit
+  @Value("${openrouter.rate-limit.requests-per-minute:0}")
+  private int requestsPerMinute;
+
+  @Value("${openrouter.rate-limit.max-queue:100}")
+  private int maxQueue = 100;
+
+  @Value("${openrouter.rate-limit.max-wait:30s}")
+  private Duration maxWait = Duration.ofSeconds(30);
+
+  public OpenRouterRateLimiter(MeterRegistry meterRegistry) {
+    meterRegistry.gauge("openrouter.ratelimit.queue.depth", queueDepth);
+    this.rejected = Counter.builder("openrouter.ratelimit.rejected")
+        .description("Requests rejected because the wait would exceed the deadline or queue")
+        .register(meterRegistry);
+    this.freeWaitTimer = waitTimer(meterRegistry, "free");
+    this.paidWaitTimer = waitTimer(meterRegistry, "paid");
+  }
+
+  /**
+   * Filter for the OpenRouter WebClient: waits for a permit before the exchange and feeds the
+   * rate-limit headers of the response back into the bucket.
+   */
+  public ExchangeFilterFunction filter() {
+    return (request, next) -> {
+      Optional<Object> model = request.attribute(MODEL_ATTRIBUTE);
+      if (!enabled || model.isEmpty()) {
+        return next.exchange(request);
+      }
+      String modelName = model.get().toString();
+      String bucketKey = bucketKey(request.headers().getFirst(HttpHeaders.AUTHORIZATION),
+          modelName);
+      return acquire(bucketKey, modelName)
+          .then(Mono.defer(() -> next.exchange(request)))
+          .doOnNext(response -> observe(bucketKey, response.statusCode(),
+              response.headers().asHttpHeaders()));
+    };
+  }
+
+  /**
+   * Reserve a permit, completing once it may be used.
+   */
+  public Mono<Void> acquire(String bucketKey, String model) {
+    return Mono.defer(() -> {
+      Bucket bucket = bucket(bucketKey, model);
+      long waitNanos = bucket.reserve(System.nanoTime(), maxWait.toNanos());
+      if (waitNanos < 0) {
+        return reject(model, "wait would exceed " + maxWait.toMillis() + " ms");
+      }
+      Timer waitTimer = isFree(model) ? freeWaitTimer : paidWaitTimer;
+      if (waitNanos == 0) {
+        waitTimer.record(Duration.ZERO);
+        return Mono.empty();
+      }
+      if (!enterQueue()) {
+        bucket.release();
+        return reject(model, "queue is full");
+      }
+      log.debug("Rate limit reached for {}, waiting {} ms", model, waitNanos / 1_000_000);
+      return Mono.delay(Duration.ofNanos(waitNanos))
+          // A request abandoned while waiting (disconnect, hedge won, timeout) gives its slot back
+          .doOnCancel(bucket::release)
+          .doFinally(signal -> {
+            queueDepth.decrementAndGet();
+            waitTimer.record(Duration.ofNanos(waitNanos));
+          })
+          .then();
+    });
+  }
+
+  /**
+   * Correct a bucket from OpenRouter's view of the limit.
+   */
+  public void observe(String bucketKey, HttpStatusCode status, HttpHeaders headers) {
+    Bucket bucket = buckets.get(bucketKey);
+    if (bucket == null) {
+      return;
+    }
+    long limit = parseLong(headers.getFirst(LIMIT_HEADER), -1);
+    long remaining = parseLong(headers.getFirst(REMAINING_HEADER), -1);
+    long untilResetNanos = untilReset(headers.getFirst(RESET_HEADER));
+    if (status.value() == 429) {
+      // Whatever the headers say, the server has nothing left for this window
+      remaining = 0;
+    }
+    if (limit >= 0 || remaining >= 0) {
+      bucket.sync(System.nanoTime(), limit, remaining, untilResetNanos);
+    }
+  }
+
+  int queueDepth() {
+    return queueDepth.get();
+  }
+
+  String bucketKey(String authorization, String model) {
+    // Never keep the API key itself around; a short fingerprint is enough to tell keys apart
+    return fingerprint(authorization) + ":" + model;
+  }
+
+  /**
+   * Take a place in the queue, unless {@code max-queue} requests are already waiting. Checked and
+   * taken in one step, so concurrent callers cannot overshoot the bound.
+   */
+  private boolean enterQueue() {
+    int depth;
+    do {
+      depth = queueDepth.get();
+      if (depth >= maxQueue) {
+        return false;
+      }
+    } while (!queueDepth.compareAndSet(depth, depth + 1));
+    return true;
+  }
+
+  private Bucket bucket(String bucketKey, String model) {
+    return buckets.computeIfAbsent(bucketKey, key -> {
+      int perMinute = isFree(model) ? freeRequestsPerMinute : requestsPerMinute;
+      return new Bucket(perMinute, System.nanoTime());
+    });
+  }
+
+  private Mono<Void> reject(String model, String reason) {
+    rejected.increment();
+    log.warn("Rejecting OpenRouter request for {}: {}", model, reason);
+    return Mono.error(new RateLimitedException(
+        "Rate limit for " + model + " reached and " + reason));
+  }
+
+  private static Timer waitTimer(MeterRegistry meterRegistry, String tier) {
+    return Timer.builder("openrouter.ratelimit.wait")
+        .description("Time completions waited for a rate-limit permit")
+        .tag("tier", tier)
+        .register(meterRegistry);
+  }
+
+  private boolean isFree(String model) {
+    return model.endsWith(":free");
+  }
+
+  private long untilReset(String reset) {
+    long value = parseLong(reset, -1);
+    if (value < 0) {
+      return -1;
+    }
+    long nowMillis = System.currentTimeMillis();
+    long untilMillis;
+    if (value > 1_000_000_000_000L) {
+      untilMillis = value - nowMillis; // epoch milliseconds
+    } else if (value > 1_000_000_000L) {
+      untilMillis = value * 1000 - nowMillis; // epoch seconds
+    } else {
+      untilMillis = value * 1000; // seconds from now
+    }
+    return Math.max(0, untilMillis) * 1_000_000;
+  }
+
+  private long parseLong(String value, long defaultValue) {
+    if (value == null || value.isBlank()) {
+      return defaultValue;
+    }
+    try {
+      return (long) Double.parseDouble(value.trim());
+    } catch (NumberFormatException e) {
+      return defaultValue;
+    }
+  }
+
+  private String fingerprint(String authorization) {
+    if (authorization == null) {
+      return "anonymous";
+    }
+    try {
+      byte[] digest = MessageDigest.getInstance("SHA-256")
+          .digest(authorization.getBytes(StandardCharsets.UTF_8));
+      return HexFormat.of().formatHex(digest, 0, 6);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 not available", e);
+    }
+  }
+
+  /**
+   * Token bucket that hands out reservations: tokens may go negative, and the deficit is how long
+   * the newest reservation has to wait.
+   */
+  static final class Bucket {
+
+    private static final double NANOS_PER_MINUTE = 60_000_000_000.0;
+
+    private double capacity;
+    private double tokens;
+    private double refillPerNano;
+    private long lastRefill;
+
+    Bucket(int perMinute, long now) {
+      setCapacity(perMinute);
+      this.tokens = capacity;
+      this.lastRefill = now;
+    }
+
+    /**
+     * @return Nanoseconds to wait before the permit may be used, or -1 if that exceeds the
+     * maximum wait (in which case nothing is reserved)
+     */
+    synchronized long reserve(long now, long maxWaitNanos) {
+      if (capacity <= 0) {
+        return 0;
+      }
+      refill(now);
+      tokens -= 1;
+      if (tokens >= 0) {
+        return 0;
+      }
+      long waitNanos = (long) Math.ceil(-tokens / refillPerNano);
+      if (waitNanos > maxWaitNanos) {
+        tokens += 1;
+        return -1;
+      }
+      return waitNanos;
+    }
+
+    /**
+     * Return a reservation that will not be used.
+     */
+    synchronized void release() {
+      if (capacity > 0) {
+        tokens = Math.min(capacity, tokens + 1);
+      }
+    }
+
+    synchronized void sync(long now, long limit, long remaining, long untilResetNanos) {
+      if (limit > 0 && limit != capacity) {
+        boolean wasUnlimited = capacity <= 0;
+        setCapacity(limit);
+        if (wasUnlimited) {
+          tokens = capacity;
+          lastRefill = now;
+        }
+      }
+      if (capacity <= 0) {
+        return;
+      }
+      refill(now);
+      // The server's count wins when it is lower; our own reservations are already deducted
+      if (remaining >= 0 && remaining < tokens) {
+        tokens = remaining;
+      }
+      if (remaining == 0 && untilResetNanos > 0) {
+        // Next permit no earlier than the window reset
+        tokens = Math.min(tokens, 1 - untilResetNanos * refillPerNano);
+      }
+    }
+
+    private void setCapacity(double perMinute) {
+      this.capacity = perMinute;
+      this.refillPerNano = perMinute > 0 ? perMinute / NANOS_PER_MINUTE : 0;
+    }
+
+    private void refill(long now) {
+      tokens = Math.min(capacity, tokens + (now - lastRefill) * refillPerNano);
+      lastRefill = now;
+    }
+  }
+
+  /**
+   * Raised when a request cannot get a permit within the configured wait or queue bounds.
+   */
+  public static class RateLimitedException extends RuntimeException {
+
+    public RateLimitedException(String message) {
+      super(message);
+    }
+  }
+}
@@ -0,0 +1,112 @@
+package com.darylmathison.chat.client.service;
+
+import io.r2dbc.postgresql.api.Notification;
+import io.r2dbc.postgresql.api.PostgresqlConnection;
+import io.r2dbc.postgresql.api.PostgresqlResult;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.Wrapped;
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.UUID;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+/**
+ * Keeps the {@link ToolRegistry} of every node in step through Postgres LISTEN/NOTIFY.
+ * <p>
+ * Each change is announced with {@code pg_notify} on {@value #CHANNEL}, carrying the id of the
+ * node that made it. Every node listens on a dedicated connection, opened outside the pool so it
+ * does not hold a pooled slot for good, and refreshes its registry when another node announces a
+ * change. Notifications sent while a node was not listening are lost, so the registry is also
+ * refreshed each time the listener (re)connects.
+ */
+@Component
+@Profile("postgres")
+@RequiredArgsConstructor
+@Slf4j
+public class PostgresToolChangeNotifier implements ToolChangeNotifier {
+
+  static final String CHANNEL = "external_tools_changed";
+
+  private final ConnectionFactory connectionFactory;
+  private final DatabaseClient databaseClient;
+  private final ToolRegistry toolRegistry;
+
+  private final String nodeId = UUID.randomUUID().toString();
+
+  @Value("${tools.registry.reconnect-delay:5s}")
+  private Duration reconnectDelay = Duration.ofSeconds(5);
+
+  private Disposable listener;
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void listen() {
+    listener = Flux.usingWhen(connect(), this::notifications, PostgresqlConnection::close)
+        .retryWhen(Retry.fixedDelay(Long.MAX_VALUE, reconnectDelay)
+            .doBeforeRetry(signal -> log.warn("Lost the external tool change listener, "
+                + "reconnecting: {}", signal.failure().getMessage())))
+        .subscribe(this::onNotification,
+            error -> log.error("External tool change listener stopped: {}", error.getMessage()));
+  }
+
+  @Override
+  public void publish() {
+    databaseClient.sql("SELECT pg_notify('" + CHANNEL + "', :node)")
+        .bind("node", nodeId)
+        .then()
+        .subscribe(null, error -> log.warn("Could not announce external tool change: {}",
+            error.getMessage()));
+  }
+
+  @PreDestroy
+  public void close() {
+    if (listener != null) {
+      listener.dispose();
+    }
+  }
+
+  private Mono<PostgresqlConnection> connect() {
+    ConnectionFactory factory = connectionFactory;
+    while (factory instanceof Wrapped<?> wrapped
+        && wrapped.unwrap() instanceof ConnectionFactory unwrapped) {
+      factory = unwrapped;
+    }
+    return Mono.from(factory.create())
+        .flatMap(connection -> connection instanceof PostgresqlConnection postgres
+            ? Mono.just(postgres)
+            : Mono.error(new IllegalStateException("Not a Postgres connection: "
+                + connection.getClass().getName())));
+  }
+
+  private Flux<Notification> notifications(PostgresqlConnection connection) {
+    return connection.createStatement("LISTEN " + CHANNEL)
+        .execute()
+        .flatMap(PostgresqlResult::getRowsUpdated)
+        .then()
+        .thenMany(Flux.merge(
+            connection.getNotifications(),
+            // Catch up on whatever changed while nobody was listening
+            toolRegistry.refresh().then(Mono.<Notification>empty())))
+        .concatWith(Mono.error(new IllegalStateException("Listener connection closed")))
+        .doOnSubscribe(subscription -> log.info("Listening for external tool changes"));
+  }
+
+  private void onNotification(Notification notification) {
+    if (nodeId.equals(notification.getParameter())) {
+      return;
+    }
+    log.debug("External tools changed on another node, refreshing");
+    toolRegistry.refresh().subscribe(null,
+        error -> log.warn("Could not refresh external tools: {}", error.getMessage()));
+  }
+}
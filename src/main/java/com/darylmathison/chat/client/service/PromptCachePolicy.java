@@ -0,0 +1,83 @@
+package com.darylmathison.chat.client.service;
+
+import com.darylmathison.chat.client.dto.OpenRouterChatRequest.ChatMessage;
+import com.darylmathison.chat.client.tokenizer.TokenizerRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Where to place prompt cache breakpoints in an OpenRouter request.
+ * <p>
+ * OpenAI, DeepSeek and most other providers cache a repeated prompt prefix on their own; Anthropic
+ * and Gemini models only cache up to messages marked with {@code cache_control}. For models
+ * matching {@code openrouter.prompt-cache.breakpoint-models}, the end of the leading system
+ * messages and the end of the history (the message before the new turn) are marked, provided the
+ * prompt up to that point reaches {@code min-tokens}: providers do not cache shorter prefixes,
+ * and Anthropic bills cache writes above the normal prompt price. Either way a cache only hits if
+ * the prefix is byte-identical from one request to the next, which the request encoder and the
+ * {@link ContextAssembler}'s stable history window take care of.
+ */
+@Component
+@RequiredArgsConstructor
+public class PromptCachePolicy {
+
+  @Value("${openrouter.prompt-cache.enabled:true}")
+  private boolean enabled = true;
+
+  // OpenRouter model id prefixes of the providers that need explicit breakpoints
+  @Value("${openrouter.prompt-cache.breakpoint-models:anthropic/,google/gemini}")
+  private List<String> breakpointModels = List.of("anthropic/", "google/gemini");
+
+  // Smallest prefix worth marking; Anthropic does not cache fewer than 1024 tokens
+  @Value("${openrouter.prompt-cache.min-tokens:1024}")
+  private int minTokens = 1024;
+
+  private final TokenizerRegistry tokenizer;
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * The messages with cache breakpoints added where they pay off for the model; the same list if
+   * none are.
+   */
+  public List<ChatMessage> withBreakpoints(String model, List<ChatMessage> messages) {
+    if (!enabled || messages.size() < 2 || !needsBreakpoints(model)) {
+      return messages;
+    }
+
+    int systemEnd = -1;
+    while (systemEnd + 1 < messages.size() - 1
+        && "system".equals(messages.get(systemEnd + 1).role())) {
+      systemEnd++;
+    }
+    int historyEnd = messages.size() - 2;
+
+    List<ChatMessage> marked = null;
+    int prefixTokens = 0;
+    for (int i = 0; i <= historyEnd; i++) {
+      prefixTokens += tokenizer.countTokens(model, messages.get(i).content());
+      if ((i == systemEnd || i == historyEnd) && prefixTokens >= minTokens) {
+        if (marked == null) {
+          marked = new ArrayList<>(messages);
+        }
+        marked.set(i, messages.get(i).withCacheBreakpoint());
+      }
+    }
+    return marked != null ? marked : messages;
+  }
+
+  boolean needsBreakpoints(String model) {
+    if (model == null) {
+      return false;
+    }
+    String id = model.toLowerCase(Locale.ROOT);
+    return breakpointModels.stream().anyMatch(prefix -> !prefix.isBlank()
+        && id.startsWith(prefix.trim().toLowerCase(Locale.ROOT)));
+  }
+}
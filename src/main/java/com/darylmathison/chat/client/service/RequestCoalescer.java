@@ -0,0 +1,111 @@
+package com.darylmathison.chat.client.service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Single-flight coalescing of identical in-flight OpenRouter calls.
+ * <p>
+ * The first caller for a key starts the upstream call; callers that arrive while it is still
+ * running subscribe to the same shared publisher and receive the same result. The upstream call
+ * is cancelled only when the last subscriber cancels. The key is released before the outcome
+ * reaches any subscriber, so a caller that arrives once the result is out starts a new call rather
+ * than joining a finished one: this never serves a result after the fact (that is
+ * {@link CompletionCache}'s job).
+ */
+@Component
+@Slf4j
+public class RequestCoalescer {
+
+  @Value("${openrouter.coalescing.enabled:true}")
+  private boolean enabled = true;
+
+  private final Map<String, Mono<?>> inFlightCompletions = new ConcurrentHashMap<>();
+  private final Map<String, Flux<?>> inFlightStreams = new ConcurrentHashMap<>();
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Run {@code call} for {@code key}, or join the call already in flight for it.
+   *
+   * @param key The canonical request hash
+   * @param call Supplies the upstream call; only invoked by the first caller
+   * @return A Mono shared by every concurrent caller with the same key
+   */
+  @SuppressWarnings("unchecked")
+  public <T> Mono<T> coalesce(String key, Supplier<Mono<T>> call) {
+    if (!enabled) {
+      return Mono.defer(call);
+    }
+    return Mono.defer(() -> {
+      Mono<?> existing = inFlightCompletions.get(key);
+      if (existing != null) {
+        log.debug("Joining in-flight completion {}", key);
+        return (Mono<T>) existing;
+      }
+      return (Mono<T>) inFlightCompletions.computeIfAbsent(key, k -> share(k, call.get()));
+    });
+  }
+
+  /**
+   * Streaming variant of {@link #coalesce}. Late joiners are replayed the deltas they missed, so
+   * every subscriber sees the complete stream.
+   */
+  @SuppressWarnings("unchecked")
+  public <T> Flux<T> coalesceStream(String key, Supplier<Flux<T>> call) {
+    if (!enabled) {
+      return Flux.defer(call);
+    }
+    return Flux.defer(() -> {
+      Flux<?> existing = inFlightStreams.get(key);
+      if (existing != null) {
+        log.debug("Joining in-flight stream {}", key);
+        return (Flux<T>) existing;
+      }
+      return (Flux<T>) inFlightStreams.computeIfAbsent(key, k -> shareStream(k, call.get()));
+    });
+  }
+
+  int inFlightCount() {
+    return inFlightCompletions.size() + inFlightStreams.size();
+  }
+
+  private <T> Mono<T> share(String key, Mono<T> source) {
+    AtomicReference<Mono<T>> self = new AtomicReference<>();
+    Runnable release = () -> inFlightCompletions.remove(key, self.get());
+    // replay(1).refCount() keeps one upstream subscription for all subscribers and cancels it
+    // when the subscriber count drops to zero. The key is released on the first signal, ahead of
+    // the subscribers, and only if it still maps to this call
+    Mono<T> shared = source
+        .doOnEach(signal -> release.run())
+        .doOnCancel(release)
+        .flux()
+        .replay(1)
+        .refCount()
+        .singleOrEmpty();
+    self.set(shared);
+    return shared;
+  }
+
+  private <T> Flux<T> shareStream(String key, Flux<T> source) {
+    AtomicReference<Flux<T>> self = new AtomicReference<>();
+    Runnable release = () -> inFlightStreams.remove(key, self.get());
+    // Joiners are welcome until the stream ends, so the key is released on the terminal signal
+    Flux<T> shared = source
+        .doOnTerminate(release)
+        .doOnCancel(release)
+        .replay()
+        .refCount();
+    self.set(shared);
+    return shared;
+  }
+}
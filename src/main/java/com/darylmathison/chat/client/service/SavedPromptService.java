@@ -6,11 +6,15 @@ import com.darylmathison.chat.client.dto.SavedPromptDto;
 import com.darylmathison.chat.client.model.Message;
 import com.darylmathison.chat.client.model.SavedPrompt;
 import com.darylmathison.chat.client.repository.SavedPromptRepository;
+import com.darylmathison.chat.client.repository.UsageCounters;
+import com.darylmathison.chat.client.tokenizer.TokenizerRegistry;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
 
@@ -21,6 +25,12 @@ public class SavedPromptService {
 
   private final SavedPromptRepository savedPromptRepository;
   private final ChatService chatService;
+  private final TokenizerRegistry tokenizer;
+  private final CostCalculationService costCalculationService;
+  private final UsageCounters usageCounters;
+
+  @Value("${openrouter.default.model:deepseek/deepseek-r1-0528:free}")
+  private String defaultModel = "deepseek/deepseek-r1-0528:free";
 
   public Mono<SavedPromptDto> savePrompt(SavedPromptDto promptDto) {
     return Mono.just(promptDto)
@@ -30,6 +40,7 @@ public class SavedPromptService {
             .prompt(dto.getPrompt())
             .systemMessage(dto.getSystemMessage())
             .modelName(dto.getModelName())
+            .fallbackModels(dto.getFallbackModels())
             .maxTokens(dto.getMaxTokens())
             .temperature(dto.getTemperature())
             .category(dto.getCategory())
@@ -48,12 +59,8 @@ public class SavedPromptService {
   public Mono<ChatResponse> executePrompt(Long promptId) {
     return savedPromptRepository.findById(promptId)
         .switchIfEmpty(Mono.error(new RuntimeException("Prompt not found with id: " + promptId)))
-        .flatMap(prompt -> {
-            // Increment usage count
-            prompt.incrementUsage();
-            return savedPromptRepository.save(prompt)
-                .then(Mono.just(prompt));
-        })
+        // Increment usage count, in memory until the next usage flush
+        .doOnNext(prompt -> usageCounters.recordPromptUse(promptId))
         .flatMap(prompt -> {
             // Create a ChatRequest from the saved prompt
             Message userMessage = Message.builder()
@@ -67,6 +74,7 @@ public class SavedPromptService {
                 .maxTokens(prompt.getMaxTokens())
                 .temperature(prompt.getTemperature())
                 .systemMessage(prompt.getSystemMessage())
+                .fallbackModels(parseModelList(prompt.getFallbackModels()))
                 .build();
 
             // Use ChatService to create a proper chat conversation
@@ -110,6 +118,7 @@ public class SavedPromptService {
           existingPrompt.setPrompt(promptDto.getPrompt());
           existingPrompt.setSystemMessage(promptDto.getSystemMessage());
           existingPrompt.setModelName(promptDto.getModelName());
+          existingPrompt.setFallbackModels(promptDto.getFallbackModels());
           existingPrompt.setMaxTokens(promptDto.getMaxTokens());
           existingPrompt.setTemperature(promptDto.getTemperature());
           existingPrompt.setCategory(promptDto.getCategory());
@@ -140,13 +149,12 @@ public class SavedPromptService {
     return savedPromptRepository.findById(promptId)
         .switchIfEmpty(Mono.error(new RuntimeException("Prompt not found with id: " + promptId)))
         .map(prompt -> {
-          // Simple cost estimation - you can enhance this
-          int estimatedTokens = (prompt.getPrompt() != null ? prompt.getPrompt().length() / 4 : 0) +
-              (prompt.getSystemMessage() != null ? prompt.getSystemMessage().length() / 4 : 0);
-
-          // Rough cost estimation (adjust based on your model pricing)
-          double costPerToken = 0.000002; // Example rate
-          return estimatedTokens * costPerToken;
+          // Cost of sending the prompt, with the tokenizer and pricing of its model
+          String model = prompt.getModelName() != null && !prompt.getModelName().isBlank()
+              ? prompt.getModelName() : defaultModel;
+          int promptTokens = tokenizer.countTokens(model, prompt.getPrompt())
+              + tokenizer.countTokens(model, prompt.getSystemMessage());
+          return costCalculationService.calculateCost(model, promptTokens, 0);
         })
         .doOnSuccess(cost -> log.info("Estimated cost for prompt {}: ${}", promptId, cost))
         .doOnError(error -> log.error("Error estimating cost for prompt {}: {}", promptId,
@@ -176,9 +184,20 @@ public class SavedPromptService {
         .model(savedPrompt.getModelName())
         .maxTokens(savedPrompt.getMaxTokens())
         .temperature(savedPrompt.getTemperature())
+        .fallbackModels(parseModelList(savedPrompt.getFallbackModels()))
         .build();
   }
 
+  private List<String> parseModelList(String models) {
+    if (models == null || models.isBlank()) {
+      return null;
+    }
+    return Arrays.stream(models.split(","))
+        .map(String::trim)
+        .filter(model -> !model.isEmpty())
+        .toList();
+  }
+
 
   private SavedPromptDto convertToDto(SavedPrompt prompt) {
     return SavedPromptDto.builder()
@@ -188,10 +207,11 @@ public class SavedPromptService {
         .prompt(prompt.getPrompt())
         .systemMessage(prompt.getSystemMessage())
         .modelName(prompt.getModelName())
+        .fallbackModels(prompt.getFallbackModels())
         .maxTokens(prompt.getMaxTokens())
         .temperature(prompt.getTemperature())
         .category(prompt.getCategory())
-        .usageCount(prompt.getUsageCount())
+        .usageCount(usageCounters.promptUsageCount(prompt.getId(), prompt.getUsageCount()))
         .createdAt(prompt.getCreatedAt())
         .updatedAt(prompt.getUpdatedAt())
         .isFavorite(prompt.getIsFavorite())
@@ -0,0 +1,13 @@
+package com.darylmathison.chat.client.service;
+
+/**
+ * Tells other nodes sharing the database that the external tools changed, so they refresh their
+ * {@link ToolRegistry}.
+ */
+public interface ToolChangeNotifier {
+
+  /**
+   * Announce a change made on this node. Does not wait for delivery.
+   */
+  void publish();
+}
@@ -0,0 +1,154 @@
+package com.darylmathison.chat.client.service;
+
+import com.darylmathison.chat.client.model.ExternalTool;
+import io.netty.channel.ChannelOption;
+import jakarta.annotation.PreDestroy;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+/**
+ * Long-lived WebClients for external tools.
+ * <p>
+ * Each saved tool gets its own client, built on first use, with a dedicated connection pool,
+ * connect and response timeouts and a maximum in-memory body size ({@code tools.http.*}), so
+ * repeated calls reuse open keep-alive connections and TLS sessions instead of paying a handshake
+ * every time. Calls that are not tied to a saved tool share one client per host. A tool's client
+ * is dropped when the tool is updated or deleted; its pool is closed once calls still using it
+ * have had {@code response-timeout} to finish.
+ */
+@Component
+@Slf4j
+public class ToolClientRegistry {
+
+  private final WebClient.Builder webClientBuilder;
+
+  @Value("${tools.http.max-connections:20}")
+  private int maxConnections = 20;
+
+  @Value("${tools.http.pending-acquire-timeout:10s}")
+  private Duration pendingAcquireTimeout = Duration.ofSeconds(10);
+
+  @Value("${tools.http.max-idle-time:30s}")
+  private Duration maxIdleTime = Duration.ofSeconds(30);
+
+  @Value("${tools.http.max-life-time:5m}")
+  private Duration maxLifeTime = Duration.ofMinutes(5);
+
+  @Value("${tools.http.connect-timeout:5s}")
+  private Duration connectTimeout = Duration.ofSeconds(5);
+
+  @Value("${tools.http.response-timeout:30s}")
+  private Duration responseTimeout = Duration.ofSeconds(30);
+
+  @Value("${tools.http.max-in-memory-size:2MB}")
+  private DataSize maxInMemorySize = DataSize.ofMegabytes(2);
+
+  private final Map<String, ToolClient> clients = new ConcurrentHashMap<>();
+
+  public ToolClientRegistry(WebClient.Builder webClientBuilder) {
+    this.webClientBuilder = webClientBuilder;
+  }
+
+  /**
+   * The client for a tool: its own if the tool is saved, otherwise the one for its endpoint's
+   * host.
+   */
+  public WebClient forTool(ExternalTool tool) {
+    if (tool.getId() == null) {
+      return forUrl(tool.getEndpointUrl());
+    }
+    return clients.computeIfAbsent(toolKey(tool.getId()), this::create).webClient();
+  }
+
+  /**
+   * The shared client for the host of {@code url}.
+   */
+  public WebClient forUrl(String url) {
+    return clients.computeIfAbsent(hostKey(url), this::create).webClient();
+  }
+
+  /**
+   * Drop a tool's client after the tool changed; the next call builds a new one.
+   */
+  public void invalidate(Long toolId) {
+    if (toolId == null) {
+      return;
+    }
+    ToolClient removed = clients.remove(toolKey(toolId));
+    if (removed != null) {
+      log.debug("Closing HTTP client of tool {}", toolId);
+      // Give requests already running on the old pool time to complete
+      Mono.delay(responseTimeout)
+          .then(removed.connections().disposeLater())
+          .subscribe(null, error -> log.warn("Closing HTTP client of tool {} failed: {}",
+              toolId, error.getMessage()));
+    }
+  }
+
+  int size() {
+    return clients.size();
+  }
+
+  @PreDestroy
+  void close() {
+    clients.values().forEach(client -> client.connections().dispose());
+    clients.clear();
+  }
+
+  private ToolClient create(String key) {
+    ConnectionProvider connections = ConnectionProvider.builder(key)
+        .maxConnections(maxConnections)
+        .pendingAcquireTimeout(pendingAcquireTimeout)
+        .maxIdleTime(maxIdleTime)
+        .maxLifeTime(maxLifeTime)
+        .evictInBackground(maxIdleTime)
+        .metrics(true)
+        .build();
+    HttpClient httpClient = HttpClient.create(connections)
+        .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) connectTimeout.toMillis())
+        .responseTimeout(responseTimeout);
+    // The injected builder is shared, so configure a copy
+    WebClient webClient = webClientBuilder.clone()
+        .clientConnector(new ReactorClientHttpConnector(httpClient))
+        .codecs(configurer -> configurer.defaultCodecs()
+            .maxInMemorySize((int) maxInMemorySize.toBytes()))
+        .build();
+    log.debug("Created HTTP client {}", key);
+    return new ToolClient(webClient, connections);
+  }
+
+  private static String toolKey(Long toolId) {
+    return "tool-" + toolId;
+  }
+
+  private static String hostKey(String url) {
+    try {
+      URI uri = URI.create(url);
+      if (uri.getHost() != null) {
+        String scheme = uri.getScheme() != null ? uri.getScheme().toLowerCase(Locale.ROOT)
+            : "http";
+        return "host-" + scheme + "-" + uri.getHost().toLowerCase(Locale.ROOT) + "-"
+            + uri.getPort();
+      }
+    } catch (IllegalArgumentException | NullPointerException e) {
+      // Not a usable URL; the request itself will report it
+    }
+    return "host-default";
+  }
+
+  private record ToolClient(WebClient webClient, ConnectionProvider connections) {
+
+  }
+}
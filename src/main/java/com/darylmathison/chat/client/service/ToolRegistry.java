@@ -0,0 +1,202 @@
+package com.darylmathison.chat.client.service;
+
+import com.darylmathison.chat.client.model.ExternalTool;
+import com.darylmathison.chat.client.repository.ExternalToolRepository;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Consumer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+/**
+ * The active external tools, held in memory so resolving a tool call needs no database access.
+ * <p>
+ * Tools are kept in an immutable snapshot indexed by id and by lower-cased name; when two tools
+ * share a name ignoring case, the first in name order wins. The
+ * snapshot is loaded when the application is ready and replaced, never modified: writes made on
+ * this node are applied with {@link #update} and {@link #remove}, and changes made elsewhere are
+ * picked up with {@link #refresh}, which the {@link ToolChangeNotifier} triggers. Inactive tools
+ * are not held, so callers that need them still go to the repository.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ToolRegistry {
+
+  private final ExternalToolRepository externalToolRepository;
+
+  private ToolChangeNotifier changeNotifier;
+
+  private volatile Snapshot snapshot;
+
+  private final Object lock = new Object();
+  // The running refresh, and whether another is needed once it is done; guarded by lock
+  private Mono<Void> refreshing;
+  private boolean stale;
+
+  @Autowired
+  public void setChangeNotifier(@Lazy ToolChangeNotifier changeNotifier) {
+    this.changeNotifier = changeNotifier;
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void load() {
+    refresh().subscribe(null,
+        error -> log.warn("Could not load external tools, will retry on first use: {}",
+            error.getMessage()));
+  }
+
+  /**
+   * The active tool with this name, ignoring case.
+   */
+  public Mono<ExternalTool> findByName(String name) {
+    if (name == null) {
+      return Mono.empty();
+    }
+    String key = name.toLowerCase(Locale.ROOT);
+    Snapshot current = snapshot;
+    if (current != null) {
+      return Mono.justOrEmpty(current.byName().get(key));
+    }
+    return refresh().then(Mono.fromSupplier(() -> snapshot.byName().get(key)));
+  }
+
+  /**
+   * The active tool with this id.
+   */
+  public Mono<ExternalTool> findById(Long id) {
+    if (id == null) {
+      return Mono.empty();
+    }
+    Snapshot current = snapshot;
+    if (current != null) {
+      return Mono.justOrEmpty(current.byId().get(id));
+    }
+    return refresh().then(Mono.fromSupplier(() -> snapshot.byId().get(id)));
+  }
+
+  /**
+   * Reload every active tool from the database.
+   * <p>
+   * Concurrent calls share one load, and a call made while a load is running gets another one
+   * after it, so what is read is never older than the call.
+   *
+   * @return Completes once the new snapshot is in place
+   */
+  public Mono<Void> refresh() {
+    synchronized (lock) {
+      stale = true;
+      Mono<Void> running = refreshing;
+      if (running == null) {
+        running = loadWhileStale().cache();
+        refreshing = running;
+        // Loads even if the caller does not wait; failures reach those who do
+        running.subscribe(null, error -> { });
+      }
+      return running;
+    }
+  }
+
+  /**
+   * Apply a tool that was saved on this node, and tell the other nodes.
+   */
+  public void update(ExternalTool tool) {
+    if (tool == null || tool.getId() == null) {
+      return;
+    }
+    apply(byId -> {
+      if (Boolean.TRUE.equals(tool.getIsActive())) {
+        byId.put(tool.getId(), tool);
+      } else {
+        byId.remove(tool.getId());
+      }
+    });
+  }
+
+  /**
+   * Drop a tool that was deleted on this node, and tell the other nodes.
+   */
+  public void remove(Long toolId) {
+    if (toolId != null) {
+      apply(byId -> byId.remove(toolId));
+    }
+  }
+
+  int size() {
+    Snapshot current = snapshot;
+    return current != null ? current.byId().size() : 0;
+  }
+
+  private void apply(Consumer<Map<Long, ExternalTool>> change) {
+    synchronized (lock) {
+      if (snapshot != null) {
+        Map<Long, ExternalTool> byId = new HashMap<>(snapshot.byId());
+        change.accept(byId);
+        snapshot = Snapshot.of(byId.values());
+      }
+      if (refreshing != null) {
+        // The running load may have read the table before this write
+        stale = true;
+      }
+    }
+    if (changeNotifier != null) {
+      changeNotifier.publish();
+    }
+  }
+
+  private Mono<Void> loadWhileStale() {
+    return Mono.defer(() -> {
+      synchronized (lock) {
+        stale = false;
+      }
+      return externalToolRepository.findByIsActiveTrueOrderByName().collectList();
+    }).flatMap(tools -> {
+      synchronized (lock) {
+        snapshot = Snapshot.of(tools);
+        if (stale) {
+          return loadWhileStale();
+        }
+        refreshing = null;
+      }
+      log.debug("Loaded {} active external tools", tools.size());
+      return Mono.<Void>empty();
+    }).onErrorResume(error -> {
+      synchronized (lock) {
+        refreshing = null;
+      }
+      return Mono.error(error);
+    });
+  }
+
+  private record Snapshot(Map<Long, ExternalTool> byId, Map<String, ExternalTool> byName) {
+
+    static Snapshot of(Iterable<ExternalTool> tools) {
+      List<ExternalTool> sorted = new ArrayList<>();
+      tools.forEach(sorted::add);
+      sorted.sort(Comparator.comparing(ExternalTool::getName,
+          Comparator.nullsLast(Comparator.naturalOrder())));
+      Map<Long, ExternalTool> byId = new HashMap<>();
+      Map<String, ExternalTool> byName = new HashMap<>();
+      for (ExternalTool tool : sorted) {
+        if (tool.getId() == null) {
+          continue;
+        }
+        byId.put(tool.getId(), tool);
+        if (tool.getName() != null) {
+          byName.putIfAbsent(tool.getName().toLowerCase(Locale.ROOT), tool);
+        }
+      }
+      return new Snapshot(Map.copyOf(byId), Map.copyOf(byName));
+    }
+  }
+}
@@ -7,7 +7,6 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Mono;
 
 import jakarta.annotation.PostConstruct;
@@ -23,8 +22,12 @@ import java.util.Map;
 @Slf4j
 public class WeatherService {
 
+    private static final String OPENWEATHER_URL = "https://api.openweathermap.org";
+
     private final ExternalToolRepository externalToolRepository;
     private final ObjectMapper objectMapper;
+    private final ToolClientRegistry toolClientRegistry;
+    private final ToolRegistry toolRegistry;
 
     @Value("${openweather.api.key:}")
     private String openWeatherApiKey;
@@ -87,7 +90,8 @@ public class WeatherService {
             weatherTool.setUpdatedAt(LocalDateTime.now());
             weatherTool.setIsActive(true);
 
-            return externalToolRepository.save(weatherTool);
+            return externalToolRepository.save(weatherTool)
+                .doOnNext(toolRegistry::update);
         } catch (Exception e) {
             log.error("Error creating Weather tool: {}", e.getMessage());
             return Mono.error(e);
@@ -106,9 +110,9 @@ public class WeatherService {
             return Mono.error(new IllegalStateException("OpenWeather API key not configured"));
         }
 
-        return WebClient.create()
+        return toolClientRegistry.forUrl(OPENWEATHER_URL)
             .get()
-            .uri("https://api.openweathermap.org/data/2.5/weather?q={city}&appid={apiKey}&units=metric", 
+            .uri(OPENWEATHER_URL + "/data/2.5/weather?q={city}&appid={apiKey}&units=metric", 
                  city, openWeatherApiKey)
             .retrieve()
             .bodyToMono(Map.class)
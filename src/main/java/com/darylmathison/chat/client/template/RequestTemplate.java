@@ -0,0 +1,285 @@
+package com.darylmathison.chat.client.template;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * A compiled external tool request template.
+ * <p>
+ * The template is parsed once into literal text and {@code {{name}}} placeholders, and rendered in
+ * a single pass into a per-thread buffer. Each placeholder is escaped for where it stands:
+ * <ul>
+ *   <li>in a JSON template ({@code {...}} or {@code [...]}), inside a string literal the value is
+ *   escaped as string content; elsewhere it is written as a JSON value, so numbers and booleans
+ *   are bare, maps and lists are serialized and strings are quoted, except strings that are
+ *   themselves a JSON number, {@code true}, {@code false} or {@code null}: those are written bare,
+ *   as the plain text substitution existing templates rely on wrote them;</li>
+ *   <li>in a query or form template ({@code ?q={{city}}}, {@code a={{b}}&...}) the value is
+ *   URL-encoded;</li>
+ *   <li>in any other template the value is inserted as is.</li>
+ * </ul>
+ * A placeholder can override this with a filter: {@code {{name|json}}}, {@code {{name|url}}} or
+ * {@code {{name|raw}}}. Missing and null parameters render as {@code null} in JSON value position
+ * and as nothing everywhere else. A string parameter that holds serialized JSON, such as an
+ * object, is quoted in JSON value position; write it as {@code {{name|raw}}} to insert it as is.
+ */
+public final class RequestTemplate {
+
+  /**
+   * Kind of document the template produces, and with it the default escaping.
+   */
+  public enum Format {
+    JSON, URL, TEXT
+  }
+
+  /**
+   * How a placeholder's value is written.
+   */
+  public enum Escaping {
+    JSON_STRING, JSON_VALUE, URL, RAW
+  }
+
+  private static final Pattern FORM = Pattern.compile("^[\\w.\\-\\[\\]]+=");
+
+  private static final Pattern JSON_LITERAL =
+      Pattern.compile("-?(0|[1-9]\\d*)(\\.\\d+)?([eE][+-]?\\d+)?|true|false|null");
+
+  // Buffers that grew past this are dropped rather than kept by the thread
+  private static final int MAX_RETAINED_BUFFER = 64 * 1024;
+
+  private static final ThreadLocal<StringBuilder> BUFFER =
+      ThreadLocal.withInitial(() -> new StringBuilder(1024));
+
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+  private final String source;
+  private final Format format;
+  // literals[i] precedes placeholder i; the last literal follows the last placeholder
+  private final String[] literals;
+  private final String[] names;
+  private final Escaping[] escapings;
+  private final int literalLength;
+
+  private RequestTemplate(String source, Format format, List<String> literals, List<String> names,
+      List<Escaping> escapings) {
+    this.source = source;
+    this.format = format;
+    this.literals = literals.toArray(String[]::new);
+    this.names = names.toArray(String[]::new);
+    this.escapings = escapings.toArray(Escaping[]::new);
+    this.literalLength = literals.stream().mapToInt(String::length).sum();
+  }
+
+  /**
+   * Parse a template.
+   *
+   * @throws IllegalArgumentException If a placeholder has an unknown filter
+   */
+  public static RequestTemplate compile(String source) {
+    String text = source != null ? source : "";
+    Format format = formatOf(text);
+    List<String> literals = new ArrayList<>();
+    List<String> names = new ArrayList<>();
+    List<Escaping> escapings = new ArrayList<>();
+
+    StringBuilder literal = new StringBuilder();
+    JsonState json = new JsonState();
+    int i = 0;
+    while (true) {
+      int open = text.indexOf("{{", i);
+      int close = open >= 0 ? text.indexOf("}}", open + 2) : -1;
+      if (close < 0) {
+        json.append(literal, text, i, text.length());
+        break;
+      }
+      String name = text.substring(open + 2, close).trim();
+      if (name.isEmpty() || name.startsWith("|")) {
+        // Not a placeholder; keep the braces as text
+        json.append(literal, text, i, open + 2);
+        i = open + 2;
+        continue;
+      }
+
+      json.append(literal, text, i, open);
+      literals.add(literal.toString());
+      literal.setLength(0);
+
+      String filter = null;
+      int bar = name.indexOf('|');
+      if (bar >= 0) {
+        filter = name.substring(bar + 1).trim().toLowerCase(Locale.ROOT);
+        name = name.substring(0, bar).trim();
+      }
+      names.add(name);
+      escapings.add(escapingOf(format, json.inString, filter, name));
+      i = close + 2;
+    }
+    literals.add(literal.toString());
+    return new RequestTemplate(text, format, literals, names, escapings);
+  }
+
+  public String source() {
+    return source;
+  }
+
+  public Format format() {
+    return format;
+  }
+
+  public List<String> parameterNames() {
+    return List.of(names);
+  }
+
+  /**
+   * Render the template.
+   *
+   * @param jsonEncoder Serializes values other than strings, numbers and booleans in JSON value
+   *                    position
+   */
+  public String render(Map<String, ?> parameters, Function<Object, String> jsonEncoder) {
+    StringBuilder out = BUFFER.get();
+    out.setLength(0);
+    out.ensureCapacity(literalLength + 16 * names.length);
+    try {
+      renderTo(out, parameters, jsonEncoder);
+      return out.toString();
+    } finally {
+      if (out.capacity() > MAX_RETAINED_BUFFER) {
+        BUFFER.remove();
+      } else {
+        out.setLength(0);
+      }
+    }
+  }
+
+  /**
+   * Render the template, appending to {@code out}.
+   */
+  public void renderTo(StringBuilder out, Map<String, ?> parameters,
+      Function<Object, String> jsonEncoder) {
+    for (int i = 0; i < names.length; i++) {
+      out.append(literals[i]);
+      Object value = parameters != null ? parameters.get(names[i]) : null;
+      switch (escapings[i]) {
+        case JSON_STRING -> {
+          if (value != null) {
+            appendJsonEscaped(out, value.toString());
+          }
+        }
+        case JSON_VALUE -> appendJsonValue(out, value, jsonEncoder);
+        case URL -> {
+          if (value != null) {
+            out.append(URLEncoder.encode(value.toString(), StandardCharsets.UTF_8));
+          }
+        }
+        case RAW -> {
+          if (value != null) {
+            out.append(value);
+          }
+        }
+      }
+    }
+    out.append(literals[names.length]);
+  }
+
+  private static Format formatOf(String text) {
+    String trimmed = text.stripLeading();
+    if (trimmed.startsWith("{") && !trimmed.startsWith("{{") || trimmed.startsWith("[")) {
+      return Format.JSON;
+    }
+    if (trimmed.startsWith("?") || FORM.matcher(trimmed).find()) {
+      return Format.URL;
+    }
+    return Format.TEXT;
+  }
+
+  private static Escaping escapingOf(Format format, boolean inString, String filter, String name) {
+    if (filter == null) {
+      return switch (format) {
+        case JSON -> inString ? Escaping.JSON_STRING : Escaping.JSON_VALUE;
+        case URL -> Escaping.URL;
+        case TEXT -> Escaping.RAW;
+      };
+    }
+    return switch (filter) {
+      case "json" -> inString ? Escaping.JSON_STRING : Escaping.JSON_VALUE;
+      case "url" -> Escaping.URL;
+      case "raw" -> Escaping.RAW;
+      default -> throw new IllegalArgumentException(
+          "Unknown filter '" + filter + "' for template parameter " + name);
+    };
+  }
+
+  private static void appendJsonValue(StringBuilder out, Object value,
+      Function<Object, String> jsonEncoder) {
+    if (value == null) {
+      out.append("null");
+    } else if (value instanceof CharSequence text && JSON_LITERAL.matcher(text).matches()) {
+      out.append(text);
+    } else if (value instanceof CharSequence || value instanceof Character
+        || value instanceof Enum<?>) {
+      out.append('"');
+      appendJsonEscaped(out, value.toString());
+      out.append('"');
+    } else if (value instanceof Double d && !Double.isFinite(d)
+        || value instanceof Float f && !Float.isFinite(f)) {
+      out.append("null");
+    } else if (value instanceof Number || value instanceof Boolean) {
+      out.append(value);
+    } else {
+      out.append(jsonEncoder.apply(value));
+    }
+  }
+
+  private static void appendJsonEscaped(StringBuilder out, String value) {
+    int start = 0;
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c >= 0x20 && c != '"' && c != '\\') {
+        continue;
+      }
+      out.append(value, start, i);
+      switch (c) {
+        case '"' -> out.append("\\\"");
+        case '\\' -> out.append("\\\\");
+        case '\n' -> out.append("\\n");
+        case '\r' -> out.append("\\r");
+        case '\t' -> out.append("\\t");
+        case '\b' -> out.append("\\b");
+        case '\f' -> out.append("\\f");
+        default -> out.append("\\u00").append(HEX[c >> 4]).append(HEX[c & 0xF]);
+      }
+      start = i + 1;
+    }
+    out.append(value, start, value.length());
+  }
+
+  /**
+   * Whether the text seen so far ends inside a JSON string literal.
+   */
+  private static final class JsonState {
+
+    private boolean inString;
+    private boolean escaped;
+
+    void append(StringBuilder literal, String text, int from, int to) {
+      for (int i = from; i < to; i++) {
+        char c = text.charAt(i);
+        literal.append(c);
+        if (escaped) {
+          escaped = false;
+        } else if (c == '\\') {
+          escaped = inString;
+        } else if (c == '"') {
+          inString = !inString;
+        }
+      }
+    }
+  }
+}
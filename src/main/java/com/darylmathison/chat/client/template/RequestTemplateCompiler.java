@@ -0,0 +1,87 @@
+package com.darylmathison.chat.client.template;
+
+import com.darylmathison.chat.client.model.ExternalTool;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+/**
+ * Renders external tool request bodies.
+ * <p>
+ * A tool's request template is compiled on first use and kept per tool id, together with the
+ * tool's {@code updatedAt}. A tool with the same {@code updatedAt} reuses it without looking at the
+ * text; a newer tool whose template text is unchanged reuses it too, and only a changed text is
+ * compiled again. Tools without a
+ * template send their parameters as a JSON object.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class RequestTemplateCompiler {
+
+  private final ObjectMapper objectMapper;
+
+  private final Map<Long, Compiled> compiled = new ConcurrentHashMap<>();
+
+  /**
+   * The request body for calling {@code tool} with {@code parameters}.
+   */
+  public String render(ExternalTool tool, Map<String, Object> parameters) {
+    String template = tool.getRequestTemplate();
+    if (template == null || template.isBlank()) {
+      try {
+        return objectMapper.writeValueAsString(parameters);
+      } catch (JsonProcessingException e) {
+        log.warn("Failed to serialize parameters to JSON: {}", e.getMessage());
+        return "{}";
+      }
+    }
+    return compile(tool).render(parameters, this::toJson);
+  }
+
+  /**
+   * The tool's compiled template, from the cache while the tool is unchanged.
+   */
+  public RequestTemplate compile(ExternalTool tool) {
+    if (tool.getId() == null) {
+      return RequestTemplate.compile(tool.getRequestTemplate());
+    }
+    Compiled cached = compiled.get(tool.getId());
+    if (cached != null && cached.updatedAt() != null
+        && cached.updatedAt().equals(tool.getUpdatedAt())) {
+      return cached.template();
+    }
+    RequestTemplate template = cached != null
+        && cached.template().source().equals(tool.getRequestTemplate())
+        ? cached.template() : RequestTemplate.compile(tool.getRequestTemplate());
+    compiled.put(tool.getId(), new Compiled(tool.getUpdatedAt(), template));
+    return template;
+  }
+
+  /**
+   * Forget a tool's compiled template after the tool changed or was deleted.
+   */
+  public void evict(Long toolId) {
+    if (toolId != null) {
+      compiled.remove(toolId);
+    }
+  }
+
+  private String toJson(Object value) {
+    try {
+      return objectMapper.writeValueAsString(value);
+    } catch (JsonProcessingException e) {
+      throw new IllegalArgumentException("Cannot write template parameter as JSON: "
+          + e.getMessage(), e);
+    }
+  }
+
+  private record Compiled(LocalDateTime updatedAt, RequestTemplate template) {
+
+  }
+}
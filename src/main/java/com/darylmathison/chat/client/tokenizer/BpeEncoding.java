@@ -0,0 +1,198 @@
+package com.darylmathison.chat.client.tokenizer;
+
+import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A tiktoken-compatible byte-pair encoding.
+ * <p>
+ * Text is split into pieces with the encoding's pattern, each piece is UTF-8 encoded and its bytes
+ * are merged lowest rank first until no adjacent pair is a token, exactly as tiktoken does.
+ * Counting reuses a per-thread matcher and scratch arrays, so after warm-up it allocates nothing
+ * per piece; most pieces are a single token and are resolved by one table lookup. Special tokens
+ * are not recognized and are encoded as ordinary text.
+ */
+public final class BpeEncoding {
+
+  private static final int NO_RANK = Integer.MAX_VALUE;
+
+  private final EncodingName name;
+  private final Pattern pattern;
+  private final BpeRanks ranks;
+  private final ThreadLocal<Scratch> scratch;
+
+  public BpeEncoding(EncodingName name, BpeRanks ranks) {
+    this.name = name;
+    // tiktoken's \s matches all Unicode whitespace, Java's only ASCII without this flag
+    this.pattern = Pattern.compile(name.pattern(), Pattern.UNICODE_CHARACTER_CLASS);
+    this.ranks = ranks;
+    this.scratch = ThreadLocal.withInitial(() -> new Scratch(pattern));
+  }
+
+  public EncodingName name() {
+    return name;
+  }
+
+  public int countTokens(CharSequence text) {
+    if (text == null || text.isEmpty()) {
+      return 0;
+    }
+    Scratch s = scratch.get();
+    Matcher matcher = s.matcher.reset(text);
+    int count = 0;
+    try {
+      while (matcher.find()) {
+        int length = s.utf8(text, matcher.start(), matcher.end());
+        count += ranks.rank(s.bytes, 0, length) >= 0 ? 1 : merge(s, length);
+      }
+    } finally {
+      // Do not keep the caller's text reachable from the thread
+      matcher.reset("");
+    }
+    return count;
+  }
+
+  public int[] encode(CharSequence text) {
+    if (text == null || text.isEmpty()) {
+      return new int[0];
+    }
+    Scratch s = scratch.get();
+    Matcher matcher = s.matcher.reset(text);
+    int[] tokens = new int[Math.max(8, text.length() / 3)];
+    int count = 0;
+    try {
+      while (matcher.find()) {
+        int length = s.utf8(text, matcher.start(), matcher.end());
+        int whole = ranks.rank(s.bytes, 0, length);
+        int parts = whole >= 0 ? 1 : merge(s, length);
+        if (count + parts > tokens.length) {
+          tokens = Arrays.copyOf(tokens, Math.max(tokens.length * 2, count + parts));
+        }
+        if (whole >= 0) {
+          tokens[count++] = whole;
+        } else {
+          for (int i = 0; i < parts; i++) {
+            tokens[count++] = ranks.rank(s.bytes, s.starts[i], s.starts[i + 1]);
+          }
+        }
+      }
+    } finally {
+      matcher.reset("");
+    }
+    return Arrays.copyOf(tokens, count);
+  }
+
+  /**
+   * Byte-pair merge of {@code s.bytes[0 .. length)}. Leaves the token boundaries in
+   * {@code s.starts[0 .. parts]} and returns the number of tokens.
+   */
+  private int merge(Scratch s, int length) {
+    byte[] bytes = s.bytes;
+    s.ensureParts(length + 1);
+    int[] starts = s.starts;
+    int[] pairRanks = s.pairRanks;
+
+    // Boundary i starts a part; pairRanks[i] is the rank of parts i and i + 1 joined
+    int boundaries = length + 1;
+    for (int i = 0; i < boundaries; i++) {
+      starts[i] = i;
+    }
+    for (int i = 0; i < boundaries - 2; i++) {
+      pairRanks[i] = rankOrNone(bytes, i, i + 2);
+    }
+    pairRanks[boundaries - 2] = NO_RANK;
+    pairRanks[boundaries - 1] = NO_RANK;
+
+    while (boundaries > 2) {
+      int best = -1;
+      int bestRank = NO_RANK;
+      for (int i = 0; i < boundaries - 2; i++) {
+        if (pairRanks[i] < bestRank) {
+          bestRank = pairRanks[i];
+          best = i;
+        }
+      }
+      if (best < 0) {
+        break;
+      }
+      // Join parts best and best + 1 by dropping boundary best + 1
+      if (best > 0) {
+        pairRanks[best - 1] = best + 2 < boundaries
+            ? rankOrNone(bytes, starts[best - 1], starts[best + 2]) : NO_RANK;
+      }
+      pairRanks[best] = best + 3 < boundaries
+          ? rankOrNone(bytes, starts[best], starts[best + 3]) : NO_RANK;
+      System.arraycopy(starts, best + 2, starts, best + 1, boundaries - best - 2);
+      System.arraycopy(pairRanks, best + 2, pairRanks, best + 1, boundaries - best - 2);
+      boundaries--;
+    }
+    return boundaries - 1;
+  }
+
+  private int rankOrNone(byte[] bytes, int from, int to) {
+    int rank = ranks.rank(bytes, from, to);
+    return rank >= 0 ? rank : NO_RANK;
+  }
+
+  /**
+   * Per-thread buffers, grown as needed and then reused.
+   */
+  private static final class Scratch {
+
+    private final Matcher matcher;
+    private byte[] bytes = new byte[256];
+    private int[] starts = new int[257];
+    private int[] pairRanks = new int[257];
+
+    private Scratch(Pattern pattern) {
+      this.matcher = pattern.matcher("");
+    }
+
+    void ensureParts(int count) {
+      if (starts.length < count) {
+        starts = new int[count * 2];
+        pairRanks = new int[count * 2];
+      }
+    }
+
+    /**
+     * UTF-8 encode {@code text[from .. to)} into {@link #bytes}.
+     *
+     * @return The number of bytes written
+     */
+    int utf8(CharSequence text, int from, int to) {
+      int max = (to - from) * 3;
+      if (bytes.length < max) {
+        bytes = new byte[max * 2];
+      }
+      int length = 0;
+      for (int i = from; i < to; i++) {
+        char c = text.charAt(i);
+        if (c < 0x80) {
+          bytes[length++] = (byte) c;
+        } else if (c < 0x800) {
+          bytes[length++] = (byte) (0xC0 | (c >> 6));
+          bytes[length++] = (byte) (0x80 | (c & 0x3F));
+        } else if (Character.isHighSurrogate(c) && i + 1 < to
+            && Character.isLowSurrogate(text.charAt(i + 1))) {
+          int codePoint = Character.toCodePoint(c, text.charAt(++i));
+          bytes[length++] = (byte) (0xF0 | (codePoint >> 18));
+          bytes[length++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+          bytes[length++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+          bytes[length++] = (byte) (0x80 | (codePoint & 0x3F));
+        } else if (Character.isSurrogate(c)) {
+          // Unpaired surrogate: encoded as U+FFFD, as String.getBytes would
+          bytes[length++] = (byte) 0xEF;
+          bytes[length++] = (byte) 0xBF;
+          bytes[length++] = (byte) 0xBD;
+        } else {
+          bytes[length++] = (byte) (0xE0 | (c >> 12));
+          bytes[length++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+          bytes[length++] = (byte) (0x80 | (c & 0x3F));
+        }
+      }
+      return length;
+    }
+  }
+}
@@ -0,0 +1,126 @@
+package com.darylmathison.chat.client.tokenizer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * The byte sequences of a BPE vocabulary and their merge ranks.
+ * <p>
+ * All tokens live in one byte array, in rank order, and an open-addressing table of ranks keyed by
+ * a hash of the bytes finds them. That is a handful of primitive arrays instead of a map of boxed
+ * byte arrays, and a lookup of any range of a buffer allocates nothing.
+ */
+public final class BpeRanks {
+
+  private final byte[] pool;
+  // Token of rank r is pool[offsets[r] .. offsets[r + 1])
+  private final int[] offsets;
+  // rank + 1, or 0 for an empty slot
+  private final int[] slots;
+  private final int[] slotHashes;
+  private final int mask;
+  private final int[] singleByteRanks = new int[256];
+
+  private BpeRanks(byte[][] tokensByRank) {
+    int size = tokensByRank.length;
+    offsets = new int[size + 1];
+    int total = 0;
+    for (int rank = 0; rank < size; rank++) {
+      offsets[rank] = total;
+      total += tokensByRank[rank] != null ? tokensByRank[rank].length : 0;
+    }
+    offsets[size] = total;
+    pool = new byte[total];
+
+    int capacity = Integer.highestOneBit(Math.max(2, size) * 2 - 1) << 1;
+    slots = new int[capacity];
+    slotHashes = new int[capacity];
+    mask = capacity - 1;
+    Arrays.fill(singleByteRanks, -1);
+
+    for (int rank = 0; rank < size; rank++) {
+      byte[] token = tokensByRank[rank];
+      if (token == null || token.length == 0) {
+        continue;
+      }
+      System.arraycopy(token, 0, pool, offsets[rank], token.length);
+      if (token.length == 1) {
+        singleByteRanks[token[0] & 0xFF] = rank;
+      }
+      int hash = hash(token, 0, token.length);
+      int slot = hash & mask;
+      while (slots[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      slots[slot] = rank + 1;
+      slotHashes[slot] = hash;
+    }
+  }
+
+  /**
+   * Read a vocabulary in tiktoken's format: one base64 token and its rank per line.
+   */
+  public static BpeRanks load(InputStream in) throws IOException {
+    byte[][] tokens = new byte[1 << 16][];
+    int size = 0;
+    BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+    Base64.Decoder decoder = Base64.getDecoder();
+    String line;
+    while ((line = reader.readLine()) != null) {
+      if (line.isBlank()) {
+        continue;
+      }
+      int space = line.indexOf(' ');
+      if (space < 0) {
+        throw new IOException("Malformed vocabulary line: " + line);
+      }
+      int rank = Integer.parseInt(line.substring(space + 1).trim());
+      if (rank >= tokens.length) {
+        tokens = Arrays.copyOf(tokens, Math.max(tokens.length * 2, rank + 1));
+      }
+      tokens[rank] = decoder.decode(line.substring(0, space));
+      size = Math.max(size, rank + 1);
+    }
+    return new BpeRanks(Arrays.copyOf(tokens, size));
+  }
+
+  public int size() {
+    return offsets.length - 1;
+  }
+
+  /**
+   * @return The rank of {@code bytes[from .. to)}, or -1 if it is not a token
+   */
+  public int rank(byte[] bytes, int from, int to) {
+    if (to - from == 1) {
+      return singleByteRanks[bytes[from] & 0xFF];
+    }
+    int hash = hash(bytes, from, to);
+    int slot = hash & mask;
+    int entry;
+    while ((entry = slots[slot]) != 0) {
+      if (slotHashes[slot] == hash) {
+        int rank = entry - 1;
+        if (Arrays.equals(pool, offsets[rank], offsets[rank + 1], bytes, from, to)) {
+          return rank;
+        }
+      }
+      slot = (slot + 1) & mask;
+    }
+    return -1;
+  }
+
+  private static int hash(byte[] bytes, int from, int to) {
+    // FNV-1a, then a final mix so that short tokens spread over the whole table
+    int hash = 0x811C9DC5;
+    for (int i = from; i < to; i++) {
+      hash = (hash ^ (bytes[i] & 0xFF)) * 0x01000193;
+    }
+    return hash ^ (hash >>> 16);
+  }
+}
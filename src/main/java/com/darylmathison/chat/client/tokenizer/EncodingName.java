@@ -0,0 +1,47 @@
+package com.darylmathison.chat.client.tokenizer;
+
+/**
+ * The tiktoken encodings this tokenizer supports, with the pre-tokenization pattern each uses to
+ * split text into pieces before byte-pair merging.
+ */
+public enum EncodingName {
+
+  CL100K_BASE("cl100k_base",
+      "(?i:'s|'t|'re|'ve|'m|'ll|'d)|[^\\r\\n\\p{L}\\p{N}]?\\p{L}+|\\p{N}{1,3}"
+          + "| ?[^\\s\\p{L}\\p{N}]+[\\r\\n]*|\\s*[\\r\\n]+|\\s+(?!\\S)|\\s+"),
+
+  O200K_BASE("o200k_base",
+      "[^\\r\\n\\p{L}\\p{N}]?[\\p{Lu}\\p{Lt}\\p{Lm}\\p{Lo}\\p{M}]*[\\p{Ll}\\p{Lm}\\p{Lo}\\p{M}]+"
+          + "(?i:'s|'t|'re|'ve|'m|'ll|'d)?"
+          + "|[^\\r\\n\\p{L}\\p{N}]?[\\p{Lu}\\p{Lt}\\p{Lm}\\p{Lo}\\p{M}]+[\\p{Ll}\\p{Lm}\\p{Lo}\\p{M}]*"
+          + "(?i:'s|'t|'re|'ve|'m|'ll|'d)?"
+          + "|\\p{N}{1,3}| ?[^\\s\\p{L}\\p{N}]+[\\r\\n/]*|\\s*[\\r\\n]+|\\s+(?!\\S)|\\s+");
+
+  private final String id;
+  private final String pattern;
+
+  EncodingName(String id, String pattern) {
+    this.id = id;
+    this.pattern = pattern;
+  }
+
+  /**
+   * The encoding's tiktoken name, which is also the base name of its vocabulary file.
+   */
+  public String id() {
+    return id;
+  }
+
+  public String pattern() {
+    return pattern;
+  }
+
+  public static EncodingName fromId(String id) {
+    for (EncodingName name : values()) {
+      if (name.id.equalsIgnoreCase(id)) {
+        return name;
+      }
+    }
+    throw new IllegalArgumentException("Unknown encoding: " + id);
+  }
+}
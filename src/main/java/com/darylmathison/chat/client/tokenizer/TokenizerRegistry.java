@@ -0,0 +1,134 @@
+package com.darylmathison.chat.client.tokenizer;
+
+import jakarta.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Component;
+
+/**
+ * Counts tokens the way a model's tokenizer would.
+ * <p>
+ * OpenAI models map to their tiktoken encoding; other models (Anthropic, Llama, DeepSeek, ...)
+ * use {@code tokenizer.default-encoding}, which is much closer to their real tokenizers than a
+ * characters-per-token ratio, especially for code and non-English text. The vocabularies are read
+ * from {@code tokenizer.location}/&lt;encoding&gt;.tiktoken at startup; the build downloads them
+ * into the resources. Startup fails if one is missing or unreadable, unless
+ * {@code tokenizer.required} is off, in which case counts for its models fall back to ~4
+ * characters per token.
+ */
+@Component
+@Slf4j
+public class TokenizerRegistry {
+
+  // Checked in order, so more specific prefixes come first
+  private static final List<Map.Entry<String, EncodingName>> MODEL_PREFIXES = List.of(
+      Map.entry("gpt-4o", EncodingName.O200K_BASE),
+      Map.entry("chatgpt-4o", EncodingName.O200K_BASE),
+      Map.entry("gpt-4.1", EncodingName.O200K_BASE),
+      Map.entry("gpt-4.5", EncodingName.O200K_BASE),
+      Map.entry("gpt-5", EncodingName.O200K_BASE),
+      Map.entry("gpt-oss", EncodingName.O200K_BASE),
+      Map.entry("o1", EncodingName.O200K_BASE),
+      Map.entry("o3", EncodingName.O200K_BASE),
+      Map.entry("o4", EncodingName.O200K_BASE),
+      Map.entry("gpt-4", EncodingName.CL100K_BASE),
+      Map.entry("gpt-3.5", EncodingName.CL100K_BASE),
+      Map.entry("text-embedding-3", EncodingName.CL100K_BASE),
+      Map.entry("text-embedding-ada-002", EncodingName.CL100K_BASE));
+
+  private final Map<EncodingName, BpeEncoding> encodings = new EnumMap<>(EncodingName.class);
+  private final ResourceLoader resourceLoader = new DefaultResourceLoader();
+
+  @Value("${tokenizer.location:classpath:tokenizer/}")
+  private String location = "classpath:tokenizer/";
+
+  @Value("${tokenizer.default-encoding:cl100k_base}")
+  private String defaultEncoding = "cl100k_base";
+
+  @Value("${tokenizer.required:true}")
+  private boolean required = true;
+
+  /**
+   * Load every encoding's vocabulary.
+   *
+   * @throws IllegalStateException If one is missing or unreadable and {@code tokenizer.required}
+   *                               is on
+   */
+  @PostConstruct
+  public void load() {
+    List<String> missing = new ArrayList<>();
+    for (EncodingName name : EncodingName.values()) {
+      Resource resource = resourceLoader.getResource(location + name.id() + ".tiktoken");
+      if (!resource.exists()) {
+        missing.add(resource.getDescription());
+        continue;
+      }
+      try (InputStream in = resource.getInputStream()) {
+        BpeRanks ranks = BpeRanks.load(in);
+        encodings.put(name, new BpeEncoding(name, ranks));
+        log.info("Loaded {} with {} tokens", name.id(), ranks.size());
+      } catch (IOException | RuntimeException e) {
+        missing.add(resource.getDescription() + " (" + e.getMessage() + ")");
+      }
+    }
+    if (missing.isEmpty()) {
+      return;
+    }
+    if (required) {
+      throw new IllegalStateException("Tokenizer vocabularies could not be loaded: " + missing
+          + ". Build with ./gradlew, which downloads them, or set tokenizer.required=false to "
+          + "estimate token counts at 4 characters per token");
+    }
+    log.warn("Tokenizer vocabularies could not be loaded: {}; token counts for their models are "
+        + "estimated at 4 characters per token", missing);
+  }
+
+  /**
+   * The encoding a model tokenizes with. OpenRouter ids ("openai/gpt-4o") and plain ids
+   * ("gpt-4o") are both accepted.
+   */
+  public EncodingName encodingFor(String model) {
+    if (model != null) {
+      String id = model.toLowerCase(Locale.ROOT);
+      id = id.substring(id.lastIndexOf('/') + 1);
+      for (Map.Entry<String, EncodingName> prefix : MODEL_PREFIXES) {
+        if (id.startsWith(prefix.getKey())) {
+          return prefix.getValue();
+        }
+      }
+    }
+    return EncodingName.fromId(defaultEncoding);
+  }
+
+  /**
+   * @return The encoding for the model, or null if its vocabulary is not loaded
+   */
+  public BpeEncoding encoding(String model) {
+    return encodings.get(encodingFor(model));
+  }
+
+  public int countTokens(String model, CharSequence text) {
+    if (text == null || text.isEmpty()) {
+      return 0;
+    }
+    BpeEncoding encoding = encoding(model);
+    return encoding != null ? encoding.countTokens(text) : estimate(text);
+  }
+
+  /**
+   * The fallback when no vocabulary is available.
+   */
+  public static int estimate(CharSequence text) {
+    return text == null ? 0 : (int) Math.ceil(text.length() / 4.0);
+  }
+}
@@ -0,0 +1,17 @@
+-- One-time backfill of the denormalized chat summary columns.
+-- Safe to run on every start: it only adds the columns if missing and only fills chats that
+-- were created before ChatTurnWriter started maintaining them (message_count IS NULL).
+ALTER TABLE chats ADD COLUMN IF NOT EXISTS message_count INTEGER;
+ALTER TABLE chats ADD COLUMN IF NOT EXISTS last_message_preview VARCHAR(100);
+
+UPDATE chats
+SET message_count        = (SELECT COUNT(*) FROM messages m WHERE m.chat_id = chats.id),
+    last_message_preview = COALESCE((SELECT CASE
+                                                WHEN CHAR_LENGTH(TRIM(m.content)) > 100
+                                                    THEN SUBSTRING(TRIM(m.content), 1, 97) || '...'
+                                                ELSE TRIM(m.content) END
+                                     FROM messages m
+                                     WHERE m.chat_id = chats.id
+                                     ORDER BY m.created_at DESC, m.id DESC
+                                     LIMIT 1), '')
+WHERE message_count IS NULL;
@@ -0,0 +1,14 @@
+-- L2 completion cache (see CompletionCache); expired rows are purged on a schedule
+CREATE TABLE IF NOT EXISTS completion_cache
+(
+    cache_key         VARCHAR(64)  PRIMARY KEY,
+    model             VARCHAR(100) NOT NULL,
+    content           TEXT         NOT NULL,
+    prompt_tokens     INTEGER,
+    completion_tokens INTEGER,
+    total_tokens      INTEGER,
+    created_at        TIMESTAMP    NOT NULL,
+    expires_at        TIMESTAMP    NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_completion_cache_expires_at ON completion_cache (expires_at);
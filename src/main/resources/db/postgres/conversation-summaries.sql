@@ -0,0 +1,10 @@
+-- Rolling conversation summaries (see ConversationSummarizer); one row per chat
+CREATE TABLE IF NOT EXISTS conversation_summaries
+(
+    chat_id             BIGINT PRIMARY KEY REFERENCES chats (id) ON DELETE CASCADE,
+    content             TEXT      NOT NULL,
+    through_message_id  BIGINT    NOT NULL,
+    summarized_messages INTEGER   NOT NULL,
+    model               VARCHAR(100),
+    updated_at          TIMESTAMP NOT NULL
+);
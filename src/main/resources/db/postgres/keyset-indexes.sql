@@ -0,0 +1,5 @@
+-- Indexes behind the keyset-paged chat list, message ranges and history loads
+CREATE INDEX IF NOT EXISTS idx_chats_updated_id ON chats (updated_at DESC, id DESC);
+CREATE INDEX IF NOT EXISTS idx_messages_chat_id_id ON messages (chat_id, id);
+-- Newest-first read of a chat's history when its context window is loaded
+CREATE INDEX IF NOT EXISTS idx_messages_chat_created ON messages (chat_id, created_at);
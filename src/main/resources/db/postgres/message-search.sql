@@ -0,0 +1,14 @@
+-- Full-text search over message content and chat titles (postgres profile).
+-- The tsvectors are stored generated columns, so every insert indexes itself.
+ALTER TABLE messages
+    ADD COLUMN IF NOT EXISTS content_tsv tsvector
+        GENERATED ALWAYS AS (to_tsvector('english', content)) STORED;
+
+CREATE INDEX IF NOT EXISTS idx_messages_content_tsv ON messages USING GIN (content_tsv);
+CREATE INDEX IF NOT EXISTS idx_messages_created_at ON messages (created_at);
+
+ALTER TABLE chats
+    ADD COLUMN IF NOT EXISTS title_tsv tsvector
+        GENERATED ALWAYS AS (to_tsvector('english', COALESCE(title, ''))) STORED;
+
+CREATE INDEX IF NOT EXISTS idx_chats_title_tsv ON chats USING GIN (title_tsv);
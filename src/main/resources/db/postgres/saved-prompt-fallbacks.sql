@@ -0,0 +1,2 @@
+-- Comma-separated fallback models of a saved prompt (see SavedPrompt.fallbackModels)
+ALTER TABLE saved_prompts ADD COLUMN IF NOT EXISTS fallback_models VARCHAR(500);
@@ -1,8 +1,10 @@
+DROP TABLE IF EXISTS conversation_summaries;
 DROP TABLE IF EXISTS attachments;
 DROP TABLE IF EXISTS messages;
 DROP TABLE IF EXISTS chats;
 DROP TABLE IF EXISTS saved_prompts;
 DROP TABLE IF EXISTS external_tools;
+DROP TABLE IF EXISTS completion_cache;
 
 CREATE TABLE chats
 (
@@ -12,7 +14,9 @@ CREATE TABLE chats
     updated_at     TIMESTAMP    NOT NULL,
     total_tokens   BIGINT,
     estimated_cost DOUBLE,
-    model_used     VARCHAR(100)
+    model_used     VARCHAR(100),
+    message_count        INTEGER,
+    last_message_preview VARCHAR(100)
 );
 
 CREATE TABLE messages
@@ -50,6 +54,7 @@ CREATE TABLE saved_prompts
     description    TEXT,
     system_message TEXT,
     model_name     VARCHAR(100),
+    fallback_models VARCHAR(500),
     max_tokens     INTEGER,
     temperature    DOUBLE,
     category       VARCHAR(100),
@@ -84,9 +89,33 @@ CREATE TABLE external_tools
     configuration    TEXT
 );
 
+CREATE TABLE conversation_summaries
+(
+    chat_id             BIGINT PRIMARY KEY,
+    content             TEXT      NOT NULL,
+    through_message_id  BIGINT    NOT NULL,
+    summarized_messages INTEGER   NOT NULL,
+    model               VARCHAR(100),
+    updated_at          TIMESTAMP NOT NULL,
+    FOREIGN KEY (chat_id) REFERENCES chats (id) ON DELETE CASCADE
+);
+
+CREATE TABLE completion_cache
+(
+    cache_key         VARCHAR(64)  PRIMARY KEY,
+    model             VARCHAR(100) NOT NULL,
+    content           TEXT         NOT NULL,
+    prompt_tokens     INTEGER,
+    completion_tokens INTEGER,
+    total_tokens      INTEGER,
+    created_at        TIMESTAMP    NOT NULL,
+    expires_at        TIMESTAMP    NOT NULL
+);
+
 -- Indexes for better performance
-CREATE INDEX idx_messages_chat_id ON messages (chat_id);
-CREATE INDEX idx_chats_updated_at ON chats (updated_at);
+CREATE INDEX idx_messages_chat_id_id ON messages (chat_id, id);
+CREATE INDEX idx_messages_chat_created ON messages (chat_id, created_at);
+CREATE INDEX idx_chats_updated_id ON chats (updated_at DESC, id DESC);
 CREATE INDEX idx_chats_created_at ON chats (created_at);
 CREATE INDEX idx_attachments_message_id ON attachments (message_id);
 CREATE INDEX idx_saved_prompts_usage_count ON saved_prompts (usage_count);
@@ -94,3 +123,4 @@ CREATE INDEX idx_saved_prompts_category ON saved_prompts (category);
 CREATE INDEX idx_saved_prompts_model_name ON saved_prompts (model_name);
 CREATE INDEX idx_external_tools_enabled ON external_tools (is_enabled);
 CREATE INDEX idx_external_tools_type ON external_tools (tool_type);
+CREATE INDEX idx_completion_cache_expires_at ON completion_cache (expires_at);
@@ -9,6 +9,7 @@ class ChatGPTClient {
         this.availableModels = [];
         this.selectedModels = [];
         this.defaultMaxTokens = 4000; // Default value until config is loaded
+        this.chatPageSize = 50; // Chats per page of the history sidebar
         this.init();
     }
 
@@ -131,14 +132,17 @@ class ChatGPTClient {
             };
 
 
-            // Use the correct endpoints from your ChatController
-            const url = this.currentChatId ?`${this.apiBase}/chats/${this.currentChatId}/messages` :`${this.apiBase}/chats`;
+            const isNewChat = !this.currentChatId;
+
+            // Stream the reply so the first tokens render as soon as they are generated
+            const url = this.currentChatId ?`${this.apiBase}/chats/${this.currentChatId}/stream` :`${this.apiBase}/chats/stream`;
 
 
             const response = await fetch(url, {
                 method: 'POST',
                 headers: {
-                    'Content-Type': 'application/json'
+                    'Content-Type': 'application/json',
+                    'Accept': 'text/event-stream'
                 },
                 body: JSON.stringify(requestBody)
             });
@@ -148,10 +152,33 @@ class ChatGPTClient {
                 throw new Error(`Failed to send message: ${response.status} - ${errorText}`);
             }
 
-            const data = await response.json();
+            const streamingDiv = this.addStreamingMessageToUI();
+            let streamedContent = '';
+            let data = null;
+
+            await this.readEventStream(response, (event, payload) => {
+                if (event === 'delta') {
+                    if (!this.currentChatId && payload.chatId) {
+                        this.currentChatId = payload.chatId;
+                    }
+                    streamedContent += payload.content || '';
+                    streamingDiv.textContent = streamedContent;
+                    const messagesContainer = document.getElementById('messages-container');
+                    messagesContainer.scrollTop = messagesContainer.scrollHeight;
+                } else if (event === 'done') {
+                    data = payload;
+                } else if (event === 'error') {
+                    throw new Error(payload.content || 'Streaming failed');
+                }
+            });
+
+            streamingDiv.parentElement.remove();
+            if (!data) {
+                throw new Error('Stream ended before the response was saved');
+            }
 
             // Update current chat ID if this was a new chat
-            if (!this.currentChatId) {
+            if (isNewChat) {
                 this.currentChatId = data.chatId;
                 this.updateChatTitle();
             }
@@ -174,6 +201,53 @@ class ChatGPTClient {
         }
     }
 
+    addStreamingMessageToUI() {
+        const messagesContainer = document.getElementById('messages-container');
+        const messageDiv = document.createElement('div');
+        messageDiv.className = 'message message-assistant';
+
+        const contentDiv = document.createElement('div');
+        contentDiv.className = 'message-content whitespace-pre-wrap';
+        messageDiv.appendChild(contentDiv);
+
+        messagesContainer.appendChild(messageDiv);
+        messagesContainer.scrollTop = messagesContainer.scrollHeight;
+        return contentDiv;
+    }
+
+    async readEventStream(response, onEvent) {
+        const reader = response.body.getReader();
+        const decoder = new TextDecoder();
+        let buffer = '';
+
+        while (true) {
+            const { done, value } = await reader.read();
+            if (done) break;
+            buffer += decoder.decode(value, { stream: true });
+
+            // Events are separated by a blank line
+            let boundary;
+            while ((boundary = buffer.indexOf('\n\n')) >= 0) {
+                const rawEvent = buffer.slice(0, boundary);
+                buffer = buffer.slice(boundary + 2);
+
+                let event = 'message';
+                const dataLines = [];
+                rawEvent.split('\n').forEach(line => {
+                    if (line.startsWith('event:')) {
+                        event = line.slice(6).trim();
+                    } else if (line.startsWith('data:')) {
+                        dataLines.push(line.slice(5));
+                    }
+                });
+
+                if (dataLines.length > 0) {
+                    onEvent(event, JSON.parse(dataLines.join('\n')));
+                }
+            }
+        }
+    }
+
     addMessageToUI(role, content, metadata = {}) {
         const messagesContainer = document.getElementById('messages-container');
         const messageDiv = document.createElement('div');
@@ -988,14 +1062,7 @@ class ChatGPTClient {
     async loadChatHistory() {
         try {
             console.log('Loading chat history...');
-            const response = await fetch(`${this.apiBase}/chats`);
-
-            if (!response.ok) {
-                console.error('Failed to load chat history:', response.status, response.statusText);
-                throw new Error(`Failed to load chat history: ${response.status}`);
-            }
-
-            const chats = await response.json();
+            const chats = await this.fetchChatPage(null);
             console.log('Loaded chats:', chats);
 
             const chatHistoryContainer = document.getElementById('chat-history');
@@ -1006,13 +1073,7 @@ class ChatGPTClient {
                 return;
             }
 
-            chats.forEach(chat => {
-                const chatItem = document.createElement('div');
-                chatItem.className = `chat-item ${chat.id === this.currentChatId ? 'active' : ''}`;
-                chatItem.textContent = chat.title;
-                chatItem.addEventListener('click', () => this.loadChat(chat.id));
-                chatHistoryContainer.appendChild(chatItem);
-            });
+            this.appendChatHistory(chats);
         } catch (error) {
             console.error('Error loading chat history:', error);
             const chatHistoryContainer = document.getElementById('chat-history');
@@ -1020,6 +1081,57 @@ class ChatGPTClient {
         }
     }
 
+    async loadMoreChats(loadMoreBtn, after) {
+        loadMoreBtn.disabled = true;
+        loadMoreBtn.textContent = 'Loading...';
+        try {
+            const chats = await this.fetchChatPage(after);
+            loadMoreBtn.remove();
+            this.appendChatHistory(chats);
+        } catch (error) {
+            console.error('Error loading more chats:', error);
+            loadMoreBtn.disabled = false;
+            loadMoreBtn.textContent = 'Load more';
+        }
+    }
+
+    // One page of chats, most recently updated first, starting after the given cursor
+    async fetchChatPage(after) {
+        const params = new URLSearchParams({ limit: this.chatPageSize });
+        if (after) {
+            params.set('after', after);
+        }
+        const response = await fetch(`${this.apiBase}/chats?${params}`);
+
+        if (!response.ok) {
+            console.error('Failed to load chat history:', response.status, response.statusText);
+            throw new Error(`Failed to load chat history: ${response.status}`);
+        }
+        return response.json();
+    }
+
+    appendChatHistory(chats) {
+        const chatHistoryContainer = document.getElementById('chat-history');
+
+        chats.forEach(chat => {
+            const chatItem = document.createElement('div');
+            chatItem.className = `chat-item ${chat.id === this.currentChatId ? 'active' : ''}`;
+            chatItem.textContent = chat.title;
+            chatItem.addEventListener('click', () => this.loadChat(chat.id, chat.title));
+            chatHistoryContainer.appendChild(chatItem);
+        });
+
+        // A full page means there may be more
+        if (chats.length === this.chatPageSize) {
+            const loadMoreBtn = document.createElement('button');
+            loadMoreBtn.className = 'text-blue-600 hover:text-blue-800 text-sm p-2';
+            loadMoreBtn.textContent = 'Load more';
+            loadMoreBtn.addEventListener('click',
+                () => this.loadMoreChats(loadMoreBtn, chats[chats.length - 1].cursor));
+            chatHistoryContainer.appendChild(loadMoreBtn);
+        }
+    }
+
     async loadSavedPrompts() {
         try {
             console.log('Loading saved prompts...');
@@ -1072,27 +1184,26 @@ class ChatGPTClient {
         }
     }
 
-    async loadChat(chatId) {
+    async loadChat(chatId, title) {
         try {
-            const response = await fetch(`${this.apiBase}/chats/${chatId}`);
+            // Only the latest messages are needed to open a chat
+            const response = await fetch(`${this.apiBase}/chats/${chatId}/messages?limit=50`);
             if (!response.ok) throw new Error('Failed to load chat');
 
-            const chat = await response.json();
+            const messages = await response.json();
             this.currentChatId = chatId;
 
             // Clear current messages
             document.getElementById('messages-container').innerHTML = '';
 
             // Load messages
-            if (chat.messages) {
-                chat.messages.forEach(message => {
-                    if (message.role !== 'SYSTEM') {
-                        this.addMessageToUI(message.role.toLowerCase(), message.content);
-                    }
-                });
-            }
+            messages.forEach(message => {
+                if (message.role !== 'SYSTEM') {
+                    this.addMessageToUI(message.role.toLowerCase(), message.content);
+                }
+            });
 
-            this.updateChatTitle(chat.title);
+            this.updateChatTitle(title);
             this.loadChatHistory(); // Refresh to update active state
         } catch (error) {
             console.error('Error loading chat:', error);
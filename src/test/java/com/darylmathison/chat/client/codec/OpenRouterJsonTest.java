@@ -0,0 +1,136 @@
+package com.darylmathison.chat.client.codec;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.darylmathison.chat.client.dto.OpenRouterChatRequest;
+import com.darylmathison.chat.client.dto.OpenRouterChatResponse;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+
+class OpenRouterJsonTest {
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private final DefaultDataBufferFactory bufferFactory = DefaultDataBufferFactory.sharedInstance;
+
+  @Test
+  void encoder_WritesOpenRouterRequestFormat() throws Exception {
+    // Given
+    OpenRouterChatRequest request = new OpenRouterChatRequest("openai/gpt-4",
+        List.of(new OpenRouterChatRequest.ChatMessage("system", "Be brief"),
+            new OpenRouterChatRequest.ChatMessage("user", "Say \"hi\"")),
+        100, 0.2, false);
+
+    // When
+    DataBuffer buffer = new OpenRouterChatRequestEncoder().encodeValue(request, bufferFactory,
+        ResolvableType.forClass(OpenRouterChatRequest.class), null, null);
+    JsonNode json = objectMapper.readTree(buffer.toString(StandardCharsets.UTF_8));
+
+    // Then
+    assertThat(json.path("model").asText()).isEqualTo("openai/gpt-4");
+    assertThat(json.path("messages").size()).isEqualTo(2);
+    assertThat(json.path("messages").path(1).path("content").asText()).isEqualTo("Say \"hi\"");
+    assertThat(json.path("max_tokens").asInt()).isEqualTo(100);
+    assertThat(json.path("temperature").asDouble()).isEqualTo(0.2);
+    assertThat(json.has("stream")).isFalse();
+  }
+
+  @Test
+  void decoder_ExtractsContentAndUsageAndSkipsTheRest() {
+    // Given
+    String body = """
+        {"id":"gen-1","provider":"OpenAI","model":"openai/gpt-4","object":"chat.completion",
+         "choices":[{"logprobs":null,"finish_reason":"stop","index":0,
+           "message":{"role":"assistant","content":"Hello there","refusal":null,
+             "reasoning":"thinking...","tool_calls":[{"id":"x"}]}},
+           {"message":{"content":"second choice"}}],
+         "usage":{"prompt_tokens":12,"completion_tokens":3,"total_tokens":15,
+           "prompt_tokens_details":{"cached_tokens":0}}}
+        """;
+
+    // When
+    OpenRouterChatResponse response = new OpenRouterChatResponseDecoder(1024 * 1024).decode(
+        bufferFactory.wrap(body.getBytes(StandardCharsets.UTF_8)),
+        ResolvableType.forClass(OpenRouterChatResponse.class), null, null);
+
+    // Then
+    assertThat(response.id()).isEqualTo("gen-1");
+    assertThat(response.model()).isEqualTo("openai/gpt-4");
+    assertThat(response.content()).isEqualTo("Hello there");
+    assertThat(response.finishReason()).isEqualTo("stop");
+    assertThat(response.usage()).isEqualTo(new OpenRouterChatResponse.Usage(12, 3, 15));
+    assertThat(response.error()).isNull();
+  }
+
+  @Test
+  void readResponse_StreamChunk_ReadsDeltaContent() throws Exception {
+    // Given
+    String chunk = "{\"id\":\"gen-2\",\"choices\":[{\"index\":0,\"delta\":{\"role\":\"assistant\","
+        + "\"content\":\"Hel\"},\"finish_reason\":null}]}";
+
+    // When
+    OpenRouterChatResponse response = OpenRouterJson.readResponse(
+        OpenRouterJson.JSON_FACTORY.createParser(chunk));
+
+    // Then
+    assertThat(response.content()).isEqualTo("Hel");
+    assertThat(response.usage()).isNull();
+  }
+
+  @Test
+  void writeRequest_CacheBreakpoint_WritesContentAsCachedTextPart() throws Exception {
+    // Given
+    OpenRouterChatRequest request = new OpenRouterChatRequest("anthropic/claude-3.5-sonnet",
+        List.of(new OpenRouterChatRequest.ChatMessage("system", "Long rules").withCacheBreakpoint(),
+            new OpenRouterChatRequest.ChatMessage("user", "Hi")),
+        100, null, false);
+
+    // When
+    DataBuffer buffer = new OpenRouterChatRequestEncoder().encodeValue(request, bufferFactory,
+        ResolvableType.forClass(OpenRouterChatRequest.class), null, null);
+    JsonNode messages = objectMapper.readTree(buffer.toString(StandardCharsets.UTF_8))
+        .path("messages");
+
+    // Then
+    JsonNode part = messages.path(0).path("content").path(0);
+    assertThat(part.path("type").asText()).isEqualTo("text");
+    assertThat(part.path("text").asText()).isEqualTo("Long rules");
+    assertThat(part.path("cache_control").path("type").asText()).isEqualTo("ephemeral");
+    assertThat(messages.path(1).path("content").asText()).isEqualTo("Hi");
+  }
+
+  @Test
+  void readResponse_CachedUsage_ReadsCacheReadsAndWrites() throws Exception {
+    // Given
+    String body = "{\"usage\":{\"prompt_tokens\":2000,\"completion_tokens\":10,"
+        + "\"total_tokens\":2010,\"prompt_tokens_details\":{\"cached_tokens\":1500,"
+        + "\"cache_write_tokens\":400,\"audio_tokens\":0}}}";
+
+    // When
+    OpenRouterChatResponse response = OpenRouterJson.readResponse(
+        OpenRouterJson.JSON_FACTORY.createParser(body));
+
+    // Then
+    assertThat(response.usage())
+        .isEqualTo(new OpenRouterChatResponse.Usage(2000, 10, 2010, 1500, 400));
+  }
+
+  @Test
+  void readResponse_EmbeddedError_ReturnsErrorMessage() throws Exception {
+    // Given
+    String body = "{\"error\":{\"code\":429,\"message\":\"Rate limit exceeded\"}}";
+
+    // When
+    OpenRouterChatResponse response = OpenRouterJson.readResponse(
+        OpenRouterJson.JSON_FACTORY.createParser(body));
+
+    // Then
+    assertThat(response.error()).isEqualTo("Rate limit exceeded");
+    assertThat(response.content()).isNull();
+  }
+}
@@ -1,9 +1,14 @@
 package com.darylmathison.chat.client.controller;
 
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
+import com.darylmathison.chat.client.dto.ModelInfo;
 import com.darylmathison.chat.client.service.AIService;
-import com.darylmathison.chat.client.service.ChatService;
+import com.darylmathison.chat.client.service.CreditsCache;
+import com.darylmathison.chat.client.service.CreditsCache.CreditsSnapshot;
+import com.darylmathison.chat.client.service.ModelCatalog;
+import java.time.Instant;
 import java.util.List;
 import java.util.Map;
 import org.junit.jupiter.api.BeforeEach;
@@ -21,13 +26,16 @@ class ModelControllerTest {
   private AIService aiService;
 
   @Mock
-  private ChatService chatService;
+  private CreditsCache creditsCache;
+
+  @Mock
+  private ModelCatalog modelCatalog;
 
   private ModelController modelController;
 
   @BeforeEach
   void setUp() {
-    modelController = new ModelController(aiService, chatService);
+    modelController = new ModelController(aiService, creditsCache, modelCatalog);
     // Set initialCredits and defaultMaxTokens via reflection since they're injected via @Value
     try {
       java.lang.reflect.Field creditsField = ModelController.class.getDeclaredField("initialCredits");
@@ -42,6 +50,37 @@ class ModelControllerTest {
     }
   }
 
+  @Test
+  void getAvailableModels_CatalogLoaded_ServesFromCatalog() {
+    // Given
+    List<String> catalogModels = List.of("anthropic/claude-3-opus", "openai/gpt-4");
+    when(modelCatalog.isEmpty()).thenReturn(false);
+    when(modelCatalog.getModelIds()).thenReturn(catalogModels);
+
+    // When & Then
+    StepVerifier.create(modelController.getAvailableModels())
+        .expectNextMatches(response ->
+            response.getStatusCode().is2xxSuccessful() &&
+                response.getBody().equals(catalogModels))
+        .verifyComplete();
+    verifyNoInteractions(aiService);
+  }
+
+  @Test
+  void getModelCatalog_PassesFiltersToCatalog() {
+    // Given
+    ModelInfo freeModel = new ModelInfo("deepseek/deepseek-r1-0528:free", "DeepSeek R1 (free)",
+        163840, 0.0, 0.0, null, null);
+    when(modelCatalog.search(null, 100000, true, null)).thenReturn(List.of(freeModel));
+
+    // When & Then
+    StepVerifier.create(modelController.getModelCatalog(null, 100000, true, null))
+        .expectNextMatches(response ->
+            response.getStatusCode().is2xxSuccessful() &&
+                response.getBody().equals(List.of(freeModel)))
+        .verifyComplete();
+  }
+
   @Test
   void getAvailableModels_ReturnsModelsFromAIService() {
     // Given
@@ -52,6 +91,7 @@ class ModelControllerTest {
         "anthropic/claude-3-sonnet",
         "google/gemini-pro"
     );
+    when(modelCatalog.isEmpty()).thenReturn(true);
     when(aiService.getAvailableModels()).thenReturn(Mono.just(expectedModels));
 
     // When & Then
@@ -109,8 +149,8 @@ class ModelControllerTest {
     // Given
     Double totalCost = 3.5;
     Double actualCredits = 8.2; // Mock actual credits from OpenRouter
-    when(chatService.getTotalCostThisMonth()).thenReturn(Mono.just(totalCost));
-    when(aiService.getCreditBalance()).thenReturn(Mono.just(actualCredits));
+    when(creditsCache.get()).thenReturn(
+        Mono.just(new CreditsSnapshot(actualCredits, totalCost, Instant.now())));
 
     // When & Then
     StepVerifier.create(modelController.getRemainingCredits())
@@ -0,0 +1,86 @@
+package com.darylmathison.chat.client.mapping;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.darylmathison.chat.client.model.ExternalTool;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+class ResponseMappingCompilerTest {
+
+  private static final LocalDateTime SAVED = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+  private final ResponseMappingCompiler compiler = new ResponseMappingCompiler(new ObjectMapper());
+
+  @Test
+  void compile_CachesPerToolVersion() {
+    ResponseMapping first = compiler.compile(tool(1L, "{\"extract\": \"/a\"}", SAVED));
+
+    assertSame(first, compiler.compile(tool(1L, "{\"extract\": \"/a\"}", SAVED.plusMinutes(1))));
+    assertNotSame(first, compiler.compile(tool(1L, "{\"extract\": \"/b\"}", SAVED.plusMinutes(2))));
+
+    compiler.evict(1L);
+    assertNotSame(first, compiler.compile(tool(1L, "{\"extract\": \"/a\"}", SAVED)));
+  }
+
+  @Test
+  void compile_InvalidMapping_PassesResponsesThrough() {
+    assertTrue(compiler.compile(tool(1L, "{\"extract\": 42}", SAVED)).isPassthrough());
+    assertTrue(compiler.compile(tool(2L, null, SAVED)).isPassthrough());
+  }
+
+  @Test
+  void extract_ReadsTheRestOfTheBodyOnceEveryValueIsRead() {
+    ResponseMapping mapping = compiler.compile(tool(1L, "{\"extract\": \"/status\"}", SAVED));
+    AtomicBoolean cancelled = new AtomicBoolean();
+    AtomicBoolean completed = new AtomicBoolean();
+    // Not valid JSON past the status, which is never parsed
+    Flux<DataBuffer> body = Flux.concat(
+            Flux.just(buffer("{\"status\": \"ok\", \"rows\": [")),
+            Flux.range(0, 10_000).map(i -> buffer("{\"row\": " + i + "}}")))
+        .doOnCancel(() -> cancelled.set(true))
+        .doOnComplete(() -> completed.set(true));
+
+    StepVerifier.create(compiler.extract(mapping, body))
+        .expectNext("ok")
+        .verifyComplete();
+    // Read to the end, so the connection can go back to the pool
+    assertTrue(completed.get());
+    assertFalse(cancelled.get());
+  }
+
+  @Test
+  void extract_TokensSplitAcrossChunks() {
+    ResponseMapping mapping = compiler.compile(tool(1L,
+        "{\"extract\": {\"total\": \"/meta/total\", \"next\": \"/meta/next\"}}", SAVED));
+    Flux<DataBuffer> body = Flux.just(buffer("{\"rows\": [1, 2, 3], \"me"),
+        buffer("ta\": {\"total\": 3"), buffer("0}}"));
+
+    StepVerifier.create(compiler.extract(mapping, body))
+        .expectNext("{\"total\":30,\"next\":null}")
+        .verifyComplete();
+  }
+
+  private static DataBuffer buffer(String text) {
+    return DefaultDataBufferFactory.sharedInstance.wrap(text.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static ExternalTool tool(Long id, String responseMapping, LocalDateTime updatedAt) {
+    return ExternalTool.builder()
+        .id(id)
+        .name("tool")
+        .responseMapping(responseMapping)
+        .updatedAt(updatedAt)
+        .build();
+  }
+}
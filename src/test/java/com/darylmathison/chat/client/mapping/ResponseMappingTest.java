@@ -0,0 +1,131 @@
+package com.darylmathison.chat.client.mapping;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBufferLimitException;
+
+class ResponseMappingTest {
+
+  private static final String WEATHER = """
+      {"coord": {"lon": 2.35, "lat": 48.85},
+       "weather": [{"id": 800, "main": "Clear", "description": "clear sky"}],
+       "main": {"temp": 22.5, "humidity": 40},
+       "name": "Paris",
+       "tags": ["a", "b"]}""";
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  @Test
+  void apply_SinglePath_ReturnsTextOrJson() {
+    assertEquals("Paris", apply("{\"extract\": \"/name\"}", WEATHER));
+    assertEquals("{\"temp\":22.5,\"humidity\":40}", apply("{\"extract\": \"/main\"}", WEATHER));
+    assertEquals("clear sky", apply("{\"extract\": \"/weather/0/description\"}", WEATHER));
+    assertEquals("", apply("{\"extract\": \"/missing\"}", WEATHER));
+    assertEquals("", apply("{\"extract\": \"/tags/01\"}", WEATHER));
+  }
+
+  @Test
+  void apply_Projection_ReadsAllPathsInOnePass() {
+    String mapping = "{\"extract\": {\"temp\": \"/main/temp\", \"city\": \"/name\", "
+        + "\"sky\": \"/weather/0/main\", \"coord\": \"/coord\", \"lat\": \"/coord/lat\", "
+        + "\"wind\": \"/wind/speed\"}}";
+
+    assertEquals("{\"temp\":22.5,\"city\":\"Paris\",\"sky\":\"Clear\","
+            + "\"coord\":{\"lon\":2.35,\"lat\":48.85},\"lat\":48.85,\"wind\":null}",
+        apply(mapping, WEATHER));
+  }
+
+  @Test
+  void apply_WholeDocumentAndPassthrough() {
+    assertEquals("[1,2]", apply("{\"extract\": \"\"}", "[1, 2]"));
+    assertEquals(WEATHER, apply("{\"content_path\": \".\"}", WEATHER));
+    assertEquals("not json", apply("{\"extract\": \"/name\"}", "not json"));
+  }
+
+  @Test
+  void compile_InvalidMapping_Throws() {
+    assertThrows(IllegalArgumentException.class,
+        () -> ResponseMapping.compile("{\"extract\": 3}", objectMapper));
+    assertThrows(IllegalArgumentException.class,
+        () -> ResponseMapping.compile("{\"extract\": \"name\"}", objectMapper));
+    assertThrows(IllegalArgumentException.class,
+        () -> ResponseMapping.compile("{extract", objectMapper));
+  }
+
+  @Test
+  void stream_StopsOnceAllPathsAreRead() {
+    ResponseMapping mapping = ResponseMapping.compile(
+        "{\"extract\": {\"id\": \"/id\", \"first\": \"/items/0\"}}", objectMapper);
+    StreamingExtraction extraction = mapping.stream(objectMapper, 1024);
+
+    assertFalse(extraction.feed(bytes("{\"id\": \"abc\", \"items\": [{\"n\"")));
+    // Done at the end of the first item, long before the end of the array
+    assertTrue(extraction.feed(bytes(": 1}, {\"n\": 2}, ")));
+    assertTrue(extraction.feed(bytes("{\"n\": 3}]}")));
+    assertEquals("{\"id\":\"abc\",\"first\":{\"n\":1}}", extraction.finish());
+    extraction.close();
+  }
+
+  @Test
+  void stream_NotJson_ReturnsWholeBody() {
+    StreamingExtraction extraction = ResponseMapping.compile("{\"extract\": \"/a\"}", objectMapper)
+        .stream(objectMapper, 1024);
+
+    assertFalse(extraction.feed(bytes("Service ")));
+    assertFalse(extraction.feed(bytes("unavailable")));
+    assertEquals("Service unavailable", extraction.finish());
+    extraction.close();
+  }
+
+  @Test
+  void malformedOrTruncatedJson_ReturnsTheResponseUnchanged() {
+    String truncated = "{\"coord\": {\"lon\": 2.35}, \"name\": \"Par";
+    assertEquals(truncated, apply("{\"extract\": \"/name\"}", truncated));
+
+    StreamingExtraction extraction = ResponseMapping.compile("{\"extract\": \"/name\"}",
+        objectMapper).stream(objectMapper, 1024);
+    assertFalse(extraction.feed(bytes("{\"coord\": {\"lon\": 2.35}, ")));
+    assertFalse(extraction.feed(bytes("\"name\": oops}")));
+    assertEquals("{\"coord\": {\"lon\": 2.35}, \"name\": oops}", extraction.finish());
+    extraction.close();
+
+    extraction = ResponseMapping.compile("{\"extract\": \"/name\"}", objectMapper)
+        .stream(objectMapper, 1024);
+    extraction.feed(bytes(truncated));
+    assertEquals(truncated, extraction.finish());
+    extraction.close();
+  }
+
+  @Test
+  void stream_NotJsonPastTheLimit_Fails() {
+    StreamingExtraction extraction = ResponseMapping.compile("{\"extract\": \"/a\"}", objectMapper)
+        .stream(objectMapper, 16);
+
+    assertFalse(extraction.feed(bytes("Service ")));
+    assertThrows(DataBufferLimitException.class,
+        () -> extraction.feed(bytes("unavailable, try again later")));
+    extraction.close();
+
+    // Past the limit, JSON is still extracted from
+    StreamingExtraction large = ResponseMapping.compile("{\"extract\": \"/a\"}", objectMapper)
+        .stream(objectMapper, 16);
+    large.feed(bytes("{\"b\": \"" + "x".repeat(100) + "\", "));
+    assertTrue(large.feed(bytes("\"a\": 1}")));
+    assertEquals("1", large.finish());
+    large.close();
+  }
+
+  private String apply(String mapping, String response) {
+    return ResponseMapping.compile(mapping, objectMapper).apply(response, objectMapper);
+  }
+
+  private static byte[] bytes(String text) {
+    return text.getBytes(StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,189 @@
+package com.darylmathison.chat.client.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.Mockito.mock;
+
+import com.darylmathison.chat.client.model.Chat;
+import com.darylmathison.chat.client.model.Message;
+import com.darylmathison.chat.client.model.Message.MessageRole;
+import com.darylmathison.chat.client.search.MessageSearchIndex;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactory;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.r2dbc.connection.R2dbcTransactionManager;
+import org.springframework.r2dbc.connection.init.ResourceDatabasePopulator;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+class ChatTurnWriterTest {
+
+  private ConnectionFactory connectionFactory;
+  private DatabaseClient databaseClient;
+  private ChatTurnWriter writer;
+
+  @BeforeEach
+  void setUp() {
+    connectionFactory = ConnectionFactories.get(
+        "r2dbc:h2:mem:///turn-" + UUID.randomUUID() + "?options=DB_CLOSE_DELAY=-1");
+    databaseClient = DatabaseClient.create(connectionFactory);
+    writer = new ChatTurnWriter(databaseClient,
+        TransactionalOperator.create(new R2dbcTransactionManager(connectionFactory)),
+        mock(MessageWriteBehindBuffer.class), mock(MessageSearchIndex.class));
+
+    databaseClient.sql("CREATE TABLE chats (id BIGINT AUTO_INCREMENT PRIMARY KEY, "
+            + "title VARCHAR(255) NOT NULL, created_at TIMESTAMP NOT NULL, "
+            + "updated_at TIMESTAMP NOT NULL, total_tokens BIGINT, estimated_cost DOUBLE, "
+            + "model_used VARCHAR(100), message_count INTEGER, "
+            + "last_message_preview VARCHAR(100))")
+        .then()
+        .then(databaseClient.sql("CREATE TABLE messages (id BIGINT AUTO_INCREMENT PRIMARY KEY, "
+                + "chat_id BIGINT NOT NULL, content TEXT NOT NULL, role VARCHAR(20) NOT NULL, "
+                + "created_at TIMESTAMP NOT NULL, tokens INTEGER, "
+                + "FOREIGN KEY (chat_id) REFERENCES chats (id) ON DELETE CASCADE)")
+            .then())
+        .block();
+  }
+
+  @Test
+  void writeNewChatTurn_InsertsChatAndMessages() {
+    Chat chat = chat(25L, 0.001);
+
+    StepVerifier.create(writer.writeNewChatTurn(chat, turn("Hi", "Hello!")))
+        .assertNext(saved -> {
+          assertNotNull(chat.getId());
+          assertEquals(2, saved.size());
+          assertEquals(chat.getId(), saved.get(1).getChatId());
+          assertEquals(saved.get(0).getId() + 1, saved.get(1).getId());
+        })
+        .verifyComplete();
+
+    assertEquals(List.of("USER", "ASSISTANT"), roles(chat.getId()));
+    Map<String, Object> stats = stats(chat.getId());
+    assertEquals(25L, ((Number) stats.get("TOTAL_TOKENS")).longValue());
+    assertEquals(2, ((Number) stats.get("MESSAGE_COUNT")).intValue());
+    assertEquals("Hello!", stats.get("LAST_MESSAGE_PREVIEW"));
+  }
+
+  @Test
+  void writeTurn_IncrementsStatsInPlace() {
+    Chat chat = chat(10L, 0.5);
+    writer.writeNewChatTurn(chat, turn("One", "Two")).block();
+
+    // Two turns racing on the same chat must both be counted
+    Flux.merge(
+            writer.writeTurn(chat.getId(), turn("Three", "Four"), 5L, 0.25, "model-a"),
+            writer.writeTurn(chat.getId(), turn("Five", "Six"), 7L, 0.25, null))
+        .blockLast();
+
+    Map<String, Object> stats = stats(chat.getId());
+    assertEquals(22L, ((Number) stats.get("TOTAL_TOKENS")).longValue());
+    assertEquals(1.0, ((Number) stats.get("ESTIMATED_COST")).doubleValue(), 1e-9);
+    assertEquals(6, roles(chat.getId()).size());
+    assertEquals(6, ((Number) stats.get("MESSAGE_COUNT")).intValue());
+  }
+
+  @Test
+  void addUsage_AddsToTotalsWithoutTouchingTheMessages() {
+    Chat chat = chat(10L, 0.5);
+    writer.writeNewChatTurn(chat, turn("One", "Two")).block();
+
+    StepVerifier.create(writer.addUsage(chat.getId(), 100L, 0.002)).verifyComplete();
+
+    Map<String, Object> stats = stats(chat.getId());
+    assertEquals(110L, ((Number) stats.get("TOTAL_TOKENS")).longValue());
+    assertEquals(0.502, ((Number) stats.get("ESTIMATED_COST")).doubleValue(), 1e-9);
+    assertEquals(2, ((Number) stats.get("MESSAGE_COUNT")).intValue());
+  }
+
+  @Test
+  void writeTurn_KeepsPreviewOfLastMessage() {
+    Chat chat = chat(0L, 0.0);
+    writer.writeNewChatTurn(chat, turn("One", "Two")).block();
+
+    writer.writeTurn(chat.getId(), turn("Three", "  " + "x".repeat(150) + "  "), 1L, 0.0, null)
+        .block();
+
+    Map<String, Object> stats = stats(chat.getId());
+    assertEquals(4, ((Number) stats.get("MESSAGE_COUNT")).intValue());
+    assertEquals("x".repeat(97) + "...", stats.get("LAST_MESSAGE_PREVIEW"));
+  }
+
+  @Test
+  void backfillScript_FillsChatsWrittenBeforeTheSummaryColumns() {
+    databaseClient.sql("INSERT INTO chats (id, title, created_at, updated_at) "
+            + "VALUES (100, 'Legacy', CURRENT_TIMESTAMP, CURRENT_TIMESTAMP), "
+            + "(101, 'Empty', CURRENT_TIMESTAMP, CURRENT_TIMESTAMP)")
+        .then()
+        .then(databaseClient.sql("INSERT INTO messages (chat_id, content, role, created_at) "
+                + "VALUES (100, 'First', 'USER', TIMESTAMP '2024-01-01 10:00:00'), "
+                + "(100, ' Latest ', 'ASSISTANT', TIMESTAMP '2024-01-01 10:00:05')")
+            .then())
+        .block();
+
+    new ResourceDatabasePopulator(new ClassPathResource("db/chat-summary-backfill.sql"))
+        .populate(connectionFactory)
+        .block();
+
+    Map<String, Object> legacy = stats(100L);
+    assertEquals(2, ((Number) legacy.get("MESSAGE_COUNT")).intValue());
+    assertEquals("Latest", legacy.get("LAST_MESSAGE_PREVIEW"));
+    Map<String, Object> empty = stats(101L);
+    assertEquals(0, ((Number) empty.get("MESSAGE_COUNT")).intValue());
+    assertEquals("", empty.get("LAST_MESSAGE_PREVIEW"));
+  }
+
+  @Test
+  void writeTurn_UnknownChat_WritesNothing() {
+    StepVerifier.create(writer.writeTurn(999L, turn("Lost", "Reply"), 1L, 0.0, null))
+        .expectError()
+        .verify();
+
+    assertEquals(List.of(), roles(999L));
+  }
+
+  private Chat chat(long tokens, double cost) {
+    return Chat.builder()
+        .title("Test")
+        .createdAt(LocalDateTime.now())
+        .updatedAt(LocalDateTime.now())
+        .totalTokens(tokens)
+        .estimatedCost(cost)
+        .modelUsed("model-a")
+        .build();
+  }
+
+  private List<Message> turn(String user, String assistant) {
+    return List.of(
+        Message.builder().content(user).role(MessageRole.USER).createdAt(LocalDateTime.now())
+            .build(),
+        Message.builder().content(assistant).role(MessageRole.ASSISTANT)
+            .createdAt(LocalDateTime.now()).tokens(3).build());
+  }
+
+  private List<String> roles(Long chatId) {
+    return databaseClient.sql("SELECT role FROM messages WHERE chat_id = :chatId ORDER BY id")
+        .bind("chatId", chatId)
+        .map(row -> row.get("role", String.class))
+        .all()
+        .collectList()
+        .block();
+  }
+
+  private Map<String, Object> stats(Long chatId) {
+    return databaseClient.sql("SELECT total_tokens, estimated_cost, "
+            + "message_count, last_message_preview FROM chats WHERE id = :chatId")
+        .bind("chatId", chatId)
+        .fetch()
+        .one()
+        .block();
+  }
+}
@@ -0,0 +1,80 @@
+package com.darylmathison.chat.client.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.darylmathison.chat.client.dto.MessageDto;
+import io.r2dbc.spi.ConnectionFactories;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Flux;
+
+class MessagePageReaderTest {
+
+  private MessagePageReader reader;
+
+  @BeforeEach
+  void setUp() {
+    DatabaseClient databaseClient = DatabaseClient.create(ConnectionFactories.get(
+        "r2dbc:h2:mem:///pages-" + UUID.randomUUID() + "?options=DB_CLOSE_DELAY=-1"));
+    reader = new MessagePageReader(databaseClient);
+
+    databaseClient.sql("CREATE TABLE messages (id BIGINT AUTO_INCREMENT PRIMARY KEY, "
+            + "chat_id BIGINT NOT NULL, content TEXT NOT NULL, role VARCHAR(20) NOT NULL, "
+            + "created_at TIMESTAMP NOT NULL, tokens INTEGER)")
+        .then()
+        .block();
+    // Ids 1-10 in chat 1, interleaved with chat 2
+    Flux.range(1, 10)
+        .concatMap(i -> databaseClient.sql("INSERT INTO messages (id, chat_id, content, role, "
+                + "created_at) VALUES (:id, :chatId, :content, 'USER', CURRENT_TIMESTAMP)")
+            .bind("id", i * 2L)
+            .bind("chatId", 1L)
+            .bind("content", "Message " + i)
+            .then()
+            .then(databaseClient.sql("INSERT INTO messages (id, chat_id, content, role, "
+                    + "created_at) VALUES (:id, 2, 'Other', 'ASSISTANT', CURRENT_TIMESTAMP)")
+                .bind("id", i * 2L + 1)
+                .then()))
+        .blockLast();
+  }
+
+  @Test
+  void findPage_WithoutCursor_ReturnsNewestInOrder() {
+    assertEquals(List.of(16L, 18L, 20L), ids(reader.findPage(1L, null, null, 3, null)));
+  }
+
+  @Test
+  void findPage_Before_PagesBackwards() {
+    assertEquals(List.of(10L, 12L, 14L), ids(reader.findPage(1L, 16L, null, 3, null)));
+    assertEquals(List.of(2L), ids(reader.findPage(1L, 4L, null, 3, null)));
+  }
+
+  @Test
+  void findPage_After_PagesForwards() {
+    assertEquals(List.of(6L, 8L), ids(reader.findPage(1L, null, 4L, 2, null)));
+    assertEquals(List.of(6L), ids(reader.findPage(1L, 8L, 4L, 5, null)));
+  }
+
+  @Test
+  void findPage_Truncate_CutsContentInTheQuery() {
+    List<MessageDto> page = reader.findPage(1L, null, null, 2, 7).collectList().block();
+
+    assertEquals("Message", page.get(0).getContent());
+    assertEquals(9, page.get(0).getContentLength());
+    assertTrue(page.get(0).isTruncated());
+    assertEquals(10, page.get(1).getContentLength());
+
+    MessageDto whole = reader.findPage(1L, null, 18L, 1, 100).blockFirst();
+    assertEquals("Message 10", whole.getContent());
+    assertFalse(whole.isTruncated());
+  }
+
+  private static List<Long> ids(Flux<MessageDto> page) {
+    return page.map(MessageDto::getId).collectList().block();
+  }
+}
@@ -0,0 +1,169 @@
+package com.darylmathison.chat.client.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.darylmathison.chat.client.model.Message;
+import com.darylmathison.chat.client.model.Message.MessageRole;
+import com.darylmathison.chat.client.search.MessageSearchIndex;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactory;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.r2dbc.connection.R2dbcTransactionManager;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+class MessageWriteBehindBufferTest {
+
+  private DatabaseClient databaseClient;
+  private MessageWriteBehindBuffer buffer;
+  private long chatId;
+
+  @BeforeEach
+  void setUp() {
+    ConnectionFactory connectionFactory = ConnectionFactories.get(
+        "r2dbc:h2:mem:///write-behind-" + UUID.randomUUID() + "?options=DB_CLOSE_DELAY=-1");
+    databaseClient = DatabaseClient.create(connectionFactory);
+    ChatTurnWriter writer = new ChatTurnWriter(databaseClient,
+        TransactionalOperator.create(new R2dbcTransactionManager(connectionFactory)),
+        mock(MessageWriteBehindBuffer.class), mock(MessageSearchIndex.class));
+    buffer = buffer(writer);
+
+    databaseClient.sql("CREATE TABLE chats (id BIGINT AUTO_INCREMENT PRIMARY KEY, "
+            + "title VARCHAR(255) NOT NULL)")
+        .then()
+        .then(databaseClient.sql("CREATE TABLE messages (id BIGINT AUTO_INCREMENT PRIMARY KEY, "
+                + "chat_id BIGINT NOT NULL, content TEXT NOT NULL, role VARCHAR(20) NOT NULL, "
+                + "created_at TIMESTAMP NOT NULL, tokens INTEGER, "
+                + "FOREIGN KEY (chat_id) REFERENCES chats (id) ON DELETE CASCADE)")
+            .then())
+        .then(databaseClient.sql("INSERT INTO chats (title) VALUES ('Test')").then())
+        .block();
+    chatId = databaseClient.sql("SELECT id FROM chats").map(row -> row.get("id", Long.class))
+        .one().block();
+  }
+
+  @Test
+  void withPending_SeesUnflushedMessagesWithoutDuplicatingFlushedOnes() {
+    List<Message> turn = turn(chatId, "Question", "Answer");
+    buffer.enqueue(turn).block();
+
+    assertEquals(0, count());
+    StepVerifier.create(buffer.withPending(chatId, persisted()))
+        .assertNext(messages -> assertEquals(List.of("Question", "Answer"), contents(messages)))
+        .verifyComplete();
+
+    buffer.flush().block();
+
+    assertEquals(2, count());
+    assertNotNull(turn.get(1).getId());
+    assertEquals(0, buffer.buffered());
+    StepVerifier.create(buffer.withPending(chatId, persisted()))
+        .assertNext(messages -> assertEquals(List.of("Question", "Answer"), contents(messages)))
+        .verifyComplete();
+  }
+
+  @Test
+  void flush_RowOfDeletedChatIsDroppedWithoutLosingTheRest() {
+    buffer.enqueue(turn(chatId, "Kept", "Also kept")).block();
+    buffer.enqueue(turn(9999L, "Orphan", "Orphan reply")).block();
+
+    buffer.flush().block();
+
+    assertEquals(2, count());
+    assertEquals(0, buffer.buffered());
+  }
+
+  @Test
+  void enqueue_FullBuffer_FailsAfterMaxWait() {
+    ChatTurnWriter stalled = mock(ChatTurnWriter.class);
+    when(stalled.insertMessages(anyList())).thenReturn(Mono.never());
+    MessageWriteBehindBuffer small = buffer(stalled);
+    ReflectionTestUtils.setField(small, "capacity", 2);
+    ReflectionTestUtils.setField(small, "maxWait", Duration.ofMillis(100));
+
+    small.enqueue(turn(chatId, "One", "Two")).block();
+
+    StepVerifier.create(small.enqueue(turn(chatId, "Three", "Four")))
+        .expectError(MessageWriteBehindBuffer.WriteBehindFullException.class)
+        .verify(Duration.ofSeconds(5));
+  }
+
+  @Test
+  void discard_DropsBufferedMessagesOfTheChat() {
+    List<Message> turn = turn(chatId, "Question", "Answer");
+    buffer.enqueue(turn).block();
+
+    buffer.discard(chatId);
+    buffer.flush().block();
+
+    assertEquals(0, count());
+    assertNull(turn.get(0).getId());
+  }
+
+  @Test
+  void flushOnShutdown_WritesEverythingBuffered() {
+    for (int i = 0; i < 5; i++) {
+      buffer.enqueue(turn(chatId, "Q" + i, "A" + i)).block();
+    }
+
+    buffer.flushOnShutdown();
+
+    assertEquals(10, count());
+  }
+
+  private MessageWriteBehindBuffer buffer(ChatTurnWriter writer) {
+    MessageWriteBehindBuffer created = new MessageWriteBehindBuffer(writer,
+        new SimpleMeterRegistry());
+    ReflectionTestUtils.setField(created, "enabled", true);
+    // Large enough that nothing flushes on its own during a test
+    ReflectionTestUtils.setField(created, "batchSize", 100);
+    return created;
+  }
+
+  private Flux<Message> persisted() {
+    return databaseClient.sql("SELECT id, content, created_at FROM messages "
+            + "WHERE chat_id = :chatId ORDER BY id")
+        .bind("chatId", chatId)
+        .map(row -> Message.builder()
+            .id(row.get("id", Long.class))
+            .content(row.get("content", String.class))
+            .createdAt(row.get("created_at", LocalDateTime.class))
+            .build())
+        .all();
+  }
+
+  private long count() {
+    return databaseClient.sql("SELECT COUNT(*) AS n FROM messages")
+        .map(row -> row.get("n", Long.class))
+        .one()
+        .block();
+  }
+
+  private static List<Message> turn(Long chatId, String user, String assistant) {
+    LocalDateTime now = LocalDateTime.now();
+    return List.of(
+        Message.builder().chatId(chatId).content(user).role(MessageRole.USER).createdAt(now)
+            .build(),
+        Message.builder().chatId(chatId).content(assistant).role(MessageRole.ASSISTANT)
+            .createdAt(now.plusNanos(1000)).build());
+  }
+
+  private static List<String> contents(List<Message> messages) {
+    return messages.stream().map(Message::getContent).toList();
+  }
+}
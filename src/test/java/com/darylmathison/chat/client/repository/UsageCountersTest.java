@@ -0,0 +1,120 @@
+package com.darylmathison.chat.client.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactory;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.test.StepVerifier;
+
+class UsageCountersTest {
+
+  private static final LocalDateTime FUTURE = LocalDateTime.of(2099, 1, 1, 0, 0);
+
+  private DatabaseClient databaseClient;
+  private UsageCounters counters;
+
+  @BeforeEach
+  void setUp() {
+    ConnectionFactory connectionFactory = ConnectionFactories.get(
+        "r2dbc:h2:mem:///usage-" + UUID.randomUUID() + "?options=DB_CLOSE_DELAY=-1");
+    databaseClient = DatabaseClient.create(connectionFactory);
+    counters = new UsageCounters(databaseClient);
+  }
+
+  @Test
+  void flush_AddsPendingCountsAndKeepsLatestUse() {
+    createTables();
+    execute("INSERT INTO external_tools (id, usage_count) VALUES (1, 5)");
+    execute("INSERT INTO external_tools (id, usage_count) VALUES (2, NULL)");
+    execute("INSERT INTO external_tools (id, usage_count, last_used_at) "
+        + "VALUES (3, 0, TIMESTAMP '2099-01-01 00:00:00')");
+    execute("INSERT INTO saved_prompts (id, usage_count) VALUES (1, 0)");
+
+    for (int i = 0; i < 3; i++) {
+      counters.recordToolUse(1L);
+    }
+    counters.recordToolUse(2L);
+    counters.recordToolUse(3L);
+    counters.recordPromptUse(1L);
+    counters.recordPromptUse(1L);
+
+    // Reads merge what is pending before anything is written
+    assertEquals(8L, counters.toolUsageCount(1L, 5L));
+    assertEquals(2L, counters.promptUsageCount(1L, 0L));
+    assertNotNull(counters.toolLastUsedAt(1L, null));
+    assertEquals(FUTURE, counters.toolLastUsedAt(3L, FUTURE));
+
+    StepVerifier.create(counters.flush()).verifyComplete();
+
+    assertEquals(8L, usageCount("external_tools", 1));
+    assertEquals(1L, usageCount("external_tools", 2));
+    assertEquals(2L, usageCount("saved_prompts", 1));
+    assertNotNull(lastUsedAt(1));
+    assertEquals(FUTURE, lastUsedAt(3));
+    assertEquals(8L, counters.toolUsageCount(1L, 8L));
+  }
+
+  @Test
+  void flush_ManyRows_WritesInBatches() {
+    createTables();
+    ReflectionTestUtils.setField(counters, "batchSize", 2);
+    for (long id = 1; id <= 5; id++) {
+      execute("INSERT INTO external_tools (id, usage_count) VALUES (" + id + ", 0)");
+      counters.recordToolUse(id);
+    }
+
+    StepVerifier.create(counters.flush()).verifyComplete();
+
+    for (int id = 1; id <= 5; id++) {
+      assertEquals(1L, usageCount("external_tools", id));
+    }
+  }
+
+  @Test
+  void flush_Failure_KeepsCountsForTheNextFlush() {
+    counters.recordToolUse(1L);
+    counters.recordToolUse(1L);
+
+    // No tables yet: the UPDATE fails and the counts are put back
+    StepVerifier.create(counters.flush()).verifyComplete();
+    assertEquals(2L, counters.toolUsageCount(1L, 0L));
+
+    createTables();
+    execute("INSERT INTO external_tools (id, usage_count) VALUES (1, 0)");
+    StepVerifier.create(counters.flush()).verifyComplete();
+
+    assertEquals(2L, usageCount("external_tools", 1));
+    assertEquals(2L, counters.toolUsageCount(1L, 2L));
+  }
+
+  private void createTables() {
+    execute("CREATE TABLE external_tools (id BIGINT PRIMARY KEY, usage_count BIGINT DEFAULT 0, "
+        + "last_used_at TIMESTAMP)");
+    execute("CREATE TABLE saved_prompts (id BIGINT PRIMARY KEY, usage_count BIGINT DEFAULT 0)");
+  }
+
+  private void execute(String sql) {
+    databaseClient.sql(sql).then().block();
+  }
+
+  private long usageCount(String table, long id) {
+    return databaseClient.sql("SELECT usage_count FROM " + table + " WHERE id = " + id)
+        .map(row -> row.get("usage_count", Long.class))
+        .one()
+        .block();
+  }
+
+  private LocalDateTime lastUsedAt(long id) {
+    return databaseClient.sql("SELECT last_used_at FROM external_tools WHERE id = " + id)
+        .map(row -> row.get("last_used_at", LocalDateTime.class))
+        .one()
+        .block();
+  }
+}
@@ -0,0 +1,187 @@
+package com.darylmathison.chat.client.search;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.when;
+
+import com.darylmathison.chat.client.model.Chat;
+import com.darylmathison.chat.client.model.Message;
+import com.darylmathison.chat.client.model.Message.MessageRole;
+import com.darylmathison.chat.client.repository.ChatRepository;
+import com.darylmathison.chat.client.repository.MessageRepository;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+@ExtendWith(MockitoExtension.class)
+class InMemoryMessageSearchIndexTest {
+
+  @Mock
+  private MessageRepository messageRepository;
+
+  @Mock
+  private ChatRepository chatRepository;
+
+  private InMemoryMessageSearchIndex index;
+  private final List<Message> stored = new ArrayList<>();
+  private final List<Chat> storedChats = new ArrayList<>();
+
+  @BeforeEach
+  void setUp() {
+    index = new InMemoryMessageSearchIndex(messageRepository, chatRepository);
+  }
+
+  @Test
+  void search_RequiresAllWordsAndPrefersRecentMessages() {
+    LocalDateTime now = LocalDateTime.now();
+    index(message(1L, 10L, "The capital of France is Paris", now.minusDays(365)),
+        message(2L, 20L, "Paris is the capital of France", now.minusHours(1)),
+        message(3L, 20L, "Paris Hilton", now),
+        message(4L, 30L, "Berlin is the capital of Germany", now));
+    stubLookups();
+
+    StepVerifier.create(index.search("capital Paris", 10))
+        .assertNext(hit -> {
+          assertEquals(2L, hit.getMessageId());
+          assertEquals("Chat 20", hit.getChatTitle());
+          assertEquals("<mark>Paris</mark> is the <mark>capital</mark> of France",
+              hit.getSnippet());
+        })
+        .assertNext(hit -> assertEquals(1L, hit.getMessageId()))
+        .verifyComplete();
+  }
+
+  @Test
+  void search_UnknownWord_FindsNothing() {
+    index(message(1L, 10L, "Hello there", LocalDateTime.now()));
+
+    StepVerifier.create(index.search("hello goodbye", 10))
+        .verifyComplete();
+  }
+
+  @Test
+  void removeChat_DropsItsMessages() {
+    index(message(1L, 10L, "Deleted weather chat", LocalDateTime.now()),
+        message(2L, 20L, "Kept weather chat", LocalDateTime.now()));
+    stubLookups();
+
+    index.removeChat(10L);
+
+    assertEquals(1, index.size());
+    StepVerifier.create(index.search("weather", 10))
+        .assertNext(hit -> assertEquals(2L, hit.getMessageId()))
+        .verifyComplete();
+  }
+
+  @Test
+  void removeChat_PrunesTermsOnlyItUsed() {
+    index(message(1L, 10L, "Deleted zebra weather", LocalDateTime.now()),
+        message(2L, 20L, "Kept weather", LocalDateTime.now()));
+    index.indexChats(List.of(chat(10L, "Okapi sightings")));
+
+    index.removeChat(10L);
+
+    // weather and kept remain; zebra, deleted, okapi and sightings are gone
+    assertEquals(2, index.termCount());
+    assertEquals(1, index.size());
+    StepVerifier.create(index.search("zebra", 10))
+        .verifyComplete();
+  }
+
+  @Test
+  void search_MatchesChatTitles() {
+    LocalDateTime now = LocalDateTime.now();
+    index.indexChats(List.of(chat(10L, "Trip to <Lisbon>")));
+    index(message(1L, 20L, "Packing list for the trip to Lisbon", now.minusDays(1)));
+    stubLookups();
+
+    StepVerifier.create(index.search("lisbon trip", 10))
+        .assertNext(hit -> {
+          assertEquals(10L, hit.getChatId());
+          assertNull(hit.getMessageId());
+          assertNull(hit.getRole());
+          assertEquals("<mark>Trip</mark> to &lt;<mark>Lisbon</mark>&gt;", hit.getSnippet());
+        })
+        .assertNext(hit -> assertEquals(1L, hit.getMessageId()))
+        .verifyComplete();
+  }
+
+  @Test
+  void index_IgnoresRepeatsAndOutOfOrderIds() {
+    index(message(5L, 10L, "zebra", LocalDateTime.now()),
+        message(3L, 10L, "zebra crossing", LocalDateTime.now()));
+    index.index(List.of(stored.getFirst()));
+    stubLookups();
+
+    assertEquals(2, index.size());
+    StepVerifier.create(index.search("zebra", 10))
+        .expectNextCount(2)
+        .verifyComplete();
+  }
+
+  @Test
+  void snippet_CutsLongContentAroundTheFirstMatch() {
+    String content = "lorem ipsum ".repeat(20) + "the needle is here " + "dolor sit ".repeat(30);
+
+    String snippet = SearchText.snippet(content, Set.of("needle"));
+
+    assertTrue(snippet.startsWith("…"));
+    assertTrue(snippet.endsWith("…"));
+    assertTrue(snippet.contains("the <mark>needle</mark> is here"));
+  }
+
+  @Test
+  void snippet_EscapesTheContentAroundTheMarks() {
+    String snippet = SearchText.snippet("Try <script>alert('x & y')</script> needle",
+        Set.of("script", "needle"));
+
+    assertEquals("Try &lt;<mark>script</mark>&gt;alert(&#39;x &amp; y&#39;)&lt;/"
+        + "<mark>script</mark>&gt; <mark>needle</mark>", snippet);
+  }
+
+  private void index(Message... messages) {
+    stored.addAll(List.of(messages));
+    index.index(List.of(messages));
+  }
+
+  private void stubLookups() {
+    when(messageRepository.findAllById(anyList())).thenAnswer(invocation -> {
+      List<Long> ids = invocation.getArgument(0);
+      return Flux.fromIterable(stored).filter(message -> ids.contains(message.getId()));
+    });
+    when(chatRepository.findAllById(anyList())).thenAnswer(invocation -> {
+      List<Long> ids = invocation.getArgument(0);
+      return Flux.fromIterable(ids)
+          .map(id -> storedChats.stream()
+              .filter(chat -> chat.getId().equals(id))
+              .findFirst()
+              .orElseGet(() -> Chat.builder().id(id).title("Chat " + id).build()));
+    });
+  }
+
+  private Chat chat(Long id, String title) {
+    Chat chat = Chat.builder().id(id).title(title).createdAt(LocalDateTime.now()).build();
+    storedChats.add(chat);
+    return chat;
+  }
+
+  private static Message message(Long id, Long chatId, String content, LocalDateTime createdAt) {
+    return Message.builder()
+        .id(id)
+        .chatId(chatId)
+        .content(content)
+        .role(MessageRole.USER)
+        .createdAt(createdAt)
+        .build();
+  }
+}
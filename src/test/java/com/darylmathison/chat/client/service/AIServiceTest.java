@@ -4,8 +4,11 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
 import com.darylmathison.chat.client.dto.ChatRequest;
+import com.darylmathison.chat.client.dto.OpenRouterChatRequest;
+import com.darylmathison.chat.client.dto.OpenRouterChatResponse;
 import com.darylmathison.chat.client.model.Message;
 import com.darylmathison.chat.client.model.Message.MessageRole;
+import com.darylmathison.chat.client.tokenizer.TokenizerRegistry;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
@@ -26,6 +29,11 @@ class AIServiceTest {
   @Mock
   private CostCalculationService costCalculationService;
 
+  @Mock
+  private CompletionCache completionCache;
+
+  private CompletionResiliencePolicy resiliencePolicy;
+
   private WebClient webClientMock;
   private WebClient.RequestHeadersUriSpec requestHeadersUriSpecMock;
   private WebClient.RequestBodyUriSpec requestBodyUriSpecMock;
@@ -49,8 +57,12 @@ class AIServiceTest {
     // Create real ObjectMapper for JSON manipulation
     objectMapper = new ObjectMapper();
 
+    resiliencePolicy = new CompletionResiliencePolicy();
+    TokenizerRegistry tokenizer = new TokenizerRegistry();
+
     // Create AIService with mocked WebClient
-    aiService = new AIService(webClientMock, costCalculationService);
+    aiService = new AIService(webClientMock, costCalculationService, completionCache,
+        new RequestCoalescer(), resiliencePolicy, tokenizer, new PromptCachePolicy(tokenizer));
 
     // Set defaultMaxTokens via reflection since it's injected via @Value
     try {
@@ -134,9 +146,10 @@ class AIServiceTest {
     when(webClientMock.post()).thenReturn(requestBodyUriSpecMock);
     when(requestBodyUriSpecMock.uri("/chat/completions")).thenReturn(requestBodySpecMock);
     when(requestBodySpecMock.contentType(org.springframework.http.MediaType.APPLICATION_JSON)).thenReturn(requestBodySpecMock);
-    when(requestBodySpecMock.bodyValue(org.mockito.ArgumentMatchers.anyString())).thenReturn(requestHeadersSpecMock);
+    when(requestBodySpecMock.attribute(org.mockito.ArgumentMatchers.eq(OpenRouterRateLimiter.MODEL_ATTRIBUTE), org.mockito.ArgumentMatchers.any())).thenReturn(requestBodySpecMock);
+    when(requestBodySpecMock.bodyValue(org.mockito.ArgumentMatchers.any(OpenRouterChatRequest.class))).thenReturn(requestHeadersSpecMock);
     when(requestHeadersSpecMock.retrieve()).thenReturn(responseSpecMock);
-    when(responseSpecMock.bodyToMono(JsonNode.class)).thenReturn(Mono.error(unauthorizedException));
+    when(responseSpecMock.bodyToMono(OpenRouterChatResponse.class)).thenReturn(Mono.error(unauthorizedException));
 
     // When & Then
     StepVerifier.create(aiService.sendChatRequest(chatRequest))
@@ -163,34 +176,26 @@ class AIServiceTest {
     when(webClientMock.post()).thenReturn(requestBodyUriSpecMock);
     when(requestBodyUriSpecMock.uri("/chat/completions")).thenReturn(requestBodySpecMock);
     when(requestBodySpecMock.contentType(org.springframework.http.MediaType.APPLICATION_JSON)).thenReturn(requestBodySpecMock);
+    when(requestBodySpecMock.attribute(org.mockito.ArgumentMatchers.eq(OpenRouterRateLimiter.MODEL_ATTRIBUTE), org.mockito.ArgumentMatchers.any())).thenReturn(requestBodySpecMock);
 
     // Capture the request body to verify it contains the default maxTokens
-    org.mockito.ArgumentCaptor<String> requestBodyCaptor = org.mockito.ArgumentCaptor.forClass(String.class);
+    org.mockito.ArgumentCaptor<OpenRouterChatRequest> requestBodyCaptor = org.mockito.ArgumentCaptor.forClass(OpenRouterChatRequest.class);
     when(requestBodySpecMock.bodyValue(requestBodyCaptor.capture())).thenReturn(requestHeadersSpecMock);
 
     // Mock the response
     when(requestHeadersSpecMock.retrieve()).thenReturn(responseSpecMock);
 
     // Create a sample response
-    ObjectNode responseJson = objectMapper.createObjectNode();
-    ObjectNode choiceNode = objectMapper.createObjectNode();
-    ObjectNode messageNode = objectMapper.createObjectNode();
-    messageNode.put("content", "Test response");
-    choiceNode.set("message", messageNode);
-    ArrayNode choicesArray = responseJson.putArray("choices");
-    choicesArray.add(choiceNode);
-
-    ObjectNode usageNode = objectMapper.createObjectNode();
-    usageNode.put("prompt_tokens", 10);
-    usageNode.put("completion_tokens", 20);
-    usageNode.put("total_tokens", 30);
-    responseJson.set("usage", usageNode);
+    OpenRouterChatResponse response = new OpenRouterChatResponse("gen-1", "openai/gpt-4",
+        "Test response", "stop", new OpenRouterChatResponse.Usage(10, 20, 30), null);
 
-    when(responseSpecMock.bodyToMono(JsonNode.class)).thenReturn(Mono.just(responseJson));
+    when(responseSpecMock.bodyToMono(OpenRouterChatResponse.class)).thenReturn(Mono.just(response));
 
     // Mock cost calculation
     when(costCalculationService.calculateCost(org.mockito.ArgumentMatchers.anyString(), 
                                              org.mockito.ArgumentMatchers.anyInt(), 
+                                             org.mockito.ArgumentMatchers.anyInt(),
+                                             org.mockito.ArgumentMatchers.anyInt(),
                                              org.mockito.ArgumentMatchers.anyInt()))
         .thenReturn(0.01);
 
@@ -198,16 +203,111 @@ class AIServiceTest {
     aiService.sendChatRequest(chatRequest).block();
 
     // Then
-    String capturedRequestBody = requestBodyCaptor.getValue();
-    JsonNode requestBodyJson = null;
-    try {
-        requestBodyJson = objectMapper.readTree(capturedRequestBody);
-    } catch (Exception e) {
-        throw new RuntimeException("Failed to parse request body", e);
-    }
+    OpenRouterChatRequest capturedRequestBody = requestBodyCaptor.getValue();
 
     // Verify the request body contains the default maxTokens value
-    assert requestBodyJson.has("max_tokens") : "Request body should have max_tokens field";
-    assert requestBodyJson.get("max_tokens").asInt() == 4000 : "max_tokens should be 4000";
+    assert capturedRequestBody.maxTokens() != null : "Request body should have max_tokens field";
+    assert capturedRequestBody.maxTokens() == 4000 : "max_tokens should be 4000";
+  }
+
+  @Test
+  void sendChatRequest_PrimaryModelUnavailable_FallsBackToNextModel() {
+    // Given
+    org.springframework.test.util.ReflectionTestUtils.setField(resiliencePolicy, "maxRetries", 0);
+
+    Message message = new Message();
+    message.setRole(MessageRole.USER);
+    message.setContent("Test message");
+
+    ChatRequest chatRequest = ChatRequest.builder()
+        .messages(List.of(message))
+        .model("openai/gpt-4")
+        .fallbackModels(List.of("anthropic/claude-3-sonnet"))
+        .build();
+
+    when(webClientMock.post()).thenReturn(requestBodyUriSpecMock);
+    when(requestBodyUriSpecMock.uri("/chat/completions")).thenReturn(requestBodySpecMock);
+    when(requestBodySpecMock.contentType(org.springframework.http.MediaType.APPLICATION_JSON)).thenReturn(requestBodySpecMock);
+    when(requestBodySpecMock.attribute(org.mockito.ArgumentMatchers.eq(OpenRouterRateLimiter.MODEL_ATTRIBUTE), org.mockito.ArgumentMatchers.any())).thenReturn(requestBodySpecMock);
+    org.mockito.ArgumentCaptor<OpenRouterChatRequest> requestBodyCaptor = org.mockito.ArgumentCaptor.forClass(OpenRouterChatRequest.class);
+    when(requestBodySpecMock.bodyValue(requestBodyCaptor.capture())).thenReturn(requestHeadersSpecMock);
+    when(requestHeadersSpecMock.retrieve()).thenReturn(responseSpecMock);
+
+    OpenRouterChatResponse response = new OpenRouterChatResponse("gen-2",
+        "anthropic/claude-3-sonnet", "Fallback response", "stop",
+        new OpenRouterChatResponse.Usage(10, 20, 30), null);
+    when(responseSpecMock.bodyToMono(OpenRouterChatResponse.class)).thenReturn(
+        Mono.error(org.springframework.web.reactive.function.client.WebClientResponseException.create(
+            503, "Service Unavailable", org.springframework.http.HttpHeaders.EMPTY, new byte[0], null)),
+        Mono.just(response));
+    when(costCalculationService.calculateCost("anthropic/claude-3-sonnet", 10, 20, 0, 0)).thenReturn(0.01);
+
+    // When & Then
+    StepVerifier.create(aiService.sendChatRequest(chatRequest))
+        .expectNextMatches(chatResponse ->
+            "Fallback response".equals(chatResponse.getContent()) &&
+                "anthropic/claude-3-sonnet".equals(chatResponse.getModel()))
+        .verifyComplete();
+
+    List<OpenRouterChatRequest> attempts = requestBodyCaptor.getAllValues();
+    assert attempts.size() == 2 : "Expected one attempt per model";
+    assert "openai/gpt-4".equals(attempts.get(0).model());
+    assert "anthropic/claude-3-sonnet".equals(attempts.get(1).model());
+  }
+
+  @Test
+  void sendChatRequest_AnsweredByFallbackModel_IsNotCached() {
+    // Given
+    org.springframework.test.util.ReflectionTestUtils.setField(resiliencePolicy, "maxRetries", 0);
+
+    Message message = new Message();
+    message.setRole(MessageRole.USER);
+    message.setContent("Test message");
+
+    ChatRequest chatRequest = ChatRequest.builder()
+        .messages(List.of(message))
+        .model("openai/gpt-4")
+        .fallbackModels(List.of("anthropic/claude-3-sonnet"))
+        .cache(true)
+        .build();
+    ChatRequest otherChain = chatRequest.toBuilder()
+        .fallbackModels(List.of("google/gemini-pro"))
+        .build();
+
+    when(completionCache.shouldCache(org.mockito.ArgumentMatchers.any(), org.mockito.ArgumentMatchers.any())).thenReturn(true);
+    org.mockito.ArgumentCaptor<String> keyCaptor = org.mockito.ArgumentCaptor.forClass(String.class);
+    when(completionCache.get(keyCaptor.capture())).thenReturn(Mono.empty());
+    when(webClientMock.post()).thenReturn(requestBodyUriSpecMock);
+    when(requestBodyUriSpecMock.uri("/chat/completions")).thenReturn(requestBodySpecMock);
+    when(requestBodySpecMock.contentType(org.springframework.http.MediaType.APPLICATION_JSON)).thenReturn(requestBodySpecMock);
+    when(requestBodySpecMock.attribute(org.mockito.ArgumentMatchers.eq(OpenRouterRateLimiter.MODEL_ATTRIBUTE), org.mockito.ArgumentMatchers.any())).thenReturn(requestBodySpecMock);
+    when(requestBodySpecMock.bodyValue(org.mockito.ArgumentMatchers.any())).thenReturn(requestHeadersSpecMock);
+    when(requestHeadersSpecMock.retrieve()).thenReturn(responseSpecMock);
+
+    OpenRouterChatResponse response = new OpenRouterChatResponse("gen-2",
+        "anthropic/claude-3-sonnet", "Fallback response", "stop",
+        new OpenRouterChatResponse.Usage(10, 20, 30), null);
+    OpenRouterChatResponse otherResponse = new OpenRouterChatResponse("gen-4",
+        "google/gemini-pro", "Other fallback response", "stop",
+        new OpenRouterChatResponse.Usage(10, 20, 30), null);
+    Mono<OpenRouterChatResponse> unavailable = Mono.error(
+        org.springframework.web.reactive.function.client.WebClientResponseException.create(
+            503, "Service Unavailable", org.springframework.http.HttpHeaders.EMPTY, new byte[0], null));
+    when(responseSpecMock.bodyToMono(OpenRouterChatResponse.class)).thenReturn(
+        unavailable, Mono.just(response), unavailable, Mono.just(otherResponse));
+
+    // When & Then
+    StepVerifier.create(aiService.sendChatRequest(chatRequest))
+        .expectNextMatches(chatResponse -> "Fallback response".equals(chatResponse.getContent()))
+        .verifyComplete();
+    StepVerifier.create(aiService.sendChatRequest(otherChain))
+        .expectNextMatches(chatResponse -> "google/gemini-pro".equals(chatResponse.getModel()))
+        .verifyComplete();
+
+    org.mockito.Mockito.verify(completionCache, org.mockito.Mockito.never())
+        .put(org.mockito.ArgumentMatchers.any(), org.mockito.ArgumentMatchers.any());
+    List<String> keys = keyCaptor.getAllValues();
+    assert keys.size() == 2 && !keys.get(0).equals(keys.get(1))
+        : "Requests with different fallback chains should have different cache keys";
   }
 }
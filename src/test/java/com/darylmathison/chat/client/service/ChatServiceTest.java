@@ -1,21 +1,38 @@
 package com.darylmathison.chat.client.service;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
+import com.darylmathison.chat.client.dto.BatchItemResult;
 import com.darylmathison.chat.client.dto.ChatRequest;
 import com.darylmathison.chat.client.dto.ChatResponse;
+import com.darylmathison.chat.client.dto.MessageDto;
+import com.darylmathison.chat.client.dto.SimpleMessageRequest;
 import com.darylmathison.chat.client.dto.TokenUsage;
 import com.darylmathison.chat.client.model.Chat;
 import com.darylmathison.chat.client.model.Message;
 import com.darylmathison.chat.client.repository.ChatRepository;
+import com.darylmathison.chat.client.repository.ChatTurnWriter;
+import com.darylmathison.chat.client.repository.MessagePageReader;
 import com.darylmathison.chat.client.repository.MessageRepository;
+import com.darylmathison.chat.client.repository.MessageWriteBehindBuffer;
+import com.darylmathison.chat.client.search.MessageSearchIndex;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.time.LocalDateTime;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.slf4j.Logger;
@@ -44,12 +61,34 @@ class ChatServiceTest {
   @Mock
   private MessageParserService messageParserService;
 
+  @Mock
+  private ChatTurnWriter chatTurnWriter;
+
+  @Mock
+  private MessagePageReader messagePageReader;
+
+  @Mock
+  private CreditsCache creditsCache;
+
+  @Mock
+  private ContextAssembler contextAssembler;
+
+  @Mock
+  private MessageSearchIndex searchIndex;
+
+  @Mock
+  private ConversationSummarizer summarizer;
+
   private ChatService chatService;
 
   @BeforeEach
   void setUp() {
+    // Disabled, as by default, so messages go straight to the writer
+    MessageWriteBehindBuffer writeBehind = new MessageWriteBehindBuffer(chatTurnWriter,
+        new SimpleMeterRegistry());
     chatService = new ChatService(chatRepository, messageRepository, openAIService,
-        markdownService, messageParserService);
+        markdownService, messageParserService, chatTurnWriter, messagePageReader, creditsCache,
+        contextAssembler, writeBehind, searchIndex, summarizer);
   }
 
   @Test
@@ -64,23 +103,6 @@ class ChatServiceTest {
         .model("gpt-3.5-turbo")
         .build();
 
-    Chat savedChat = Chat.builder()
-        .id(1L)
-        .title("Hello, how are you?")
-        .createdAt(LocalDateTime.now())
-        .updatedAt(LocalDateTime.now())
-        .totalTokens(0L)
-        .estimatedCost(0.0)
-        .build();
-
-    Message savedUserMessage = Message.builder()
-        .id(1L)
-        .chatId(1L)
-        .content(userContent)
-        .role(Message.MessageRole.USER)
-        .createdAt(LocalDateTime.now())
-        .build();
-
     ChatResponse aiResponse = ChatResponse.builder()
         .content("I'm doing well, thank you!")
         .model("gpt-3.5-turbo")
@@ -92,25 +114,19 @@ class ChatServiceTest {
         .estimatedCost(0.001)
         .build();
 
-    Message savedAiMessage = Message.builder()
-        .id(2L)
-        .chatId(1L)
-        .content("I'm doing well, thank you!")
-        .role(Message.MessageRole.ASSISTANT)
-        .tokens(25)
-        .createdAt(LocalDateTime.now())
-        .build();
-
     // Mock the message parser to return the original content (no tool call)
     when(messageParserService.parseAndProcessMessage(userContent))
         .thenReturn(Mono.just(userContent));
 
-    when(chatRepository.save(any(Chat.class))).thenReturn(Mono.just(savedChat));
-    when(messageRepository.save(any(Message.class)))
-        .thenReturn(Mono.just(savedUserMessage))
-        .thenReturn(Mono.just(savedAiMessage));
     when(openAIService.sendChatRequest(any(ChatRequest.class))).thenReturn(Mono.just(aiResponse));
-    when(chatRepository.findById(1L)).thenReturn(Mono.just(savedChat));
+    // The chat and both messages are written together once the reply is in
+    ArgumentCaptor<Chat> chatCaptor = ArgumentCaptor.forClass(Chat.class);
+    when(chatTurnWriter.writeNewChatTurn(chatCaptor.capture(), anyList()))
+        .thenAnswer(invocation -> {
+          Chat chat = invocation.getArgument(0);
+          chat.setId(1L);
+          return Mono.just(saved(1L, invocation.getArgument(1), 1L));
+        });
 
     // When & Then
     StepVerifier.create(chatService.sendMessage(null, request))
@@ -119,6 +135,10 @@ class ChatServiceTest {
                 response.getChatId().equals(1L) &&
                 response.getMessageId().equals(2L))
         .verifyComplete();
+
+    assertEquals(25L, chatCaptor.getValue().getTotalTokens());
+    assertEquals(0.001, chatCaptor.getValue().getEstimatedCost());
+    verify(chatRepository, never()).save(any(Chat.class));
   }
 
   @Test
@@ -140,13 +160,6 @@ class ChatServiceTest {
         .estimatedCost(0.002)
         .build();
 
-    Message savedUserMessage = Message.builder()
-        .id(3L)
-        .chatId(chatId)
-        .content(userContent)
-        .role(Message.MessageRole.USER)
-        .build();
-
     ChatResponse aiResponse = ChatResponse.builder()
         .content("It's sunny today!")
         .model("gpt-3.5-turbo")
@@ -154,31 +167,26 @@ class ChatServiceTest {
         .estimatedCost(0.001)
         .build();
 
-    Message savedAiMessage = Message.builder()
-        .id(4L)
-        .chatId(chatId)
-        .content("It's sunny today!")
-        .role(Message.MessageRole.ASSISTANT)
-        .tokens(20)
-        .build();
-
     // Mock the message parser to return the original content (no tool call)
     when(messageParserService.parseAndProcessMessage(userContent))
         .thenReturn(Mono.just(userContent));
 
     when(chatRepository.findById(chatId)).thenReturn(Mono.just(existingChat));
-    when(messageRepository.save(any(Message.class)))
-        .thenReturn(Mono.just(savedUserMessage))
-        .thenReturn(Mono.just(savedAiMessage));
     when(openAIService.sendChatRequest(any(ChatRequest.class))).thenReturn(Mono.just(aiResponse));
-    when(chatRepository.save(any(Chat.class))).thenReturn(Mono.just(existingChat));
+    // Stats are incremented in the database rather than read, modified and saved
+    when(chatTurnWriter.writeTurn(eq(chatId), anyList(), eq(20L), eq(0.001),
+        eq("gpt-3.5-turbo")))
+        .thenAnswer(invocation -> Mono.just(saved(chatId, invocation.getArgument(1), 3L)));
 
     // When & Then
     StepVerifier.create(chatService.sendMessage(chatId, request))
         .expectNextMatches(response ->
             response.getContent().equals("It's sunny today!") &&
-                response.getChatId().equals(chatId))
+                response.getChatId().equals(chatId) &&
+                response.getMessageId().equals(4L))
         .verifyComplete();
+
+    verify(chatRepository, never()).save(any(Chat.class));
   }
 
   @Test
@@ -269,28 +277,22 @@ class ChatServiceTest {
         .title("Weather Discussion")
         .createdAt(LocalDateTime.now())
         .updatedAt(LocalDateTime.now())
+        .messageCount(5)
+        .lastMessagePreview("It's sunny today")
         .build();
 
-    Message lastMessage = Message.builder()
-        .chatId(1L)
-        .content("It's sunny today")
-        .role(Message.MessageRole.ASSISTANT)
-        .createdAt(LocalDateTime.now())
-        .build();
-
-    when(chatRepository.findByTitleContainingIgnoreCaseOrderByUpdatedAtDesc(searchTerm))
+    when(chatRepository.findFirstPageByTitle("%weather%", 50))
         .thenReturn(Flux.just(matchingChat));
-    when(messageRepository.countByChatId(1L)).thenReturn(Mono.just(5L));
-    when(messageRepository.findTopByChatIdOrderByCreatedAtDesc(1L))
-        .thenReturn(Mono.just(lastMessage));
 
     // When & Then
-    StepVerifier.create(chatService.searchChats(searchTerm))
-        .expectNextMatches(chats ->
-            chats.size() == 1 &&
-                chats.getFirst().getTitle().equals("Weather Discussion") &&
-                chats.getFirst().getMessageCount() == 5)
+    StepVerifier.create(chatService.searchChats("Weather ", null, null))
+        .expectNextMatches(chat ->
+            chat.getTitle().equals("Weather Discussion") &&
+                chat.getMessageCount() == 5 &&
+                chat.getLastMessagePreview().equals("It's sunny today"))
         .verifyComplete();
+
+    verifyNoInteractions(messageRepository);
   }
 
   @Test
@@ -303,19 +305,49 @@ class ChatServiceTest {
         .updatedAt(LocalDateTime.now())
         .build();
 
-    when(chatRepository.findAllOrderByUpdatedAtDesc()).thenReturn(Flux.just(chat));
-    when(messageRepository.countByChatId(1L)).thenReturn(Mono.just(3L));
-    when(messageRepository.findTopByChatIdOrderByCreatedAtDesc(1L))
-        .thenReturn(Mono.empty());
+    when(chatRepository.findFirstPage(50)).thenReturn(Flux.just(chat));
 
     // When & Then
-    StepVerifier.create(chatService.searchChats(""))
-        .expectNextMatches(chats ->
-            chats.size() == 1 &&
-                chats.getFirst().getTitle().equals("Test Chat"))
+    StepVerifier.create(chatService.searchChats("", null, null))
+        .expectNextMatches(summary ->
+            summary.getTitle().equals("Test Chat") &&
+                summary.getMessageCount() == 0 &&
+                summary.getLastMessagePreview().isEmpty())
         .verifyComplete();
   }
 
+  @Test
+  void searchChats_AfterCursor_ContinuesFromThatChat() {
+    LocalDateTime updatedAt = LocalDateTime.of(2024, 5, 1, 12, 30, 15, 123456000);
+    Chat last = Chat.builder().id(7L).title("Seven").updatedAt(updatedAt).build();
+    Chat next = Chat.builder().id(6L).title("Six").updatedAt(updatedAt).build();
+    when(chatRepository.findFirstPage(1)).thenReturn(Flux.just(last));
+    when(chatRepository.findPageAfter(updatedAt, 7L, 1)).thenReturn(Flux.just(next));
+
+    String cursor = chatService.searchChats(null, null, 1).blockLast().getCursor();
+
+    StepVerifier.create(chatService.searchChats(null, cursor, 1))
+        .expectNextMatches(summary -> summary.getId().equals(6L))
+        .verifyComplete();
+  }
+
+  @Test
+  void searchChats_LimitIsCapped() {
+    when(chatRepository.findFirstPage(200)).thenReturn(Flux.empty());
+
+    StepVerifier.create(chatService.searchChats(null, null, 10_000))
+        .verifyComplete();
+  }
+
+  @Test
+  void searchChats_InvalidCursor_ReturnsError() {
+    StepVerifier.create(chatService.searchChats(null, "not-a-cursor", null))
+        .expectError(IllegalArgumentException.class)
+        .verify();
+
+    verifyNoInteractions(chatRepository);
+  }
+
   @Test
   void getChatById_ValidId_ReturnsChatWithMessages() {
     // Given
@@ -447,14 +479,6 @@ class ChatServiceTest {
         .title("Weather Chat")
         .build();
 
-    Message savedUserMessage = Message.builder()
-        .id(1L)
-        .chatId(chatId)
-        .content(originalContent)
-        .role(Message.MessageRole.USER)
-        .createdAt(LocalDateTime.now())
-        .build();
-
     ChatResponse aiResponse = ChatResponse.builder()
         .content("I'll help you with that weather information!")
         .model("gpt-3.5-turbo")
@@ -462,15 +486,6 @@ class ChatServiceTest {
         .estimatedCost(0.001)
         .build();
 
-    Message savedAiMessage = Message.builder()
-        .id(2L)
-        .chatId(chatId)
-        .content("I'll help you with that weather information!")
-        .role(Message.MessageRole.ASSISTANT)
-        .tokens(25)
-        .createdAt(LocalDateTime.now())
-        .build();
-
     // Mock the message parser to return the processed content
     when(messageParserService.parseAndProcessMessage(originalContent))
         .thenReturn(Mono.just(processedContent));
@@ -480,11 +495,10 @@ class ChatServiceTest {
     // processed again
 
     when(chatRepository.findById(chatId)).thenReturn(Mono.just(existingChat));
-    when(messageRepository.save(any(Message.class)))
-        .thenReturn(Mono.just(savedUserMessage))
-        .thenReturn(Mono.just(savedAiMessage));
     when(openAIService.sendChatRequest(any(ChatRequest.class))).thenReturn(Mono.just(aiResponse));
-    when(chatRepository.save(any(Chat.class))).thenReturn(Mono.just(existingChat));
+    when(chatTurnWriter.writeTurn(eq(chatId), anyList(), eq(25L), eq(0.001),
+        eq("gpt-3.5-turbo")))
+        .thenAnswer(invocation -> Mono.just(saved(chatId, invocation.getArgument(1), 1L)));
 
     // When & Then
     StepVerifier.create(chatService.sendMessage(chatId, request))
@@ -512,14 +526,6 @@ class ChatServiceTest {
         .title("Weather Chat")
         .build();
 
-    Message savedUserMessage = Message.builder()
-        .id(1L)
-        .chatId(chatId)
-        .content(originalContent)
-        .role(Message.MessageRole.USER)
-        .createdAt(LocalDateTime.now())
-        .build();
-
     ChatResponse aiResponse = ChatResponse.builder()
         .content("I'll help you with that weather information!")
         .model("gpt-3.5-turbo")
@@ -527,15 +533,6 @@ class ChatServiceTest {
         .estimatedCost(0.001)
         .build();
 
-    Message savedAiMessage = Message.builder()
-        .id(2L)
-        .chatId(chatId)
-        .content("I'll help you with that weather information!")
-        .role(Message.MessageRole.ASSISTANT)
-        .tokens(25)
-        .createdAt(LocalDateTime.now())
-        .build();
-
     // Mock the message parser to return the processed content
     when(messageParserService.parseAndProcessMessage(originalContent))
         .thenReturn(Mono.just(processedContent));
@@ -546,11 +543,10 @@ class ChatServiceTest {
         .thenReturn(Mono.just(processedContent));
 
     when(chatRepository.findById(chatId)).thenReturn(Mono.just(existingChat));
-    when(messageRepository.save(any(Message.class)))
-        .thenReturn(Mono.just(savedUserMessage))
-        .thenReturn(Mono.just(savedAiMessage));
     when(openAIService.sendChatRequest(any(ChatRequest.class))).thenReturn(Mono.just(aiResponse));
-    when(chatRepository.save(any(Chat.class))).thenReturn(Mono.just(existingChat));
+    when(chatTurnWriter.writeTurn(eq(chatId), anyList(), eq(25L), eq(0.001),
+        eq("gpt-3.5-turbo")))
+        .thenAnswer(invocation -> Mono.just(saved(chatId, invocation.getArgument(1), 1L)));
 
     // When & Then
     StepVerifier.create(chatService.sendSimpleMessage(chatId, request))
@@ -560,6 +556,68 @@ class ChatServiceTest {
         .verifyComplete();
   }
 
+  @Test
+  void sendMessage_CompletionFails_SavesTheUserMessageAlone() {
+    // Given
+    Long chatId = 1L;
+    String userContent = "How's the weather?";
+    ChatRequest request = ChatRequest.builder()
+        .messages(List.of(Message.builder()
+            .content(userContent)
+            .role(Message.MessageRole.USER)
+            .build()))
+        .build();
+
+    when(messageParserService.parseAndProcessMessage(userContent))
+        .thenReturn(Mono.just(userContent));
+    when(chatRepository.findById(chatId)).thenReturn(Mono.just(Chat.builder().id(chatId).build()));
+    when(openAIService.sendChatRequest(any(ChatRequest.class)))
+        .thenReturn(Mono.error(new RuntimeException("Rate limited")));
+    when(chatTurnWriter.writeTurn(eq(chatId), anyList(), eq(0L), eq(0.0), eq(null)))
+        .thenAnswer(invocation -> Mono.just(saved(chatId, invocation.getArgument(1), 3L)));
+
+    // When & Then
+    StepVerifier.create(chatService.sendMessage(chatId, request))
+        .expectErrorMessage("Rate limited")
+        .verify();
+
+    ArgumentCaptor<List<Message>> written = ArgumentCaptor.forClass(List.class);
+    verify(chatTurnWriter).writeTurn(eq(chatId), written.capture(), eq(0L), eq(0.0), eq(null));
+    assertEquals(1, written.getValue().size());
+    assertEquals(userContent, written.getValue().getFirst().getContent());
+  }
+
+  @Test
+  void streamMessage_ClientGoesAway_SavesTheUserMessageAlone() {
+    // Given
+    Long chatId = 1L;
+    String userContent = "Tell me a story";
+    ChatRequest request = ChatRequest.builder()
+        .messages(List.of(Message.builder()
+            .content(userContent)
+            .role(Message.MessageRole.USER)
+            .build()))
+        .model("gpt-3.5-turbo")
+        .build();
+
+    when(messageParserService.parseAndProcessMessage(userContent))
+        .thenReturn(Mono.just(userContent));
+    when(chatRepository.findById(chatId)).thenReturn(Mono.just(Chat.builder().id(chatId).build()));
+    when(openAIService.streamChatRequest(any(ChatRequest.class))).thenReturn(Flux.concat(
+        Flux.just(ChatResponse.builder().content("Once upon").model("gpt-3.5-turbo").build()),
+        Flux.never()));
+    when(chatTurnWriter.writeTurn(eq(chatId), anyList(), eq(0L), eq(0.0), eq(null)))
+        .thenAnswer(invocation -> Mono.just(saved(chatId, invocation.getArgument(1), 3L)));
+
+    // When & Then
+    StepVerifier.create(chatService.streamMessage(chatId, request))
+        .expectNextMatches(delta -> delta.getContent().equals("Once upon"))
+        .thenCancel()
+        .verify();
+
+    verify(chatTurnWriter).writeTurn(eq(chatId), anyList(), eq(0L), eq(0.0), eq(null));
+  }
+
   @Test
   void sendMessage_ToolCallProcessingFails_PropagatesError() {
     // Given
@@ -592,4 +650,164 @@ class ChatServiceTest {
             throwable.getMessage().contains("Tool execution failed"))
         .verify();
   }
+
+  @Test
+  void streamMessage_ExistingChat_EmitsDeltasThenPersistedResponse() {
+    // Given
+    Long chatId = 1L;
+    String userContent = "Tell me a story";
+    ChatRequest request = ChatRequest.builder()
+        .messages(List.of(Message.builder()
+            .content(userContent)
+            .role(Message.MessageRole.USER)
+            .build()))
+        .model("gpt-3.5-turbo")
+        .build();
+
+    Chat existingChat = Chat.builder()
+        .id(chatId)
+        .title("Story Chat")
+        .totalTokens(0L)
+        .estimatedCost(0.0)
+        .build();
+
+    when(messageParserService.parseAndProcessMessage(userContent))
+        .thenReturn(Mono.just(userContent));
+    when(chatRepository.findById(chatId)).thenReturn(Mono.just(existingChat));
+    when(openAIService.streamChatRequest(any(ChatRequest.class))).thenReturn(Flux.just(
+        ChatResponse.builder().content("Once upon").model("gpt-3.5-turbo").build(),
+        ChatResponse.builder().content(" a time").model("gpt-3.5-turbo").build(),
+        ChatResponse.builder().content("").model("gpt-3.5-turbo")
+            .tokenUsage(TokenUsage.builder().promptTokens(4).completionTokens(8)
+                .totalTokens(12).build())
+            .estimatedCost(0.0001)
+            .build()));
+    when(chatTurnWriter.writeTurn(eq(chatId), anyList(), eq(12L), eq(0.0001),
+        eq("gpt-3.5-turbo")))
+        .thenAnswer(invocation -> Mono.just(saved(chatId, invocation.getArgument(1), 1L)));
+
+    // When & Then
+    StepVerifier.create(chatService.streamMessage(chatId, request))
+        .expectNextMatches(delta -> delta.getContent().equals("Once upon") &&
+            delta.getChatId().equals(chatId) && delta.getDone() == null)
+        .expectNextMatches(delta -> delta.getContent().equals(" a time"))
+        .expectNextMatches(done -> done.getContent().equals("Once upon a time") &&
+            done.getDone() && done.getMessageId().equals(2L) &&
+            done.getTokenUsage().getTotalTokens() == 12)
+        .verifyComplete();
+  }
+
+  @Test
+  void streamMessage_WriteBehind_MarksTheResponseWithoutIdAsDone() {
+    // Given
+    Long chatId = 1L;
+    String userContent = "Tell me a story";
+    ChatRequest request = ChatRequest.builder()
+        .messages(List.of(Message.builder()
+            .content(userContent)
+            .role(Message.MessageRole.USER)
+            .build()))
+        .model("gpt-3.5-turbo")
+        .build();
+
+    when(messageParserService.parseAndProcessMessage(userContent))
+        .thenReturn(Mono.just(userContent));
+    when(chatRepository.findById(chatId)).thenReturn(Mono.just(Chat.builder()
+        .id(chatId)
+        .title("Story Chat")
+        .build()));
+    when(openAIService.streamChatRequest(any(ChatRequest.class))).thenReturn(Flux.just(
+        ChatResponse.builder().content("Once upon").model("gpt-3.5-turbo").build(),
+        ChatResponse.builder().content("").model("gpt-3.5-turbo").build()));
+    // With write-behind the messages are buffered and come back without ids
+    when(chatTurnWriter.writeTurn(eq(chatId), anyList(), eq(0L), eq(0.0), eq("gpt-3.5-turbo")))
+        .thenAnswer(invocation -> {
+          List<Message> messages = invocation.getArgument(1);
+          messages.forEach(message -> message.setChatId(chatId));
+          return Mono.just(messages);
+        });
+
+    // When & Then
+    StepVerifier.create(chatService.streamMessage(chatId, request))
+        .expectNextMatches(delta -> delta.getContent().equals("Once upon") &&
+            delta.getDone() == null)
+        .expectNextMatches(done -> done.getContent().equals("Once upon") &&
+            Boolean.TRUE.equals(done.getDone()) && done.getMessageId() == null &&
+            done.getChatId().equals(chatId))
+        .verifyComplete();
+  }
+
+  @Test
+  void sendBatch_FailedItemsAreReportedWithoutAbortingTheBatch() {
+    // Given
+    List<SimpleMessageRequest> requests = List.of(
+        SimpleMessageRequest.builder().message("   ").build(),
+        SimpleMessageRequest.builder().message("@{{Weather}} Boston").build());
+
+    when(messageParserService.parseAndProcessMessage("@{{Weather}} Boston"))
+        .thenReturn(Mono.error(new RuntimeException("Tool execution failed")));
+
+    // When & Then
+    StepVerifier.create(chatService.sendBatch(requests)
+            .collectSortedList(Comparator.comparingInt(BatchItemResult::getIndex)))
+        .assertNext(results -> {
+          assertEquals(2, results.size());
+          assertEquals(0, results.get(0).getIndex());
+          assertEquals("Message cannot be null or empty", results.get(0).getError());
+          assertEquals(1, results.get(1).getIndex());
+          assertEquals("Tool execution failed", results.get(1).getError());
+          assertNull(results.get(1).getResponse());
+        })
+        .verifyComplete();
+  }
+
+  @Test
+  void sendBatch_EmptyBatch_ThrowsIllegalArgumentException() {
+    StepVerifier.create(chatService.sendBatch(List.of()))
+        .expectError(IllegalArgumentException.class)
+        .verify();
+  }
+
+  @Test
+  void getMessages_DefaultsToNewestPage() {
+    MessageDto message = MessageDto.builder().id(9L).chatId(1L).content("Latest").build();
+    when(chatRepository.existsById(1L)).thenReturn(Mono.just(true));
+    when(messagePageReader.findPage(1L, null, null, 50, 200)).thenReturn(Flux.just(message));
+
+    StepVerifier.create(chatService.getMessages(1L, null, null, null, 200))
+        .expectNext(message)
+        .verifyComplete();
+  }
+
+  @Test
+  void getMessages_UnknownChat_ReturnsError() {
+    when(chatRepository.existsById(404L)).thenReturn(Mono.just(false));
+
+    StepVerifier.create(chatService.getMessages(404L, null, null, 10, null))
+        .expectErrorMatches(error -> error.getMessage().contains("Chat not found"))
+        .verify();
+
+    verifyNoInteractions(messagePageReader);
+  }
+
+  @Test
+  void getMessage_OtherChatsMessage_ReturnsError() {
+    Message message = Message.builder().id(5L).chatId(2L).content("Elsewhere").build();
+    when(messageRepository.findById(5L)).thenReturn(Mono.just(message));
+
+    StepVerifier.create(chatService.getMessage(1L, 5L))
+        .expectError(RuntimeException.class)
+        .verify();
+  }
+
+  /**
+   * What ChatTurnWriter returns: the turn's messages with the chat id and sequential ids set.
+   */
+  private static List<Message> saved(Long chatId, List<Message> messages, long firstId) {
+    for (int i = 0; i < messages.size(); i++) {
+      messages.get(i).setId(firstId + i);
+      messages.get(i).setChatId(chatId);
+    }
+    return messages;
+  }
 }
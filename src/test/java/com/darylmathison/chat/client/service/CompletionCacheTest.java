@@ -0,0 +1,117 @@
+package com.darylmathison.chat.client.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import com.darylmathison.chat.client.dto.ChatRequest;
+import com.darylmathison.chat.client.dto.ChatResponse;
+import com.darylmathison.chat.client.dto.TokenUsage;
+import com.darylmathison.chat.client.model.CachedCompletion;
+import com.darylmathison.chat.client.repository.CachedCompletionRepository;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+@ExtendWith(MockitoExtension.class)
+class CompletionCacheTest {
+
+  @Mock
+  private CachedCompletionRepository cachedCompletionRepository;
+
+  private CompletionCache completionCache;
+
+  @BeforeEach
+  void setUp() {
+    completionCache = new CompletionCache(cachedCompletionRepository);
+    ReflectionTestUtils.setField(completionCache, "enabled", true);
+    ReflectionTestUtils.setField(completionCache, "maxEntries", 2);
+    ReflectionTestUtils.setField(completionCache, "ttl", Duration.ofHours(1));
+    ReflectionTestUtils.setField(completionCache, "cacheDeterministic", true);
+    ReflectionTestUtils.setField(completionCache, "persistent", false);
+  }
+
+  @Test
+  void shouldCache_ExplicitFlagWinsOverTemperature() {
+    ChatRequest optedOut = ChatRequest.builder().cache(false).build();
+    ChatRequest optedIn = ChatRequest.builder().cache(true).build();
+    ChatRequest unset = ChatRequest.builder().build();
+
+    assertFalse(completionCache.shouldCache(optedOut, 0.0));
+    assertTrue(completionCache.shouldCache(optedIn, 0.7));
+    assertTrue(completionCache.shouldCache(unset, 0.0));
+    assertFalse(completionCache.shouldCache(unset, 0.7));
+  }
+
+  @Test
+  void get_AfterPut_ReturnsHitWithZeroCost() {
+    completionCache.put("key", response("Hello")).block();
+
+    StepVerifier.create(completionCache.get("key"))
+        .expectNextMatches(hit -> "Hello".equals(hit.getContent())
+            && Boolean.TRUE.equals(hit.getCached())
+            && hit.getEstimatedCost() == 0.0)
+        .verifyComplete();
+    verifyNoInteractions(cachedCompletionRepository);
+  }
+
+  @Test
+  void put_BeyondMaxEntries_EvictsLeastRecentlyUsed() {
+    completionCache.put("a", response("A")).block();
+    completionCache.put("b", response("B")).block();
+    // Touch "a" so "b" becomes the eldest entry
+    completionCache.get("a").block();
+    completionCache.put("c", response("C")).block();
+
+    StepVerifier.create(completionCache.get("b")).verifyComplete();
+    StepVerifier.create(completionCache.get("a")).expectNextCount(1).verifyComplete();
+    StepVerifier.create(completionCache.get("c")).expectNextCount(1).verifyComplete();
+  }
+
+  @Test
+  void get_PersistentMiss_PromotesDatabaseEntry() {
+    ReflectionTestUtils.setField(completionCache, "persistent", true);
+    CachedCompletion entry = CachedCompletion.builder()
+        .cacheKey("key")
+        .model("openai/gpt-4o-mini")
+        .content("From the database")
+        .promptTokens(10)
+        .completionTokens(5)
+        .totalTokens(15)
+        .createdAt(LocalDateTime.now())
+        .expiresAt(LocalDateTime.now().plusHours(1))
+        .build();
+    when(cachedCompletionRepository.findByCacheKeyAndExpiresAtAfter(eq("key"),
+        any(LocalDateTime.class))).thenReturn(Mono.just(entry));
+
+    StepVerifier.create(completionCache.get("key"))
+        .expectNextMatches(hit -> "From the database".equals(hit.getContent())
+            && hit.getTokenUsage().getTotalTokens() == 15)
+        .verifyComplete();
+
+    // Second lookup is served from memory without touching the repository again
+    ChatResponse promoted = completionCache.get("key").block();
+    assertEquals("From the database", promoted.getContent());
+  }
+
+  private ChatResponse response(String content) {
+    return ChatResponse.builder()
+        .content(content)
+        .model("openai/gpt-4o-mini")
+        .tokenUsage(TokenUsage.builder().promptTokens(10).completionTokens(5).totalTokens(15)
+            .build())
+        .estimatedCost(0.001)
+        .build();
+  }
+}
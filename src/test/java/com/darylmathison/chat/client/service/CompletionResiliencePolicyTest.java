@@ -0,0 +1,115 @@
+package com.darylmathison.chat.client.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+class CompletionResiliencePolicyTest {
+
+  private CompletionResiliencePolicy resiliencePolicy;
+
+  @BeforeEach
+  void setUp() {
+    resiliencePolicy = new CompletionResiliencePolicy();
+    ReflectionTestUtils.setField(resiliencePolicy, "initialBackoff", Duration.ofMillis(1));
+    ReflectionTestUtils.setField(resiliencePolicy, "maxBackoff", Duration.ofMillis(5));
+  }
+
+  @Test
+  void isRetryable_ClassifiesStatusCodes() {
+    assertTrue(resiliencePolicy.isRetryable(httpError(429, HttpHeaders.EMPTY)));
+    assertTrue(resiliencePolicy.isRetryable(httpError(503, HttpHeaders.EMPTY)));
+    assertFalse(resiliencePolicy.isRetryable(httpError(400, HttpHeaders.EMPTY)));
+    assertFalse(resiliencePolicy.isRetryable(httpError(401, HttpHeaders.EMPTY)));
+    assertFalse(resiliencePolicy.isRetryable(new RuntimeException("boom")));
+
+    // A missing model is not worth retrying but is worth falling back from
+    assertTrue(resiliencePolicy.shouldFallback(httpError(404, HttpHeaders.EMPTY)));
+  }
+
+  @Test
+  void retryAfter_ParsesSecondsAndFloorsBackoff() {
+    HttpHeaders headers = new HttpHeaders();
+    headers.set(HttpHeaders.RETRY_AFTER, "3");
+
+    Duration retryAfter = resiliencePolicy.retryAfter(httpError(429, headers));
+
+    assertEquals(Duration.ofSeconds(3), retryAfter);
+    assertEquals(Duration.ofSeconds(3), resiliencePolicy.backoff(1, retryAfter));
+    assertNull(resiliencePolicy.retryAfter(httpError(429, HttpHeaders.EMPTY)));
+  }
+
+  @Test
+  void backoff_StaysWithinJitteredCeiling() {
+    for (int attempt = 1; attempt <= 10; attempt++) {
+      Duration delay = resiliencePolicy.backoff(attempt, null);
+      assertTrue(delay.toMillis() >= 0 && delay.toMillis() <= 5);
+    }
+  }
+
+  @Test
+  void retrySpec_RetriesRetryableErrorsUpToMaxRetries() {
+    AtomicInteger attempts = new AtomicInteger();
+    Mono<String> alwaysUnavailable = Mono.defer(() -> {
+      attempts.incrementAndGet();
+      return Mono.error(httpError(503, HttpHeaders.EMPTY));
+    });
+
+    StepVerifier.create(alwaysUnavailable.retryWhen(resiliencePolicy.retrySpec("m", () -> true)))
+        .expectError(WebClientResponseException.class)
+        .verify();
+
+    // The first attempt plus three retries
+    assertEquals(4, attempts.get());
+  }
+
+  @Test
+  void retrySpec_DoesNotRetryWhenGuardFails() {
+    AtomicInteger attempts = new AtomicInteger();
+    Mono<String> unavailable = Mono.defer(() -> {
+      attempts.incrementAndGet();
+      return Mono.error(httpError(503, HttpHeaders.EMPTY));
+    });
+
+    StepVerifier.create(unavailable.retryWhen(resiliencePolicy.retrySpec("m", () -> false)))
+        .expectError(WebClientResponseException.class)
+        .verify();
+    assertEquals(1, attempts.get());
+  }
+
+  @Test
+  void fallbackChain_PrimaryFirstWithoutDuplicates() {
+    assertEquals(List.of("a", "b", "c"),
+        resiliencePolicy.fallbackChain("a", List.of("b", " a", "c", "b")));
+    assertEquals(List.of("a"), resiliencePolicy.fallbackChain("a", null));
+  }
+
+  @Test
+  void hedgeDelay_UsesLatencyPercentileOnceEnoughSamples() {
+    ReflectionTestUtils.setField(resiliencePolicy, "hedgeMinSamples", 10);
+    ReflectionTestUtils.setField(resiliencePolicy, "hedgeMinDelay", Duration.ofMillis(100));
+    assertEquals(Duration.ofSeconds(10), resiliencePolicy.hedgeDelay("m"));
+
+    for (int i = 1; i <= 100; i++) {
+      resiliencePolicy.recordLatency("m", Duration.ofMillis(i * 10L));
+    }
+
+    assertEquals(Duration.ofMillis(950), resiliencePolicy.hedgeDelay("m"));
+  }
+
+  private WebClientResponseException httpError(int status, HttpHeaders headers) {
+    return WebClientResponseException.create(status, "error", headers, new byte[0], null);
+  }
+}
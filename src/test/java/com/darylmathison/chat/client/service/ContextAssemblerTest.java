@@ -0,0 +1,220 @@
+package com.darylmathison.chat.client.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.darylmathison.chat.client.dto.ModelInfo;
+import com.darylmathison.chat.client.model.ConversationSummary;
+import com.darylmathison.chat.client.model.Message;
+import com.darylmathison.chat.client.model.Message.MessageRole;
+import com.darylmathison.chat.client.repository.ChatTurnWriter;
+import com.darylmathison.chat.client.repository.ConversationSummaryRepository;
+import com.darylmathison.chat.client.repository.MessageRepository;
+import com.darylmathison.chat.client.repository.MessageWriteBehindBuffer;
+import com.darylmathison.chat.client.tokenizer.TokenizerRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+@ExtendWith(MockitoExtension.class)
+class ContextAssemblerTest {
+
+  @Mock
+  private MessageRepository messageRepository;
+
+  @Mock
+  private ModelCatalog modelCatalog;
+
+  @Mock
+  private ConversationSummaryRepository summaryRepository;
+
+  @Mock
+  private ChatTurnWriter chatTurnWriter;
+
+  private ContextAssembler contextAssembler;
+
+  @BeforeEach
+  void setUp() {
+    // Disabled, as by default, and without vocabularies, so tokens are estimated
+    contextAssembler = new ContextAssembler(messageRepository, modelCatalog,
+        new MessageWriteBehindBuffer(chatTurnWriter, new SimpleMeterRegistry()),
+        new TokenizerRegistry(), summaryRepository);
+    lenient().when(summaryRepository.findById(anyLong())).thenReturn(Mono.empty());
+  }
+
+  @Test
+  void assemble_NewChat_SendsOnlyTheTurnAndNeverReadsHistory() {
+    contextAssembler.startChat(1L);
+    Message first = message(10L, MessageRole.USER, "Hello");
+
+    StepVerifier.create(contextAssembler.assemble(1L, List.of(first), "m", null, null))
+        .assertNext(messages -> assertEquals(List.of("Hello"), contents(messages)))
+        .verifyComplete();
+
+    contextAssembler.append(1L, first);
+    contextAssembler.append(1L, message(11L, MessageRole.ASSISTANT, "Hi there"));
+    Message second = message(12L, MessageRole.USER, "How are you?");
+
+    StepVerifier.create(contextAssembler.assemble(1L, List.of(second), "m", null, null))
+        .assertNext(messages -> assertEquals(List.of("Hello", "Hi there", "How are you?"),
+            contents(messages)))
+        .verifyComplete();
+
+    verify(messageRepository, never()).findRecentByChatId(anyLong(), anyInt());
+  }
+
+  @Test
+  void assemble_UnknownChat_LoadsWindowOnce() {
+    // Newest first
+    when(messageRepository.findRecentByChatId(5L, 200)).thenReturn(Flux.just(
+        message(2L, MessageRole.ASSISTANT, "Second"), message(1L, MessageRole.USER, "First")));
+    Message current = message(3L, MessageRole.USER, "Third");
+
+    StepVerifier.create(contextAssembler.assemble(5L, List.of(current), "m", null, null))
+        .assertNext(messages -> assertEquals(List.of("First", "Second", "Third"),
+            contents(messages)))
+        .verifyComplete();
+
+    contextAssembler.append(5L, current);
+    // Appending the same saved message twice must not duplicate it
+    contextAssembler.append(5L, current);
+    Message next = message(4L, MessageRole.USER, "Fourth");
+    StepVerifier.create(contextAssembler.assemble(5L, List.of(next), "m", null, null))
+        .assertNext(messages -> assertEquals(List.of("First", "Second", "Third", "Fourth"),
+            contents(messages)))
+        .verifyComplete();
+
+    verify(messageRepository, times(1)).findRecentByChatId(5L, 200);
+  }
+
+  @Test
+  void assemble_LoadedWindowWithSummary_SendsSummaryInPlaceOfCoveredMessages() {
+    when(summaryRepository.findById(5L)).thenReturn(Mono.just(ConversationSummary.builder()
+        .chatId(5L).content("They said hello.").throughMessageId(2L).build()));
+    when(messageRepository.findRecentByChatId(5L, 200)).thenReturn(Flux.just(
+        message(3L, MessageRole.USER, "Third"), message(2L, MessageRole.ASSISTANT, "Second"),
+        message(1L, MessageRole.SYSTEM, "Be brief.")));
+
+    StepVerifier.create(contextAssembler.assemble(5L, List.of(message(4L, MessageRole.USER,
+            "Fourth")), "m", null, null))
+        .assertNext(messages -> assertEquals(List.of(
+            "Summary of the earlier conversation:\nThey said hello.", "Be brief.", "Third",
+            "Fourth"), contents(messages)))
+        .verifyComplete();
+  }
+
+  @Test
+  void applySummary_MessagesWithoutIds_AreCoveredByCreationTime() {
+    // Under write-behind the window holds the buffered messages before they have ids
+    LocalDateTime start = LocalDateTime.of(2024, 1, 1, 12, 0);
+    contextAssembler.startChat(1L);
+    contextAssembler.append(1L, message(null, MessageRole.USER, "First", start));
+    // Stored to the microsecond, so the summary's copy of it is that much earlier
+    contextAssembler.append(1L, message(null, MessageRole.ASSISTANT, "Second",
+        start.plusSeconds(1).plusNanos(999)));
+    contextAssembler.append(1L, message(null, MessageRole.USER, "Third", start.plusSeconds(2)));
+    contextAssembler.append(1L, message(null, MessageRole.ASSISTANT, "Fourth",
+        start.plusSeconds(3)));
+    int before = contextAssembler.unsummarizedTokens(1L);
+
+    contextAssembler.applySummary(1L, "They said hello.", 2L, start.plusSeconds(1));
+
+    assertEquals(before - contextAssembler.countTokens(null, "First")
+        - contextAssembler.countTokens(null, "Second"), contextAssembler.unsummarizedTokens(1L));
+    StepVerifier.create(contextAssembler.assemble(1L, List.of(), "m", null, null))
+        .assertNext(messages -> assertEquals(List.of(
+            "Summary of the earlier conversation:\nThey said hello.", "Third", "Fourth"),
+            contents(messages)))
+        .verifyComplete();
+  }
+
+  @Test
+  void assemble_OverBudget_KeepsNewestTurnsAndPinnedSystemMessage() {
+    // 100 tokens of context, 40 reserved for the completion
+    when(modelCatalog.find("small")).thenReturn(Optional.of(
+        new ModelInfo("small", "Small", 100, null, null, null, null)));
+    contextAssembler.startChat(1L);
+    contextAssembler.append(1L, message(1L, MessageRole.SYSTEM, "Be brief."));
+    contextAssembler.append(1L, message(2L, MessageRole.USER, "x".repeat(80)));
+    contextAssembler.append(1L, message(3L, MessageRole.ASSISTANT, "y".repeat(80)));
+    contextAssembler.append(1L, message(4L, MessageRole.USER, "z".repeat(40)));
+    Message current = message(5L, MessageRole.USER, "Now?");
+
+    StepVerifier.create(contextAssembler.assemble(1L, List.of(current), "small", 40, null))
+        .assertNext(messages -> assertEquals(List.of("Be brief.", "y".repeat(80), "z".repeat(40),
+            "Now?"), contents(messages)))
+        .verifyComplete();
+  }
+
+  @Test
+  void assemble_StablePrefix_KeepsTheFirstMessageUntilTheHistoryOverflows() {
+    // 55 tokens of history once the turn is counted; each message below costs 13
+    ReflectionTestUtils.setField(contextAssembler, "defaultBudget", 60);
+    contextAssembler.startChat(1L);
+    for (long id = 1; id <= 4; id++) {
+      contextAssembler.append(1L, message(id, MessageRole.USER, "x".repeat(36)));
+    }
+    Message current = message(null, MessageRole.USER, "Now?");
+
+    StepVerifier.create(contextAssembler.assemble(1L, List.of(current), "m", null, null))
+        .assertNext(messages -> assertEquals(List.of(1L, 2L, 3L, 4L), historyIds(messages)))
+        .verifyComplete();
+
+    // Overflowing trims to 75% of the budget rather than dropping just the oldest message...
+    contextAssembler.append(1L, message(5L, MessageRole.USER, "x".repeat(36)));
+    StepVerifier.create(contextAssembler.assemble(1L, List.of(current), "m", null, null))
+        .assertNext(messages -> assertEquals(List.of(3L, 4L, 5L), historyIds(messages)))
+        .verifyComplete();
+
+    // ...so the next turn still starts from the same message
+    contextAssembler.append(1L, message(6L, MessageRole.USER, "x".repeat(36)));
+    StepVerifier.create(contextAssembler.assemble(1L, List.of(current), "m", null, null))
+        .assertNext(messages -> assertEquals(List.of(3L, 4L, 5L, 6L), historyIds(messages)))
+        .verifyComplete();
+  }
+
+  @Test
+  void budget_CappedByConfiguredMaximumAndDefaultsForUnknownModels() {
+    ReflectionTestUtils.setField(contextAssembler, "maxContextTokens", 16000);
+    when(modelCatalog.find("big")).thenReturn(Optional.of(
+        new ModelInfo("big", "Big", 1_000_000, null, null, null, null)));
+    when(modelCatalog.find("unknown")).thenReturn(Optional.empty());
+
+    assertEquals(16000, contextAssembler.budget("big", 4000));
+    assertEquals(8000, contextAssembler.budget("unknown", 4000));
+  }
+
+  private static Message message(Long id, MessageRole role, String content) {
+    return Message.builder().id(id).chatId(1L).role(role).content(content).build();
+  }
+
+  private static Message message(Long id, MessageRole role, String content,
+      LocalDateTime createdAt) {
+    return Message.builder().id(id).chatId(1L).role(role).content(content).createdAt(createdAt)
+        .build();
+  }
+
+  private static List<Long> historyIds(List<Message> messages) {
+    return messages.subList(0, messages.size() - 1).stream().map(Message::getId).toList();
+  }
+
+  private static List<String> contents(List<Message> messages) {
+    return messages.stream().map(Message::getContent).toList();
+  }
+}
@@ -0,0 +1,215 @@
+package com.darylmathison.chat.client.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import com.darylmathison.chat.client.dto.ChatRequest;
+import com.darylmathison.chat.client.dto.ChatResponse;
+import com.darylmathison.chat.client.dto.TokenUsage;
+import com.darylmathison.chat.client.model.ConversationSummary;
+import com.darylmathison.chat.client.model.Message;
+import com.darylmathison.chat.client.model.Message.MessageRole;
+import com.darylmathison.chat.client.repository.ChatTurnWriter;
+import com.darylmathison.chat.client.repository.ConversationSummaryRepository;
+import com.darylmathison.chat.client.repository.MessageRepository;
+import com.darylmathison.chat.client.repository.MessageWriteBehindBuffer;
+import com.darylmathison.chat.client.tokenizer.TokenizerRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+@ExtendWith(MockitoExtension.class)
+class ConversationSummarizerTest {
+
+  // 36 characters: 9 tokens plus 4 of message overhead
+  private static final String TEXT = "x".repeat(36);
+
+  @Mock
+  private MessageRepository messageRepository;
+
+  @Mock
+  private ConversationSummaryRepository summaryRepository;
+
+  @Mock
+  private AIService aiService;
+
+  @Mock
+  private ChatTurnWriter chatTurnWriter;
+
+  @Mock
+  private CreditsCache creditsCache;
+
+  @Mock
+  private ModelCatalog modelCatalog;
+
+  private ContextAssembler contextAssembler;
+  private ConversationSummarizer summarizer;
+
+  @BeforeEach
+  void setUp() {
+    contextAssembler = new ContextAssembler(messageRepository, modelCatalog,
+        new MessageWriteBehindBuffer(chatTurnWriter, new SimpleMeterRegistry()),
+        new TokenizerRegistry(), summaryRepository);
+    summarizer = new ConversationSummarizer(messageRepository, summaryRepository,
+        contextAssembler, aiService, chatTurnWriter, creditsCache);
+    ReflectionTestUtils.setField(summarizer, "triggerTokens", 60);
+    ReflectionTestUtils.setField(summarizer, "keepRecentTokens", 30);
+  }
+
+  @Test
+  void selectForSummary_KeepsRecentTokensAndEndsOnAReply() {
+    // 6 messages of 13 tokens: folding 4 leaves 26, within the 30 kept verbatim
+    List<Message> selected = summarizer.selectForSummary(turns(1, 6));
+
+    assertEquals(List.of(1L, 2L, 3L, 4L), ids(selected));
+
+    // Stopping on a user message would split its turn from the reply
+    ReflectionTestUtils.setField(summarizer, "maxInputTokens", 40);
+    assertEquals(List.of(1L, 2L), ids(summarizer.selectForSummary(turns(1, 6))));
+  }
+
+  @Test
+  void selectForSummary_OversizedFirstTurn_IsCutToTheInputBudget() {
+    ReflectionTestUtils.setField(summarizer, "maxInputTokens", 20);
+    List<Message> history = turns(1, 4);
+    history.getFirst().setContent("x".repeat(400));
+
+    List<Message> selected = summarizer.selectForSummary(history);
+
+    assertEquals(List.of(1L, 2L), ids(selected));
+    int folded = selected.stream()
+        .mapToInt(message -> contextAssembler.countTokens(null, message.getContent()))
+        .sum();
+    assertTrue(folded <= 20 + 2 * 4, "folded " + folded + " tokens");
+    // The messages read from the database are left as they were
+    assertEquals(400, history.getFirst().getContent().length());
+  }
+
+  @Test
+  void summarize_FirstRun_InsertsSummaryAndReplacesTurnsInTheWindow() {
+    contextAssembler.startChat(1L);
+    List<Message> history = turns(1, 6);
+    history.forEach(message -> contextAssembler.append(1L, message));
+    when(summaryRepository.findById(1L)).thenReturn(Mono.empty());
+    when(messageRepository.findByChatIdAfter(1L, 0L, 500)).thenReturn(Flux.fromIterable(history));
+    when(aiService.sendChatRequest(any())).thenReturn(Mono.just(ChatResponse.builder()
+        .content(" They discussed x. ")
+        .model("cheap")
+        .tokenUsage(TokenUsage.builder().promptTokens(90).completionTokens(10).totalTokens(100)
+            .build())
+        .estimatedCost(0.002)
+        .build()));
+    when(chatTurnWriter.addUsage(1L, 100L, 0.002)).thenReturn(Mono.empty());
+    when(summaryRepository.insert(eq(1L), eq("They discussed x."), eq(4L), eq(4), eq("cheap"),
+        any())).thenReturn(Mono.just(1));
+
+    StepVerifier.create(summarizer.summarize(1L))
+        .assertNext(summary -> assertEquals(4L, summary.getThroughMessageId()))
+        .verifyComplete();
+
+    StepVerifier.create(contextAssembler.assemble(1L, List.of(), "m", null, null))
+        .assertNext(messages -> {
+          assertEquals(MessageRole.SYSTEM, messages.getFirst().getRole());
+          assertTrue(messages.getFirst().getContent().endsWith("They discussed x."));
+          assertEquals(List.of(5L, 6L), ids(messages.subList(1, messages.size())));
+        })
+        .verifyComplete();
+    // Billed like any other completion
+    verify(chatTurnWriter).addUsage(1L, 100L, 0.002);
+    verify(creditsCache).recordSpend(0.002);
+  }
+
+  @Test
+  void summarize_WithPreviousSummary_FoldsOnlyNewerMessagesIntoIt() {
+    ConversationSummary previous = ConversationSummary.builder()
+        .chatId(1L)
+        .content("Earlier they met.")
+        .throughMessageId(10L)
+        .summarizedMessages(10)
+        .build();
+    when(summaryRepository.findById(1L)).thenReturn(Mono.just(previous));
+    when(messageRepository.findByChatIdAfter(1L, 10L, 500))
+        .thenReturn(Flux.fromIterable(turns(11, 6)));
+    when(aiService.sendChatRequest(any())).thenReturn(Mono.just(ChatResponse.builder()
+        .content("They met, then discussed x.")
+        .model("cheap")
+        .build()));
+    when(summaryRepository.advance(eq(1L), eq("They met, then discussed x."), eq(14L), eq(14),
+        eq("cheap"), any(), eq(10L))).thenReturn(Mono.just(1));
+
+    StepVerifier.create(summarizer.summarize(1L))
+        .assertNext(summary -> assertEquals(14, summary.getSummarizedMessages()))
+        .verifyComplete();
+
+    ArgumentCaptor<ChatRequest> request = ArgumentCaptor.forClass(ChatRequest.class);
+    verify(aiService).sendChatRequest(request.capture());
+    assertEquals("openai/gpt-4o-mini", request.getValue().getModel());
+    assertTrue(request.getValue().getMessages().getFirst().getContent()
+        .startsWith("Existing summary:\nEarlier they met."));
+  }
+
+  @Test
+  void summarize_LostRaceToAnotherRun_EmitsNothing() {
+    ConversationSummary previous = ConversationSummary.builder()
+        .chatId(1L)
+        .content("Earlier.")
+        .throughMessageId(10L)
+        .build();
+    when(summaryRepository.findById(1L)).thenReturn(Mono.just(previous));
+    when(messageRepository.findByChatIdAfter(1L, 10L, 500))
+        .thenReturn(Flux.fromIterable(turns(11, 6)));
+    when(aiService.sendChatRequest(any())).thenReturn(Mono.just(ChatResponse.builder()
+        .content("Later.")
+        .build()));
+    when(summaryRepository.advance(eq(1L), eq("Later."), eq(14L), eq(4), any(), any(),
+        eq(10L))).thenReturn(Mono.just(0));
+
+    StepVerifier.create(summarizer.summarize(1L)).verifyComplete();
+  }
+
+  @Test
+  void maybeSummarize_ShortHistory_DoesNothing() {
+    contextAssembler.startChat(1L);
+    turns(1, 2).forEach(message -> contextAssembler.append(1L, message));
+
+    summarizer.maybeSummarize(1L);
+
+    verifyNoInteractions(summaryRepository, aiService);
+    verify(messageRepository, never()).findByChatIdAfter(anyLong(), anyLong(), anyInt());
+  }
+
+  private static List<Message> turns(long firstId, int count) {
+    List<Message> messages = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      messages.add(Message.builder()
+          .id(firstId + i)
+          .chatId(1L)
+          .role(i % 2 == 0 ? MessageRole.USER : MessageRole.ASSISTANT)
+          .content(TEXT)
+          .build());
+    }
+    return messages;
+  }
+
+  private static List<Long> ids(List<Message> messages) {
+    return messages.stream().map(Message::getId).toList();
+  }
+}
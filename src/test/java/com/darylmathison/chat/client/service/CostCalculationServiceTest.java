@@ -0,0 +1,49 @@
+package com.darylmathison.chat.client.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.when;
+
+import com.darylmathison.chat.client.dto.ModelInfo;
+import java.util.Optional;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class CostCalculationServiceTest {
+
+  @Mock
+  private ModelCatalog modelCatalog;
+
+  private CostCalculationService costCalculationService;
+
+  @BeforeEach
+  void setUp() {
+    costCalculationService = new CostCalculationService(modelCatalog);
+  }
+
+  @Test
+  void calculateCost_CachedPrompt_BillsCacheReadsAndWritesAtTheirPrices() {
+    when(modelCatalog.find("anthropic/claude-3.5-sonnet")).thenReturn(Optional.of(
+        new ModelInfo("anthropic/claude-3.5-sonnet", "Claude", 200000, 0.000003, 0.000015,
+            0.0000003, 0.00000375)));
+
+    // 100 uncached, 1500 read from and 400 written to the cache, 10 completion tokens
+    double cost = costCalculationService.calculateCost("anthropic/claude-3.5-sonnet", 2000, 10,
+        1500, 400);
+
+    assertEquals(100 * 0.000003 + 1500 * 0.0000003 + 400 * 0.00000375 + 10 * 0.000015, cost,
+        1e-12);
+  }
+
+  @Test
+  void calculateCost_NoCachePrices_BillsCachedTokensAsPromptTokens() {
+    when(modelCatalog.find("openai/gpt-4o")).thenReturn(Optional.of(
+        new ModelInfo("openai/gpt-4o", "GPT-4o", 128000, 0.0000025, 0.00001, null, null)));
+
+    assertEquals(costCalculationService.calculateCost("openai/gpt-4o", 2000, 10),
+        costCalculationService.calculateCost("openai/gpt-4o", 2000, 10, 1500, 0), 1e-12);
+  }
+}
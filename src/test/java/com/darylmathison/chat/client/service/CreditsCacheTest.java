@@ -0,0 +1,91 @@
+package com.darylmathison.chat.client.service;
+
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+@ExtendWith(MockitoExtension.class)
+class CreditsCacheTest {
+
+  @Mock
+  private AIService aiService;
+
+  @Mock
+  private ChatService chatService;
+
+  private CreditsCache creditsCache;
+
+  @BeforeEach
+  void setUp() {
+    creditsCache = new CreditsCache(aiService, chatService);
+    ReflectionTestUtils.setField(creditsCache, "refreshAfter", Duration.ofMinutes(1));
+    ReflectionTestUtils.setField(creditsCache, "maxStaleness", Duration.ofMinutes(5));
+  }
+
+  @Test
+  void get_FreshSnapshot_ServedWithoutUpstreamCall() {
+    when(aiService.getCreditBalance()).thenReturn(Mono.just(8.0));
+    when(chatService.getTotalCostThisMonth()).thenReturn(Mono.just(2.0));
+
+    StepVerifier.create(creditsCache.get())
+        .expectNextMatches(credits -> credits.actualCredits() == 8.0
+            && credits.totalCostThisMonth() == 2.0)
+        .verifyComplete();
+    StepVerifier.create(creditsCache.get())
+        .expectNextMatches(credits -> credits.actualCredits() == 8.0)
+        .verifyComplete();
+
+    verify(aiService, times(1)).getCreditBalance();
+    verify(chatService, times(1)).getTotalCostThisMonth();
+  }
+
+  @Test
+  void recordSpend_AdjustsBalanceUntilNextRefresh() {
+    when(aiService.getCreditBalance()).thenReturn(Mono.just(8.0), Mono.just(7.5));
+    when(chatService.getTotalCostThisMonth()).thenReturn(Mono.just(2.0), Mono.just(2.5));
+    creditsCache.get().block();
+
+    creditsCache.recordSpend(0.5);
+
+    StepVerifier.create(creditsCache.get())
+        .expectNextMatches(credits -> credits.actualCredits() == 7.5
+            && credits.totalCostThisMonth() == 2.5)
+        .verifyComplete();
+
+    // The refresh sees the spend upstream, so it is not subtracted twice
+    StepVerifier.create(creditsCache.refresh())
+        .expectNextMatches(credits -> credits.actualCredits() == 7.5)
+        .verifyComplete();
+    StepVerifier.create(creditsCache.get())
+        .expectNextMatches(credits -> credits.actualCredits() == 7.5
+            && credits.totalCostThisMonth() == 2.5)
+        .verifyComplete();
+  }
+
+  @Test
+  void get_PastRefreshAfter_ServesStaleValueAndRefreshesInBackground() {
+    // Negative, so every read after the first counts as stale regardless of clock resolution
+    ReflectionTestUtils.setField(creditsCache, "refreshAfter", Duration.ofMillis(-1));
+    when(aiService.getCreditBalance()).thenReturn(Mono.just(8.0), Mono.just(6.0));
+    when(chatService.getTotalCostThisMonth()).thenReturn(Mono.just(2.0), Mono.just(4.0));
+    creditsCache.get().block();
+
+    // The stale value is returned; the refresh lands for the next reader
+    StepVerifier.create(creditsCache.get())
+        .expectNextMatches(credits -> credits.actualCredits() == 8.0)
+        .verifyComplete();
+    StepVerifier.create(creditsCache.get())
+        .expectNextMatches(credits -> credits.actualCredits() == 6.0)
+        .verifyComplete();
+  }
+}
@@ -1,13 +1,19 @@
 package com.darylmathison.chat.client.service;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.darylmathison.chat.client.dto.ExternalToolDto;
+import com.darylmathison.chat.client.mapping.ResponseMappingCompiler;
 import com.darylmathison.chat.client.model.ExternalTool;
 import com.darylmathison.chat.client.repository.ExternalToolRepository;
+import com.darylmathison.chat.client.repository.UsageCounters;
+import com.darylmathison.chat.client.template.RequestTemplateCompiler;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import java.time.LocalDateTime;
 import java.util.Map;
@@ -18,6 +24,7 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.junit.jupiter.MockitoSettings;
 import org.mockito.quality.Strictness;
+import org.springframework.r2dbc.core.DatabaseClient;
 import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
@@ -31,7 +38,10 @@ class ExternalToolServiceTest {
   private ExternalToolRepository externalToolRepository;
 
   @Mock
-  private WebClient.Builder webClientBuilder;
+  private ToolClientRegistry toolClientRegistry;
+
+  @Mock
+  private ToolRegistry toolRegistry;
 
   @Mock
   private WebClient webClient;
@@ -42,13 +52,17 @@ class ExternalToolServiceTest {
   @Mock
   private MCPService mcpService;
 
+  private final UsageCounters usageCounters = new UsageCounters(mock(DatabaseClient.class));
+
   private ExternalToolService externalToolService;
 
   @BeforeEach
   void setUp() {
-    externalToolService = new ExternalToolService(externalToolRepository, webClientBuilder,
-        objectMapper);
-    when(webClientBuilder.build()).thenReturn(webClient);
+    externalToolService = new ExternalToolService(externalToolRepository, toolClientRegistry,
+        new RequestTemplateCompiler(objectMapper), new ResponseMappingCompiler(objectMapper),
+        toolRegistry, usageCounters, objectMapper);
+    when(toolClientRegistry.forTool(any())).thenReturn(webClient);
+    when(toolRegistry.findById(any())).thenReturn(Mono.empty());
   }
 
   @Test
@@ -132,7 +146,6 @@ class ExternalToolServiceTest {
     WebClient.ResponseSpec responseSpec = mock(WebClient.ResponseSpec.class);
 
     when(externalToolRepository.findById(toolId)).thenReturn(Mono.just(tool));
-    when(externalToolRepository.recordUsage(toolId)).thenReturn(Mono.just(1));
     when(webClient.get()).thenReturn(requestHeadersUriSpec);
     when(requestHeadersUriSpec.uri(anyString())).thenReturn(requestHeadersSpec);
     when(requestHeadersSpec.headers(any())).thenReturn(requestHeadersSpec);
@@ -144,6 +157,44 @@ class ExternalToolServiceTest {
     StepVerifier.create(externalToolService.executeTool(toolId, parameters))
         .expectNext("Success")
         .verifyComplete();
+
+    // Counted in memory rather than with an UPDATE per call
+    assertEquals(4L, usageCounters.toolUsageCount(toolId, 3L));
+    verify(externalToolRepository, never()).save(any(ExternalTool.class));
+  }
+
+  @Test
+  void executeTool_ActiveTool_ResolvedWithoutDatabaseLookup() {
+    // Given
+    Long toolId = 1L;
+    ExternalTool tool = ExternalTool.builder()
+        .id(toolId)
+        .name("Test Tool")
+        .endpointUrl("https://api.example.com")
+        .httpMethod(ExternalTool.HttpMethod.GET)
+        .authType(ExternalTool.AuthType.NONE)
+        .isActive(true)
+        .build();
+
+    WebClient.RequestHeadersUriSpec requestHeadersUriSpec = mock(
+        WebClient.RequestHeadersUriSpec.class);
+    WebClient.RequestHeadersSpec requestHeadersSpec = mock(WebClient.RequestHeadersSpec.class);
+    WebClient.ResponseSpec responseSpec = mock(WebClient.ResponseSpec.class);
+
+    when(toolRegistry.findById(toolId)).thenReturn(Mono.just(tool));
+    when(webClient.get()).thenReturn(requestHeadersUriSpec);
+    when(requestHeadersUriSpec.uri(anyString())).thenReturn(requestHeadersSpec);
+    when(requestHeadersSpec.headers(any())).thenReturn(requestHeadersSpec);
+    when(requestHeadersSpec.retrieve()).thenReturn(responseSpec);
+    when(responseSpec.onStatus(any(), any())).thenReturn(responseSpec);
+    when(responseSpec.bodyToMono(String.class)).thenReturn(Mono.just("Success"));
+
+    // When & Then
+    StepVerifier.create(externalToolService.executeTool(toolId, Map.of()))
+        .expectNext("Success")
+        .verifyComplete();
+
+    verify(externalToolRepository, never()).findById(toolId);
   }
 
   @Test
@@ -178,6 +229,9 @@ class ExternalToolServiceTest {
     // When & Then
     StepVerifier.create(externalToolService.deleteTool(toolId))
         .verifyComplete();
+
+    verify(toolClientRegistry).invalidate(toolId);
+    verify(toolRegistry).remove(toolId);
   }
 
   @Test
@@ -213,6 +267,9 @@ class ExternalToolServiceTest {
     StepVerifier.create(externalToolService.updateTool(toolId, toolDto))
         .expectNextMatches(result -> result.getName().equals("Updated Tool"))
         .verifyComplete();
+
+    verify(toolClientRegistry).invalidate(toolId);
+    verify(toolRegistry).update(updatedTool);
   }
 
   @Test
@@ -271,7 +328,6 @@ class ExternalToolServiceTest {
 
     when(externalToolRepository.findById(toolId)).thenReturn(Mono.just(mcpEnabledTool));
     when(mcpService.executeMCPTool(mcpEnabledTool, "test input")).thenReturn(Mono.just(mcpResponse));
-    when(externalToolRepository.recordUsage(toolId)).thenReturn(Mono.just(1));
 
     StepVerifier.create(externalToolService.executeTool(toolId, parameters))
         .expectNext(mcpResponse)
@@ -297,7 +353,6 @@ class ExternalToolServiceTest {
 
     when(externalToolRepository.findById(toolId)).thenReturn(Mono.just(mcpEnabledTool));
     when(mcpService.executeMCPTool(mcpEnabledTool, "test input")).thenReturn(Mono.just(mcpResponse));
-    when(externalToolRepository.recordUsage(toolId)).thenReturn(Mono.just(1));
 
     // When & Then
     StepVerifier.create(externalToolService.executeTool(toolId, parameters))
@@ -328,7 +383,6 @@ class ExternalToolServiceTest {
     WebClient.ResponseSpec responseSpec = mock(WebClient.ResponseSpec.class);
 
     when(externalToolRepository.findById(toolId)).thenReturn(Mono.just(mcpEnabledTool));
-    when(externalToolRepository.recordUsage(toolId)).thenReturn(Mono.just(1));
     when(webClient.get()).thenReturn(requestHeadersUriSpec);
     when(requestHeadersUriSpec.uri(anyString())).thenReturn(requestHeadersSpec);
     when(requestHeadersSpec.headers(any())).thenReturn(requestHeadersSpec);
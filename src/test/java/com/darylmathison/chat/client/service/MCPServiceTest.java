@@ -28,6 +28,9 @@ class MCPServiceTest {
     @Mock
     private ExternalToolRepository externalToolRepository;
 
+    @Mock
+    private ToolRegistry toolRegistry;
+
     @Mock
     private MCPToolExecutor mcpToolExecutor;
 
@@ -41,7 +44,7 @@ class MCPServiceTest {
 
     @BeforeEach
     void setUp() {
-        mcpService = new MCPService(externalToolRepository, mcpToolExecutor, objectMapper);
+        mcpService = new MCPService(externalToolRepository, toolRegistry, mcpToolExecutor, objectMapper);
     }
 
     @Test
@@ -55,7 +58,7 @@ class MCPServiceTest {
             .verifyComplete();
 
         // Verify no interactions with repository or executor
-        verify(externalToolRepository, never()).findByNameIgnoreCase(anyString());
+        verify(toolRegistry, never()).findByName(anyString());
         verify(mcpToolExecutor, never()).executeToolRequest(any(ExternalTool.class), anyMap());
     }
 
@@ -75,7 +78,7 @@ class MCPServiceTest {
             .toolType("API")
             .build();
 
-        when(externalToolRepository.findByNameIgnoreCase(toolName)).thenReturn(Mono.just(tool));
+        when(toolRegistry.findByName(toolName)).thenReturn(Mono.just(tool));
         when(mcpToolExecutor.executeToolRequest(eq(tool), any(Map.class))).thenReturn(Mono.just(toolOutput));
         
         try {
@@ -91,7 +94,7 @@ class MCPServiceTest {
             .verifyComplete();
 
         // Verify interactions
-        verify(externalToolRepository).findByNameIgnoreCase(toolName);
+        verify(toolRegistry).findByName(toolName);
         verify(mcpToolExecutor).executeToolRequest(eq(tool), any(Map.class));
     }
 
@@ -101,7 +104,7 @@ class MCPServiceTest {
         String message = "@{{NonExistentTool}} Do something";
         String toolName = "NonExistentTool";
 
-        when(externalToolRepository.findByNameIgnoreCase(toolName)).thenReturn(Mono.empty());
+        when(toolRegistry.findByName(toolName)).thenReturn(Mono.empty());
 
         // When & Then
         StepVerifier.create(mcpService.parseAndProcessMessage(message))
@@ -111,7 +114,7 @@ class MCPServiceTest {
             .verify();
 
         // Verify interactions
-        verify(externalToolRepository).findByNameIgnoreCase(toolName);
+        verify(toolRegistry).findByName(toolName);
         verify(mcpToolExecutor, never()).executeToolRequest(any(ExternalTool.class), anyMap());
     }
 
@@ -126,7 +129,7 @@ class MCPServiceTest {
             .verifyComplete();
 
         // Verify no interactions
-        verify(externalToolRepository, never()).findByNameIgnoreCase(anyString());
+        verify(toolRegistry, never()).findByName(anyString());
         verify(mcpToolExecutor, never()).executeToolRequest(any(ExternalTool.class), anyMap());
     }
 
@@ -138,7 +141,7 @@ class MCPServiceTest {
             .verifyComplete();
 
         // Verify no interactions
-        verify(externalToolRepository, never()).findByNameIgnoreCase(anyString());
+        verify(toolRegistry, never()).findByName(anyString());
         verify(mcpToolExecutor, never()).executeToolRequest(any(ExternalTool.class), anyMap());
     }
 
@@ -231,5 +234,6 @@ class MCPServiceTest {
 
         // Verify interactions
         verify(externalToolRepository).save(any(ExternalTool.class));
+        verify(toolRegistry).update(expectedWrapper);
     }
 }
\ No newline at end of file
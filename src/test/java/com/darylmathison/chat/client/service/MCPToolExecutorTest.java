@@ -1,6 +1,7 @@
 package com.darylmathison.chat.client.service;
 
 import com.darylmathison.chat.client.model.ExternalTool;
+import com.darylmathison.chat.client.template.RequestTemplateCompiler;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -26,7 +27,7 @@ class MCPToolExecutorTest {
     private ObjectMapper objectMapper;
 
     @Mock
-    private WebClient.Builder webClientBuilder;
+    private ToolClientRegistry toolClientRegistry;
 
     @Mock
     private WebClient webClient;
@@ -35,8 +36,9 @@ class MCPToolExecutorTest {
 
     @BeforeEach
     void setUp() {
-        mcpToolExecutor = new MCPToolExecutor(objectMapper, webClientBuilder);
-        when(webClientBuilder.build()).thenReturn(webClient);
+        mcpToolExecutor = new MCPToolExecutor(toolClientRegistry,
+            new RequestTemplateCompiler(objectMapper));
+        when(toolClientRegistry.forTool(any())).thenReturn(webClient);
     }
 
     @Test
@@ -96,7 +98,7 @@ class MCPToolExecutorTest {
         when(webClient.post()).thenReturn(requestBodyUriSpec);
         when(requestBodyUriSpec.uri(anyString())).thenReturn(requestBodySpec);
         when(requestBodySpec.headers(any())).thenReturn(requestBodySpec);
-        when(requestBodySpec.bodyValue(any())).thenReturn(requestHeadersSpec);
+        when(requestBodySpec.bodyValue("{\"query\": \"search term\", \"limit\": 10}")).thenReturn(requestHeadersSpec);
         when(requestHeadersSpec.retrieve()).thenReturn(responseSpec);
         when(responseSpec.bodyToMono(String.class)).thenReturn(Mono.just("{\"results\": [\"item1\", \"item2\"]}"));
 
@@ -1,7 +1,6 @@
 package com.darylmathison.chat.client.service;
 
 import com.darylmathison.chat.client.model.ExternalTool;
-import com.darylmathison.chat.client.repository.ExternalToolRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -25,7 +24,7 @@ import static org.mockito.Mockito.when;
 class MessageParserServiceTest {
 
     @Mock
-    private ExternalToolRepository externalToolRepository;
+    private ToolRegistry toolRegistry;
 
     @Mock
     private ExternalToolService externalToolService;
@@ -37,7 +36,7 @@ class MessageParserServiceTest {
 
     @BeforeEach
     void setUp() {
-        messageParserService = new MessageParserService(externalToolRepository, externalToolService);
+        messageParserService = new MessageParserService(toolRegistry, externalToolService);
     }
 
     @Test
@@ -51,7 +50,7 @@ class MessageParserServiceTest {
             .verifyComplete();
 
         // Verify no interactions with repository or service
-        verify(externalToolRepository, never()).findByNameIgnoreCase(anyString());
+        verify(toolRegistry, never()).findByName(anyString());
         verify(externalToolService, never()).executeTool(anyLong(), anyMap());
     }
 
@@ -69,7 +68,7 @@ class MessageParserServiceTest {
             .isActive(true)
             .build();
 
-        when(externalToolRepository.findByNameIgnoreCase(toolName)).thenReturn(Mono.just(tool));
+        when(toolRegistry.findByName(toolName)).thenReturn(Mono.just(tool));
         when(externalToolService.executeTool(anyLong(), any(Map.class))).thenReturn(Mono.just(toolOutput));
 
         // When & Then
@@ -78,7 +77,7 @@ class MessageParserServiceTest {
             .verifyComplete();
 
         // Verify interactions
-        verify(externalToolRepository).findByNameIgnoreCase(toolName);
+        verify(toolRegistry).findByName(toolName);
         verify(externalToolService).executeTool(anyLong(), any(Map.class));
     }
 
@@ -88,7 +87,7 @@ class MessageParserServiceTest {
         String message = "@{{NonExistentTool}} Do something";
         String toolName = "NonExistentTool";
 
-        when(externalToolRepository.findByNameIgnoreCase(toolName)).thenReturn(Mono.empty());
+        when(toolRegistry.findByName(toolName)).thenReturn(Mono.empty());
 
         // When & Then
         StepVerifier.create(messageParserService.parseAndProcessMessage(message))
@@ -98,7 +97,7 @@ class MessageParserServiceTest {
             .verify();
 
         // Verify interactions
-        verify(externalToolRepository).findByNameIgnoreCase(toolName);
+        verify(toolRegistry).findByName(toolName);
         verify(externalToolService, never()).executeTool(anyLong(), any(Map.class));
     }
 
@@ -114,7 +113,7 @@ class MessageParserServiceTest {
             .isActive(true)
             .build();
 
-        when(externalToolRepository.findByNameIgnoreCase(toolName)).thenReturn(Mono.just(tool));
+        when(toolRegistry.findByName(toolName)).thenReturn(Mono.just(tool));
         when(externalToolService.executeTool(anyLong(), any(Map.class)))
             .thenReturn(Mono.error(new RuntimeException("Tool execution failed")));
 
@@ -126,7 +125,7 @@ class MessageParserServiceTest {
             .verify();
 
         // Verify interactions
-        verify(externalToolRepository).findByNameIgnoreCase(toolName);
+        verify(toolRegistry).findByName(toolName);
         verify(externalToolService).executeTool(anyLong(), any(Map.class));
     }
 
@@ -141,7 +140,7 @@ class MessageParserServiceTest {
             .verifyComplete();
 
         // Verify no interactions
-        verify(externalToolRepository, never()).findByNameIgnoreCase(anyString());
+        verify(toolRegistry, never()).findByName(anyString());
         verify(externalToolService, never()).executeTool(anyLong(), anyMap());
     }
 
@@ -153,7 +152,7 @@ class MessageParserServiceTest {
             .verifyComplete();
 
         // Verify no interactions
-        verify(externalToolRepository, never()).findByNameIgnoreCase(anyString());
+        verify(toolRegistry, never()).findByName(anyString());
         verify(externalToolService, never()).executeTool(anyLong(), anyMap());
     }
 
@@ -177,7 +176,7 @@ class MessageParserServiceTest {
         verify(mcpService).parseAndProcessMessage(message);
 
         // Verify no interactions with repository or service
-        verify(externalToolRepository, never()).findByNameIgnoreCase(anyString());
+        verify(toolRegistry, never()).findByName(anyString());
         verify(externalToolService, never()).executeTool(anyLong(), anyMap());
     }
 
@@ -201,7 +200,7 @@ class MessageParserServiceTest {
         verify(mcpService).parseAndProcessMessage(message);
 
         // Verify no interactions with repository or service
-        verify(externalToolRepository, never()).findByNameIgnoreCase(anyString());
+        verify(toolRegistry, never()).findByName(anyString());
         verify(externalToolService, never()).executeTool(anyLong(), anyMap());
     }
 }
@@ -0,0 +1,106 @@
+package com.darylmathison.chat.client.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import com.darylmathison.chat.client.dto.ModelInfo;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.WebClient;
+
+class ModelCatalogTest {
+
+  private static final String MODELS_JSON = """
+      {"data": [
+        {"id": "openai/gpt-4o", "name": "OpenAI: GPT-4o", "context_length": 128000,
+         "pricing": {"prompt": "0.0000025", "completion": "0.00001",
+                     "input_cache_read": "0.00000125"}},
+        {"id": "deepseek/deepseek-r1-0528:free", "name": "DeepSeek R1 (free)",
+         "context_length": 163840, "pricing": {"prompt": "0", "completion": "0"}},
+        {"id": "openrouter/auto", "name": "Auto Router", "context_length": 2000000,
+         "pricing": {"prompt": "-1", "completion": "-1"}}
+      ]}
+      """;
+
+  @TempDir
+  Path tempDir;
+
+  private ObjectMapper objectMapper;
+  private ModelCatalog modelCatalog;
+
+  @BeforeEach
+  void setUp() {
+    objectMapper = new ObjectMapper().findAndRegisterModules();
+    modelCatalog = new ModelCatalog(mock(WebClient.class), objectMapper);
+    ReflectionTestUtils.setField(modelCatalog, "snapshotFile",
+        tempDir.resolve("model-catalog.json").toString());
+    modelCatalog.install(new ModelCatalog.Snapshot(
+        modelCatalog.parseModels(MODELS_JSON.getBytes(StandardCharsets.UTF_8)),
+        "\"v1\"", null, Instant.now()));
+  }
+
+  @Test
+  void parseModels_ReadsPricingAndContextLength() {
+    ModelInfo gpt4o = modelCatalog.find("openai/gpt-4o").orElseThrow();
+    assertEquals(128000, gpt4o.contextLength());
+    assertEquals(0.0000025, gpt4o.promptPrice());
+    assertEquals(0.00000125, gpt4o.cacheReadPrice());
+    assertNull(gpt4o.cacheWritePrice());
+
+    // Negative prices mean "variable" and are treated as unknown
+    ModelInfo auto = modelCatalog.find("openrouter/auto").orElseThrow();
+    assertFalse(auto.hasPricing());
+  }
+
+  @Test
+  void getModelIds_SortedCaseInsensitively() {
+    assertEquals(List.of("deepseek/deepseek-r1-0528:free", "openai/gpt-4o", "openrouter/auto"),
+        modelCatalog.getModelIds());
+  }
+
+  @Test
+  void search_AppliesFilters() {
+    assertEquals(List.of("deepseek/deepseek-r1-0528:free"),
+        ids(modelCatalog.search(null, null, true, null)));
+    // Ceiling is per million prompt tokens; gpt-4o costs 2.5
+    assertEquals(List.of("deepseek/deepseek-r1-0528:free"),
+        ids(modelCatalog.search(1.0, null, false, null)));
+    assertEquals(List.of("deepseek/deepseek-r1-0528:free", "openai/gpt-4o"),
+        ids(modelCatalog.search(3.0, null, false, null)));
+    assertEquals(List.of("deepseek/deepseek-r1-0528:free", "openrouter/auto"),
+        ids(modelCatalog.search(null, 150000, false, null)));
+    assertEquals(List.of("openai/gpt-4o"), ids(modelCatalog.search(null, null, false, "GPT")));
+  }
+
+  @Test
+  void loadPersistedSnapshot_RestoresCatalogWrittenToDisk() throws Exception {
+    Path snapshotFile = tempDir.resolve("model-catalog.json");
+    objectMapper.writeValue(snapshotFile.toFile(), new ModelCatalog.PersistedSnapshot(
+        List.of(new ModelInfo("openai/gpt-4o", "OpenAI: GPT-4o", 128000, 0.0000025, 0.00001,
+            null, null)),
+        "\"v2\"", null, Instant.now()));
+    assertTrue(Files.exists(snapshotFile));
+
+    ModelCatalog restored = new ModelCatalog(mock(WebClient.class), objectMapper);
+    ReflectionTestUtils.setField(restored, "snapshotFile", snapshotFile.toString());
+    restored.loadPersistedSnapshot();
+
+    assertEquals(List.of("openai/gpt-4o"), restored.getModelIds());
+    assertEquals(128000, restored.find("openai/gpt-4o").orElseThrow().contextLength());
+  }
+
+  private List<String> ids(List<ModelInfo> models) {
+    return models.stream().map(ModelInfo::id).toList();
+  }
+}
@@ -0,0 +1,160 @@
+package com.darylmathison.chat.client.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.Disposable;
+import reactor.test.StepVerifier;
+
+class OpenRouterRateLimiterTest {
+
+  private static final String FREE_MODEL = "deepseek/deepseek-r1-0528:free";
+
+  private SimpleMeterRegistry meterRegistry;
+  private OpenRouterRateLimiter rateLimiter;
+  private String bucketKey;
+
+  @BeforeEach
+  void setUp() {
+    meterRegistry = new SimpleMeterRegistry();
+    rateLimiter = new OpenRouterRateLimiter(meterRegistry);
+    ReflectionTestUtils.setField(rateLimiter, "freeRequestsPerMinute", 2);
+    ReflectionTestUtils.setField(rateLimiter, "maxWait", Duration.ofMinutes(1));
+    bucketKey = rateLimiter.bucketKey("Bearer test-key", FREE_MODEL);
+  }
+
+  @Test
+  void acquire_WithinCapacity_CompletesImmediately() {
+    StepVerifier.create(rateLimiter.acquire(bucketKey, FREE_MODEL)).verifyComplete();
+    StepVerifier.create(rateLimiter.acquire(bucketKey, FREE_MODEL)).verifyComplete();
+
+    assertEquals(2, meterRegistry.get("openrouter.ratelimit.wait").tag("tier", "free").timer()
+        .count());
+  }
+
+  @Test
+  void acquire_BucketEmpty_WaitsForRefillInQueue() {
+    rateLimiter.acquire(bucketKey, FREE_MODEL).block();
+    rateLimiter.acquire(bucketKey, FREE_MODEL).block();
+
+    // 2 per minute: the third permit is about 30 seconds away
+    StepVerifier.withVirtualTime(() -> rateLimiter.acquire(bucketKey, FREE_MODEL))
+        .expectSubscription()
+        .then(() -> assertEquals(1, rateLimiter.queueDepth()))
+        .thenAwait(Duration.ofSeconds(31))
+        .verifyComplete();
+    assertEquals(0, rateLimiter.queueDepth());
+  }
+
+  @Test
+  void acquire_CancelledWhileWaiting_ReturnsItsSlot() {
+    ReflectionTestUtils.setField(rateLimiter, "maxWait", Duration.ofSeconds(45));
+    rateLimiter.acquire(bucketKey, FREE_MODEL).block();
+    rateLimiter.acquire(bucketKey, FREE_MODEL).block();
+
+    // Waits about 30 seconds, then its caller goes away
+    rateLimiter.acquire(bucketKey, FREE_MODEL).subscribe().dispose();
+    assertEquals(0, rateLimiter.queueDepth());
+
+    // Without the refund this one would be a minute out, beyond the 45 second limit
+    StepVerifier.withVirtualTime(() -> rateLimiter.acquire(bucketKey, FREE_MODEL))
+        .expectSubscription()
+        .thenAwait(Duration.ofSeconds(31))
+        .verifyComplete();
+  }
+
+  @Test
+  void acquire_WaitBeyondDeadline_Rejected() {
+    ReflectionTestUtils.setField(rateLimiter, "maxWait", Duration.ofSeconds(1));
+    rateLimiter.acquire(bucketKey, FREE_MODEL).block();
+    rateLimiter.acquire(bucketKey, FREE_MODEL).block();
+
+    StepVerifier.create(rateLimiter.acquire(bucketKey, FREE_MODEL))
+        .expectError(OpenRouterRateLimiter.RateLimitedException.class)
+        .verify();
+    assertEquals(1.0, meterRegistry.get("openrouter.ratelimit.rejected").counter().count());
+  }
+
+  @Test
+  void acquire_ConcurrentWaiters_NeverExceedMaxQueue() throws InterruptedException {
+    ReflectionTestUtils.setField(rateLimiter, "maxQueue", 3);
+    ReflectionTestUtils.setField(rateLimiter, "maxWait", Duration.ofHours(1));
+    rateLimiter.acquire(bucketKey, FREE_MODEL).block();
+    rateLimiter.acquire(bucketKey, FREE_MODEL).block();
+
+    int callers = 50;
+    AtomicInteger rejections = new AtomicInteger();
+    List<Disposable> waiting = new ArrayList<>();
+    CountDownLatch start = new CountDownLatch(1);
+    CountDownLatch done = new CountDownLatch(callers);
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      for (int i = 0; i < callers; i++) {
+        executor.execute(() -> {
+          try {
+            start.await();
+            Disposable subscription = rateLimiter.acquire(bucketKey, FREE_MODEL)
+                .subscribe(null, error -> rejections.incrementAndGet());
+            synchronized (waiting) {
+              waiting.add(subscription);
+            }
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          } finally {
+            done.countDown();
+          }
+        });
+      }
+      start.countDown();
+      assertTrue(done.await(10, TimeUnit.SECONDS));
+
+      assertEquals(3, rateLimiter.queueDepth());
+      assertEquals(callers - 3, rejections.get());
+    } finally {
+      executor.shutdownNow();
+      waiting.forEach(Disposable::dispose);
+    }
+    assertEquals(0, rateLimiter.queueDepth());
+  }
+
+  @Test
+  void observe_RemainingZero_BlocksUntilReset() {
+    ReflectionTestUtils.setField(rateLimiter, "maxWait", Duration.ofSeconds(5));
+    rateLimiter.acquire(bucketKey, FREE_MODEL).block();
+
+    HttpHeaders headers = new HttpHeaders();
+    headers.set("X-RateLimit-Limit", "2");
+    headers.set("X-RateLimit-Remaining", "0");
+    headers.set("X-RateLimit-Reset", String.valueOf(System.currentTimeMillis() + 20_000));
+    rateLimiter.observe(bucketKey, HttpStatus.OK, headers);
+
+    // Our own bucket still had a permit, but OpenRouter says the window is spent
+    StepVerifier.create(rateLimiter.acquire(bucketKey, FREE_MODEL))
+        .expectErrorMatches(e -> e instanceof OpenRouterRateLimiter.RateLimitedException
+            && e.getMessage().contains(FREE_MODEL))
+        .verify();
+  }
+
+  @Test
+  void acquire_PaidModelWithoutLimit_NeverWaits() {
+    String paidKey = rateLimiter.bucketKey("Bearer test-key", "openai/gpt-4o");
+    for (int i = 0; i < 100; i++) {
+      StepVerifier.create(rateLimiter.acquire(paidKey, "openai/gpt-4o")).verifyComplete();
+    }
+    assertTrue(rateLimiter.queueDepth() == 0);
+  }
+}
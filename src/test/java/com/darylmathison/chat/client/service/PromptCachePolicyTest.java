@@ -0,0 +1,55 @@
+package com.darylmathison.chat.client.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import com.darylmathison.chat.client.dto.OpenRouterChatRequest.ChatMessage;
+import com.darylmathison.chat.client.tokenizer.TokenizerRegistry;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class PromptCachePolicyTest {
+
+  // 1100 tokens by the estimate of 4 characters per token, no vocabulary being loaded
+  private static final String LONG = "x".repeat(4400);
+
+  private final PromptCachePolicy policy = new PromptCachePolicy(new TokenizerRegistry());
+
+  @Test
+  void withBreakpoints_AnthropicModel_MarksSystemPromptAndEndOfHistory() {
+    List<ChatMessage> messages = List.of(
+        new ChatMessage("system", LONG + LONG),
+        new ChatMessage("user", "Earlier question"),
+        new ChatMessage("assistant", "Earlier answer"),
+        new ChatMessage("user", "New question"));
+
+    List<ChatMessage> marked = policy.withBreakpoints("anthropic/claude-3.5-sonnet", messages);
+
+    assertEquals(List.of(true, false, true, false),
+        marked.stream().map(ChatMessage::cacheBreakpoint).toList());
+  }
+
+  @Test
+  void withBreakpoints_ShortPrefix_MarksNothing() {
+    List<ChatMessage> messages = List.of(
+        new ChatMessage("system", "Be brief."),
+        new ChatMessage("user", LONG),
+        new ChatMessage("user", "New question"));
+
+    // The system prompt alone is too short; with the first turn the prefix is long enough
+    assertEquals(List.of(false, true, false),
+        policy.withBreakpoints("anthropic/claude-3-haiku", messages).stream()
+            .map(ChatMessage::cacheBreakpoint).toList());
+    List<ChatMessage> brief = List.of(messages.get(0), messages.get(2));
+    assertSame(brief, policy.withBreakpoints("anthropic/claude-3-haiku", brief));
+  }
+
+  @Test
+  void withBreakpoints_ModelWithAutomaticCaching_LeavesMessagesAlone() {
+    List<ChatMessage> messages = List.of(
+        new ChatMessage("system", LONG + LONG),
+        new ChatMessage("user", "New question"));
+
+    assertSame(messages, policy.withBreakpoints("openai/gpt-4o", messages));
+  }
+}
@@ -0,0 +1,132 @@
+package com.darylmathison.chat.client.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+class RequestCoalescerTest {
+
+  private RequestCoalescer requestCoalescer;
+
+  @BeforeEach
+  void setUp() {
+    requestCoalescer = new RequestCoalescer();
+  }
+
+  @Test
+  void coalesce_ConcurrentIdenticalRequests_ShareOneUpstreamCall() {
+    AtomicInteger calls = new AtomicInteger();
+    Sinks.One<String> upstream = Sinks.one();
+
+    Mono<String> first = requestCoalescer.coalesce("key", () -> {
+      calls.incrementAndGet();
+      return upstream.asMono();
+    });
+    Mono<String> second = requestCoalescer.coalesce("key", () -> {
+      calls.incrementAndGet();
+      return upstream.asMono();
+    });
+
+    List<String> results = new CopyOnWriteArrayList<>();
+    first.subscribe(results::add);
+    second.subscribe(results::add);
+    upstream.tryEmitValue("answer");
+
+    assertEquals(1, calls.get());
+    assertEquals(List.of("answer", "answer"), results);
+    assertEquals(0, requestCoalescer.inFlightCount());
+  }
+
+  @Test
+  void coalesce_AfterCompletion_StartsNewCall() {
+    AtomicInteger calls = new AtomicInteger();
+
+    StepVerifier.create(requestCoalescer.coalesce("key",
+            () -> Mono.fromCallable(calls::incrementAndGet)))
+        .expectNext(1)
+        .verifyComplete();
+    StepVerifier.create(requestCoalescer.coalesce("key",
+            () -> Mono.fromCallable(calls::incrementAndGet)))
+        .expectNext(2)
+        .verifyComplete();
+  }
+
+  @Test
+  void coalesce_CallerArrivingAsResultIsDelivered_StartsNewCall() {
+    AtomicInteger calls = new AtomicInteger();
+    List<Integer> joinerResults = new CopyOnWriteArrayList<>();
+
+    // The second caller comes in while the first result is being delivered
+    requestCoalescer.coalesce("key", () -> Mono.fromCallable(calls::incrementAndGet))
+        .subscribe(result -> requestCoalescer.coalesce("key",
+                () -> Mono.fromCallable(calls::incrementAndGet))
+            .subscribe(joinerResults::add));
+
+    assertEquals(List.of(2), joinerResults);
+    assertEquals(0, requestCoalescer.inFlightCount());
+  }
+
+  @Test
+  void coalesce_UpstreamCancelledOnlyWhenLastSubscriberLeaves() {
+    AtomicBoolean cancelled = new AtomicBoolean();
+    Mono<String> never = Mono.<String>never().doOnCancel(() -> cancelled.set(true));
+
+    Disposable first = requestCoalescer.coalesce("key", () -> never).subscribe();
+    Disposable second = requestCoalescer.coalesce("key", () -> never).subscribe();
+
+    first.dispose();
+    assertFalse(cancelled.get());
+
+    second.dispose();
+    assertTrue(cancelled.get());
+    assertEquals(0, requestCoalescer.inFlightCount());
+  }
+
+  @Test
+  void coalesceStream_LateJoinerReceivesFullStream() {
+    AtomicInteger calls = new AtomicInteger();
+    Sinks.Many<String> upstream = Sinks.many().unicast().onBackpressureBuffer();
+
+    Flux<String> first = requestCoalescer.coalesceStream("key", () -> {
+      calls.incrementAndGet();
+      return upstream.asFlux();
+    });
+    List<String> firstDeltas = new CopyOnWriteArrayList<>();
+    first.subscribe(firstDeltas::add);
+    upstream.tryEmitNext("Hel");
+
+    List<String> lateDeltas = new CopyOnWriteArrayList<>();
+    requestCoalescer.coalesceStream("key", () -> {
+      calls.incrementAndGet();
+      return upstream.asFlux();
+    }).subscribe(lateDeltas::add);
+    upstream.tryEmitNext("lo");
+    upstream.tryEmitComplete();
+
+    assertEquals(1, calls.get());
+    assertEquals(List.of("Hel", "lo"), firstDeltas);
+    assertEquals(List.of("Hel", "lo"), lateDeltas);
+  }
+
+  @Test
+  void coalesceStream_KeyReleasedBeforeCompletionIsDelivered() {
+    AtomicInteger inFlightAtCompletion = new AtomicInteger(-1);
+
+    requestCoalescer.coalesceStream("key", () -> Flux.just("Hel", "lo"))
+        .subscribe(null, null, () -> inFlightAtCompletion.set(requestCoalescer.inFlightCount()));
+
+    assertEquals(0, inFlightAtCompletion.get());
+  }
+}
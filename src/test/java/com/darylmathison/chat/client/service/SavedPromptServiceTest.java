@@ -1,18 +1,25 @@
 package com.darylmathison.chat.client.service;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.darylmathison.chat.client.dto.ChatResponse;
 import com.darylmathison.chat.client.dto.SavedPromptDto;
 import com.darylmathison.chat.client.model.SavedPrompt;
 import com.darylmathison.chat.client.repository.SavedPromptRepository;
+import com.darylmathison.chat.client.repository.UsageCounters;
+import com.darylmathison.chat.client.tokenizer.TokenizerRegistry;
 import java.time.LocalDateTime;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.r2dbc.core.DatabaseClient;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
@@ -26,11 +33,17 @@ class SavedPromptServiceTest {
   @Mock
   private ChatService chatService;
 
+  @Mock
+  private CostCalculationService costCalculationService;
+
+  private final UsageCounters usageCounters = new UsageCounters(mock(DatabaseClient.class));
+
   private SavedPromptService savedPromptService;
 
   @BeforeEach
   void setUp() {
-    savedPromptService = new SavedPromptService(savedPromptRepository, chatService);
+    savedPromptService = new SavedPromptService(savedPromptRepository, chatService,
+        new TokenizerRegistry(), costCalculationService, usageCounters);
   }
 
   @Test
@@ -97,7 +110,6 @@ class SavedPromptServiceTest {
         .build();
 
     when(savedPromptRepository.findById(promptId)).thenReturn(Mono.just(savedPrompt));
-    when(savedPromptRepository.save(any(SavedPrompt.class))).thenReturn(Mono.just(savedPrompt));
     when(chatService.sendMessage(any(), any())).thenReturn(Mono.just(expectedResponse));
 
     // When & Then
@@ -106,6 +118,10 @@ class SavedPromptServiceTest {
             response.getContent().equals("Generated response") &&
                 response.getModel().equals("gpt-3.5-turbo"))
         .verifyComplete();
+
+    // The use is counted in memory, not by rewriting the row
+    assertEquals(1L, usageCounters.promptUsageCount(promptId, 0L));
+    verify(savedPromptRepository, never()).save(any(SavedPrompt.class));
   }
 
   @Test
@@ -255,10 +271,13 @@ class SavedPromptServiceTest {
         .build();
 
     when(savedPromptRepository.findById(promptId)).thenReturn(Mono.just(prompt));
+    // 39 and 14 characters, estimated at 4 per token without vocabularies
+    when(costCalculationService.calculateCost("deepseek/deepseek-r1-0528:free", 14, 0))
+        .thenReturn(0.0001);
 
     // When & Then
     StepVerifier.create(savedPromptService.estimatePromptCost(promptId))
-        .expectNextMatches(cost -> cost > 0.0)
+        .expectNext(0.0001)
         .verifyComplete();
   }
 }
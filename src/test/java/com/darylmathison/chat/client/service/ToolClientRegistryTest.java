@@ -0,0 +1,66 @@
+package com.darylmathison.chat.client.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import com.darylmathison.chat.client.model.ExternalTool;
+import java.time.Duration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.WebClient;
+
+class ToolClientRegistryTest {
+
+  private ToolClientRegistry registry;
+
+  @BeforeEach
+  void setUp() {
+    registry = new ToolClientRegistry(WebClient.builder());
+    ReflectionTestUtils.setField(registry, "responseTimeout", Duration.ofMillis(10));
+  }
+
+  @AfterEach
+  void tearDown() {
+    registry.close();
+  }
+
+  @Test
+  void forTool_SameTool_ReusesClient() {
+    WebClient first = registry.forTool(tool(1L, "https://a.example.com/x"));
+
+    assertSame(first, registry.forTool(tool(1L, "https://a.example.com/y")));
+    assertNotSame(first, registry.forTool(tool(2L, "https://a.example.com/x")));
+    assertEquals(2, registry.size());
+  }
+
+  @Test
+  void invalidate_ChangedTool_BuildsNewClient() {
+    WebClient before = registry.forTool(tool(1L, "https://a.example.com"));
+
+    registry.invalidate(1L);
+
+    assertEquals(0, registry.size());
+    assertNotSame(before, registry.forTool(tool(1L, "https://b.example.com")));
+  }
+
+  @Test
+  void forTool_UnsavedTool_SharesClientOfItsHost() {
+    WebClient host = registry.forUrl("https://A.example.com/weather");
+
+    assertSame(host, registry.forTool(tool(null, "https://a.example.com/other?q=1")));
+    assertNotSame(host, registry.forUrl("http://a.example.com/weather"));
+    assertNotSame(host, registry.forUrl("https://a.example.com:8443/weather"));
+  }
+
+  private static ExternalTool tool(Long id, String endpointUrl) {
+    return ExternalTool.builder()
+        .id(id)
+        .name("tool")
+        .endpointUrl(endpointUrl)
+        .httpMethod(ExternalTool.HttpMethod.GET)
+        .build();
+  }
+}
@@ -0,0 +1,90 @@
+package com.darylmathison.chat.client.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.darylmathison.chat.client.model.ExternalTool;
+import com.darylmathison.chat.client.repository.ExternalToolRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+class ToolRegistryTest {
+
+  private final ExternalToolRepository externalToolRepository = mock(ExternalToolRepository.class);
+  private final ToolChangeNotifier changeNotifier = mock(ToolChangeNotifier.class);
+
+  private ToolRegistry registry;
+
+  @BeforeEach
+  void setUp() {
+    registry = new ToolRegistry(externalToolRepository);
+    registry.setChangeNotifier(changeNotifier);
+  }
+
+  @Test
+  void find_LoadsOnceThenAnswersFromMemory() {
+    ExternalTool weather = tool(1L, "Weather", true);
+    when(externalToolRepository.findByIsActiveTrueOrderByName())
+        .thenReturn(Flux.just(weather, tool(2L, "Search", true)));
+
+    StepVerifier.create(registry.findByName("WEATHER")).expectNext(weather).verifyComplete();
+    StepVerifier.create(registry.findByName("weather")).expectNext(weather).verifyComplete();
+    StepVerifier.create(registry.findById(1L)).expectNext(weather).verifyComplete();
+    StepVerifier.create(registry.findByName("missing")).verifyComplete();
+
+    verify(externalToolRepository, times(1)).findByIsActiveTrueOrderByName();
+  }
+
+  @Test
+  void updateAndRemove_ApplyLocallyAndNotify() {
+    when(externalToolRepository.findByIsActiveTrueOrderByName())
+        .thenReturn(Flux.just(tool(1L, "Weather", true), tool(2L, "Search", true)));
+    registry.load();
+
+    ExternalTool renamed = tool(2L, "Lookup", true);
+    registry.update(renamed);
+    registry.update(tool(1L, "Weather", false));
+    registry.update(tool(3L, "Stocks", true));
+    registry.remove(3L);
+
+    StepVerifier.create(registry.findByName("lookup")).expectNext(renamed).verifyComplete();
+    StepVerifier.create(registry.findByName("search")).verifyComplete();
+    StepVerifier.create(registry.findById(1L)).verifyComplete();
+    assertEquals(1, registry.size());
+    verify(changeNotifier, times(4)).publish();
+  }
+
+  @Test
+  void refresh_DuringALoad_LoadsAgain() {
+    Sinks.Many<ExternalTool> firstLoad = Sinks.many().replay().all();
+    ExternalTool renamed = tool(1L, "Forecast", true);
+    when(externalToolRepository.findByIsActiveTrueOrderByName())
+        .thenReturn(firstLoad.asFlux(), Flux.just(renamed));
+
+    Mono<Void> running = registry.refresh();
+    // A change arrives while the first load is still reading
+    registry.refresh();
+    firstLoad.tryEmitNext(tool(1L, "Weather", true));
+    firstLoad.tryEmitComplete();
+
+    StepVerifier.create(running).verifyComplete();
+    StepVerifier.create(registry.findByName("forecast")).expectNext(renamed).verifyComplete();
+    StepVerifier.create(registry.findByName("weather")).verifyComplete();
+    verify(externalToolRepository, times(2)).findByIsActiveTrueOrderByName();
+  }
+
+  private static ExternalTool tool(Long id, String name, boolean active) {
+    return ExternalTool.builder()
+        .id(id)
+        .name(name)
+        .isActive(active)
+        .build();
+  }
+}
@@ -24,6 +24,9 @@ class WeatherServiceTest {
     @Mock
     private ObjectMapper objectMapper;
 
+    @Mock
+    private ToolRegistry toolRegistry;
+
     @InjectMocks
     private WeatherService weatherService;
 
@@ -58,6 +61,7 @@ class WeatherServiceTest {
 
         // Verify repository was called to save the tool
         verify(externalToolRepository).save(any(ExternalTool.class));
+        verify(toolRegistry).update(savedTool);
     }
 
     @Test
@@ -0,0 +1,65 @@
+package com.darylmathison.chat.client.template;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import com.darylmathison.chat.client.model.ExternalTool;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class RequestTemplateCompilerTest {
+
+  private static final LocalDateTime SAVED = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+  private final RequestTemplateCompiler compiler = new RequestTemplateCompiler(new ObjectMapper());
+
+  @Test
+  void compile_UnchangedTool_ReusesCompiledTemplate() {
+    RequestTemplate first = compiler.compile(tool(1L, "{\"q\": \"{{q}}\"}", SAVED));
+
+    assertSame(first, compiler.compile(tool(1L, "{\"q\": \"{{q}}\"}", SAVED)));
+    // Recording usage moves updatedAt without touching the template
+    assertSame(first, compiler.compile(tool(1L, "{\"q\": \"{{q}}\"}", SAVED.plusMinutes(1))));
+  }
+
+  @Test
+  void compile_ChangedOrEvictedTool_Recompiles() {
+    RequestTemplate first = compiler.compile(tool(1L, "{\"q\": \"{{q}}\"}", SAVED));
+
+    RequestTemplate changed = compiler.compile(tool(1L, "{\"query\": \"{{q}}\"}",
+        SAVED.plusMinutes(1)));
+    assertNotSame(first, changed);
+    assertEquals("{\"query\": \"{{q}}\"}", changed.source());
+
+    compiler.evict(1L);
+    assertNotSame(changed, compiler.compile(tool(1L, "{\"query\": \"{{q}}\"}",
+        SAVED.plusMinutes(1))));
+  }
+
+  @Test
+  void render_SerializesStructuredValuesAndEmptyTemplates() {
+    Map<String, Object> parameters = new LinkedHashMap<>();
+    parameters.put("city", "Zürich \"centre\"");
+    parameters.put("days", List.of(1, 2));
+
+    assertEquals("{\"city\": \"Zürich \\\"centre\\\"\", \"days\": [1,2]}",
+        compiler.render(tool(1L, "{\"city\": \"{{city}}\", \"days\": {{days}}}", SAVED),
+            parameters));
+    assertEquals("{\"city\":\"Zürich \\\"centre\\\"\",\"days\":[1,2]}",
+        compiler.render(tool(2L, " ", SAVED), parameters));
+  }
+
+  private static ExternalTool tool(Long id, String requestTemplate, LocalDateTime updatedAt) {
+    return ExternalTool.builder()
+        .id(id)
+        .name("tool")
+        .requestTemplate(requestTemplate)
+        .updatedAt(updatedAt)
+        .build();
+  }
+}
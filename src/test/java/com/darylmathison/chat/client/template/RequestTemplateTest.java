@@ -0,0 +1,99 @@
+package com.darylmathison.chat.client.template;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.darylmathison.chat.client.template.RequestTemplate.Format;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import org.junit.jupiter.api.Test;
+
+class RequestTemplateTest {
+
+  private static final Function<Object, String> NO_JSON = value -> {
+    throw new AssertionError("Unexpected JSON encoding of " + value);
+  };
+
+  @Test
+  void render_JsonTemplate_EscapesStringsAndWritesValues() {
+    RequestTemplate template = RequestTemplate.compile(
+        "{\"query\": \"{{query}}\", \"limit\": {{limit}}, \"exact\": {{exact}}, \"tag\": {{tag}}}");
+
+    String body = template.render(Map.of(
+        "query", "say \"hi\"\\\n",
+        "limit", 10,
+        "exact", true,
+        "tag", "a\tb"), NO_JSON);
+
+    assertEquals(Format.JSON, template.format());
+    assertEquals("{\"query\": \"say \\\"hi\\\"\\\\\\n\", \"limit\": 10, \"exact\": true, "
+        + "\"tag\": \"a\\tb\"}", body);
+  }
+
+  @Test
+  void render_JsonTemplate_QuotesInsideStringsAreTracked() {
+    RequestTemplate template = RequestTemplate.compile(
+        "{\"note\": \"a \\\"{{x}}\\\" b\", \"value\": {{x}}}");
+
+    assertEquals("{\"note\": \"a \\\"1\\u0001\\\" b\", \"value\": \"1\\u0001\"}",
+        template.render(Map.of("x", "1\u0001"), NO_JSON));
+  }
+
+  @Test
+  void render_JsonTemplate_StringsThatAreJsonLiteralsStayBare() {
+    RequestTemplate template = RequestTemplate.compile(
+        "{\"days\": {{days}}, \"ratio\": {{ratio}}, \"flag\": {{flag}}, \"zip\": {{zip}}, "
+            + "\"filter\": {{filter}}, \"raw\": {{filter|raw}}}");
+
+    assertEquals("{\"days\": 5, \"ratio\": -1.5e3, \"flag\": false, \"zip\": \"02134\", "
+            + "\"filter\": \"{\\\"a\\\":1}\", \"raw\": {\"a\":1}}",
+        template.render(Map.of("days", "5", "ratio", "-1.5e3", "flag", "false", "zip", "02134",
+            "filter", "{\"a\":1}"), NO_JSON));
+  }
+
+  @Test
+  void render_MissingAndComplexValues() {
+    RequestTemplate template = RequestTemplate.compile(
+        "{\"a\": {{missing}}, \"b\": \"{{missing}}\", \"c\": {{list}}}");
+    Map<String, Object> parameters = new HashMap<>();
+    parameters.put("list", List.of(1, 2));
+
+    assertEquals("{\"a\": null, \"b\": \"\", \"c\": [1,2]}",
+        template.render(parameters, value -> "[1,2]"));
+  }
+
+  @Test
+  void render_QueryTemplate_UrlEncodes() {
+    RequestTemplate template = RequestTemplate.compile("?q={{city}}&units=metric");
+
+    assertEquals(Format.URL, template.format());
+    assertEquals("?q=S%C3%A3o+Paulo%26x%3D1&units=metric",
+        template.render(Map.of("city", "São Paulo&x=1"), NO_JSON));
+  }
+
+  @Test
+  void render_Filters_OverrideContext() {
+    RequestTemplate template = RequestTemplate.compile(
+        "Find {{ term }} at https://x.test/?q={{term|url}} \"{{term|json}}\" {{term|raw}}");
+
+    assertEquals(Format.TEXT, template.format());
+    assertEquals(List.of("term", "term", "term", "term"), template.parameterNames());
+    assertEquals("Find a \"b\" at https://x.test/?q=a+%22b%22 \"a \\\"b\\\"\" a \"b\"",
+        template.render(Map.of("term", "a \"b\""), NO_JSON));
+  }
+
+  @Test
+  void compile_UnclosedAndEmptyPlaceholders_AreText() {
+    RequestTemplate template = RequestTemplate.compile("{{}} {{x}} {{open");
+
+    assertEquals(List.of("x"), template.parameterNames());
+    assertEquals("{{}} 1 {{open", template.render(Map.of("x", 1), NO_JSON));
+  }
+
+  @Test
+  void compile_UnknownFilter_Throws() {
+    assertThrows(IllegalArgumentException.class, () -> RequestTemplate.compile("{{x|html}}"));
+  }
+}
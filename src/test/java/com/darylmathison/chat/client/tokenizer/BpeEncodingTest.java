@@ -0,0 +1,69 @@
+package com.darylmathison.chat.client.tokenizer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class BpeEncodingTest {
+
+  // Merges after the 256 single bytes, in rank order
+  private static final List<String> MERGES = List.of("ab", "cd", "abcd", " x", "bc");
+
+  private BpeEncoding encoding;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    StringBuilder vocabulary = new StringBuilder();
+    for (int b = 0; b < 256; b++) {
+      vocabulary.append(Base64.getEncoder().encodeToString(new byte[]{(byte) b}))
+          .append(' ').append(b).append('\n');
+    }
+    for (int i = 0; i < MERGES.size(); i++) {
+      vocabulary.append(Base64.getEncoder().encodeToString(
+              MERGES.get(i).getBytes(StandardCharsets.UTF_8)))
+          .append(' ').append(256 + i).append('\n');
+    }
+    BpeRanks ranks = BpeRanks.load(new ByteArrayInputStream(
+        vocabulary.toString().getBytes(StandardCharsets.UTF_8)));
+    encoding = new BpeEncoding(EncodingName.CL100K_BASE, ranks);
+  }
+
+  @Test
+  void encode_WholePieceIsOneToken() {
+    assertArrayEquals(new int[]{258}, encoding.encode("abcd"));
+  }
+
+  @Test
+  void encode_MergesLowestRankFirst() {
+    // "ab" outranks "bc", so "abc" is ab + c rather than a + bc
+    assertArrayEquals(new int[]{256, 'c'}, encoding.encode("abc"));
+  }
+
+  @Test
+  void encode_SplitsOnThePatternBeforeMerging() {
+    // Pieces "abcd", " xab": " x" and "ab" merge, but not across the piece boundary
+    assertArrayEquals(new int[]{258, 259, 256}, encoding.encode("abcd xab"));
+  }
+
+  @Test
+  void encode_NonAsciiIsEncodedAsUtf8Bytes() {
+    assertArrayEquals(new int[]{0xC3, 0xA9}, encoding.encode("é"));
+    assertArrayEquals(new int[]{0xF0, 0x9F, 0x9A, 0x80}, encoding.encode("🚀"));
+  }
+
+  @Test
+  void countTokens_MatchesEncode() {
+    String text = "abcd abc cdab\n\n  xx 123456 é🚀";
+
+    assertEquals(encoding.encode(text).length, encoding.countTokens(text));
+    assertEquals(0, encoding.countTokens(""));
+    assertEquals(0, encoding.countTokens(null));
+  }
+}
@@ -0,0 +1,55 @@
+package com.darylmathison.chat.client.tokenizer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class TokenizerRegistryTest {
+
+  private final TokenizerRegistry registry = new TokenizerRegistry();
+
+  @Test
+  void encodingFor_MapsModelsToTheirEncoding() {
+    assertEquals(EncodingName.O200K_BASE, registry.encodingFor("openai/gpt-4o-mini"));
+    assertEquals(EncodingName.O200K_BASE, registry.encodingFor("o3-mini"));
+    assertEquals(EncodingName.CL100K_BASE, registry.encodingFor("gpt-4-turbo"));
+    assertEquals(EncodingName.CL100K_BASE, registry.encodingFor("gpt-3.5-turbo"));
+  }
+
+  @Test
+  void encodingFor_OtherModelsUseTheDefault() {
+    assertEquals(EncodingName.CL100K_BASE, registry.encodingFor("anthropic/claude-3.5-sonnet"));
+    assertEquals(EncodingName.CL100K_BASE, registry.encodingFor(null));
+  }
+
+  @Test
+  void countTokens_WithoutVocabulary_Estimates() {
+    assertNull(registry.encoding("gpt-4o"));
+    assertEquals(3, registry.countTokens("gpt-4o", "twelve chars"));
+    assertEquals(0, registry.countTokens("gpt-4o", null));
+  }
+
+  @Test
+  void load_MissingVocabulary_Fails() {
+    ReflectionTestUtils.setField(registry, "location", "classpath:no-such-tokenizer/");
+
+    IllegalStateException error = assertThrows(IllegalStateException.class, registry::load);
+    assertTrue(error.getMessage().contains("cl100k_base.tiktoken"));
+    assertTrue(error.getMessage().contains("o200k_base.tiktoken"));
+  }
+
+  @Test
+  void load_MissingVocabularyNotRequired_Estimates() {
+    ReflectionTestUtils.setField(registry, "location", "classpath:no-such-tokenizer/");
+    ReflectionTestUtils.setField(registry, "required", false);
+
+    registry.load();
+
+    assertNull(registry.encoding("gpt-4o"));
+    assertEquals(3, registry.countTokens("gpt-4o", "twelve chars"));
+  }
+}